@@ -0,0 +1,731 @@
+package epaxos_logic;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import network.MemberTransport;
+import network.MessageHandler;
+import paxos_logic.ShardRouter;
+import paxos_util.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Leaderless EPaxos replica
+ *
+ * Every member leads the commands proposed to it. A command interferes with earlier
+ * commands on the same key (the text before '='); the leader collects those as
+ * dependencies in a Pre-Accept round. If a fast quorum reports no extra dependencies the
+ * command commits in one round trip, otherwise the union of the reported attributes is
+ * fixed with a majority Accept round. Committed commands execute in dependency order,
+ * strongly connected components ordered by sequence number.
+ *
+ * A leader sends each phase again to the replicas that have not replied within the timeout,
+ * and a replica whose committed command waits on a dependency it never saw committed asks
+ * that dependency's leader for the Commit. Recovering an instance whose leader failed is
+ * not supported.
+ *
+ * Only committed instances that have not executed are scanned for execution. An executed
+ * instance is dropped once a later command of its leader on the same key replaced it, since
+ * new commands only depend on the latest ones; executed slots are remembered per leader.
+ */
+public class EPaxosReplica implements MessageHandler {
+    private final String memberId;
+    private final Set<String> replicaIds;
+    private final int majority;
+    private final int fastQuorum;
+
+    private MemberTransport networkTransport;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Gson gson = new Gson();
+
+    private final Map<String, Instance> instances = new HashMap<>();
+
+    // Committed instances not executed yet, in execution order
+    private final TreeSet<Instance> committed = new TreeSet<>(EXECUTION_ORDER);
+
+    // Slots executed per command leader; executed instances are dropped from instances once
+    // they are no longer the latest of their leader on their key
+    private final Map<String, ExecutedSlots> executed = new HashMap<>();
+
+    // Per key: the highest slot seen from each command leader
+    private final Map<String, Map<String, Long>> latestByKey = new HashMap<>();
+
+    // State machine the commands are executed against
+    private final Map<String, String> store = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<String>> pendingExecutions = new HashMap<>();
+
+    // Dependencies whose Commit is being asked for from their leaders
+    private final Set<String> awaitedCommits = new HashSet<>();
+
+    private long nextSlot = 0;
+    private long slowPathTimeoutMs = 1000;
+    private ScheduledExecutorService scheduler;
+
+    private enum Status { PRE_ACCEPTED, ACCEPTED, COMMITTED, EXECUTED }
+
+    private static final Comparator<Instance> EXECUTION_ORDER = Comparator.comparingInt((Instance i) -> i.seq).thenComparing(Instance::id);
+
+    /**
+     * The executed slots of one command leader: every slot up to a watermark, plus the
+     * executed slots above it. Commands usually execute close to slot order, so the set
+     * above the watermark stays small.
+     */
+    private static class ExecutedSlots {
+        long contiguous = -1;
+        final TreeSet<Long> above = new TreeSet<>();
+
+        void add(long slot) {
+            if (slot <= contiguous) return;
+            above.add(slot);
+            while (above.remove(contiguous + 1)) {
+                contiguous++;
+            }
+        }
+
+        boolean contains(long slot) {
+            return slot <= contiguous || above.contains(slot);
+        }
+    }
+
+    /**
+     * State of one command instance, plus the leader's bookkeeping for the instances it leads
+     */
+    private static class Instance {
+        final String leaderId;
+        final long slot;
+        final String command;
+        int seq;
+        Set<String> deps;
+        Status status;
+
+        // Leader only
+        int originalSeq;
+        Set<String> originalDeps;
+        final Map<String, EPaxosMessage> preAcceptReplies = new HashMap<>();
+        boolean attributesChanged = false;
+        final Set<String> acceptOks = new HashSet<>();
+
+        Instance(String leaderId, long slot, String command, int seq, Set<String> deps, Status status) {
+            this.leaderId = leaderId;
+            this.slot = slot;
+            this.command = command;
+            this.seq = seq;
+            this.deps = deps;
+            this.status = status;
+        }
+
+        String id() {
+            return instanceId(leaderId, slot);
+        }
+    }
+
+    public EPaxosReplica(String memberId, Set<String> replicaIds, MemberTransport networkTransport) {
+        this.memberId = memberId;
+        this.replicaIds = replicaIds;
+        this.networkTransport = networkTransport;
+
+        int n = replicaIds.size();
+        this.majority = (n / 2) + 1;
+        int f = n - majority;
+        this.fastQuorum = Math.max(majority, f + (f + 1) / 2);
+    }
+
+    /**
+     * Proposes a command, leading it through Pre-Accept and, if needed, Accept
+     * @param command The command, "key=value" or a bare key
+     * @return Future completed with the command once it has executed on this replica
+     */
+    public CompletableFuture<String> propose(String command) {
+        lock.lock();
+
+        try {
+            long slot = nextSlot++;
+            String key = ShardRouter.keyOf(command);
+            Set<String> deps = interfering(key, null);
+            int seq = 1 + maxSeq(deps);
+
+            Instance inst = new Instance(memberId, slot, command, seq, deps, Status.PRE_ACCEPTED);
+            inst.originalSeq = seq;
+            inst.originalDeps = new HashSet<>(deps);
+            instances.put(inst.id(), inst);
+            recordKey(key, memberId, slot);
+
+            CompletableFuture<String> future = new CompletableFuture<>();
+            pendingExecutions.put(inst.id(), future);
+
+            System.out.println("[EPaxos " + memberId + "] Proposing '" + command + "' as " + inst.id() + " with seq " + seq + " and deps " + deps);
+
+            if (fastQuorum <= 1) {
+                commit(inst);
+                return future;
+            }
+
+            PreAccept preAccept = new PreAccept(memberId, memberId, slot, command, seq, new ArrayList<>(deps));
+            broadcast(preAccept);
+            scheduleSlowPath(inst);
+            return future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dispatches an incoming EPaxos message by its type
+     * @param senderId The ID of the sender
+     * @param message The JSON message received
+     */
+    @Override
+    public void handleMessage(String senderId, String message) {
+        try {
+            EPaxosMessage msg = gson.fromJson(message, EPaxosMessage.class);
+            if (msg == null || msg.type == null) {
+                System.out.println("[EPaxos " + memberId + "] Unknown message format: " + message);
+                return;
+            }
+
+            switch (msg.type) {
+                case "PRE_ACCEPT":
+                    handlePreAccept(msg, senderId);
+                    break;
+                case "PRE_ACCEPT_OK":
+                    handlePreAcceptOk(msg, senderId);
+                    break;
+                case "EPAXOS_ACCEPT":
+                    handleAccept(msg, senderId);
+                    break;
+                case "EPAXOS_ACCEPT_OK":
+                    handleAcceptOk(msg, senderId);
+                    break;
+                case "COMMIT":
+                    handleCommit(msg);
+                    break;
+                case "COMMIT_REQUEST":
+                    handleCommitRequest(msg, senderId);
+                    break;
+                default:
+                    System.out.println("[EPaxos " + memberId + "] Unknown message type: " + msg.type);
+            }
+        } catch (JsonSyntaxException e) {
+            System.out.println("[EPaxos " + memberId + "] Failed to parse JSON message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles a Pre-Accept by adding this replica's interfering commands to the attributes
+     * @param preAccept The Pre-Accept message received
+     * @param fromLeaderId The ID of the command leader
+     */
+    public void handlePreAccept(EPaxosMessage preAccept, String fromLeaderId) {
+        lock.lock();
+
+        try {
+            String id = instanceId(preAccept.leaderId, preAccept.instance);
+            Instance existing = instances.get(id);
+            if (existing != null && existing.status != Status.PRE_ACCEPTED || isExecuted(id)) return;
+
+            String key = ShardRouter.keyOf(preAccept.proposalValue);
+            Set<String> deps = new HashSet<>(preAccept.deps != null ? preAccept.deps : List.of());
+            deps.addAll(interfering(key, id));
+            int seq = Math.max(preAccept.seq, 1 + maxSeq(deps));
+
+            instances.put(id, new Instance(preAccept.leaderId, preAccept.instance, preAccept.proposalValue, seq, deps, Status.PRE_ACCEPTED));
+            recordKey(key, preAccept.leaderId, preAccept.instance);
+
+            networkTransport.sendMessage(fromLeaderId,
+                new PreAcceptOk(memberId, preAccept.leaderId, preAccept.instance, preAccept.proposalValue, seq, new ArrayList<>(deps)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles a Pre-Accept reply: commits on the fast path when a fast quorum agrees with
+     * the original attributes, otherwise starts the Accept round once a majority replied
+     * @param reply The Pre-Accept OK message received
+     * @param fromReplicaId The ID of the replica that replied
+     */
+    public void handlePreAcceptOk(EPaxosMessage reply, String fromReplicaId) {
+        lock.lock();
+
+        try {
+            Instance inst = instances.get(instanceId(reply.leaderId, reply.instance));
+            if (inst == null || !memberId.equals(inst.leaderId) || inst.status != Status.PRE_ACCEPTED) return;
+            if (inst.preAcceptReplies.putIfAbsent(fromReplicaId, reply) != null) return;
+
+            Set<String> replyDeps = new HashSet<>(reply.deps != null ? reply.deps : List.of());
+            if (reply.seq != inst.originalSeq || !replyDeps.equals(inst.originalDeps)) {
+                inst.attributesChanged = true;
+            }
+
+            int replies = inst.preAcceptReplies.size();
+            if (!inst.attributesChanged && replies >= fastQuorum - 1) {
+                System.out.println("[EPaxos " + memberId + "] Fast path commit of " + inst.id());
+                commit(inst);
+            } else if (inst.attributesChanged && replies >= majority - 1) {
+                startAccept(inst);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Starts the slow path: fixes the union of all reported attributes with a majority
+     * @param inst The instance led by this replica
+     */
+    private void startAccept(Instance inst) {
+        Set<String> deps = new HashSet<>(inst.originalDeps);
+        int seq = inst.originalSeq;
+        for (EPaxosMessage reply : inst.preAcceptReplies.values()) {
+            if (reply.deps != null) deps.addAll(reply.deps);
+            seq = Math.max(seq, reply.seq);
+        }
+        inst.deps = deps;
+        inst.seq = seq;
+        inst.status = Status.ACCEPTED;
+        inst.acceptOks.add(memberId);
+
+        System.out.println("[EPaxos " + memberId + "] Slow path for " + inst.id() + " with seq " + seq + " and deps " + deps);
+        broadcast(new EPaxosAccept(memberId, inst.leaderId, inst.slot, inst.command, seq, new ArrayList<>(deps)));
+    }
+
+    /*
+     * Schedules a check of an instance led by this replica. Without a fast quorum in time it
+     * takes the slow path once a majority replied; otherwise the current phase is sent again
+     * to the replicas that have not replied, until the instance commits.
+     * @param inst The instance led by this replica
+     */
+    private void scheduleSlowPath(Instance inst) {
+        getScheduler().schedule(() -> {
+            lock.lock();
+            try {
+                if (inst.status == Status.PRE_ACCEPTED && inst.preAcceptReplies.size() >= majority - 1) {
+                    System.out.println("[EPaxos " + memberId + "] No fast quorum for " + inst.id() + " after " + slowPathTimeoutMs + " ms");
+                    startAccept(inst);
+                } else if (inst.status == Status.PRE_ACCEPTED) {
+                    resend(inst, inst.preAcceptReplies.keySet(),
+                        new PreAccept(memberId, memberId, inst.slot, inst.command, inst.originalSeq, new ArrayList<>(inst.originalDeps)));
+                } else if (inst.status == Status.ACCEPTED) {
+                    resend(inst, inst.acceptOks,
+                        new EPaxosAccept(memberId, inst.leaderId, inst.slot, inst.command, inst.seq, new ArrayList<>(inst.deps)));
+                } else {
+                    return;
+                }
+                scheduleSlowPath(inst);
+            } finally {
+                lock.unlock();
+            }
+        }, slowPathTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Sends a phase of an instance again to the replicas that have not replied to it
+     * @param inst The instance led by this replica
+     * @param replied The replicas that replied
+     * @param message The message of the phase
+     */
+    private void resend(Instance inst, Set<String> replied, EPaxosMessage message) {
+        List<String> missing = new ArrayList<>();
+        for (String replicaId : replicaIds) {
+            if (replicaId.equals(memberId) || replied.contains(replicaId)) continue;
+            networkTransport.sendMessage(replicaId, message);
+            missing.add(replicaId);
+        }
+        System.out.println("[EPaxos " + memberId + "] Sent " + message.type + " of " + inst.id() + " again to " + missing);
+    }
+
+    /**
+     * Handles an Accept from a command leader on the slow path
+     * @param accept The Accept message received
+     * @param fromLeaderId The ID of the command leader
+     */
+    public void handleAccept(EPaxosMessage accept, String fromLeaderId) {
+        lock.lock();
+
+        try {
+            String id = instanceId(accept.leaderId, accept.instance);
+            Instance existing = instances.get(id);
+            if ((existing == null || existing.status.compareTo(Status.COMMITTED) < 0) && !isExecuted(id)) {
+                Set<String> deps = new HashSet<>(accept.deps != null ? accept.deps : List.of());
+                instances.put(id, new Instance(accept.leaderId, accept.instance, accept.proposalValue, accept.seq, deps, Status.ACCEPTED));
+                recordKey(ShardRouter.keyOf(accept.proposalValue), accept.leaderId, accept.instance);
+            }
+
+            networkTransport.sendMessage(fromLeaderId,
+                new EPaxosAcceptOk(memberId, accept.leaderId, accept.instance, accept.proposalValue, accept.seq, accept.deps));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles an Accept reply, committing once a majority accepted the attributes
+     * @param reply The Accept OK message received
+     * @param fromReplicaId The ID of the replica that replied
+     */
+    public void handleAcceptOk(EPaxosMessage reply, String fromReplicaId) {
+        lock.lock();
+
+        try {
+            Instance inst = instances.get(instanceId(reply.leaderId, reply.instance));
+            if (inst == null || !memberId.equals(inst.leaderId) || inst.status != Status.ACCEPTED) return;
+
+            inst.acceptOks.add(fromReplicaId);
+            if (inst.acceptOks.size() >= majority) {
+                commit(inst);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles a Commit, recording the final attributes and executing what became ready
+     * @param commit The Commit message received
+     */
+    public void handleCommit(EPaxosMessage commit) {
+        lock.lock();
+
+        try {
+            String id = instanceId(commit.leaderId, commit.instance);
+            Instance existing = instances.get(id);
+            if (existing != null && existing.status.compareTo(Status.COMMITTED) >= 0 || isExecuted(id)) return;
+
+            Set<String> deps = new HashSet<>(commit.deps != null ? commit.deps : List.of());
+            Instance inst = new Instance(commit.leaderId, commit.instance, commit.proposalValue, commit.seq, deps, Status.COMMITTED);
+            instances.put(id, inst);
+            committed.add(inst);
+            recordKey(ShardRouter.keyOf(commit.proposalValue), commit.leaderId, commit.instance);
+            System.out.println("[EPaxos " + memberId + "] Committed " + id + " '" + commit.proposalValue + "'");
+            executeReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles a request for the Commit of an instance, answering if it is committed here
+     * @param request The Commit Request message received
+     * @param fromReplicaId The ID of the replica asking
+     */
+    public void handleCommitRequest(EPaxosMessage request, String fromReplicaId) {
+        lock.lock();
+
+        try {
+            Instance inst = instances.get(instanceId(request.leaderId, request.instance));
+            if (inst == null || inst.status.compareTo(Status.COMMITTED) < 0) return;
+            networkTransport.sendMessage(fromReplicaId, new Commit(memberId, inst.leaderId, inst.slot, inst.command, inst.seq, new ArrayList<>(inst.deps)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Commits an instance led by this replica and tells every other replica
+     * @param inst The instance to commit
+     */
+    private void commit(Instance inst) {
+        inst.status = Status.COMMITTED;
+        committed.add(inst);
+        System.out.println("[EPaxos " + memberId + "] Committed " + inst.id() + " '" + inst.command + "'");
+        broadcast(new Commit(memberId, inst.leaderId, inst.slot, inst.command, inst.seq, new ArrayList<>(inst.deps)));
+        executeReady();
+    }
+
+    /*
+     * Executes every committed instance whose dependencies are all committed
+     */
+    private void executeReady() {
+        for (Instance inst : new ArrayList<>(committed)) {
+            if (inst.status != Status.COMMITTED) continue;
+            String blocking = uncommittedDependency(inst);
+            if (blocking == null) {
+                executeGraph(inst);
+            } else {
+                awaitCommit(blocking);
+            }
+        }
+    }
+
+    /*
+     * Finds an instance reachable through dependencies that is not committed
+     * @param root The instance to start from
+     * @return The ID of an uncommitted dependency, or null if the whole graph is committed
+     */
+    private String uncommittedDependency(Instance root) {
+        Deque<Instance> stack = new ArrayDeque<>(List.of(root));
+        Set<String> seen = new HashSet<>(Set.of(root.id()));
+        while (!stack.isEmpty()) {
+            Instance inst = stack.pop();
+            for (String depId : inst.deps) {
+                Instance dep = instances.get(depId);
+                if (dep == null && isExecuted(depId)) continue;
+                if (dep == null || dep.status.compareTo(Status.COMMITTED) < 0) return depId;
+                if (dep.status == Status.COMMITTED && seen.add(depId)) {
+                    stack.push(dep);
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Asks the leader of a dependency for its Commit if it has not arrived within the
+     * timeout, again after every timeout until it does. Instances led by this replica
+     * commit through their own retries.
+     * @param id The ID of the dependency
+     */
+    private void awaitCommit(String id) {
+        int separator = id.lastIndexOf('.');
+        String leaderId = id.substring(0, separator);
+        if (leaderId.equals(memberId) || !awaitedCommits.add(id)) return;
+
+        long slot = Long.parseLong(id.substring(separator + 1));
+        getScheduler().schedule(() -> {
+            lock.lock();
+            try {
+                awaitedCommits.remove(id);
+                Instance dep = instances.get(id);
+                if (dep != null && dep.status.compareTo(Status.COMMITTED) >= 0 || isExecuted(id)) return;
+
+                System.out.println("[EPaxos " + memberId + "] Commit of " + id + " missing, asking " + leaderId);
+                networkTransport.sendMessage(leaderId, new CommitRequest(memberId, leaderId, slot));
+                awaitCommit(id);
+            } finally {
+                lock.unlock();
+            }
+        }, slowPathTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Executes the dependency graph of an instance with Tarjan's algorithm: strongly
+     * connected components come out dependencies first and are executed in seq order
+     * @param root The instance to execute, with all its dependencies committed
+     */
+    private void executeGraph(Instance root) {
+        Map<String, Integer> index = new HashMap<>();
+        Map<String, Integer> lowLink = new HashMap<>();
+        Deque<Instance> stack = new ArrayDeque<>();
+        Set<String> onStack = new HashSet<>();
+        strongConnect(root, index, lowLink, stack, onStack);
+    }
+
+    /*
+     * One step of Tarjan's algorithm
+     */
+    private void strongConnect(Instance inst, Map<String, Integer> index, Map<String, Integer> lowLink,
+                               Deque<Instance> stack, Set<String> onStack) {
+        String id = inst.id();
+        index.put(id, index.size());
+        lowLink.put(id, index.get(id));
+        stack.push(inst);
+        onStack.add(id);
+
+        for (String depId : inst.deps) {
+            Instance dep = instances.get(depId);
+            if (dep == null || dep.status != Status.COMMITTED) continue;
+            if (!index.containsKey(depId)) {
+                strongConnect(dep, index, lowLink, stack, onStack);
+                lowLink.put(id, Math.min(lowLink.get(id), lowLink.get(depId)));
+            } else if (onStack.contains(depId)) {
+                lowLink.put(id, Math.min(lowLink.get(id), index.get(depId)));
+            }
+        }
+
+        if (lowLink.get(id).equals(index.get(id))) {
+            List<Instance> component = new ArrayList<>();
+            Instance member;
+            do {
+                member = stack.pop();
+                onStack.remove(member.id());
+                component.add(member);
+            } while (member != inst);
+
+            component.sort(EXECUTION_ORDER);
+            for (Instance ready : component) {
+                execute(ready);
+            }
+        }
+    }
+
+    /*
+     * Applies a command to the local store
+     * @param inst The committed instance to execute
+     */
+    private void execute(Instance inst) {
+        String command = inst.command;
+        int separator = command.indexOf('=');
+        if (separator >= 0) {
+            store.put(command.substring(0, separator), command.substring(separator + 1));
+        }
+        inst.status = Status.EXECUTED;
+        committed.remove(inst);
+        executed.computeIfAbsent(inst.leaderId, l -> new ExecutedSlots()).add(inst.slot);
+        if (latestByKey.getOrDefault(ShardRouter.keyOf(command), Map.of()).getOrDefault(inst.leaderId, -1L) != inst.slot) {
+            instances.remove(inst.id());
+        }
+        System.out.println("[EPaxos " + memberId + "] Executed " + inst.id() + " '" + command + "'");
+
+        CompletableFuture<String> future = pendingExecutions.remove(inst.id());
+        if (future != null) {
+            future.complete(command);
+        }
+    }
+
+    /*
+     * Finds the latest instance of every leader that interferes with a key
+     * @param key The key of the command
+     * @param selfId The instance being attributed, excluded from its own dependencies
+     * @return The interfering instance IDs
+     */
+    private Set<String> interfering(String key, String selfId) {
+        Set<String> deps = new HashSet<>();
+        for (Map.Entry<String, Long> entry : latestByKey.getOrDefault(key, Map.of()).entrySet()) {
+            String id = instanceId(entry.getKey(), entry.getValue());
+            if (!id.equals(selfId)) deps.add(id);
+        }
+        return deps;
+    }
+
+    /*
+     * Gets the highest sequence number among known instances
+     * @param ids The instance IDs to look at
+     * @return The highest sequence number, or 0 if none are known
+     */
+    private int maxSeq(Set<String> ids) {
+        int max = 0;
+        for (String id : ids) {
+            Instance inst = instances.get(id);
+            if (inst != null) max = Math.max(max, inst.seq);
+        }
+        return max;
+    }
+
+    /*
+     * Remembers the latest slot of a leader that touched a key. The instance it replaces is
+     * dropped if it already executed, since new commands no longer depend on it.
+     */
+    private void recordKey(String key, String leaderId, long slot) {
+        Long previous = latestByKey.computeIfAbsent(key, k -> new HashMap<>()).put(leaderId, slot);
+        if (previous == null || previous == slot) return;
+        if (previous > slot) {
+            latestByKey.get(key).put(leaderId, previous);
+            return;
+        }
+        String previousId = instanceId(leaderId, previous);
+        Instance replaced = instances.get(previousId);
+        if (replaced != null && replaced.status == Status.EXECUTED) {
+            instances.remove(previousId);
+        }
+    }
+
+    /*
+     * Checks whether an instance executed here, even if it was dropped since
+     * @param id The ID of the instance
+     * @return true if the instance executed
+     */
+    private boolean isExecuted(String id) {
+        int separator = id.lastIndexOf('.');
+        ExecutedSlots slots = executed.get(id.substring(0, separator));
+        return slots != null && slots.contains(Long.parseLong(id.substring(separator + 1)));
+    }
+
+    /**
+     * Gets the number of instances held in memory, committed or not
+     * @return The number of instances
+     */
+    public int getInstanceCount() {
+        lock.lock();
+        try {
+            return instances.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Sends a message to every other replica
+     * @param message The message to send
+     */
+    private void broadcast(Object message) {
+        for (String replicaId : replicaIds) {
+            if (replicaId.equals(memberId)) continue;
+            networkTransport.sendMessage(replicaId, message);
+        }
+    }
+
+    /*
+     * Builds the ID of an instance
+     * @return The leader ID and slot separated by a dot
+     */
+    private static String instanceId(String leaderId, long slot) {
+        return leaderId + "." + slot;
+    }
+
+    /*
+     * Gets the scheduler, creating a daemon one on first use
+     * @return The scheduler for slow path timeouts
+     */
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "epaxos-timeouts-" + memberId);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Reads a key from the executed state
+     * @param key The key to read
+     * @return The value of the last executed command on the key, or null
+     */
+    public String get(String key) {
+        return store.get(key);
+    }
+
+    /**
+     * Sets how long the leader waits for a fast quorum before taking the slow path
+     * @param timeoutMs The timeout in milliseconds
+     */
+    public void setSlowPathTimeout(long timeoutMs) {
+        this.slowPathTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Gets the fast quorum size, counting the command leader
+     * @return The number of replicas that must agree for a one round trip commit
+     */
+    public int getFastQuorum() {
+        return fastQuorum;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    /**
+     * Sets the network transport for communication
+     * @param transport The MemberTransport instance to use
+     */
+    public void setTransport(MemberTransport transport) {
+        this.networkTransport = transport;
+    }
+
+    /**
+     * Stops the timeout scheduler
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -1,19 +1,36 @@
 package member;
 
+import epaxos_logic.EPaxosReplica;
 import network.*;
 import paxos_logic.*;
+import paxos_util.Tracer;
 
 import java.io.*;
 import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Main class for a Council Member running Paxos
  */
 public class CouncilMember {
+    private static final long LOCAL_READ_TIMEOUT_MS = 5000;
+    private static final long STARTUP_TIMEOUT_MS = 30_000;
+    private static final int WATCH_BUFFER = 4096;
+
     /**
      * Main method for Council Member
      * @param args Command line arguments
@@ -21,13 +38,22 @@ public class CouncilMember {
      */
     public static void main(String[] args) throws Exception {
         if (args.length < 1) {
-            System.out.println("Usage: java CouncilMember <memberId> [--propose <value>] [--crashAfterSend]");
+            System.out.println("Usage: java CouncilMember <memberId> [--propose <value>] [--crashAfterSend] [--leaseMs <ms>] [--maxClockDriftMs <ms>] [--shards <count>] [--thriftyTimeoutMs <ms>] [--distinguishedLearner] [--fastCoordinator] [--engine paxos|epaxos] [--maxRetries <count>] [--trace <dir>]");
             return;
         }
 
         String memberId = args[0];
         String proposeValue = null;
         boolean crashAfterSend = false;
+        long leaseMs = 0;
+        long maxClockDriftMs = 0;
+        int shardCount = 1;
+        long thriftyTimeoutMs = 0;
+        boolean distinguishedLearner = false;
+        boolean fastCoordinator = false;
+        String engine = "paxos";
+        int maxRetries = -1;
+        String traceDir = null;
 
         // Parse additional args
         for (int i = 1; i < args.length; i++) {
@@ -36,11 +62,37 @@ public class CouncilMember {
                 i++;
             } else if (args[i].equalsIgnoreCase("--crashAfterSend")) {
                 crashAfterSend = true;
+            } else if (args[i].equalsIgnoreCase("--leaseMs") && i + 1 < args.length) {
+                leaseMs = Long.parseLong(args[i + 1]);
+                i++;
+            } else if (args[i].equalsIgnoreCase("--maxClockDriftMs") && i + 1 < args.length) {
+                maxClockDriftMs = Long.parseLong(args[i + 1]);
+                i++;
+            } else if (args[i].equalsIgnoreCase("--shards") && i + 1 < args.length) {
+                shardCount = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equalsIgnoreCase("--thriftyTimeoutMs") && i + 1 < args.length) {
+                thriftyTimeoutMs = Long.parseLong(args[i + 1]);
+                i++;
+            } else if (args[i].equalsIgnoreCase("--distinguishedLearner")) {
+                distinguishedLearner = true;
+            } else if (args[i].equalsIgnoreCase("--fastCoordinator")) {
+                fastCoordinator = true;
+            } else if (args[i].equalsIgnoreCase("--maxRetries") && i + 1 < args.length) {
+                maxRetries = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equalsIgnoreCase("--engine") && i + 1 < args.length) {
+                engine = args[i + 1].toLowerCase();
+                i++;
+            } else if (args[i].equalsIgnoreCase("--trace") && i + 1 < args.length) {
+                traceDir = args[i + 1];
+                i++;
             }
         }
 
         // Load network.config
-        Map<String, MemberConfig> allConfigs = loadNetworkConfig("conf/network.config");
+        NetworkConfig networkConfig = NetworkConfig.load("conf/network.config");
+        Map<String, MemberConfig> allConfigs = networkConfig.members;
 
         if (!allConfigs.containsKey(memberId)) {
             System.out.println("Error: Member ID " + memberId + " not found in network.config");
@@ -48,28 +100,178 @@ public class CouncilMember {
         }
 
         MemberConfig myConfig = allConfigs.get(memberId);
-        Set<String> acceptorIds = new HashSet<>(allConfigs.keySet());
+
+        // Spans of traced decisions go to one file per member, merged with tools.TraceMerge
+        if (traceDir != null) {
+            Path traceFile = Paths.get(traceDir, "trace-" + memberId + ".jsonl");
+            Tracer.enable(memberId, traceFile);
+            System.out.println("[Member " + memberId + "] Recording trace spans to " + traceFile);
+        }
+
+        if (engine.equals("epaxos")) {
+            runEPaxos(memberId, allConfigs, networkConfig.settings, proposeValue, crashAfterSend);
+            return;
+        } else if (!engine.equals("paxos")) {
+            System.out.println("Error: Unknown engine " + engine);
+            return;
+        }
+
+        // Voters and witnesses accept and count toward quorums; learner-only members are fed by
+        // the relay tree. Witnesses keep only references to large values, voters the bodies.
+        Set<String> acceptorIds = new HashSet<>();
+        Set<String> learnerOnlyIds = new HashSet<>();
+        Set<String> witnessIds = new HashSet<>();
+        allConfigs.forEach((id, config) -> {
+            (config.role == Role.LEARNER ? learnerOnlyIds : acceptorIds).add(id);
+            if (config.role == Role.WITNESS) witnessIds.add(id);
+        });
         Set<String> learnerIds = new HashSet<>(acceptorIds);
+        Set<String> fullVoterIds = new HashSet<>(acceptorIds);
+        fullVoterIds.removeAll(witnessIds);
+        boolean voter = myConfig.role == Role.VOTER;
+        boolean witness = myConfig.role == Role.WITNESS;
+
+        if (fullVoterIds.isEmpty()) {
+            System.out.println("Error: network.config has no VOTER members");
+            return;
+        }
+        if (!voter && (proposeValue != null || fastCoordinator)) {
+            System.out.println("Error: " + (witness ? "Witness " : "Learner-only member ") + memberId + " cannot propose");
+            return;
+        }
+
+        QuorumSystem quorumSystem;
+        try {
+            quorumSystem = QuorumSystem.fromSettings(networkConfig.settings, acceptorIds);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Invalid quorum configuration - " + e.getMessage());
+            return;
+        }
+        if (fastCoordinator && !(quorumSystem instanceof MajorityQuorum)) {
+            System.out.println("Error: Fast Paxos requires majority quorums");
+            return;
+        }
+        if (!witnessIds.isEmpty()) {
+            // A chosen value's body must survive on some full Acceptor of its quorum
+            if (quorumSystem.isPhase2Quorum(witnessIds)) {
+                System.out.println("Error: Witnesses " + new TreeSet<>(witnessIds) + " form a quorum on their own; every quorum needs a VOTER");
+                return;
+            }
+            if (fastCoordinator) {
+                System.out.println("Error: Fast Paxos cannot be combined with witnesses");
+                return;
+            }
+        }
+        System.out.println("[Member " + memberId + "] Using quorum system " + quorumSystem);
+
+        // Create one Paxos group per shard
+        ShardedPaxosNode node = new ShardedPaxosNode(memberId, acceptorIds, learnerIds, shardCount);
+        node.forEachShard(group -> group.setQuorumSystem(quorumSystem));
+        if (!witnessIds.isEmpty()) {
+            node.forEachShard(group -> group.setWitnesses(witnessIds));
+            System.out.println("[Member " + memberId + "] Witness acceptors: " + new TreeSet<>(witnessIds));
+        }
+
+        // Membership changes are decided through the log and take effect alpha instances later
+        Map<String, String> memberAddresses = new LinkedHashMap<>();
+        Map<String, String> learnerOnlyAddresses = new LinkedHashMap<>();
+        allConfigs.forEach((id, config) -> (config.role != Role.LEARNER ? memberAddresses : learnerOnlyAddresses)
+                .put(id, config.address.getHostString() + ":" + config.port));
+        node.setNonVotingPeers(learnerOnlyAddresses);
+        try {
+            int alpha = Integer.parseInt(networkConfig.settings.getOrDefault("reconfig.alpha", "1").trim());
+            node.enableReconfiguration(memberAddresses, alpha, ids -> QuorumSystem.fromSettings(networkConfig.settings, ids));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Invalid reconfig.alpha - " + e.getMessage());
+            return;
+        }
+
+        if (!learnerOnlyIds.isEmpty()) {
+            try {
+                int fanout = Integer.parseInt(networkConfig.settings.getOrDefault("relay.fanout", "2").trim());
+                RelayTree tree = new RelayTree(fullVoterIds, learnerOnlyIds, fanout);
+                node.forEachShard(group -> group.enableRelay(tree));
+                System.out.println("[Member " + memberId + "] Relaying chosen values to " + tree.childrenOf(memberId));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: Invalid relay.fanout - " + e.getMessage());
+                return;
+            }
+        }
+        if (witness) {
+            System.out.println("[Member " + memberId + "] Running as a witness, keeping references instead of large values");
+        } else if (!voter) {
+            System.out.println("[Member " + memberId + "] Running as a learner-only replica");
+        }
+        if (leaseMs > 0) {
+            final long lease = leaseMs, drift = maxClockDriftMs;
+            node.forEachShard(group -> group.enableLeases(lease, drift));
+        }
+        if (thriftyTimeoutMs > 0) {
+            final long timeout = thriftyTimeoutMs;
+            node.forEachShard(group -> group.enableThrifty(timeout));
+        }
+        if (distinguishedLearner) {
+            node.forEachShard(PaxosNode::enableDistinguishedLearner);
+        }
+        if (fastCoordinator) {
+            node.forEachShard(PaxosNode::enableFastCoordinator);
+        }
+        if (maxRetries >= 0) {
+            final int retries = maxRetries;
+            node.forEachShard(group -> group.enablePhaseTimeouts(retries));
+        }
+        try {
+            int retention = Integer.parseInt(networkConfig.settings.getOrDefault("learner.retention", String.valueOf(Learner.DEFAULT_RETENTION)).trim());
+            int voteWindow = Integer.parseInt(networkConfig.settings.getOrDefault("learner.voteWindow", String.valueOf(Learner.DEFAULT_VOTE_WINDOW)).trim());
+            node.forEachShard(group -> group.getLearner().setLimits(retention, voteWindow));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Invalid learner limits - " + e.getMessage());
+            return;
+        }
 
-        // Create Paxos node
-        PaxosNode node = new PaxosNode(memberId, acceptorIds, learnerIds, null);
+        // Large values travel once as chunks while consensus orders their digests
+        String digestAbove = networkConfig.settings.get("values.digestAbove");
+        if (digestAbove != null) {
+            try {
+                int threshold = Integer.parseInt(digestAbove.trim());
+                node.forEachShard(group -> group.enableValueDigests(threshold));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: Invalid values.digestAbove - " + e.getMessage());
+                return;
+            }
+        }
+
+        // Client proposals wait in a bounded queue and only maxInFlight run at once
+        AdmissionController admission;
+        try {
+            admission = new AdmissionController(node,
+                    Integer.parseInt(networkConfig.settings.getOrDefault("admission.maxInFlight", String.valueOf(shardCount)).trim()),
+                    Integer.parseInt(networkConfig.settings.getOrDefault("admission.maxPending", "256").trim()),
+                    Long.parseLong(networkConfig.settings.getOrDefault("admission.timeoutMs", "10000").trim()));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Invalid admission settings - " + e.getMessage());
+            return;
+        }
 
-        // Link transport and node
+        // Link transport and node; faults can be injected at runtime with /fault
+        FaultInjectingTransport faults = new FaultInjectingTransport(memberId, node);
         SocketTransport transport = new SocketTransport(
             memberId,
             myConfig.port,
             allConfigs.entrySet().stream()
                     .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().address)),
-            node,
+            faults,
             myConfig.profile
         );
+        faults.setTransport(transport);
 
         // Enable crash-after-send if specified
         if (crashAfterSend || myConfig.profile == Profile.FAILURE) {
             transport.setCrashAfterSend(true);
         }
+        if (!configureQueues(transport, networkConfig.settings)) return;
 
-        node.setTransport(transport);
+        node.setTransport(faults);
 
         // Start Paxos listening
         transport.startListening();
@@ -78,18 +280,191 @@ public class CouncilMember {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("[Member " + memberId + "] Shutting down...");
             transport.shutdown();
+            faults.shutdown();
+            node.shutdown();
+            Tracer.disable();
         }));
 
-        // Small startup delay to ensure all nodes are ready
-        Thread.sleep(2000);
+        // Start once a quorum of voters answered the handshake
+        awaitReadiness(memberId, transport, up -> {
+            List<String> voters = up.stream().filter(acceptorIds::contains).collect(Collectors.toList());
+            return quorumSystem.isPhase1Quorum(voters) && quorumSystem.isPhase2Quorum(voters);
+        });
+
+        // Open the first fast round; later ones are opened as each instance is decided
+        if (fastCoordinator) {
+            node.forEachShard(PaxosNode::openFastRound);
+        }
 
         // Auto-propose if --propose given
         if (proposeValue != null) {
             System.out.println("[Proposer " + memberId + "] Auto-proposing value: " + proposeValue);
-            node.getProposer().propose(proposeValue);
+            admission.submit(ShardRouter.keyOf(proposeValue), proposeValue);
         }
 
         // Background thread for stdin proposals
+        startStdinReader(memberId, line -> {
+            if (voter) {
+                admission.submit(ShardRouter.keyOf(line), line);
+            } else {
+                System.out.println("[Member " + memberId + "] " + (witness ? "Witness" : "Learner-only replica") + ", ignoring proposal: " + line);
+            }
+        });
+
+        // Command Port Listener for runtime proposals; learner-only members serve reads only,
+        // and witnesses, which hold no values to read, only take fault commands
+        startCommandServer(memberId, myConfig.port + 100, (line, writer) -> {
+            if (witness && !line.startsWith("/fault")) {
+                writer.println("WITNESS");
+            } else if (!voter && (!line.startsWith("/") || line.startsWith("/reconfig"))) {
+                writer.println("READ_ONLY");
+            } else {
+                handleCommand(memberId, node, admission, faults, line, writer);
+            }
+        });
+
+        // Keep process alive
+        CountDownLatch latch = new CountDownLatch(1);
+        latch.await();
+    }
+
+    /*
+     * Waits until the members that answered the startup handshake satisfy a condition,
+     * giving up after STARTUP_TIMEOUT_MS so a member can still start in a degraded cluster
+     * @param memberId The ID of this member
+     * @param transport The listening transport
+     * @param ready Tested with the reachable members
+     */
+    private static void awaitReadiness(String memberId, SocketTransport transport, Predicate<Set<String>> ready) throws InterruptedException {
+        try {
+            Set<String> up = transport.readiness(ready).get(STARTUP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            System.out.println("[Member " + memberId + "] Ready, reachable members: " + new TreeSet<>(up));
+        } catch (TimeoutException e) {
+            System.out.println("[Member " + memberId + "] No quorum reachable after " + STARTUP_TIMEOUT_MS + " ms, starting anyway with " + new TreeSet<>(transport.getReachablePeers()));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /*
+     * Applies the outbound queue, compression and failure detection settings of network.config
+     * to a transport
+     * @param transport The transport to configure
+     * @param settings The key=value settings of network.config
+     * @return false if a setting is invalid
+     */
+    private static boolean configureQueues(SocketTransport transport, Map<String, String> settings) {
+        try {
+            transport.setQueueCapacity(Integer.parseInt(settings.getOrDefault("transport.queueCapacity",
+                    String.valueOf(SocketTransport.DEFAULT_QUEUE_CAPACITY)).trim()));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Invalid transport.queueCapacity - " + e.getMessage());
+            return false;
+        }
+        transport.setBatchFrames(Boolean.parseBoolean(settings.getOrDefault("transport.batchFrames", "false").trim()));
+
+        String compression = settings.getOrDefault("transport.compression", "none").trim().toLowerCase();
+        if (compression.equals(MessageCodec.COMPRESSION)) {
+            try {
+                transport.setCompressAbove(Integer.parseInt(settings.getOrDefault("transport.compressionThreshold",
+                        String.valueOf(SocketTransport.DEFAULT_COMPRESSION_THRESHOLD)).trim()));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: Invalid transport.compressionThreshold - " + e.getMessage());
+                return false;
+            }
+        } else if (!compression.equals("none")) {
+            System.out.println("Error: Unknown transport.compression " + compression);
+            return false;
+        }
+
+        try {
+            long heartbeatMs = Long.parseLong(settings.getOrDefault("failureDetector.heartbeatMs",
+                    String.valueOf(SocketTransport.DEFAULT_HEARTBEAT_MS)).trim());
+            if (heartbeatMs > 0) {
+                transport.enableFailureDetection(heartbeatMs, Double.parseDouble(settings.getOrDefault(
+                        "failureDetector.phiThreshold", String.valueOf(FailureDetector.DEFAULT_THRESHOLD)).trim()));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Invalid failure detector settings - " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Runs this member with the leaderless EPaxos engine instead of Paxos
+     * @param memberId The ID of this member
+     * @param allConfigs The configuration of every member
+     * @param settings The key=value settings of network.config
+     * @param proposeValue A command to propose once the member is up, or null
+     * @param crashAfterSend Whether to crash after the first outgoing message
+     */
+    private static void runEPaxos(String memberId, Map<String, MemberConfig> allConfigs, Map<String, String> settings, String proposeValue, boolean crashAfterSend) throws Exception {
+        MemberConfig myConfig = allConfigs.get(memberId);
+        if (allConfigs.values().stream().anyMatch(config -> config.role == Role.WITNESS)) {
+            System.out.println("Error: Witnesses are only supported by the paxos engine");
+            return;
+        }
+        EPaxosReplica replica = new EPaxosReplica(memberId, new HashSet<>(allConfigs.keySet()), null);
+
+        FaultInjectingTransport faults = new FaultInjectingTransport(memberId, replica);
+        SocketTransport transport = new SocketTransport(
+            memberId,
+            myConfig.port,
+            allConfigs.entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().address)),
+            faults,
+            myConfig.profile
+        );
+        faults.setTransport(transport);
+        if (crashAfterSend || myConfig.profile == Profile.FAILURE) {
+            transport.setCrashAfterSend(true);
+        }
+        if (!configureQueues(transport, settings)) return;
+        replica.setTransport(faults);
+        transport.startListening();
+        System.out.println("[Member " + memberId + "] Using EPaxos engine, fast quorum " + replica.getFastQuorum());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("[Member " + memberId + "] Shutting down...");
+            transport.shutdown();
+            faults.shutdown();
+            replica.shutdown();
+            Tracer.disable();
+        }));
+
+        // Start once a majority answered the handshake
+        awaitReadiness(memberId, transport, up -> up.size() >= allConfigs.size() / 2 + 1);
+
+        if (proposeValue != null) {
+            System.out.println("[EPaxos " + memberId + "] Auto-proposing command: " + proposeValue);
+            replica.propose(proposeValue);
+        }
+
+        startStdinReader(memberId, replica::propose);
+        startCommandServer(memberId, myConfig.port + 100, (line, writer) -> {
+            if (line.startsWith("/get ")) {
+                writer.println("VALUE " + replica.get(line.substring(5).trim()));
+            } else if (line.startsWith("/fault ")) {
+                writer.println(faults.control(line.substring(7)));
+            } else if (line.startsWith("/")) {
+                writer.println("UNKNOWN_COMMAND " + line.split("\\s+")[0]);
+            } else {
+                System.out.println("[EPaxos " + memberId + "] Received command proposal: " + line);
+                replica.propose(line);
+            }
+        });
+
+        CountDownLatch latch = new CountDownLatch(1);
+        latch.await();
+    }
+
+    /*
+     * Starts a daemon thread proposing every non-empty line read from stdin
+     * @param memberId The ID of this member
+     * @param proposer Called with each line
+     */
+    private static void startStdinReader(String memberId, Consumer<String> proposer) {
         Thread stdinReader = new Thread(() -> {
             try (BufferedReader br = new BufferedReader(new InputStreamReader(System.in))) {
                 String line;
@@ -97,7 +472,7 @@ public class CouncilMember {
                     line = line.trim();
                     if (!line.isEmpty()) {
                         System.out.println("[Proposer " + memberId + "] Received stdin proposal: " + line);
-                        node.getProposer().propose(line);
+                        proposer.accept(line);
                     }
                 }
             } catch (IOException ioe) {
@@ -106,26 +481,24 @@ public class CouncilMember {
         });
         stdinReader.setDaemon(true);
         stdinReader.start();
+    }
 
-        // Command Port Listener for runtime proposals
-        int commandPort = myConfig.port + 100;
+    /*
+     * Starts a daemon thread serving the command port, one line per command
+     * @param memberId The ID of this member
+     * @param commandPort The port to listen on
+     * @param handler Called with each trimmed, non-empty line and a writer for replies
+     */
+    private static void startCommandServer(String memberId, int commandPort, BiConsumer<String, PrintWriter> handler) {
         Thread commandServer = new Thread(() -> {
             try (ServerSocket serverSocket = new ServerSocket(commandPort)) {
                 System.out.println("[Member " + memberId + "] Command port listening on " + commandPort);
                 while (true) {
-                    try (Socket client = serverSocket.accept();
-                         BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            line = line.trim();
-                            if (!line.isEmpty()) {
-                                System.out.println("[Proposer " + memberId + "] Received command proposal: " + line);
-                                node.getProposer().propose(line);
-                            }
-                        }
-                    } catch (IOException e) {
-                        System.err.println("[Member " + memberId + "] Command connection error: " + e.getMessage());
-                    }
+                    Socket client = serverSocket.accept();
+                    // One thread per client, so several clients and /watch streams can be connected at once
+                    Thread connection = new Thread(() -> serveCommandClient(memberId, client, handler), "command-" + memberId);
+                    connection.setDaemon(true);
+                    connection.start();
                 }
             } catch (IOException e) {
                 System.err.println("[Member " + memberId + "] Failed to start command server: " + e.getMessage());
@@ -133,32 +506,137 @@ public class CouncilMember {
         });
         commandServer.setDaemon(true);
         commandServer.start();
+    }
 
-        // Keep process alive
-        CountDownLatch latch = new CountDownLatch(1);
-        latch.await();
+    /*
+     * Reads command lines from one client until it disconnects
+     * @param memberId The ID of this member
+     * @param client The client connection
+     * @param handler Called with every non-empty line and a writer for the reply
+     */
+    private static void serveCommandClient(String memberId, Socket client, BiConsumer<String, PrintWriter> handler) {
+        try (client;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+             PrintWriter writer = new PrintWriter(client.getOutputStream(), true)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    handler.accept(line, writer);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Member " + memberId + "] Command connection error: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Streams every value applied on this member to a command client as
+     * "APPLIED <shard> <instance> <value>", until the client goes away. Values are buffered
+     * so a slow client never holds up the Learner; if the buffer overflows, values are
+     * skipped and the client is told with "DROPPED <count>".
+     * @param node The Paxos groups hosted by this member
+     * @param out Writer to the client
+     */
+    private static void watchApplied(ShardedPaxosNode node, PrintWriter out) throws InterruptedException {
+        BlockingQueue<String> applied = new ArrayBlockingQueue<>(WATCH_BUFFER);
+        AtomicLong dropped = new AtomicLong();
+        List<BiConsumer<Long, String>> listeners = new ArrayList<>();
+        for (int i = 0; i < node.getShardCount(); i++) {
+            final int shardId = i;
+            BiConsumer<Long, String> listener = (instance, value) -> {
+                if (!applied.offer("APPLIED " + shardId + " " + instance + " " + value)) {
+                    dropped.incrementAndGet();
+                }
+            };
+            listeners.add(listener);
+            node.getShard(i).getLearner().addApplyListener(listener);
+        }
+
+        out.println("WATCHING");
+        try {
+            while (!out.checkError()) {
+                String line = applied.poll(1, TimeUnit.SECONDS);
+                long skipped = dropped.getAndSet(0);
+                if (skipped > 0) {
+                    out.println("DROPPED " + skipped);
+                }
+                if (line != null) {
+                    out.println(line);
+                }
+            }
+        } finally {
+            for (int i = 0; i < listeners.size(); i++) {
+                node.getShard(i).getLearner().removeApplyListener(listeners.get(i));
+            }
+        }
     }
 
     /**
-     * Loads network configuration from file
-     * @param path Path to network.config file
-     * @return Map of member IDs to their configurations
-     * @throws IOException on file read error
+     * Handles a single line received on the command port.
+     * Lines starting with '/' are commands, anything else is proposed as a value.
+     * @param memberId The ID of this member
+     * @param node The Paxos groups hosted by this member
+     * @param admission Admission control for proposed values
+     * @param faults The fault injector wrapping the member's transport
+     * @param line The trimmed, non-empty line received
+     * @param out Writer for replies to the client
      */
-    private static Map<String, MemberConfig> loadNetworkConfig(String path) throws IOException {
-        Map<String, MemberConfig> map = new HashMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.isBlank() || line.startsWith("#")) continue;
-                String[] parts = line.split(",");
-                String memberId = parts[0];
-                String host = parts[1];
-                int port = Integer.parseInt(parts[2]);
-                Profile profile = Profile.valueOf(parts[3].toUpperCase());
-                map.put(memberId, new MemberConfig(host, port, profile));
+    private static void handleCommand(String memberId, ShardedPaxosNode node, AdmissionController admission, FaultInjectingTransport faults, String line, PrintWriter out) {
+        if (line.startsWith("/")) {
+            String[] parts = line.split("\\s+");
+            try {
+                switch (parts[0].toLowerCase()) {
+                    case "/read":
+                        PaxosNode group = parts.length > 1 ? node.getShardFor(parts[1]) : node.getShard(0);
+                        out.println("READ " + group.read().get());
+                        break;
+                    case "/fast":
+                        String value = line.substring(parts[0].length()).trim();
+                        if (value.isEmpty()) {
+                            out.println("BAD_ARGUMENT missing value");
+                            break;
+                        }
+                        node.getShardFor(ShardRouter.keyOf(value)).fastPropose(value);
+                        out.println("SENT");
+                        break;
+                    case "/reconfig":
+                        String change = line.substring(parts[0].length()).trim();
+                        out.println("PROPOSED " + admission.reconfigure(change));
+                        break;
+                    case "/read-local":
+                        long minIndex = parts.length > 1 ? Long.parseLong(parts[1]) : -1;
+                        PaxosNode localGroup = parts.length > 2 ? node.getShardFor(parts[2]) : node.getShard(0);
+                        out.println("READ " + localGroup.readLocal(minIndex, LOCAL_READ_TIMEOUT_MS).get());
+                        break;
+                    case "/watch":
+                        watchApplied(node, out);
+                        break;
+                    case "/fault":
+                        out.println(faults.control(line.substring(parts[0].length())));
+                        break;
+                    default:
+                        out.println("UNKNOWN_COMMAND " + parts[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                out.println("BAD_ARGUMENT " + e.getMessage());
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                String command = parts[0].toLowerCase();
+                if (command.equals("/read") || command.equals("/read-local")) {
+                    out.println("READ_FAILED " + cause.getClass().getSimpleName());
+                } else {
+                    out.println("FAILED " + command + " " + cause.getClass().getSimpleName());
+                }
             }
+            return;
+        }
+
+        System.out.println("[Proposer " + memberId + "] Received command proposal: " + line);
+        if (admission.submit(ShardRouter.keyOf(line), line)) {
+            out.println("QUEUED");
+        } else {
+            out.println("BUSY retry-after=" + admission.getRetryAfterMs());
         }
-        return map;
     }
 }
@@ -9,10 +9,16 @@ public class MemberConfig {
     public final InetSocketAddress address;
     public final Profile profile;
     public final int port;
+    public final Role role;
 
     public MemberConfig(String host, int port, Profile profile) {
+        this(host, port, profile, Role.VOTER);
+    }
+
+    public MemberConfig(String host, int port, Profile profile, Role role) {
         this.address = new InetSocketAddress(host, port);
         this.port = port;
         this.profile = profile;
+        this.role = role;
     }
 }
@@ -0,0 +1,55 @@
+package member;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Contents of a network.config file
+ *
+ * Member lines are CSV: Name,address,port,RELIABILITY_TYPE[,ROLE], the role (VOTER, LEARNER or
+ * WITNESS) defaulting to VOTER. Lines of the form key=value
+ * (without commas) are council-wide settings such as the quorum system. Blank lines and
+ * lines starting with '#' are ignored.
+ */
+public class NetworkConfig {
+    public final Map<String, MemberConfig> members;
+    public final Map<String, String> settings;
+
+    public NetworkConfig(Map<String, MemberConfig> members, Map<String, String> settings) {
+        this.members = members;
+        this.settings = settings;
+    }
+
+    /**
+     * Loads network configuration from file
+     * @param path Path to network.config file
+     * @return The members and settings in the file
+     * @throws IOException on file read error
+     */
+    public static NetworkConfig load(String path) throws IOException {
+        Map<String, MemberConfig> members = new LinkedHashMap<>();
+        Map<String, String> settings = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                line = line.trim();
+
+                if (line.contains("=") && !line.contains(",")) {
+                    int separator = line.indexOf('=');
+                    settings.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+                    continue;
+                }
+
+                String[] parts = line.split(",");
+                String memberId = parts[0];
+                String host = parts[1];
+                int port = Integer.parseInt(parts[2]);
+                Profile profile = Profile.valueOf(parts[3].toUpperCase());
+                Role role = parts.length > 4 ? Role.valueOf(parts[4].trim().toUpperCase()) : Role.VOTER;
+                members.put(memberId, new MemberConfig(host, port, profile, role));
+            }
+        }
+        return new NetworkConfig(members, settings);
+    }
+}
@@ -0,0 +1,15 @@
+package member;
+
+/**
+ * Member Role Types
+ *
+ * VOTER members propose, accept and learn. LEARNER members only learn chosen values
+ * (relayed to them by other members) and serve reads; they never count toward a quorum.
+ * WITNESS members accept and count toward quorums like voters, but keep and receive only the
+ * references of large values, never their bodies; they neither propose nor serve reads.
+ */
+public enum Role {
+    VOTER,
+    LEARNER,
+    WITNESS;
+}
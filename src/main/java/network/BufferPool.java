@@ -0,0 +1,95 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of reusable direct byte buffers for encoding and socket I/O.
+ *
+ * Buffers are handed out as reference-counted PooledBuffers and go back to the pool when
+ * the last reference is released, so steady-state messaging does not allocate new buffers.
+ * Requests larger than the pooled size get a one-off heap buffer that is left to the GC.
+ */
+public class BufferPool {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_POOLED = 64;
+
+    private static BufferPool shared;
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize < 1 || maxPooled < 0) {
+            throw new IllegalArgumentException("Buffer size must be positive and pool size not negative");
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Gets the process-wide pool, creating it on first use
+     * @return The shared pool
+     */
+    public static synchronized BufferPool shared() {
+        if (shared == null) {
+            shared = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+        }
+        return shared;
+    }
+
+    /**
+     * Takes a cleared buffer with at least the requested capacity
+     * @param minCapacity The number of bytes needed
+     * @return A buffer holding one reference
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        if (minCapacity > bufferSize) {
+            return new PooledBuffer(ByteBuffer.allocate(minCapacity), null);
+        }
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            freeCount.decrementAndGet();
+            buffer.clear();
+        } else {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+            allocated.incrementAndGet();
+        }
+        return new PooledBuffer(buffer, this);
+    }
+
+    /*
+     * Returns a buffer whose last reference was released, dropping it if the pool is full
+     */
+    void recycle(ByteBuffer buffer) {
+        if (freeCount.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else {
+            freeCount.decrementAndGet();
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Gets how many direct buffers the pool has ever allocated
+     * @return The number of allocations
+     */
+    public int getAllocatedCount() {
+        return allocated.get();
+    }
+
+    /**
+     * Gets how many buffers are waiting for reuse
+     * @return The number of idle buffers
+     */
+    public int getFreeCount() {
+        return freeCount.get();
+    }
+}
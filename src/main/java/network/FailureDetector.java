@@ -0,0 +1,213 @@
+package network;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Phi accrual failure detector.
+ *
+ * Records when anything arrives from each peer and keeps a window of the intervals between
+ * arrivals. Instead of a yes/no verdict it gives a suspicion level, phi: the negative base-10
+ * logarithm of the chance that the next arrival is still on its way given how long the peer
+ * has been quiet, assuming normally distributed intervals. A peer is suspected once phi
+ * passes a threshold, so a threshold of 8 means about one mistake in 10^8 under that
+ * assumption. Peers that are slow or jittery widen their own distribution and are not
+ * suspected for it. (Hayashibara et al., "The phi accrual failure detector", 2004)
+ *
+ * A peer never heard from is not suspected, so sends are not held back before the startup
+ * handshake reached it.
+ */
+public class FailureDetector {
+    public static final double DEFAULT_THRESHOLD = 8.0;
+    public static final int DEFAULT_WINDOW = 200;
+    private static final long MIN_STD_DEVIATION_NANOS = 100_000_000L;
+
+    private final String memberId;
+    private final double threshold;
+    private final int windowSize;
+    private final long intervalNanos;
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Arrival history of one peer
+     */
+    private static class History {
+        final Deque<Long> intervals = new ArrayDeque<>();
+        double sum;
+        double sumOfSquares;
+        long lastArrivalNanos;
+        boolean suspected;
+
+        void add(long interval, int windowSize) {
+            if (intervals.size() == windowSize) {
+                long dropped = intervals.removeFirst();
+                sum -= dropped;
+                sumOfSquares -= (double) dropped * dropped;
+            }
+            intervals.addLast(interval);
+            sum += interval;
+            sumOfSquares += (double) interval * interval;
+        }
+
+        double mean() {
+            return sum / intervals.size();
+        }
+
+        double stdDeviation() {
+            double mean = mean();
+            return Math.sqrt(Math.max(0, sumOfSquares / intervals.size() - mean * mean));
+        }
+    }
+
+    /**
+     * @param memberId The ID of this member, used in log lines
+     * @param heartbeatIntervalMs How often peers send heartbeats
+     * @param threshold The phi above which a peer is suspected
+     */
+    public FailureDetector(String memberId, long heartbeatIntervalMs, double threshold) {
+        this(memberId, heartbeatIntervalMs, threshold, DEFAULT_WINDOW);
+    }
+
+    public FailureDetector(String memberId, long heartbeatIntervalMs, double threshold, int windowSize) {
+        if (heartbeatIntervalMs <= 0) {
+            throw new IllegalArgumentException("Heartbeat interval must be positive: " + heartbeatIntervalMs);
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Phi threshold must be positive: " + threshold);
+        }
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("Window must hold at least two intervals: " + windowSize);
+        }
+        this.memberId = memberId;
+        this.threshold = threshold;
+        this.windowSize = windowSize;
+        this.intervalNanos = heartbeatIntervalMs * 1_000_000L;
+    }
+
+    /**
+     * Records that a heartbeat or any other message arrived from a peer
+     * @param peerId The sender
+     */
+    public void heartbeat(String peerId) {
+        heartbeat(peerId, System.nanoTime());
+    }
+
+    /**
+     * Records an arrival from a peer at the given time
+     * @param peerId The sender
+     * @param nowNanos System.nanoTime() at arrival
+     */
+    public void heartbeat(String peerId, long nowNanos) {
+        if (peerId == null || peerId.equals(memberId)) return;
+        History history = histories.computeIfAbsent(peerId, id -> new History());
+        boolean recovered;
+        synchronized (history) {
+            if (history.intervals.isEmpty()) {
+                // Seed the window with the expected interval, give or take half of it, so
+                // the first heartbeats are judged against a sensible distribution
+                history.add(intervalNanos / 2, windowSize);
+                history.add(intervalNanos * 3 / 2, windowSize);
+            } else {
+                history.add(nowNanos - history.lastArrivalNanos, windowSize);
+            }
+            history.lastArrivalNanos = nowNanos;
+            recovered = history.suspected;
+            history.suspected = false;
+        }
+        if (recovered) {
+            System.out.println("[Member " + memberId + "] Peer " + peerId + " is no longer suspected");
+        }
+    }
+
+    /**
+     * Gets how strongly a peer is suspected of having failed
+     * @param peerId The peer
+     * @return phi, or 0 if nothing has arrived from the peer yet
+     */
+    public double phi(String peerId) {
+        return phi(peerId, System.nanoTime());
+    }
+
+    /**
+     * Gets how strongly a peer is suspected at the given time
+     * @param peerId The peer
+     * @param nowNanos System.nanoTime() now
+     * @return phi, or 0 if nothing has arrived from the peer yet
+     */
+    public double phi(String peerId, long nowNanos) {
+        History history = histories.get(peerId);
+        if (history == null) return 0;
+        synchronized (history) {
+            return phi(nowNanos - history.lastArrivalNanos, history.mean(),
+                Math.max(MIN_STD_DEVIATION_NANOS, history.stdDeviation()));
+        }
+    }
+
+    /*
+     * Computes phi from the logistic approximation of the normal distribution's tail
+     * @param elapsed Time since the last arrival
+     * @param mean Mean interval between arrivals
+     * @param stdDeviation Standard deviation of the intervals
+     * @return phi
+     */
+    private static double phi(double elapsed, double mean, double stdDeviation) {
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        return elapsed > mean ? -Math.log10(e / (1 + e)) : -Math.log10(1 - 1 / (1 + e));
+    }
+
+    /**
+     * Checks whether a peer is suspected of having failed, logging when it first is
+     * @param peerId The peer
+     * @return true if the peer's phi is above the threshold
+     */
+    public boolean isSuspected(String peerId) {
+        return isSuspected(peerId, System.nanoTime());
+    }
+
+    /**
+     * Checks whether a peer is suspected at the given time
+     * @param peerId The peer
+     * @param nowNanos System.nanoTime() now
+     * @return true if the peer's phi is above the threshold
+     */
+    public boolean isSuspected(String peerId, long nowNanos) {
+        History history = histories.get(peerId);
+        if (history == null) return false;
+        double phi;
+        boolean suspected;
+        boolean newlySuspected;
+        synchronized (history) {
+            phi = phi(peerId, nowNanos);
+            suspected = phi > threshold;
+            newlySuspected = suspected && !history.suspected;
+            history.suspected = suspected;
+        }
+        if (newlySuspected) {
+            System.out.println("[Member " + memberId + "] Suspecting peer " + peerId + " (phi " + String.format("%.1f", phi) + ")");
+        }
+        return suspected;
+    }
+
+    /**
+     * Gets the peers currently suspected
+     * @return The suspected peers, sorted by ID
+     */
+    public Set<String> getSuspected() {
+        Set<String> suspected = new TreeSet<>();
+        for (String peerId : histories.keySet()) {
+            if (isSuspected(peerId)) {
+                suspected.add(peerId);
+            }
+        }
+        return suspected;
+    }
+
+    /**
+     * Forgets peers that are no longer members
+     * @param peerIds The current members
+     */
+    public void retain(Collection<String> peerIds) {
+        histories.keySet().retainAll(peerIds);
+    }
+}
@@ -0,0 +1,384 @@
+package network;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Transport decorator that injects network faults, controlled at runtime.
+ *
+ * It wraps the transport messages are sent through and the handler they are received by,
+ * so each link between this member and a peer can be faulted in either direction: blocked
+ * (partitions, asymmetric links), lossy, duplicating or delayed by a distribution. Rules for
+ * peer "*" apply to every peer without a rule of its own. Messages a member sends to itself
+ * are never faulted. With no rules messages pass straight through. The wrapped transport's
+ * own frames, such as heartbeats, go through the same rules via setLinkFaults(), so a faulted
+ * link also affects failure detection.
+ *
+ * Rules are set with control(), which the command port exposes as /fault.
+ */
+public class FaultInjectingTransport implements MemberTransport, MessageHandler {
+    public static final String ALL_PEERS = "*";
+
+    private final String memberId;
+    private final MessageHandler handler;
+    private final Random random;
+    private MemberTransport transport;
+
+    private final Map<String, LinkFault> outbound = new ConcurrentHashMap<>();
+    private final Map<String, LinkFault> inbound = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fault-delay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * How long a faulty link holds each message
+     */
+    public enum DelayKind { FIXED, UNIFORM, EXPONENTIAL }
+
+    /**
+     * The faults of one direction of one link. Instances are immutable.
+     */
+    public static class LinkFault {
+        public static final LinkFault NONE = new LinkFault(false, 0, 0, DelayKind.FIXED, 0, 0);
+
+        public final boolean blocked;
+        public final double loss;
+        public final double duplicate;
+        public final DelayKind delayKind;
+        // FIXED: a; UNIFORM: between a and b; EXPONENTIAL: mean a
+        public final long delayA;
+        public final long delayB;
+
+        public LinkFault(boolean blocked, double loss, double duplicate, DelayKind delayKind, long delayA, long delayB) {
+            this.blocked = blocked;
+            this.loss = loss;
+            this.duplicate = duplicate;
+            this.delayKind = delayKind;
+            this.delayA = delayA;
+            this.delayB = delayB;
+        }
+
+        LinkFault withBlocked(boolean blocked) {
+            return new LinkFault(blocked, loss, duplicate, delayKind, delayA, delayB);
+        }
+
+        LinkFault withLoss(double loss) {
+            return new LinkFault(blocked, loss, duplicate, delayKind, delayA, delayB);
+        }
+
+        LinkFault withDuplicate(double duplicate) {
+            return new LinkFault(blocked, loss, duplicate, delayKind, delayA, delayB);
+        }
+
+        LinkFault withDelay(DelayKind kind, long a, long b) {
+            return new LinkFault(blocked, loss, duplicate, kind, a, b);
+        }
+
+        boolean isNone() {
+            return !blocked && loss == 0 && duplicate == 0 && delayA == 0 && delayB == 0;
+        }
+
+        /*
+         * Draws the delay of one message
+         * @param random The source of randomness
+         * @return The delay in milliseconds
+         */
+        long sampleDelayMs(Random random) {
+            switch (delayKind) {
+                case UNIFORM: return delayA + (long) (random.nextDouble() * (delayB - delayA));
+                case EXPONENTIAL: return (long) (-delayA * Math.log(1 - random.nextDouble()));
+                default: return delayA;
+            }
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            if (blocked) parts.add("blocked");
+            if (loss > 0) parts.add("loss " + loss);
+            if (duplicate > 0) parts.add("duplicate " + duplicate);
+            if (delayA > 0 || delayB > 0) {
+                switch (delayKind) {
+                    case UNIFORM: parts.add("delay uniform " + delayA + "-" + delayB + " ms"); break;
+                    case EXPONENTIAL: parts.add("delay exponential mean " + delayA + " ms"); break;
+                    default: parts.add("delay " + delayA + " ms");
+                }
+            }
+            return String.join(", ", parts);
+        }
+    }
+
+    public FaultInjectingTransport(String memberId, MessageHandler handler) {
+        this(memberId, handler, new Random());
+    }
+
+    public FaultInjectingTransport(String memberId, MessageHandler handler, Random random) {
+        this.memberId = memberId;
+        this.handler = handler;
+        this.random = random;
+    }
+
+    /**
+     * Sets the transport that faulted messages are sent through
+     * @param transport The real transport
+     */
+    public void setTransport(MemberTransport transport) {
+        this.transport = transport;
+        transport.setLinkFaults(this::applyLinkFaults);
+    }
+
+    /**
+     * Applies the rules of a link to a frame the wrapped transport sends or handles itself
+     * @param peerId The peer at the other end of the link, or null if not known
+     * @param outgoing true for a frame to the peer, false for a frame from it
+     * @param delivery Sends or handles the frame
+     */
+    public void applyLinkFaults(String peerId, boolean outgoing, Runnable delivery) {
+        LinkFault fault = peerId != null ? faultFor(outgoing ? outbound : inbound, peerId) : null;
+        if (fault == null) {
+            delivery.run();
+            return;
+        }
+        apply(fault, delivery);
+    }
+
+    @Override
+    public void sendMessage(String targetId, Object message) {
+        LinkFault fault = faultFor(outbound, targetId);
+        if (fault == null) {
+            transport.sendMessage(targetId, message);
+            return;
+        }
+        apply(fault, () -> transport.sendMessage(targetId, message));
+    }
+
+    @Override
+    public void handleMessage(String senderId, String message) {
+        LinkFault fault = faultFor(inbound, senderId);
+        if (fault == null) {
+            handler.handleMessage(senderId, message);
+            return;
+        }
+        apply(fault, () -> handler.handleMessage(senderId, message));
+    }
+
+    /*
+     * Drops, duplicates or delays one message as the link's faults dictate
+     * @param fault The faults of the link
+     * @param delivery Sends or delivers the message
+     */
+    private void apply(LinkFault fault, Runnable delivery) {
+        if (fault.blocked || random.nextDouble() < fault.loss) return;
+
+        int copies = random.nextDouble() < fault.duplicate ? 2 : 1;
+        for (int i = 0; i < copies; i++) {
+            long delayMs = fault.sampleDelayMs(random);
+            if (delayMs <= 0) {
+                delivery.run();
+            } else if (!delayer.isShutdown()) {
+                delayer.schedule(delivery, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /*
+     * Finds the rule for a peer, falling back to the rule for every peer
+     * @return The rule, or null if the link is not faulted
+     */
+    private LinkFault faultFor(Map<String, LinkFault> rules, String peerId) {
+        if (rules.isEmpty() || peerId.equals(memberId)) return null;
+        LinkFault fault = rules.get(peerId);
+        return fault != null ? fault : rules.get(ALL_PEERS);
+    }
+
+    @Override
+    public void startListening() {
+        transport.startListening();
+    }
+
+    @Override
+    public void updatePeers(Map<String, InetSocketAddress> peers) {
+        transport.updatePeers(peers);
+    }
+
+    @Override
+    public boolean isCongested(String targetId) {
+        return transport.isCongested(targetId);
+    }
+
+    @Override
+    public boolean isSuspected(String targetId) {
+        return transport.isSuspected(targetId);
+    }
+
+    /**
+     * Gets the rule for one direction of a link
+     * @param peerId The peer, or "*"
+     * @param outgoing true for messages to the peer, false for messages from it
+     * @return The rule, LinkFault.NONE if there is none
+     */
+    public LinkFault getFault(String peerId, boolean outgoing) {
+        return (outgoing ? outbound : inbound).getOrDefault(peerId, LinkFault.NONE);
+    }
+
+    /**
+     * Runs a fault command and describes the outcome. Commands:
+     * <pre>
+     * partition &lt;peer,...&gt;                      block both directions to each peer
+     * block &lt;peer&gt; [in|out|both]
+     * unblock &lt;peer&gt; [in|out|both]
+     * loss &lt;peer&gt; &lt;probability&gt; [in|out|both]
+     * duplicate &lt;peer&gt; &lt;probability&gt; [in|out|both]
+     * delay &lt;peer&gt; fixed &lt;ms&gt; [in|out|both]
+     * delay &lt;peer&gt; uniform &lt;minMs&gt; &lt;maxMs&gt; [in|out|both]
+     * delay &lt;peer&gt; exp &lt;meanMs&gt; [in|out|both]
+     * heal [peer]                                remove the rules for a peer, or all rules
+     * status
+     * </pre>
+     * The direction defaults to both, and peer may be "*" for every peer.
+     * @param command The command, without the leading /fault
+     * @return "OK" followed by the rules now in place, or "BAD_ARGUMENT" with the reason
+     */
+    public String control(String command) {
+        String[] args = command.trim().split("\\s+");
+        try {
+            switch (args[0].toLowerCase()) {
+                case "partition":
+                    require(args, 2);
+                    for (String peerId : args[1].split(",")) {
+                        update(peerId, "both", f -> f.withBlocked(true));
+                    }
+                    break;
+                case "block":
+                case "unblock":
+                    require(args, 2);
+                    boolean block = args[0].equalsIgnoreCase("block");
+                    update(args[1], direction(args, 2), f -> f.withBlocked(block));
+                    break;
+                case "loss":
+                    require(args, 3);
+                    double loss = probability(args[2]);
+                    update(args[1], direction(args, 3), f -> f.withLoss(loss));
+                    break;
+                case "duplicate":
+                    require(args, 3);
+                    double duplicate = probability(args[2]);
+                    update(args[1], direction(args, 3), f -> f.withDuplicate(duplicate));
+                    break;
+                case "delay":
+                    require(args, 4);
+                    String peerId = args[1];
+                    switch (args[2].toLowerCase()) {
+                        case "fixed":
+                            long fixed = millis(args[3]);
+                            update(peerId, direction(args, 4), f -> f.withDelay(DelayKind.FIXED, fixed, 0));
+                            break;
+                        case "uniform":
+                            require(args, 5);
+                            long min = millis(args[3]);
+                            long max = millis(args[4]);
+                            if (max < min) throw new IllegalArgumentException("max delay below min delay");
+                            update(peerId, direction(args, 5), f -> f.withDelay(DelayKind.UNIFORM, min, max));
+                            break;
+                        case "exp":
+                            long mean = millis(args[3]);
+                            update(peerId, direction(args, 4), f -> f.withDelay(DelayKind.EXPONENTIAL, mean, 0));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown delay distribution " + args[2]);
+                    }
+                    break;
+                case "heal":
+                    if (args.length > 1) {
+                        outbound.remove(args[1]);
+                        inbound.remove(args[1]);
+                    } else {
+                        outbound.clear();
+                        inbound.clear();
+                    }
+                    break;
+                case "status":
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown fault command " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            return "BAD_ARGUMENT " + e.getMessage();
+        }
+
+        String status = describe();
+        if (!args[0].equalsIgnoreCase("status")) {
+            System.out.println("[Member " + memberId + "] Faults now: " + status);
+        }
+        return "OK " + status;
+    }
+
+    /*
+     * Changes the rule of a peer in the given directions, dropping rules that no longer fault anything
+     */
+    private void update(String peerId, String direction, UnaryOperator<LinkFault> change) {
+        if (direction.equals("out") || direction.equals("both")) {
+            updateRule(outbound, peerId, change);
+        }
+        if (direction.equals("in") || direction.equals("both")) {
+            updateRule(inbound, peerId, change);
+        }
+    }
+
+    private static void updateRule(Map<String, LinkFault> rules, String peerId, UnaryOperator<LinkFault> change) {
+        rules.compute(peerId, (id, current) -> {
+            LinkFault updated = change.apply(current != null ? current : LinkFault.NONE);
+            return updated.isNone() ? null : updated;
+        });
+    }
+
+    /*
+     * Lists the rules in place, one "<direction> <peer>: <faults>" entry per rule
+     */
+    private String describe() {
+        List<String> entries = new ArrayList<>();
+        new TreeMap<>(outbound).forEach((peerId, fault) -> entries.add("out " + peerId + ": " + fault));
+        new TreeMap<>(inbound).forEach((peerId, fault) -> entries.add("in " + peerId + ": " + fault));
+        return entries.isEmpty() ? "no faults" : String.join("; ", entries);
+    }
+
+    private static void require(String[] args, int count) {
+        if (args.length < count) throw new IllegalArgumentException("missing arguments");
+    }
+
+    private static String direction(String[] args, int index) {
+        if (args.length <= index) return "both";
+        String direction = args[index].toLowerCase();
+        if (!direction.equals("in") && !direction.equals("out") && !direction.equals("both")) {
+            throw new IllegalArgumentException("direction must be in, out or both");
+        }
+        return direction;
+    }
+
+    private static double probability(String arg) {
+        double p = Double.parseDouble(arg);
+        if (p < 0 || p > 1) throw new IllegalArgumentException("probability must be between 0 and 1");
+        return p;
+    }
+
+    private static long millis(String arg) {
+        long ms = Long.parseLong(arg);
+        if (ms < 0) throw new IllegalArgumentException("delay must not be negative");
+        return ms;
+    }
+
+    /**
+     * Stops the delay scheduler; delayed messages are discarded
+     */
+    public void shutdown() {
+        delayer.shutdownNow();
+    }
+}
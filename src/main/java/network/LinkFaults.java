@@ -0,0 +1,20 @@
+package network;
+
+/**
+ * Faults of the links between this member and its peers, as applied by a fault injector.
+ *
+ * A transport passes the frames it sends and handles itself, such as heartbeats and the
+ * startup handshake, through this hook, so they see the same partitions, loss and delays
+ * as the messages going through the injector.
+ */
+public interface LinkFaults {
+    LinkFaults NONE = (peerId, outgoing, delivery) -> delivery.run();
+
+    /**
+     * Sends or handles one frame as the faults of its link dictate
+     * @param peerId The peer at the other end of the link, or null if not known
+     * @param outgoing true for a frame to the peer, false for a frame from it
+     * @param delivery Sends or handles the frame; run at most twice, possibly later, or not at all
+     */
+    void apply(String peerId, boolean outgoing, Runnable delivery);
+}
@@ -1,6 +1,40 @@
 package network;
 
+import java.net.InetSocketAddress;
+import java.util.Map;
+
 public interface MemberTransport {
     public void sendMessage(String targetId, Object message);
     public void startListening();
+
+    /**
+     * Replaces the table of reachable members after a reconfiguration
+     * @param peers Every member to keep reachable, mapped to its address
+     */
+    public default void updatePeers(Map<String, InetSocketAddress> peers) {}
+
+    /**
+     * Checks whether messages to a peer are queuing up faster than they can be sent
+     * @param targetId The peer to check
+     * @return true if senders should hold back traffic to the peer
+     */
+    public default boolean isCongested(String targetId) {
+        return false;
+    }
+
+    /**
+     * Checks whether a peer is suspected of having crashed
+     * @param targetId The peer to check
+     * @return true if messages to the peer are being dropped until it is heard from again
+     */
+    public default boolean isSuspected(String targetId) {
+        return false;
+    }
+
+    /**
+     * Lets a fault injector above this transport fault the frames the transport sends and
+     * handles itself, such as heartbeats
+     * @param linkFaults The faults to apply to those frames
+     */
+    public default void setLinkFaults(LinkFaults linkFaults) {}
 }
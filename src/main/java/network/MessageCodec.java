@@ -0,0 +1,263 @@
+package network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Length-prefixed framing of JSON messages in pooled buffers.
+ *
+ * A frame is a 4-byte big-endian length followed by that many bytes of UTF-8 JSON. Encoders,
+ * decoders and the decode scratch space are kept per thread, so encoding into and decoding
+ * out of pooled buffers allocates nothing but the message strings themselves. Frames are
+ * encoded into a pooled buffer as they are written and only move to a larger, unpooled
+ * buffer once their bytes exceed it.
+ *
+ * Large messages can be compressed with raw Deflate. A compressed frame has the top bit of
+ * its length set, and its payload is the 4-byte uncompressed length followed by the
+ * compressed bytes. Every decoder understands compressed frames; whether an encoder produces
+ * them is negotiated per peer by the transport.
+ */
+public class MessageCodec {
+    public static final int HEADER_BYTES = 4;
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    public static final String COMPRESSION = "deflate";
+
+    private static final int COMPRESSED_FLAG = 0x80000000;
+
+    private static final ThreadLocal<CharsetEncoder> ENCODER = ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+    private static final ThreadLocal<CharsetDecoder> DECODER = ThreadLocal.withInitial(StandardCharsets.UTF_8::newDecoder);
+    private static final ThreadLocal<CharBuffer[]> SCRATCH = ThreadLocal.withInitial(() -> new CharBuffer[] { CharBuffer.allocate(1024) });
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final BufferPool pool;
+
+    public MessageCodec(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Encodes a message into a frame, ready to be written
+     * @param json The serialized message
+     * @return A flipped buffer holding the frame; the caller must release it
+     * @throws IOException If the message cannot be encoded or is too large
+     */
+    public PooledBuffer encode(String json) throws IOException {
+        return encode(json, -1);
+    }
+
+    /**
+     * Encodes a message into a frame, compressing it if it is larger than a threshold and
+     * compression makes it smaller
+     * @param json The serialized message
+     * @param compressAbove Size in bytes above which the message is compressed, or -1 to never compress
+     * @return A flipped buffer holding the frame; the caller must release it
+     * @throws IOException If the message cannot be encoded or is too large
+     */
+    public PooledBuffer encode(String json, int compressAbove) throws IOException {
+        try (PooledSink sink = newSink()) {
+            sink.write(json);
+            return frame(sink.finish(), compressAbove);
+        }
+    }
+
+    /**
+     * Serializes a message straight into a frame, without building its JSON as a string first
+     * @param message The message
+     * @param gson The serializer
+     * @param compressAbove Size in bytes above which the message is compressed, or -1 to never compress
+     * @return A flipped buffer holding the frame; the caller must release it
+     * @throws IOException If the message cannot be encoded or is too large
+     */
+    public PooledBuffer encode(Object message, Gson gson, int compressAbove) throws IOException {
+        try (PooledSink sink = newSink()) {
+            JsonWriter writer = gson.newJsonWriter(sink);
+            try {
+                gson.toJson(message, message.getClass(), writer);
+            } catch (JsonIOException e) {
+                throw new IOException("Cannot serialize " + message.getClass().getSimpleName(), e);
+            }
+            writer.flush();
+            return frame(sink.finish(), compressAbove);
+        }
+    }
+
+    /*
+     * Starts a frame in a pooled buffer, growing into larger buffers only as its bytes need
+     */
+    private PooledSink newSink() {
+        return new PooledSink(pool, ENCODER.get(), HEADER_BYTES, HEADER_BYTES + MAX_FRAME_BYTES);
+    }
+
+    /*
+     * Completes a frame: writes its length header and compresses it if that pays off
+     * @param pooled The buffer with the payload written after the header, positioned at its end
+     * @param compressAbove Size in bytes above which the payload is compressed, or -1 to never compress
+     * @return A flipped buffer holding the frame
+     */
+    private PooledBuffer frame(PooledBuffer pooled, int compressAbove) throws IOException {
+        try {
+            ByteBuffer buffer = pooled.buffer();
+            int length = buffer.position() - HEADER_BYTES;
+            if (length > MAX_FRAME_BYTES) {
+                throw new IOException("Frame of " + length + " bytes exceeds " + MAX_FRAME_BYTES);
+            }
+            buffer.putInt(0, length);
+            buffer.flip();
+
+            if (compressAbove >= 0 && length > compressAbove) {
+                PooledBuffer compressed = compress(buffer, length);
+                if (compressed != null) {
+                    pooled.release();
+                    return compressed;
+                }
+            }
+            return pooled;
+        } catch (IOException | RuntimeException e) {
+            pooled.release();
+            throw e;
+        }
+    }
+
+    /*
+     * Deflates the payload of an encoded frame into a new compressed frame
+     * @param frame A flipped, uncompressed frame; its position is left unchanged
+     * @param length The payload length
+     * @return The compressed frame, or null if compressing does not save space
+     */
+    private PooledBuffer compress(ByteBuffer frame, int length) {
+        // Only worth it if the result fits where the uncompressed frame would
+        PooledBuffer pooled = pool.acquire(HEADER_BYTES + length);
+        ByteBuffer out = pooled.buffer();
+        out.limit(HEADER_BYTES + length).position(2 * HEADER_BYTES);
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(frame.duplicate().position(HEADER_BYTES));
+        deflater.finish();
+        while (!deflater.finished() && out.hasRemaining()) {
+            deflater.deflate(out);
+        }
+        if (!deflater.finished()) {
+            pooled.release();
+            return null;
+        }
+
+        out.putInt(0, COMPRESSED_FLAG | (out.position() - HEADER_BYTES));
+        out.putInt(HEADER_BYTES, length);
+        out.flip();
+        return pooled;
+    }
+
+    /**
+     * Decodes the next complete frame, if the buffer holds one
+     * @param buffer A buffer in read mode; its position moves past the frame if one is decoded
+     * @return The JSON message, or null if the frame is not complete yet
+     * @throws IOException If the frame is malformed or too large
+     */
+    public String decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES) return null;
+
+        int header = buffer.getInt(buffer.position());
+        boolean compressed = (header & COMPRESSED_FLAG) != 0;
+        int length = header & ~COMPRESSED_FLAG;
+        if (length > MAX_FRAME_BYTES || (compressed && length < HEADER_BYTES)) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        if (buffer.remaining() < HEADER_BYTES + length) return null;
+
+        int end = buffer.position() + HEADER_BYTES + length;
+        int limit = buffer.limit();
+        buffer.position(buffer.position() + HEADER_BYTES).limit(end);
+        try {
+            return compressed ? decompress(buffer) : decodeUtf8(buffer, length);
+        } finally {
+            buffer.limit(limit).position(end);
+        }
+    }
+
+    /*
+     * Inflates the payload of a compressed frame and decodes it
+     * @param payload The uncompressed length followed by the compressed bytes, from position to limit
+     * @return The decoded string
+     */
+    private String decompress(ByteBuffer payload) throws IOException {
+        int length = payload.getInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid uncompressed length " + length);
+        }
+
+        PooledBuffer pooled = pool.acquire(length);
+        try {
+            ByteBuffer out = pooled.buffer();
+            out.limit(length);
+            Inflater inflater = INFLATER.get();
+            inflater.reset();
+            inflater.setInput(payload);
+            while (!inflater.finished()) {
+                if (inflater.inflate(out) == 0 && (inflater.needsInput() || !out.hasRemaining())) {
+                    throw new IOException("Compressed frame does not inflate to " + length + " bytes");
+                }
+            }
+            if (out.position() != length) {
+                throw new IOException("Compressed frame inflated to " + out.position() + " bytes, expected " + length);
+            }
+            out.flip();
+            return decodeUtf8(out, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame: " + e.getMessage());
+        } finally {
+            pooled.release();
+        }
+    }
+
+    /*
+     * Decodes UTF-8 bytes into the thread's scratch space, growing it if needed
+     * @param bytes The bytes to decode, from position to limit
+     * @param length The number of bytes
+     * @return The decoded string
+     */
+    private static String decodeUtf8(ByteBuffer bytes, int length) throws CharacterCodingException {
+        CharBuffer[] scratch = SCRATCH.get();
+        if (scratch[0].capacity() < length) {
+            scratch[0] = CharBuffer.allocate(Math.max(length, scratch[0].capacity() * 2));
+        }
+        CharBuffer chars = scratch[0];
+        chars.clear();
+
+        CharsetDecoder decoder = DECODER.get().reset();
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (!result.isUnderflow()) result.throwException();
+        result = decoder.flush(chars);
+        if (!result.isUnderflow()) result.throwException();
+        chars.flip();
+        return chars.toString();
+    }
+
+    /**
+     * Gets the number of bytes a frame needs in total, once its header is available
+     * @param buffer A buffer in read mode
+     * @return The frame size including the header, or -1 if the header is not complete
+     */
+    public static int frameSize(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES) return -1;
+        return HEADER_BYTES + (buffer.getInt(buffer.position()) & ~COMPRESSED_FLAG);
+    }
+
+    public BufferPool getPool() {
+        return pool;
+    }
+}
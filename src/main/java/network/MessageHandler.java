@@ -0,0 +1,5 @@
+package network;
+
+public interface MessageHandler {
+    public void handleMessage(String senderId, String message);
+}
@@ -0,0 +1,244 @@
+package network;
+
+import com.google.gson.Gson;
+import paxos_util.Batch;
+import paxos_util.Tracer;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Outbound connection to one peer.
+ *
+ * Messages are queued and written by a dedicated thread over one persistent socket. Every
+ * message queued by the time the writer wakes up is encoded into pooled buffers and goes out
+ * in a single gathering write, optionally wrapped in one BATCH frame. The queue is bounded: when it is full new messages are
+ * dropped, which Paxos tolerates like any other message loss.
+ */
+public class PeerConnection {
+    private final String memberId;
+    private final String peerId;
+    private final int capacity;
+    private final BlockingQueue<Outbound> queue;
+    private final Thread writer;
+    private final Gson gson = new Gson();
+    private final MessageCodec codec;
+
+    private volatile InetSocketAddress address;
+    private volatile boolean batchFrames;
+    private volatile int compressAbove = -1;
+    private volatile boolean closed = false;
+    // Set after a failed connect so a dead peer probed by every heartbeat is logged once
+    private boolean unreachable = false;
+
+    private SocketChannel channel;
+
+    /**
+     * A queued message, with what is needed to record its send span when it is traced
+     */
+    private static class Outbound {
+        final String json;
+        final String traceId;
+        final String label;
+        final long startMicros;
+
+        Outbound(String json, String traceId, String label, long startMicros) {
+            this.json = json;
+            this.traceId = traceId;
+            this.label = label;
+            this.startMicros = startMicros;
+        }
+    }
+
+    public PeerConnection(String memberId, String peerId, InetSocketAddress address, int capacity, boolean batchFrames) {
+        this(memberId, peerId, address, capacity, batchFrames, new MessageCodec(BufferPool.shared()));
+    }
+
+    public PeerConnection(String memberId, String peerId, InetSocketAddress address, int capacity, boolean batchFrames, MessageCodec codec) {
+        this.codec = codec;
+        this.memberId = memberId;
+        this.peerId = peerId;
+        this.address = address;
+        this.capacity = capacity;
+        this.batchFrames = batchFrames;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.writer = new Thread(this::writeLoop, "peer-writer-" + memberId + "-" + peerId);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a message for the peer without blocking
+     * @param jsonMessage The serialized message
+     * @return true if queued, false if the queue is full and the message was dropped
+     */
+    public boolean offer(String jsonMessage) {
+        return offer(jsonMessage, null, null, 0);
+    }
+
+    /**
+     * Queues a traced message for the peer without blocking. Once written, a send span from
+     * startMicros is recorded against the trace.
+     * @param jsonMessage The serialized message
+     * @param traceId The trace of the message, or null if it is not traced
+     * @param label The message type, used to name the span
+     * @param startMicros When sending began, from Tracer.nowMicros()
+     * @return true if queued, false if the queue is full and the message was dropped
+     */
+    public boolean offer(String jsonMessage, String traceId, String label, long startMicros) {
+        if (closed) return false;
+        if (!queue.offer(new Outbound(jsonMessage, traceId, label, startMicros))) {
+            System.out.println("[Member " + memberId + "] Outbound queue to " + peerId + " full (" + capacity + "), dropping message");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the queue is filling up faster than it drains
+     * @return true if the queue is at least three quarters full
+     */
+    public boolean isCongested() {
+        return queue.size() >= capacity * 3 / 4;
+    }
+
+    /**
+     * Gets the number of messages waiting to be written
+     * @return The queue length
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /*
+     * Writes everything queued in one go, blocking while the queue is empty
+     */
+    private void writeLoop() {
+        List<Outbound> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /*
+     * Writes a batch of messages with a single gathering write, reconnecting if needed.
+     * Messages of a failed write are lost.
+     * @param batch The messages to write
+     */
+    private void write(List<Outbound> batch) {
+        List<PooledBuffer> frames = new ArrayList<>(batch.size());
+        InetSocketAddress target = address;
+        try {
+            if (batchFrames && batch.size() > 1) {
+                List<String> messages = new ArrayList<>(batch.size());
+                for (Outbound message : batch) {
+                    messages.add(message.json);
+                }
+                frames.add(codec.encode(new Batch(memberId, messages), gson, compressAbove));
+            } else {
+                for (Outbound message : batch) {
+                    frames.add(codec.encode(message.json, compressAbove));
+                }
+            }
+
+            ByteBuffer[] buffers = new ByteBuffer[frames.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = frames.get(i).buffer();
+            }
+
+            SocketChannel out = connect(target);
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                out.write(buffers);
+            }
+
+            for (Outbound message : batch) {
+                Tracer.span(message.traceId, "send " + message.label, message.startMicros, "to " + peerId + ", " + batch.size() + " in write");
+            }
+            unreachable = false;
+        } catch (IOException e) {
+            if (e instanceof ConnectException) {
+                if (!unreachable) {
+                    System.out.println("[Member " + memberId + "] Failed to connect to " + target.getHostName() + ":" + target.getPort() + " - " + e.getMessage());
+                }
+                unreachable = true;
+            } else {
+                System.out.println("[Member " + memberId + "] Connection to " + peerId + " lost - " + e.getMessage());
+            }
+            closeSocket();
+        } finally {
+            frames.forEach(PooledBuffer::release);
+        }
+    }
+
+    /*
+     * Opens the connection to the peer unless it is already open
+     * @param target The peer's address
+     * @return The open channel
+     */
+    private synchronized SocketChannel connect(InetSocketAddress target) throws IOException {
+        if (channel == null) {
+            channel = SocketChannel.open(new InetSocketAddress(target.getHostName(), target.getPort()));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        return channel;
+    }
+
+    /**
+     * Points the connection at a new address, reconnecting on the next write
+     * @param newAddress The peer's address
+     */
+    public synchronized void setAddress(InetSocketAddress newAddress) {
+        if (newAddress.equals(address)) return;
+        this.address = newAddress;
+        closeSocket();
+    }
+
+    public void setBatchFrames(boolean batchFrames) {
+        this.batchFrames = batchFrames;
+    }
+
+    /**
+     * Sets when frames to the peer are compressed; only enable it for peers that can decode them
+     * @param compressAbove Size in bytes above which frames are compressed, or -1 to never compress
+     */
+    public void setCompressAbove(int compressAbove) {
+        this.compressAbove = compressAbove;
+    }
+
+    /*
+     * Closes the current socket, if any
+     */
+    private synchronized void closeSocket() {
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignored) {}
+        }
+        channel = null;
+    }
+
+    /**
+     * Stops the writer and closes the socket; queued messages are discarded
+     */
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        queue.clear();
+        closeSocket();
+    }
+}
@@ -0,0 +1,54 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A buffer borrowed from a BufferPool.
+ *
+ * Starts with one reference; every holder that retains it must release it once. The buffer
+ * returns to its pool when the count reaches zero and must not be used afterwards.
+ */
+public class PooledBuffer {
+    private final ByteBuffer buffer;
+    private final BufferPool pool;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    PooledBuffer(ByteBuffer buffer, BufferPool pool) {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Adds a reference for another holder
+     * @return This buffer
+     */
+    public PooledBuffer retain() {
+        if (refCount.getAndUpdate(c -> c > 0 ? c + 1 : c) <= 0) {
+            throw new IllegalStateException("Buffer already released");
+        }
+        return this;
+    }
+
+    /**
+     * Drops one reference, returning the buffer to its pool when none are left
+     */
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining < 0) {
+            refCount.incrementAndGet();
+            throw new IllegalStateException("Buffer released more times than retained");
+        }
+        if (remaining == 0 && pool != null) {
+            pool.recycle(buffer);
+        }
+    }
+
+    public int refCount() {
+        return refCount.get();
+    }
+}
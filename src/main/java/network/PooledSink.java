@@ -0,0 +1,136 @@
+package network;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Writer that encodes characters as UTF-8 straight into a pooled buffer, after a reserved
+ * header.
+ *
+ * Starts with a buffer from the pool and moves to one twice as large whenever the bytes
+ * written do not fit, so a message only leaves the pooled buffers once its encoded bytes
+ * are larger than them, and no intermediate string of the whole message is built.
+ */
+class PooledSink extends Writer {
+    private final BufferPool pool;
+    private final CharsetEncoder encoder;
+    private final int maxBytes;
+    private PooledBuffer pooled;
+
+    // A high surrogate ending the previous write, encoded together with the next char
+    private char pendingHigh;
+    private boolean hasPendingHigh;
+
+    /**
+     * Creates a sink
+     * @param pool The pool to take buffers from
+     * @param encoder A UTF-8 encoder, reset by the sink
+     * @param headerBytes Bytes left free at the start of the buffer
+     * @param maxBytes The most bytes the sink may hold, header included
+     */
+    PooledSink(BufferPool pool, CharsetEncoder encoder, int headerBytes, int maxBytes) {
+        this.pool = pool;
+        this.encoder = encoder.reset();
+        this.maxBytes = maxBytes;
+        this.pooled = pool.acquire(headerBytes + 1);
+        this.pooled.buffer().position(headerBytes);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        write(CharBuffer.wrap(chars, offset, length));
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        write(CharBuffer.wrap(text, offset, offset + length));
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        write(CharBuffer.wrap(new char[] { (char) c }));
+    }
+
+    /*
+     * Encodes chars into the buffer, growing it until they fit
+     */
+    private void write(CharBuffer chars) throws IOException {
+        if (pooled == null) throw new IOException("Sink already finished");
+        if (hasPendingHigh && chars.hasRemaining()) {
+            hasPendingHigh = false;
+            encode(CharBuffer.wrap(new char[] { pendingHigh, chars.get() }), false);
+        }
+        encode(chars, false);
+        // A high surrogate waiting for its pair is all the encoder leaves behind
+        if (chars.hasRemaining()) {
+            pendingHigh = chars.get();
+            hasPendingHigh = true;
+        }
+    }
+
+    /*
+     * Encodes as much of the chars as the encoder takes, growing the buffer on overflow
+     */
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, pooled.buffer(), endOfInput);
+            if (result.isUnderflow()) return;
+            if (!result.isOverflow()) result.throwException();
+            grow();
+        }
+    }
+
+    /*
+     * Moves the bytes written so far to a buffer twice as large
+     */
+    private void grow() throws IOException {
+        ByteBuffer current = pooled.buffer();
+        if (current.capacity() >= maxBytes) {
+            throw new IOException("Frame exceeds " + maxBytes + " bytes");
+        }
+        PooledBuffer larger = pool.acquire((int) Math.min(maxBytes, 2L * current.capacity()));
+        current.flip();
+        larger.buffer().put(current);
+        pooled.release();
+        pooled = larger;
+    }
+
+    /**
+     * Completes the encoding and hands over the buffer
+     * @return The buffer, positioned after the last byte written; the caller must release it
+     * @throws IOException If the text ended in half a surrogate pair
+     */
+    PooledBuffer finish() throws IOException {
+        CharBuffer rest = hasPendingHigh ? CharBuffer.wrap(new char[] { pendingHigh }) : CharBuffer.allocate(0);
+        hasPendingHigh = false;
+        encode(rest, true);
+        while (true) {
+            CoderResult result = encoder.flush(pooled.buffer());
+            if (result.isUnderflow()) break;
+            if (!result.isOverflow()) result.throwException();
+            grow();
+        }
+        PooledBuffer done = pooled;
+        pooled = null;
+        return done;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Releases the buffer unless it was handed over by finish()
+     */
+    @Override
+    public void close() {
+        if (pooled != null) {
+            pooled.release();
+            pooled = null;
+        }
+    }
+}
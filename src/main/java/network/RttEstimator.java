@@ -0,0 +1,93 @@
+package network;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-peer round-trip time estimator.
+ *
+ * Keeps an exponentially weighted moving average of observed request/response times and
+ * of their variation, as TCP does (RFC 6298), so callers can prefer the fastest peers and
+ * size timeouts to how each peer actually behaves.
+ */
+public class RttEstimator {
+    private static final double ALPHA = 0.125;
+    private static final double BETA = 0.25;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    /**
+     * Smoothed round-trip time and mean deviation of one peer, in nanoseconds
+     */
+    private static class Estimate {
+        final double srtt;
+        final double rttvar;
+
+        Estimate(double srtt, double rttvar) {
+            this.srtt = srtt;
+            this.rttvar = rttvar;
+        }
+    }
+
+    /**
+     * Records one round-trip sample for a peer
+     * @param peerId The peer the sample was measured against
+     * @param rttNanos The measured round-trip time in nanoseconds
+     */
+    public void record(String peerId, long rttNanos) {
+        if (rttNanos < 0) return;
+        estimates.compute(peerId, (p, old) -> {
+            if (old == null) {
+                return new Estimate(rttNanos, rttNanos / 2.0);
+            }
+            double rttvar = (1 - BETA) * old.rttvar + BETA * Math.abs(old.srtt - rttNanos);
+            return new Estimate(old.srtt + ALPHA * (rttNanos - old.srtt), rttvar);
+        });
+    }
+
+    /**
+     * Gets the smoothed round-trip time of a peer
+     * @param peerId The peer to look up
+     * @return The smoothed round-trip time in nanoseconds, or -1 if never measured
+     */
+    public long getSmoothedRttNanos(String peerId) {
+        Estimate estimate = estimates.get(peerId);
+        return estimate != null ? (long) estimate.srtt : -1;
+    }
+
+    /**
+     * Gets the round-trip time variation of a peer
+     * @param peerId The peer to look up
+     * @return The mean deviation of the round-trip time in nanoseconds, or -1 if never measured
+     */
+    public long getRttVariationNanos(String peerId) {
+        Estimate estimate = estimates.get(peerId);
+        return estimate != null ? (long) estimate.rttvar : -1;
+    }
+
+    /**
+     * Gets how long to wait for a reply from a peer before treating it as lost
+     * @param peerId The peer to look up
+     * @return The smoothed round-trip time plus four times its variation in nanoseconds, or -1 if never measured
+     */
+    public long getTimeoutNanos(String peerId) {
+        Estimate estimate = estimates.get(peerId);
+        return estimate != null ? (long) (estimate.srtt + 4 * estimate.rttvar) : -1;
+    }
+
+    /**
+     * Orders peers from fastest to slowest. Peers never measured come last, by ID.
+     * @param peerIds The peers to rank
+     * @return A new list of the peers in ranked order
+     */
+    public List<String> rank(Collection<String> peerIds) {
+        List<String> ranked = new ArrayList<>(peerIds);
+        ranked.sort(Comparator
+            .comparingDouble((String p) -> {
+                Estimate estimate = estimates.get(p);
+                return estimate != null ? estimate.srtt : Double.MAX_VALUE;
+            })
+            .thenComparing(Comparator.naturalOrder()));
+        return ranked;
+    }
+}
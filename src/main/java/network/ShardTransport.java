@@ -0,0 +1,52 @@
+package network;
+
+import paxos_util.PaxosMessage;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * Transport for a single Paxos group multiplexed over a shared transport.
+ * Outgoing messages are tagged with the shard ID so the receiver can route them.
+ */
+public class ShardTransport implements MemberTransport {
+    private final int shardId;
+    private final MemberTransport sharedTransport;
+
+    public ShardTransport(int shardId, MemberTransport sharedTransport) {
+        this.shardId = shardId;
+        this.sharedTransport = sharedTransport;
+    }
+
+    @Override
+    public void sendMessage(String targetId, Object message) {
+        if (message instanceof PaxosMessage pm) {
+            pm.shardId = shardId;
+        }
+        sharedTransport.sendMessage(targetId, message);
+    }
+
+    @Override
+    public void startListening() {
+        // The shared transport listens once for every shard
+    }
+
+    @Override
+    public void updatePeers(Map<String, InetSocketAddress> peers) {
+        sharedTransport.updatePeers(peers);
+    }
+
+    @Override
+    public boolean isCongested(String targetId) {
+        return sharedTransport.isCongested(targetId);
+    }
+
+    @Override
+    public boolean isSuspected(String targetId) {
+        return sharedTransport.isSuspected(targetId);
+    }
+
+    public int getShardId() {
+        return shardId;
+    }
+}
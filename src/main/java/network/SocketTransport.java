@@ -1,38 +1,106 @@
 package network;
 
-import paxos_logic.PaxosNode;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 import member.Profile;
+import paxos_util.Batch;
+import paxos_util.Heartbeat;
+import paxos_util.Hello;
 import paxos_util.PaxosMessage;
+import paxos_util.Ready;
+import paxos_util.Tracer;
 
 public class SocketTransport implements MemberTransport {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long HELLO_INTERVAL_MS = 500;
+
     private final String memberId;
     private final Integer port;
-    private Map<String, InetSocketAddress> members;
+    private volatile Map<String, InetSocketAddress> members;
 
-    private PaxosNode paxosNode;
+    private MessageHandler messageHandler;
     private Profile profile;
 
-    private ServerSocket serverSocket;
+    private ServerSocketChannel serverSocket;
     private final ReentrantLock lock = new ReentrantLock();
     private final Gson gson = new GsonBuilder().create();
+    private final MessageCodec codec = new MessageCodec(BufferPool.shared());
 
     private boolean crashAfterSend = false;
     private boolean hasSentFirstMessage = false;
 
-    public SocketTransport(String memberId, Integer port, Map<String, InetSocketAddress> members, PaxosNode paxosNode, Profile profile) {
+    // One outbound queue and persistent connection per peer
+    private final Map<String, PeerConnection> connections = new ConcurrentHashMap<>();
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private boolean batchFrames = false;
+
+    // Frames above the threshold are compressed, but only to peers whose Hello or Ready said
+    // they can decode them; -1 disables compression
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    private volatile int compressAbove = -1;
+    private final Set<String> compressingPeers = ConcurrentHashMap.newKeySet();
+
+    // Every frame received counts as a sign of life; sends to suspected peers are dropped.
+    // null until failure detection is enabled.
+    public static final long DEFAULT_HEARTBEAT_MS = 500;
+    private volatile FailureDetector failureDetector;
+
+    // Faults a decorator above applies to the frames this transport sends and handles itself
+    private volatile LinkFaults linkFaults = LinkFaults.NONE;
+
+    // Startup handshake: members known to be listening, and futures waiting for enough of them
+    private final Set<String> reachable = ConcurrentHashMap.newKeySet();
+    private final List<Readiness> readinessWaiters = new CopyOnWriteArrayList<>();
+
+    /**
+     * A readiness future and the condition on the reachable members that completes it
+     */
+    private static class Readiness {
+        final Predicate<Set<String>> condition;
+        final CompletableFuture<Set<String>> future = new CompletableFuture<>();
+
+        Readiness(Predicate<Set<String>> condition) {
+            this.condition = condition;
+        }
+    }
+
+    // Inbound connections, closed on shutdown so their reader threads stop
+    private final Set<SocketChannel> inbound = ConcurrentHashMap.newKeySet();
+
+    // Applies the profile's simulated delay without tying up a thread per message
+    private final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "transport-delay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SocketTransport(String memberId, Integer port, Map<String, InetSocketAddress> members, MessageHandler messageHandler, Profile profile) {
         this.memberId = memberId;
         this.port = port;
         this.members = members;
-        this.paxosNode = paxosNode;
+        this.messageHandler = messageHandler;
         this.profile = profile;
     }
 
@@ -40,51 +108,169 @@ public class SocketTransport implements MemberTransport {
     public void startListening() {
         lock.lock();
         try {
-            serverSocket = new ServerSocket(port);
+            serverSocket = ServerSocketChannel.open().bind(new InetSocketAddress(port));
             System.out.println("[Member " + memberId + "] - Listening on port " + port);
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
             lock.unlock();
         }
+        markReachable(memberId);
+        delayer.execute(this::sendHelloRound);
 
         new Thread(() -> {
-            while (true) {
-                lock.lock();
+            // Connections are long-lived, so accept() is not done under the lock: shutdown()
+            // must be able to close the server socket while accept() is blocked
+            ServerSocketChannel listening;
+            lock.lock();
+            try {
+                listening = serverSocket;
+            } finally {
+                lock.unlock();
+            }
+            while (listening != null && listening.isOpen()) {
                 try {
-                    if (serverSocket == null || serverSocket.isClosed()) break;
-                    Socket clientSocket = serverSocket.accept();
+                    SocketChannel clientSocket = listening.accept();
                     handleSocket(clientSocket);
                 } catch (IOException e) {
-                    if (serverSocket == null || serverSocket.isClosed()) break;
+                    if (!listening.isOpen()) break;
                     e.printStackTrace();
-                } finally {
-                    lock.unlock();
                 }
             }
         }).start();
     }
 
-    private void handleSocket(Socket clientSocket) {
+    private void handleSocket(SocketChannel clientSocket) {
+        inbound.add(clientSocket);
         new Thread(() -> {
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()))) {
+            try (clientSocket) {
+                readFrames(clientSocket);
+            } catch (IOException e) {
+                System.out.println("[Member " + memberId + "] Inbound connection closed - " + e.getMessage());
+            } finally {
+                inbound.remove(clientSocket);
+            }
+        }).start();
+    }
+
+    /*
+     * Reads length-prefixed frames into a pooled buffer until the peer closes the connection
+     * or the transport shuts down. A frame larger than the buffer is read into a one-off
+     * buffer of its size. Frames are parsed here, so the delay thread only hands them over.
+     * @param channel The inbound connection
+     */
+    private void readFrames(SocketChannel channel) throws IOException {
+        BufferPool pool = codec.getPool();
+        PooledBuffer pooled = pool.acquire(pool.getBufferSize());
+        try {
+            ByteBuffer buffer = pooled.buffer();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
                 String jsonMessage;
-                while ((jsonMessage = in.readLine()) != null) {
-                    int delay = simulateDelay();
-                    Thread.sleep(delay);
+                while ((jsonMessage = codec.decode(buffer)) != null) {
+                    long readMicros = Tracer.isEnabled() ? Tracer.nowMicros() : 0;
+                    Runnable delivery = receive(jsonMessage, readMicros);
+                    if (delivery != null && !schedule(delivery, simulateDelay())) return;
+                }
+
+                int frameSize = MessageCodec.frameSize(buffer);
+                if (frameSize > buffer.capacity()) {
+                    PooledBuffer larger = pool.acquire(frameSize);
+                    larger.buffer().put(buffer);
+                    pooled.release();
+                    pooled = larger;
+                    buffer = larger.buffer();
+                } else {
+                    buffer.compact();
+                }
+            }
+        } finally {
+            pooled.release();
+        }
+    }
 
-                    // Deserialize to a generic map to extract senderId
-                    PaxosMessage msg = gson.fromJson(jsonMessage, PaxosMessage.class);
-                    String senderId = msg.fromMemberId;
+    /*
+     * Runs a task after a delay on the delay thread, unless the transport has shut down
+     * @param task The task to run
+     * @param delayMs The delay in milliseconds
+     * @return false if the transport has shut down and the task was dropped
+     */
+    private boolean schedule(Runnable task, long delayMs) {
+        if (delayer.isShutdown()) return false;
+        try {
+            delayer.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Parses a received frame, unpacking BATCH frames, into the hand-off to run once the
+     * simulated delay has passed. Traced messages get a receive span covering the delay since
+     * the frame was read.
+     * @param jsonMessage The frame as read from the socket
+     * @param readMicros When the frame was read, from Tracer.nowMicros()
+     * @return The hand-off, or null if the frame could not be parsed
+     */
+    private Runnable receive(String jsonMessage, long readMicros) {
+        PaxosMessage msg;
+        Runnable handOff;
+        try {
+            msg = gson.fromJson(jsonMessage, PaxosMessage.class);
+            if ("HEARTBEAT".equals(msg.type)) {
+                handOff = () -> { };
+            } else if ("HELLO".equals(msg.type)) {
+                Hello hello = gson.fromJson(jsonMessage, Hello.class);
+                handOff = () -> linkFaults.apply(msg.fromMemberId, false, () -> {
+                    negotiate(msg.fromMemberId, hello.compression);
+                    markReachable(msg.fromMemberId);
+                    Ready ready = new Ready(memberId);
+                    ready.compression = MessageCodec.COMPRESSION;
+                    sendControl(msg.fromMemberId, ready);
+                });
+            } else if ("READY".equals(msg.type)) {
+                Ready ready = gson.fromJson(jsonMessage, Ready.class);
+                handOff = () -> linkFaults.apply(msg.fromMemberId, false, () -> {
+                    negotiate(msg.fromMemberId, ready.compression);
+                    markReachable(msg.fromMemberId);
+                });
+            } else if ("BATCH".equals(msg.type)) {
+                Batch batch = gson.fromJson(jsonMessage, Batch.class);
+                List<PaxosMessage> headers = new ArrayList<>(batch.messages.size());
+                for (String inner : batch.messages) {
+                    headers.add(gson.fromJson(inner, PaxosMessage.class));
+                }
+                handOff = () -> {
+                    for (int i = 0; i < headers.size(); i++) {
+                        PaxosMessage innerMsg = headers.get(i);
+                        Tracer.span(innerMsg.traceId, "receive " + innerMsg.type, readMicros, "from " + innerMsg.fromMemberId);
+                        messageHandler.handleMessage(innerMsg.fromMemberId, batch.messages.get(i));
+                    }
+                };
+            } else {
+                handOff = () -> {
+                    Tracer.span(msg.traceId, "receive " + msg.type, readMicros, "from " + msg.fromMemberId);
+                    messageHandler.handleMessage(msg.fromMemberId, jsonMessage);
+                };
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
 
-                    paxosNode.handleMessage(senderId, jsonMessage);
+        return () -> {
+            try {
+                // Every frame is a sign of life, but only over the link as faulted
+                FailureDetector detector = failureDetector;
+                if (detector != null && msg.fromMemberId != null) {
+                    linkFaults.apply(msg.fromMemberId, false, () -> detector.heartbeat(msg.fromMemberId));
                 }
+                handOff.run();
             } catch (Exception e) {
                 e.printStackTrace();
-            } finally {
-                try { clientSocket.close(); } catch (IOException ignored) {}
             }
-        }).start();
+        };
     }
 
     private int simulateDelay() {
@@ -113,6 +299,21 @@ public class SocketTransport implements MemberTransport {
             }
         }
 
+        // A suspected peer costs nothing: no connection attempt, no queued message. Paxos
+        // treats the drop like any other loss, and heartbeats keep probing the peer.
+        if (isSuspected(targetId)) return;
+
+        enqueue(targetId, message);
+    }
+
+    /*
+     * Queues a message for a peer after the profile's simulated delay. Handshake frames are
+     * sent this way directly, so a FAILURE profile does not drop them or count them as the
+     * first message before crashing.
+     * @param targetId The peer to send to
+     * @param message The message to send
+     */
+    private void enqueue(String targetId, Object message) {
         InetSocketAddress address = members.get(targetId);
         if (address == null) {
             System.out.println("[Member " + memberId + "] - Unknown target member ID: " + targetId);
@@ -120,41 +321,269 @@ public class SocketTransport implements MemberTransport {
         }
 
         String jsonMessage = gson.toJson(message);
+        String traceId = message instanceof PaxosMessage ? ((PaxosMessage) message).traceId : null;
+        String type = traceId != null ? ((PaxosMessage) message).type : null;
+        long startMicros = traceId != null ? Tracer.nowMicros() : 0;
+        PeerConnection connection = connections.computeIfAbsent(targetId, id -> {
+            PeerConnection created = new PeerConnection(memberId, id, address, queueCapacity, batchFrames);
+            created.setCompressAbove(compressingPeers.contains(id) ? compressAbove : -1);
+            return created;
+        });
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                Thread.sleep(simulateDelay());
-                try (Socket socket = new Socket(address.getHostName(), address.getPort());
-                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
-                    out.println(jsonMessage);
-                    out.flush();
-                }
-            } catch (Exception e) {
-                // If it's a connection problem, log a concise message (expected when a node has crashed).
-                if (e instanceof java.net.ConnectException || (e.getCause() != null && e.getCause() instanceof java.net.ConnectException)) {
-                    System.out.println("[Member " + memberId + "] Failed to connect to " + address.getHostName() + ":" + address.getPort() + " - " + e.getMessage());
-                } else {
-                    // For other exceptions, print stack trace to help debugging
-                    e.printStackTrace();
-                }
+        // The message joins the peer's queue once its simulated delay has passed, so messages
+        // that become ready together are written together
+        schedule(() -> connection.offer(jsonMessage, traceId, type, startMicros), simulateDelay());
+    }
+
+    /*
+     * Queues a frame this transport sends itself, through the link's faults
+     */
+    private void sendControl(String targetId, Object message) {
+        linkFaults.apply(targetId, true, () -> enqueue(targetId, message));
+    }
+
+    /*
+     * Sends Hello to every member not known to be listening yet, repeating until all answered
+     */
+    private void sendHelloRound() {
+        boolean pending = false;
+        for (String peerId : members.keySet()) {
+            if (!reachable.contains(peerId)) {
+                Hello hello = new Hello(memberId);
+                hello.compression = MessageCodec.COMPRESSION;
+                sendControl(peerId, hello);
+                pending = true;
             }
+        }
+        if (pending) {
+            schedule(this::sendHelloRound, HELLO_INTERVAL_MS);
+        }
+    }
+
+    /*
+     * Sends a heartbeat to every other member. A member with the FAILURE profile stays
+     * silent, as a crashed one would.
+     */
+    private void sendHeartbeats() {
+        if (profile == Profile.FAILURE) return;
+        for (String peerId : members.keySet()) {
+            if (!peerId.equals(memberId)) {
+                sendControl(peerId, new Heartbeat(memberId));
+            }
+        }
+    }
+
+    /*
+     * Records whether a peer can decode compressed frames, as announced in its Hello or Ready.
+     * A restarted peer announces again, so the setting follows its current version.
+     * @param peerId The peer
+     * @param compression The compression the peer announced, or null
+     */
+    private void negotiate(String peerId, String compression) {
+        if (peerId == null) return;
+        boolean supported = MessageCodec.COMPRESSION.equals(compression);
+        if (supported) {
+            compressingPeers.add(peerId);
+        } else {
+            compressingPeers.remove(peerId);
+        }
+        PeerConnection connection = connections.get(peerId);
+        if (connection != null) {
+            connection.setCompressAbove(supported ? compressAbove : -1);
+        }
+    }
+
+    /*
+     * Records that a member is listening and completes the readiness futures it satisfies
+     * @param peerId The member that sent Hello or Ready
+     */
+    private void markReachable(String peerId) {
+        if (peerId == null || !reachable.add(peerId)) return;
+        if (!peerId.equals(memberId)) {
+            System.out.println("[Member " + memberId + "] - Peer " + peerId + " is up");
+        }
+        checkReadiness();
+    }
+
+    private void checkReadiness() {
+        Set<String> snapshot = getReachablePeers();
+        for (Readiness waiter : readinessWaiters) {
+            if (waiter.condition.test(snapshot)) {
+                readinessWaiters.remove(waiter);
+                waiter.future.complete(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Returns a future completed once the members known to be listening satisfy a condition,
+     * such as containing a quorum. This member counts once it listens.
+     * @param condition Tested with the set of reachable members
+     * @return Future completed with the reachable members
+     */
+    public CompletableFuture<Set<String>> readiness(Predicate<Set<String>> condition) {
+        Readiness waiter = new Readiness(condition);
+        readinessWaiters.add(waiter);
+        checkReadiness();
+        return waiter.future;
+    }
+
+    /**
+     * Gets the members that have answered the startup handshake
+     * @return A snapshot of the reachable members, including this one once it listens
+     */
+    public Set<String> getReachablePeers() {
+        return new HashSet<>(reachable);
+    }
+
+    /**
+     * Checks whether the outbound queue to a peer is backing up
+     * @param targetId The peer to check
+     * @return true if the peer's queue is at least three quarters full
+     */
+    @Override
+    public boolean isCongested(String targetId) {
+        PeerConnection connection = connections.get(targetId);
+        return connection != null && connection.isCongested();
+    }
+
+    /**
+     * Checks whether the failure detector suspects a peer; this member is never suspected
+     * @param targetId The peer to check
+     * @return true if failure detection is enabled and the peer's phi is above the threshold
+     */
+    @Override
+    public boolean isSuspected(String targetId) {
+        FailureDetector detector = failureDetector;
+        return detector != null && detector.isSuspected(targetId);
+    }
+
+    /**
+     * Passes heartbeats, the handshake and the failure detector's view of incoming frames
+     * through the faults of a decorator above this transport
+     * @param linkFaults The faults to apply
+     */
+    @Override
+    public void setLinkFaults(LinkFaults linkFaults) {
+        this.linkFaults = linkFaults;
+    }
+
+    /**
+     * Gets the failure detector
+     * @return The detector, or null if failure detection is not enabled
+     */
+    public FailureDetector getFailureDetector() {
+        return failureDetector;
+    }
+
+    /**
+     * Sends heartbeats to every peer and stops sending to peers the failure detector suspects
+     * @param heartbeatMs Interval between heartbeats
+     * @param phiThreshold Suspicion level above which a peer is suspected
+     */
+    public void enableFailureDetection(long heartbeatMs, double phiThreshold) {
+        if (failureDetector != null) {
+            throw new IllegalStateException("Failure detection is already enabled");
+        }
+        failureDetector = new FailureDetector(memberId, heartbeatMs, phiThreshold);
+        delayer.scheduleAtFixedRate(this::sendHeartbeats, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replaces the member table; this member's own entry is kept if it is missing
+     * @param peers Every member to keep reachable, mapped to its address
+     */
+    @Override
+    public void updatePeers(Map<String, InetSocketAddress> peers) {
+        Map<String, InetSocketAddress> updated = new HashMap<>(peers);
+        InetSocketAddress self = members.get(memberId);
+        if (self != null) {
+            updated.putIfAbsent(memberId, self);
+        }
+        members = updated;
+        FailureDetector detector = failureDetector;
+        if (detector != null) {
+            detector.retain(updated.keySet());
+        }
+
+        // Drop connections to removed members and follow members that moved
+        connections.entrySet().removeIf(entry -> {
+            InetSocketAddress address = updated.get(entry.getKey());
+            if (address == null) {
+                entry.getValue().close();
+                return true;
+            }
+            entry.getValue().setAddress(address);
+            return false;
         });
+        System.out.println("[Member " + memberId + "] - Peers updated to " + updated.keySet());
     }
 
     public void shutdown() {
+        // Sockets first, so reader threads stop before the delay thread they schedule on
         lock.lock();
         try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
+            if (serverSocket != null && serverSocket.isOpen()) {
                 serverSocket.close();
             }
         } catch (IOException ignored) {
         } finally {
             lock.unlock();
         }
+        for (SocketChannel channel : inbound) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        connections.values().forEach(PeerConnection::close);
+        connections.clear();
+        delayer.shutdownNow();
     }
 
     public void setCrashAfterSend(boolean crash) {
         this.crashAfterSend = crash;
     }
-    
+
+    /**
+     * Sets the bound of each per-peer outbound queue; applies to connections opened afterwards
+     * @param queueCapacity Maximum number of messages waiting for one peer
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Enables merging everything queued for a peer into one BATCH frame per write
+     * @param batchFrames true to send BATCH frames
+     */
+    public void setBatchFrames(boolean batchFrames) {
+        this.batchFrames = batchFrames;
+        connections.values().forEach(c -> c.setBatchFrames(batchFrames));
+    }
+
+    /**
+     * Checks whether frames to a peer are compressed
+     * @param peerId The peer
+     * @return true if compression is enabled and the peer announced it can decode compressed frames
+     */
+    public boolean compressesTo(String peerId) {
+        return compressAbove >= 0 && compressingPeers.contains(peerId);
+    }
+
+    /**
+     * Compresses frames larger than a threshold to peers that can decode them
+     * @param compressAbove Size in bytes above which frames are compressed, or -1 to never compress
+     */
+    public void setCompressAbove(int compressAbove) {
+        if (compressAbove < -1) {
+            throw new IllegalArgumentException("Compression threshold must be -1 or at least 0: " + compressAbove);
+        }
+        this.compressAbove = compressAbove;
+        connections.forEach((peerId, c) -> c.setCompressAbove(compressingPeers.contains(peerId) ? compressAbove : -1));
+    }
+
 }
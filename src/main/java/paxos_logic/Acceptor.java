@@ -1,6 +1,8 @@
 package paxos_logic;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import network.MemberTransport;
@@ -18,9 +20,33 @@ public class Acceptor {
     private MemberTransport networkTransport;
     private final ReentrantLock lock = new ReentrantLock();
 
-    private ProposalNumber promisedNumber = null;
-    private ProposalNumber acceptedNumber = null;
-    private String acceptedValue = null;
+    // Promised and accepted state per Paxos instance, with ballots packed into longs
+    private final AcceptorStore store = new AcceptorStore();
+    private ProposalNumber highestPromised = null;
+    private long highestAcceptedInstance = -1;
+
+    // Instances below this bound were applied long ago and are forgotten; the store is
+    // trimmed once the bound moved TRUNCATE_BATCH instances past the last trim
+    private static final int TRUNCATE_BATCH = 64;
+    private final AtomicLong forgetBelow = new AtomicLong();
+    private long trimmedBelow = 0;
+
+    // Instances with an open "any" round that have not accepted a client value yet
+    private final TreeSet<Long> openFastInstances = new TreeSet<>();
+
+    // Optional membership; learners are the members of its latest configuration
+    private Membership membership;
+
+    // Distinguished learner mode: report Accepted to the Proposer only
+    private boolean distinguishedLearner = false;
+
+    // A witness stores and reports the reference of each large value instead of its body
+    private boolean witness = false;
+
+    // Leader lease granted with the last promise (0 disables leases)
+    private long leaseDurationMs = 0;
+    private String leaseHolder = null;
+    private long leaseExpiryNanos = 0;
 
     public Acceptor(String memberId, MemberTransport networkTransport, Set<String> learnerIds) {
         this.memberId = memberId;
@@ -40,24 +66,44 @@ public class Acceptor {
             ProposalNumber proposalNum = new ProposalNumber(prepare.proposalNum.toString());
             System.out.println("[Acceptor " + memberId + "] Received Prepare(" + proposalNum + ") from Proposer " + fromProposerId);
 
-            if (promisedNumber == null || proposalNum.compareTo(promisedNumber) >= 0) {
+            if (isForgotten(prepare.instance)) {
+                System.out.println("[Acceptor " + memberId + "] Ignored Prepare(" + proposalNum + ") for instance " + prepare.instance + ", applied and forgotten");
+                return;
+            }
+
+            if (isLeaseHeldByOther(fromProposerId)) {
+                sendLeaseNack(fromProposerId, "Prepare", proposalNum, prepare.instance, prepare.traceId);
+                return;
+            }
+
+            int slot = store.slotFor(prepare.instance);
+            long ballot = proposalNum.pack();
+            long promised = store.getPromised(slot);
+
+            if (ballot >= promised) {
 
                 // Update if incoming greater
-                if (promisedNumber == null || proposalNum.compareTo(promisedNumber) > 0) {
-                    promisedNumber = proposalNum;
+                if (ballot > promised) {
+                    store.setPromised(slot, ballot);
+                    recordPromise(proposalNum);
                 }
+                grantLease(fromProposerId);
 
+                long accepted = store.getAccepted(slot);
                 Promise promise = new Promise(
                     String.valueOf(memberId),
                     proposalNum,
-                    acceptedNumber != null ? acceptedNumber.toString() : null,
-                    acceptedValue
+                    accepted != AcceptorStore.NONE ? ProposalNumber.unpack(accepted).toString() : null,
+                    store.getAcceptedValue(slot)
                 );
+                promise.instance = prepare.instance;
+                promise.traceId = prepare.traceId;
 
                 networkTransport.sendMessage(fromProposerId, promise);
                 System.out.println("[Acceptor " + memberId + "] Sent Promise for " + proposalNum + " to Proposer " + fromProposerId);
             } else {
-                System.out.println("[Acceptor " + memberId + "] Ignored Prepare(" + proposalNum + "), promised number is " + promisedNumber);
+                System.out.println("[Acceptor " + memberId + "] Ignored Prepare(" + proposalNum + "), promised number is " + ProposalNumber.unpack(promised));
+                sendNack(fromProposerId, proposalNum, ProposalNumber.unpack(promised), prepare.instance, prepare.traceId);
             }
         } finally {
             lock.unlock();
@@ -76,26 +122,310 @@ public class Acceptor {
             ProposalNumber proposalNum = new ProposalNumber(acceptRequest.proposalNum.toString());
             System.out.println("[Acceptor " + memberId + "] Received AcceptRequest(" + proposalNum + ", '" + acceptRequest.proposalValue + "') from Proposer " + fromProposerId);
 
-            if (promisedNumber == null || proposalNum.compareTo(promisedNumber) >= 0) {
-                acceptedNumber = proposalNum;
-                acceptedValue = acceptRequest.proposalValue;
-                promisedNumber = proposalNum;
+            if (isForgotten(acceptRequest.instance)) {
+                System.out.println("[Acceptor " + memberId + "] Ignored AcceptRequest(" + proposalNum + ") for instance " + acceptRequest.instance + ", applied and forgotten");
+                return;
+            }
+
+            if (isLeaseHeldByOther(fromProposerId)) {
+                sendLeaseNack(fromProposerId, "AcceptRequest", proposalNum, acceptRequest.instance, acceptRequest.traceId);
+                return;
+            }
+
+            int slot = store.slotFor(acceptRequest.instance);
+            long ballot = proposalNum.pack();
+            long promised = store.getPromised(slot);
 
-                Accepted acceptedMsg = new Accepted(memberId, proposalNum, acceptedValue);
+            if (ballot >= promised) {
+                if (acceptRequest.anyValue) {
+                    openFastRound(slot, acceptRequest.instance, proposalNum, fromProposerId);
+                    return;
+                }
+
+                String value = witness ? ValueStore.compact(acceptRequest.proposalValue) : acceptRequest.proposalValue;
+                store.setAccepted(slot, ballot, value);
+                store.setPromised(slot, ballot);
+                recordPromise(proposalNum);
+                highestAcceptedInstance = Math.max(highestAcceptedInstance, acceptRequest.instance);
+
+                Accepted acceptedMsg = new Accepted(memberId, proposalNum, value);
+                acceptedMsg.instance = acceptRequest.instance;
+                acceptedMsg.traceId = acceptRequest.traceId;
 
                 // Reply to proposer
                 networkTransport.sendMessage(fromProposerId, acceptedMsg);
 
-                // Notify all learners
-                for (String learnerId : learnerIds) {
-                    if (learnerId.equals(fromProposerId)) continue;
-                    networkTransport.sendMessage(learnerId, acceptedMsg);
+                // Notify all learners, unless the Proposer announces the outcome itself
+                if (!distinguishedLearner) {
+                    for (String learnerId : currentLearners()) {
+                        if (learnerId.equals(fromProposerId)) continue;
+                        networkTransport.sendMessage(learnerId, acceptedMsg);
+                    }
                 }
 
-                System.out.println("[Acceptor " + memberId + "] Accepted proposal " + proposalNum + " with value '" + acceptedValue + "'");
+                System.out.println("[Acceptor " + memberId + "] Accepted proposal " + proposalNum + " with value '" + value + "'");
             } else {
-                System.out.println("[Acceptor " + memberId + "] Ignored AcceptRequest(" + proposalNum + "), promised number is " + promisedNumber);
+                System.out.println("[Acceptor " + memberId + "] Ignored AcceptRequest(" + proposalNum + "), promised number is " + ProposalNumber.unpack(promised));
+                sendNack(fromProposerId, proposalNum, ProposalNumber.unpack(promised), acceptRequest.instance, acceptRequest.traceId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the Acceptor forget the instances below a bound, once the local Learner applied
+     * them and no longer retains them. Only the bound is recorded here, without taking the
+     * lock, since the Learner calls this while holding its own; the next message trims the store.
+     * @param instance The lowest instance to keep
+     */
+    public void forgetBelow(long instance) {
+        forgetBelow.accumulateAndGet(instance, Math::max);
+    }
+
+    /*
+     * Checks whether an instance is below the forget bound, trimming the store first if
+     * the bound moved far enough
+     * @param instance The Paxos instance of a message
+     * @return true if the instance is forgotten and the message must be ignored
+     */
+    private boolean isForgotten(long instance) {
+        long bound = forgetBelow.get();
+        if (bound - trimmedBelow >= TRUNCATE_BATCH) {
+            store.removeBelow(bound);
+            trimmedBelow = bound;
+        }
+        return instance < bound;
+    }
+
+    /**
+     * Gets the number of instances the Acceptor holds state for
+     * @return The number of instances
+     */
+    public int getInstanceCount() {
+        lock.lock();
+        try {
+            return store.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Tells a Proposer its proposal number was rejected and which number is promised instead
+     * @param proposerId The ID of the rejected Proposer
+     * @param rejectedNumber The rejected proposal number
+     * @param promisedNumber The proposal number promised in the instance
+     * @param instance The Paxos instance
+     * @param traceId The trace of the rejected proposal, or null
+     */
+    private void sendNack(String proposerId, ProposalNumber rejectedNumber, ProposalNumber promisedNumber, long instance, String traceId) {
+        Nack nack = new Nack(memberId, rejectedNumber, promisedNumber.toString());
+        nack.instance = instance;
+        nack.traceId = traceId;
+        networkTransport.sendMessage(proposerId, nack);
+    }
+
+    /*
+     * Refuses a request from a Proposer that does not hold the lease, telling it who does and
+     * for how long, so it can wait for the lease to expire instead of retrying blindly
+     * @param proposerId The Proposer to reply to
+     * @param request The kind of request refused, for the log
+     * @param rejectedNumber The proposal number refused
+     * @param instance The Paxos instance
+     * @param traceId The trace ID of the request
+     */
+    private void sendLeaseNack(String proposerId, String request, ProposalNumber rejectedNumber, long instance, String traceId) {
+        long remainingMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(leaseExpiryNanos - System.nanoTime()));
+        System.out.println("[Acceptor " + memberId + "] Rejected " + request + "(" + rejectedNumber + "), lease held by " + leaseHolder + " for " + remainingMs + " ms");
+        Nack nack = new Nack(memberId, rejectedNumber, rejectedNumber.toString());
+        nack.instance = instance;
+        nack.traceId = traceId;
+        nack.leaseHolder = leaseHolder;
+        nack.leaseRemainingMs = remainingMs;
+        networkTransport.sendMessage(proposerId, nack);
+    }
+
+    /*
+     * Opens a Fast Paxos "any" round, letting the instance accept the next client value
+     * @param slot The store slot of the instance
+     * @param instance The Paxos instance
+     * @param proposalNum The proposal number of the "any" round
+     * @param coordinatorId The ID of the coordinator that opened the round
+     */
+    private void openFastRound(int slot, long instance, ProposalNumber proposalNum, String coordinatorId) {
+        store.setPromised(slot, proposalNum.pack());
+        recordPromise(proposalNum);
+        store.setAnyRound(slot, proposalNum.pack(), coordinatorId);
+        openFastInstances.add(instance);
+        System.out.println("[Acceptor " + memberId + "] Opened fast round " + proposalNum + " in instance " + instance);
+    }
+
+    /**
+     * Handles a value sent directly by a client in Fast Paxos mode. The value is accepted
+     * in the lowest instance whose "any" round is still open; otherwise it is ignored.
+     * @param fastPropose The Fast Propose message received
+     * @param fromClientId The ID of the client who sent the message
+     */
+    public void handleFastPropose(FastPropose fastPropose, String fromClientId) {
+        lock.lock();
+
+        try {
+            System.out.println("[Acceptor " + memberId + "] Received FastPropose('" + fastPropose.proposalValue + "') from " + fromClientId);
+
+            long instance = -1;
+            int slot = -1;
+            while (!openFastInstances.isEmpty()) {
+                long candidate = openFastInstances.first();
+                int candidateSlot = store.find(candidate);
+                long any = candidateSlot >= 0 ? store.getAnyBallot(candidateSlot) : AcceptorStore.NONE;
+                // A higher Prepare or Accept Request since the round opened closes it
+                if (any != AcceptorStore.NONE && any == store.getPromised(candidateSlot) && any != store.getAccepted(candidateSlot)) {
+                    instance = candidate;
+                    slot = candidateSlot;
+                    break;
+                }
+                openFastInstances.pollFirst();
+            }
+
+            if (slot < 0) {
+                System.out.println("[Acceptor " + memberId + "] Ignored FastPropose('" + fastPropose.proposalValue + "'), no fast round open");
+                return;
+            }
+
+            openFastInstances.remove(instance);
+            long anyBallot = store.getAnyBallot(slot);
+            String coordinator = store.getAnyCoordinator(slot);
+            String value = witness ? ValueStore.compact(fastPropose.proposalValue) : fastPropose.proposalValue;
+            store.setAccepted(slot, anyBallot, value);
+            highestAcceptedInstance = Math.max(highestAcceptedInstance, instance);
+
+            ProposalNumber anyNumber = ProposalNumber.unpack(anyBallot);
+            Accepted acceptedMsg = new Accepted(memberId, anyNumber, value);
+            acceptedMsg.instance = instance;
+            acceptedMsg.fast = true;
+
+            // The coordinator watches for collisions; learners count the fast quorum themselves
+            networkTransport.sendMessage(coordinator, acceptedMsg);
+            if (!distinguishedLearner) {
+                for (String learnerId : currentLearners()) {
+                    if (learnerId.equals(coordinator)) continue;
+                    networkTransport.sendMessage(learnerId, acceptedMsg);
+                }
+            }
+
+            System.out.println("[Acceptor " + memberId + "] Accepted fast proposal " + anyNumber + " with value '" + value + "' in instance " + instance);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Tracks the highest proposal number promised in any instance
+     * @param proposalNum The proposal number just promised
+     */
+    private void recordPromise(ProposalNumber proposalNum) {
+        if (highestPromised == null || proposalNum.compareTo(highestPromised) > 0) {
+            highestPromised = proposalNum;
+        }
+    }
+
+    /**
+     * Handles a Read Index request by reporting the highest promise and accepted instance.
+     * A request from the current lease holder at its promised number also renews its lease.
+     * @param readIndex The Read Index message received
+     * @param fromMemberId The ID of the member who sent the message
+     */
+    public void handleReadIndex(ReadIndex readIndex, String fromMemberId) {
+        lock.lock();
+
+        try {
+            if (readIndex.proposalNum != null && fromMemberId.equals(leaseHolder)
+                    && new ProposalNumber(readIndex.proposalNum.toString()).equals(highestPromised)) {
+                grantLease(fromMemberId);
             }
+
+            ReadIndexAck ack = new ReadIndexAck(
+                memberId,
+                readIndex.readId,
+                highestPromised != null ? highestPromised.toString() : null,
+                highestAcceptedInstance
+            );
+            networkTransport.sendMessage(fromMemberId, ack);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Records a lease for the given Proposer if leases are enabled
+     * @param proposerId The ID of the Proposer granted the lease
+     */
+    private void grantLease(String proposerId) {
+        if (leaseDurationMs <= 0) return;
+        leaseHolder = proposerId;
+        leaseExpiryNanos = System.nanoTime() + leaseDurationMs * 1_000_000L;
+    }
+
+    /*
+     * Checks whether a different Proposer currently holds an unexpired lease
+     * @param proposerId The ID of the Proposer asking for a promise
+     * @return true if another Proposer holds the lease
+     */
+    private boolean isLeaseHeldByOther(String proposerId) {
+        return leaseDurationMs > 0
+            && leaseHolder != null
+            && !leaseHolder.equals(proposerId)
+            && System.nanoTime() < leaseExpiryNanos;
+    }
+
+    /*
+     * Gets the learners to notify of accepted values
+     * @return The members of the latest configuration, or the fixed learner IDs
+     */
+    private Set<String> currentLearners() {
+        return membership != null ? membership.latest().memberIds() : learnerIds;
+    }
+
+    /**
+     * Notifies the members of the latest configuration instead of the fixed learners
+     * @param membership The membership to consult
+     */
+    public void setMembership(Membership membership) {
+        this.membership = membership;
+    }
+
+    /**
+     * Enables distinguished learner mode, where Accepted goes only to the Proposer
+     * @param enabled Whether to skip notifying learners directly
+     */
+    public void setDistinguishedLearner(boolean enabled) {
+        this.distinguishedLearner = enabled;
+    }
+
+    /**
+     * Makes this Acceptor a witness, which stores and reports the reference of every value
+     * longer than a reference instead of the value. Its promises and votes count like any
+     * other; the bodies are left to the full Acceptors.
+     * @param witness Whether this Acceptor is a witness
+     */
+    public void setWitness(boolean witness) {
+        lock.lock();
+        try {
+            this.witness = witness;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the lease duration granted with each promise
+     * @param leaseDurationMs Lease duration in milliseconds, 0 to disable leases
+     */
+    public void setLeaseDuration(long leaseDurationMs) {
+        lock.lock();
+        try {
+            this.leaseDurationMs = leaseDurationMs;
         } finally {
             lock.unlock();
         }
@@ -0,0 +1,195 @@
+package paxos_logic;
+
+import java.util.Arrays;
+
+/**
+ * Per-instance Acceptor state in primitive arrays.
+ *
+ * An open-addressing hash table keyed by instance number, with linear probing. Ballots are
+ * stored packed (see ProposalNumber.pack), so they compare as plain longs. Accepted values
+ * live in a parallel reference array. An instance costs a few dozen bytes and no per-entry
+ * objects. Instance numbers are spread over the table by Fibonacci hashing, so consecutive
+ * instances land far apart and do not build long probe runs. removeBelow() forgets the
+ * instances an Acceptor no longer needs.
+ *
+ * Slot numbers are only valid until the next insert, which may resize the table.
+ * The store is not thread-safe; the Acceptor guards it with its lock.
+ */
+public class AcceptorStore {
+    public static final long NONE = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys;
+    private long[] promised;
+    private long[] accepted;
+    private long[] anyBallot;
+    private String[] values;
+    private String[] anyCoordinators;
+    private int size = 0;
+
+    public AcceptorStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Finds the slot of an instance, adding the instance with no promise if it is new
+     * @param instance The Paxos instance
+     * @return The slot of the instance
+     */
+    public int slotFor(long instance) {
+        int slot = probe(instance);
+        if (keys[slot] == instance) return slot;
+
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2, Long.MIN_VALUE);
+            slot = probe(instance);
+        }
+        keys[slot] = instance;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Finds the slot of an instance without adding it
+     * @param instance The Paxos instance
+     * @return The slot of the instance, or -1 if it has no state
+     */
+    public int find(long instance) {
+        int slot = probe(instance);
+        return keys[slot] == instance ? slot : -1;
+    }
+
+    public long getPromised(int slot) {
+        return promised[slot];
+    }
+
+    public void setPromised(int slot, long ballot) {
+        promised[slot] = ballot;
+    }
+
+    public long getAccepted(int slot) {
+        return accepted[slot];
+    }
+
+    public String getAcceptedValue(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Records the ballot and value accepted in an instance
+     * @param slot The slot of the instance
+     * @param ballot The packed ballot accepted
+     * @param value The value accepted
+     */
+    public void setAccepted(int slot, long ballot, String value) {
+        accepted[slot] = ballot;
+        values[slot] = value;
+    }
+
+    public long getAnyBallot(int slot) {
+        return anyBallot[slot];
+    }
+
+    public String getAnyCoordinator(int slot) {
+        return anyCoordinators[slot];
+    }
+
+    /**
+     * Records a Fast Paxos "any" round opened in an instance
+     * @param slot The slot of the instance
+     * @param ballot The packed ballot of the round
+     * @param coordinator The ID of the coordinator that opened it
+     */
+    public void setAnyRound(int slot, long ballot, String coordinator) {
+        anyBallot[slot] = ballot;
+        anyCoordinators[slot] = coordinator;
+    }
+
+    /**
+     * Removes every instance below the given one, shrinking the table if few are left
+     * @param instance The lowest instance to keep
+     * @return The number of instances removed
+     */
+    public int removeBelow(long instance) {
+        int kept = 0;
+        for (long key : keys) {
+            if (key != EMPTY && key >= instance) kept++;
+        }
+        int removed = size - kept;
+        if (removed == 0) return 0;
+
+        int capacity = INITIAL_CAPACITY;
+        while ((kept + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        rehash(capacity, instance);
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * Gets the number of instances with state
+     * @return The number of instances
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Finds the slot holding an instance or the empty slot where it would go
+     */
+    private int probe(long instance) {
+        int mask = keys.length - 1;
+        int slot = mix(instance) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != instance) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /*
+     * Fibonacci hashing: multiplies by 2^64 divided by the golden ratio, so consecutive
+     * instance numbers spread evenly over the table
+     */
+    private static int mix(long instance) {
+        long h = instance * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /*
+     * Allocates empty arrays of the given power-of-two capacity
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        promised = new long[capacity];
+        Arrays.fill(promised, NONE);
+        accepted = new long[capacity];
+        Arrays.fill(accepted, NONE);
+        anyBallot = new long[capacity];
+        Arrays.fill(anyBallot, NONE);
+        values = new String[capacity];
+        anyCoordinators = new String[capacity];
+    }
+
+    /*
+     * Rehashes every instance from the given one up into arrays of the new capacity
+     */
+    private void rehash(int capacity, long lowestKept) {
+        long[] oldKeys = keys, oldPromised = promised, oldAccepted = accepted, oldAny = anyBallot;
+        String[] oldValues = values, oldCoordinators = anyCoordinators;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY || oldKeys[i] < lowestKept) continue;
+            int slot = probe(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            promised[slot] = oldPromised[i];
+            accepted[slot] = oldAccepted[i];
+            anyBallot[slot] = oldAny[i];
+            values[slot] = oldValues[i];
+            anyCoordinators[slot] = oldCoordinators[i];
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package paxos_logic;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for client proposals.
+ *
+ * Client values wait in a bounded queue and are handed to the Proposers only while fewer
+ * than maxInFlight are undecided. A Proposer drives one instance at a time, so each shard
+ * holds at most one in-flight value. The Proposer reports the instance it got the value
+ * chosen in, and the value stops being in flight once its group applies that instance, or
+ * when the Proposer gives up on it. A value undecided after a timeout is only cancelled if
+ * the Proposer does not retry on its own. When the queue is full, submit() rejects
+ * the value and getRetryAfterMs() suggests when to try again. Membership changes wait for
+ * the same slots, ahead of client values, so they never displace an in-flight proposal.
+ */
+public class AdmissionController {
+    private static final long MIN_RETRY_AFTER_MS = 100;
+    private static final long INITIAL_COMMIT_MS = 1000;
+    private static final double ALPHA = 0.125;
+
+    private final String memberId;
+    private final ShardedPaxosNode node;
+    private final int maxInFlight;
+    private final int maxPending;
+    private final long inFlightTimeoutMs;
+
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private final String[] inFlight;
+    private final long[] inFlightSince;
+    // Per shard: the submission in flight, the instance it was chosen in (-1 until known)
+    // and the last instance applied
+    private final long[] inFlightToken;
+    private final long[] chosenIn;
+    private final long[] appliedIndex;
+    private final Map<Integer, CompletableFuture<Long>> proposals = new HashMap<>();
+    private long lastToken = 0;
+    private int inFlightCount = 0;
+    private double avgCommitMs = INITIAL_COMMIT_MS;
+
+    /**
+     * A value waiting for its shard to become free
+     */
+    private static class Pending {
+        final int shardId;
+        final String value;
+
+        Pending(int shardId, String value) {
+            this.shardId = shardId;
+            this.value = value;
+        }
+    }
+
+    public AdmissionController(ShardedPaxosNode node, int maxInFlight, int maxPending, long inFlightTimeoutMs) {
+        if (maxInFlight < 1 || maxPending < 0 || inFlightTimeoutMs < 1) {
+            throw new IllegalArgumentException("maxInFlight and the timeout must be positive, maxPending must not be negative");
+        }
+        this.memberId = node.getMemberId();
+        this.node = node;
+        this.maxInFlight = maxInFlight;
+        this.maxPending = maxPending;
+        this.inFlightTimeoutMs = inFlightTimeoutMs;
+        this.inFlight = new String[node.getShardCount()];
+        this.inFlightSince = new long[node.getShardCount()];
+        this.inFlightToken = new long[node.getShardCount()];
+        this.chosenIn = new long[node.getShardCount()];
+        this.appliedIndex = new long[node.getShardCount()];
+
+        for (int i = 0; i < node.getShardCount(); i++) {
+            final int shardId = i;
+            appliedIndex[i] = node.getShard(i).getLearner().getAppliedIndex();
+            node.getShard(i).getLearner().addApplyListener((instance, value) -> onApplied(shardId, instance));
+        }
+    }
+
+    /**
+     * Admits a value for proposal, proposing it right away if a slot is free
+     * @param key The key used to pick the shard
+     * @param value The value to propose
+     * @return true if the value was admitted, false if the member is too busy
+     */
+    public synchronized boolean submit(String key, String value) {
+        int shardId = node.getRouter().shardFor(key);
+        if (inFlight[shardId] == null && inFlightCount < maxInFlight && pending.isEmpty()) {
+            start(new Pending(shardId, value));
+            return true;
+        }
+        if (pending.size() >= maxPending) {
+            System.out.println("[Member " + memberId + "] Busy, rejecting '" + value + "' (" + inFlightCount + " in flight, " + pending.size() + " pending)");
+            return false;
+        }
+        pending.add(new Pending(shardId, value));
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Proposes a membership change in every group once the group's in-flight value is
+     * decided. Changes are never rejected and go ahead of pending client values.
+     * @param change "add <id> <host:port>" or "remove <id>"
+     * @return The RECONFIG value proposed
+     * @throws IllegalArgumentException if the change is malformed
+     */
+    public synchronized String reconfigure(String change) {
+        String command = Membership.parse(change);
+        for (int shardId = node.getShardCount() - 1; shardId >= 0; shardId--) {
+            pending.addFirst(new Pending(shardId, command));
+        }
+        dispatch();
+        return command;
+    }
+
+    /**
+     * Estimates when a rejected client should try again: the time for one in-flight value
+     * to be decided at the recent commit latency
+     * @return The suggested delay in milliseconds
+     */
+    public synchronized long getRetryAfterMs() {
+        return Math.max(MIN_RETRY_AFTER_MS, (long) (avgCommitMs / maxInFlight));
+    }
+
+    public synchronized int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /*
+     * Marks a shard free once the instance its in-flight value was chosen in has been applied.
+     * Apply listeners run with the Learner's lock held, so the applied index is tracked here
+     * rather than read from the Learner while holding this monitor.
+     * @param shardId The shard whose learner applied a value
+     * @param instance The instance applied
+     */
+    private synchronized void onApplied(int shardId, long instance) {
+        appliedIndex[shardId] = instance;
+        if (inFlight[shardId] == null || chosenIn[shardId] != instance) return;
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inFlightSince[shardId]);
+        avgCommitMs += ALPHA * (elapsedMs - avgCommitMs);
+        release(shardId);
+    }
+
+    /*
+     * Takes the Proposer's outcome for an in-flight value: frees the shard if the value was
+     * given up or its instance is already applied, otherwise waits for that instance
+     * @param shardId The shard the value was proposed in
+     * @param token The submission the outcome belongs to
+     * @param instance The instance the value was chosen in, or -1 if the Proposer gave up
+     */
+    private synchronized void onSettled(int shardId, long token, long instance) {
+        if (inFlight[shardId] == null || inFlightToken[shardId] != token) return;
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inFlightSince[shardId]);
+        if (instance < 0) {
+            System.out.println("[Member " + memberId + "] FAILED '" + inFlight[shardId] + "', not chosen after " + elapsedMs + " ms, releasing its slot");
+            avgCommitMs += ALPHA * (elapsedMs - avgCommitMs);
+            release(shardId);
+        } else if (appliedIndex[shardId] >= instance) {
+            avgCommitMs += ALPHA * (elapsedMs - avgCommitMs);
+            release(shardId);
+        } else {
+            chosenIn[shardId] = instance;
+        }
+    }
+
+    /*
+     * Checks on a value still undecided after the timeout. A Proposer with phase timeouts
+     * settles it by itself, so it is left running; otherwise it might wait forever for a
+     * lost message, and it is cancelled, which settles it as given up.
+     * @param shardId The shard to check
+     * @param token The submission being timed out
+     */
+    private void onTimeout(int shardId, long token) {
+        CompletableFuture<Long> proposal;
+        synchronized (this) {
+            if (inFlight[shardId] == null || inFlightToken[shardId] != token || chosenIn[shardId] >= 0) return;
+            proposal = proposals.get(shardId);
+        }
+
+        Proposer proposer = node.getShard(shardId).getProposer();
+        if (proposer.retriesProposals()) {
+            System.out.println("[Member " + memberId + "] Value in shard " + shardId + " not decided within " + inFlightTimeoutMs + " ms, its Proposer is still retrying");
+        } else if (proposal != null) {
+            System.out.println("[Member " + memberId + "] Value in shard " + shardId + " not decided within " + inFlightTimeoutMs + " ms, cancelling it");
+            proposer.cancel(proposal);
+        }
+    }
+
+    /*
+     * Frees a shard's slot and starts the next values that can go
+     */
+    private void release(int shardId) {
+        inFlight[shardId] = null;
+        proposals.remove(shardId);
+        inFlightCount--;
+        dispatch();
+    }
+
+    /*
+     * Starts pending values, oldest first, on shards that are free while slots remain
+     */
+    private void dispatch() {
+        Iterator<Pending> it = pending.iterator();
+        while (it.hasNext() && inFlightCount < maxInFlight) {
+            Pending next = it.next();
+            if (inFlight[next.shardId] == null) {
+                it.remove();
+                start(next);
+            }
+        }
+    }
+
+    /*
+     * Hands a value to its shard's Proposer. The proposal runs on the timer thread because
+     * apply listeners are called with the Learner's lock held.
+     */
+    private void start(Pending entry) {
+        long token = ++lastToken;
+        inFlight[entry.shardId] = entry.value;
+        inFlightSince[entry.shardId] = System.nanoTime();
+        inFlightToken[entry.shardId] = token;
+        chosenIn[entry.shardId] = -1;
+        inFlightCount++;
+
+        Timers.shared().execute(() -> {
+            CompletableFuture<Long> outcome = node.getShard(entry.shardId).propose(entry.value);
+            synchronized (this) {
+                if (inFlightToken[entry.shardId] == token) proposals.put(entry.shardId, outcome);
+            }
+            outcome.thenAccept(instance -> onSettled(entry.shardId, token, instance));
+        });
+        Timers.shared().schedule(() -> onTimeout(entry.shardId, token), inFlightTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
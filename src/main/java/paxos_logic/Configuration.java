@@ -0,0 +1,40 @@
+package paxos_logic;
+
+import java.util.*;
+
+/**
+ * One council configuration: the voting members from a given instance onwards and
+ * the quorum system built over them
+ */
+public class Configuration {
+    public final long startInstance;
+    public final Map<String, String> members;
+    public final QuorumSystem quorumSystem;
+    // Bit positions of the members for quorum tracking
+    public final MemberIndex index;
+
+    /**
+     * @param startInstance The first instance decided under this configuration
+     * @param members Member IDs mapped to their "host:port" address, or null if unknown
+     * @param quorumSystem The quorum system over the members
+     */
+    public Configuration(long startInstance, Map<String, String> members, QuorumSystem quorumSystem) {
+        this.startInstance = startInstance;
+        this.members = Collections.unmodifiableMap(new LinkedHashMap<>(members));
+        this.quorumSystem = quorumSystem;
+        this.index = MemberIndex.of(members.keySet());
+    }
+
+    /**
+     * Gets the IDs of the members
+     * @return The member IDs
+     */
+    public Set<String> memberIds() {
+        return members.keySet();
+    }
+
+    @Override
+    public String toString() {
+        return memberIds() + " from instance " + startInstance + " with " + quorumSystem;
+    }
+}
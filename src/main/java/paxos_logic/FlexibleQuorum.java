@@ -0,0 +1,49 @@
+package paxos_logic;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Flexible Paxos quorums: any q1 Acceptors for Phase 1 and any q2 for Phase 2.
+ * Safe as long as q1 + q2 > n, so every Phase 1 quorum intersects every Phase 2 quorum.
+ */
+public class FlexibleQuorum implements QuorumSystem {
+    private final int phase1Size;
+    private final int phase2Size;
+
+    public FlexibleQuorum(int totalAcceptors, int phase1Size, int phase2Size) {
+        if (phase1Size < 1 || phase1Size > totalAcceptors || phase2Size < 1 || phase2Size > totalAcceptors) {
+            throw new IllegalArgumentException("Quorum sizes must be between 1 and " + totalAcceptors);
+        }
+        if (phase1Size + phase2Size <= totalAcceptors) {
+            throw new IllegalArgumentException("Unsafe quorums: phase1 + phase2 must exceed " + totalAcceptors);
+        }
+        this.phase1Size = phase1Size;
+        this.phase2Size = phase2Size;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(Collection<String> acceptorIds) {
+        return acceptorIds.size() >= phase1Size;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(Collection<String> acceptorIds) {
+        return acceptorIds.size() >= phase2Size;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(BitSet voters, MemberIndex index) {
+        return voters.cardinality() >= phase1Size;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(BitSet voters, MemberIndex index) {
+        return voters.cardinality() >= phase2Size;
+    }
+
+    @Override
+    public String toString() {
+        return "flexible(" + phase1Size + "," + phase2Size + ")";
+    }
+}
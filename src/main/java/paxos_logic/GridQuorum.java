@@ -0,0 +1,55 @@
+package paxos_logic;
+
+import java.util.*;
+
+/**
+ * Grid quorums: Acceptors are arranged in rows. A Phase 1 quorum is every member of
+ * some row; a Phase 2 quorum is at least one member from each row. Any full row meets
+ * any set that touches every row, so a 3x3 grid commits with 3 Acceptors.
+ */
+public class GridQuorum implements QuorumSystem {
+    private final List<Set<String>> rows = new ArrayList<>();
+
+    public GridQuorum(List<List<String>> rows) {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Grid needs at least one row");
+        }
+        Set<String> seen = new HashSet<>();
+        for (List<String> row : rows) {
+            if (row.isEmpty()) {
+                throw new IllegalArgumentException("Grid rows must not be empty");
+            }
+            for (String acceptorId : row) {
+                if (!seen.add(acceptorId)) {
+                    throw new IllegalArgumentException("Acceptor " + acceptorId + " appears twice in the grid");
+                }
+            }
+            this.rows.add(new HashSet<>(row));
+        }
+    }
+
+    @Override
+    public boolean isPhase1Quorum(Collection<String> acceptorIds) {
+        for (Set<String> row : rows) {
+            if (acceptorIds.containsAll(row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(Collection<String> acceptorIds) {
+        for (Set<String> row : rows) {
+            if (Collections.disjoint(row, acceptorIds)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "grid" + rows;
+    }
+}
@@ -0,0 +1,79 @@
+package paxos_logic;
+
+/**
+ * Leader Lease
+ *
+ * Tracks a time-bounded lease held by a Proposer. While the lease is valid no other
+ * Proposer can obtain promises from a majority, so the holder can serve reads locally.
+ * The lease is measured from the moment the request was sent (not when replies arrived)
+ * and shortened by the maximum expected clock drift between members.
+ */
+public class LeaderLease {
+    private final long leaseDurationNanos;
+    private final long maxClockDriftNanos;
+
+    private long pendingStartNanos = -1;
+    private long expiryNanos = -1;
+
+    public LeaderLease(long leaseDurationMs, long maxClockDriftMs) {
+        if (leaseDurationMs <= 0) {
+            throw new IllegalArgumentException("Lease duration must be positive");
+        }
+        if (maxClockDriftMs < 0 || maxClockDriftMs >= leaseDurationMs) {
+            throw new IllegalArgumentException("Clock drift must be in [0, leaseDuration)");
+        }
+        this.leaseDurationNanos = leaseDurationMs * 1_000_000L;
+        this.maxClockDriftNanos = maxClockDriftMs * 1_000_000L;
+    }
+
+    /**
+     * Marks the start of a new lease attempt, dropping any lease currently held
+     */
+    public synchronized void begin() {
+        pendingStartNanos = System.nanoTime();
+        expiryNanos = -1;
+    }
+
+    /**
+     * Grants the lease attempt started by the last call to begin()
+     */
+    public synchronized void grant() {
+        if (pendingStartNanos < 0) return;
+        extend(pendingStartNanos);
+    }
+
+    /**
+     * Extends the lease from a renewal request sent at the given time
+     * @param sentAtNanos System.nanoTime() at which the renewal was sent
+     */
+    public synchronized void extend(long sentAtNanos) {
+        long candidate = sentAtNanos + leaseDurationNanos - maxClockDriftNanos;
+        if (candidate > expiryNanos) {
+            expiryNanos = candidate;
+        }
+    }
+
+    /**
+     * Drops the lease
+     */
+    public synchronized void revoke() {
+        pendingStartNanos = -1;
+        expiryNanos = -1;
+    }
+
+    /**
+     * Checks whether the lease is currently held
+     * @return true if the lease has been granted and has not expired
+     */
+    public synchronized boolean isValid() {
+        return expiryNanos >= 0 && System.nanoTime() < expiryNanos;
+    }
+
+    /**
+     * Gets the lease duration acceptors should honour
+     * @return The lease duration in milliseconds
+     */
+    public long getLeaseDurationMs() {
+        return leaseDurationNanos / 1_000_000L;
+    }
+}
@@ -1,32 +1,137 @@
 package paxos_logic;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
 
 import paxos_util.Accepted;
+import paxos_util.Chosen;
 import paxos_util.ProposalNumber;
+import paxos_util.Tracer;
+import paxos_util.VersionedValue;
 
 import java.util.*;
 
 /**
  * Paxos Learner
  *
- * Listens for Accepted messages from Acceptors to determine when value is chosen
+ * Listens for Accepted messages from Acceptors to determine when value is chosen.
+ * Chosen values are applied in instance order; the applied index is the highest
+ * instance for which every earlier instance has also been chosen.
+ *
+ * Memory is bounded: votes are only tracked for instances within a window above the
+ * applied index, for the few highest ballots seen in each, and only the most recent
+ * applied values are retained.
  */
 public class Learner {
     private final String memberId;
-    private final Integer totalAcceptors;
+    private QuorumSystem quorumSystem;
+    private final int fastQuorumSize;
+
+    // Optional per-instance membership; when set it replaces the fixed quorum system
+    private Membership membership;
 
     private final ReentrantLock lock = new ReentrantLock();
 
-    private Map<ProposalNumber, String> learnedValues = new ConcurrentHashMap<>();
-    private ProposalNumber lastLearnedValue;
+    public static final int DEFAULT_RETENTION = 1024;
+    public static final int DEFAULT_VOTE_WINDOW = 1024;
+
+    // Distinct ballots tallied per undecided instance before the lowest one is dropped
+    static final int MAX_BALLOTS_PER_INSTANCE = 4;
+
+    private Map<Long, String> learnedValues = new ConcurrentHashMap<>();
+    private long appliedIndex = -1;
 
-    private final Map<String, Set<String>> acceptedValues = new ConcurrentHashMap<>();
+    // How many applied values to keep, and how far past the applied index votes are tracked
+    private int retention = DEFAULT_RETENTION;
+    private int voteWindow = DEFAULT_VOTE_WINDOW;
 
+    // Votes per undecided instance, as bits at the MemberIndex positions of the instance's
+    // configuration; without a membership, of the Acceptors given to the constructor
+    private final MemberIndex memberIndex;
+    private final Map<Long, InstanceVotes> votes = new HashMap<>();
+
+    /**
+     * Votes of one undecided instance. A quorum at a lower ballot still chooses its value
+     * after a higher ballot started, so tallies are kept per ballot, up to
+     * MAX_BALLOTS_PER_INSTANCE of the highest ones. A ballot that many newer ballots have
+     * superseded belongs to a proposer that gave up on it.
+     */
+    private static class InstanceVotes {
+        long firstVoteMicros;
+        final List<BallotVotes> tallies = new ArrayList<>(1);
+    }
+
+    /**
+     * The Acceptors that accepted one value at one ballot. Witnesses vote with the value's
+     * reference, so the tally holds the body once any full Acceptor reported it.
+     */
+    private static class BallotVotes {
+        final long ballot;
+        String value;
+        // Reference of the body, computed once a witness's vote is matched against it
+        String reference;
+        final BitSet voters = new BitSet();
+
+        BallotVotes(long ballot, String value) {
+            this.ballot = ballot;
+            this.value = value;
+        }
+
+        /*
+         * Checks whether a vote is for this tally's value, taking the body from the vote
+         * if the tally only had its reference
+         * @param other The value of the vote
+         * @return true if the vote is for the same value
+         */
+        boolean matches(String other) {
+            if (Objects.equals(value, other)) return true;
+            if (value == null || other == null || ValueStore.isReference(value) == ValueStore.isReference(other)) return false;
+            if (ValueStore.isReference(other)) {
+                if (reference == null) reference = ValueStore.compact(value);
+                return other.equals(reference);
+            }
+            if (!value.equals(ValueStore.compact(other))) return false;
+            reference = value;
+            value = other;
+            return true;
+        }
+    }
+
+    // Reads waiting for the applied index to reach the value
+    private final Map<CompletableFuture<VersionedValue>, Long> pendingReads = new HashMap<>();
+
+    // Called with each instance and value as it is applied, in instance order
+    private final List<BiConsumer<Long, String>> applyListeners = new ArrayList<>();
+    private final List<BiConsumer<Long, String>> learnListeners = new ArrayList<>();
+
+    // Turns a learned value into the value to apply, or null if it cannot be applied yet
+    private UnaryOperator<String> valueResolver;
+
+    /**
+     * Creates a Learner counting the votes of any Acceptor that reports one
+     * @param memberId The ID of this member
+     * @param totalAcceptors The number of Acceptors
+     */
     public Learner(String memberId, Integer totalAcceptors) {
         this.memberId = memberId;
-        this.totalAcceptors = totalAcceptors;
+        this.quorumSystem = new MajorityQuorum(totalAcceptors);
+        this.fastQuorumSize = MajorityQuorum.fastQuorumSize(totalAcceptors);
+        this.memberIndex = new MemberIndex();
+    }
+
+    /**
+     * Creates a Learner counting only the votes of the given Acceptors
+     * @param memberId The ID of this member
+     * @param acceptorIds The Acceptors
+     */
+    public Learner(String memberId, Set<String> acceptorIds) {
+        this.memberId = memberId;
+        this.quorumSystem = new MajorityQuorum(acceptorIds.size());
+        this.fastQuorumSize = MajorityQuorum.fastQuorumSize(acceptorIds.size());
+        this.memberIndex = MemberIndex.of(acceptorIds);
     }
 
     /**
@@ -38,30 +143,381 @@ public class Learner {
         lock.lock();
 
         try {
-            String key = accepted.proposalNum + ":" + accepted.proposalValue;
+            if (isLearned(accepted.instance)) return;
+            if (accepted.instance > appliedIndex + voteWindow) {
+                System.out.println("[Learner " + memberId + "] Dropped vote for instance " + accepted.instance + ", beyond " + voteWindow + " past applied index " + appliedIndex);
+                return;
+            }
 
-            acceptedValues.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(accepted.fromMemberId);
+            QuorumSystem instanceQuorum = quorumSystem;
+            int instanceFastQuorum = fastQuorumSize;
+            MemberIndex instanceIndex = memberIndex;
+            if (membership != null) {
+                Configuration config = membership.configFor(accepted.instance);
+                instanceQuorum = config.quorumSystem;
+                instanceFastQuorum = MajorityQuorum.fastQuorumSize(config.members.size());
+                instanceIndex = config.index;
+            }
+            int voter = instanceIndex.indexOf(accepted.fromMemberId);
+            if (voter < 0) return;
 
-            Integer count = acceptedValues.get(key).size();
+            BallotVotes tally = tallyFor(accepted.instance, accepted.proposalNum.pack(), accepted.proposalValue);
+            if (tally == null) return;
+            tally.voters.set(voter);
 
-            if (count >= computeMajority()) {
-                System.out.println("Learner " + memberId + " has learned the value: " + accepted.proposalValue + " for proposal number: " + accepted.proposalNum);
-                System.out.flush();
-                learnedValues.put(accepted.proposalNum, accepted.proposalValue);
-                lastLearnedValue = accepted.proposalNum;
-                acceptedValues.remove(key);
+            // Values accepted in a Fast Paxos "any" round need a fast quorum
+            boolean chosen = accepted.fast
+                ? tally.voters.cardinality() >= instanceFastQuorum
+                : instanceQuorum.isPhase2Quorum(tally.voters, instanceIndex);
+            if (chosen) {
+                long firstVoteMicros = accepted.traceId != null ? votes.get(accepted.instance).firstVoteMicros : 0;
+                learn(accepted.instance, accepted.proposalNum, tally.value);
+                Tracer.span(accepted.traceId, "learn", firstVoteMicros, "instance " + accepted.instance + ", votes from " + instanceIndex.idsOf(tally.voters));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Finds the votes for a value at a ballot in an instance, starting a new tally if needed.
+     * Only a fast round has several values at one ballot, so a list is searched. Beyond
+     * MAX_BALLOTS_PER_INSTANCE ballots the lowest ballot's tallies are dropped.
+     * @param instance The Paxos instance
+     * @param ballot The packed proposal number
+     * @param value The accepted value
+     * @return The tally for the ballot and value, or null if the ballot is below every one kept
+     */
+    private BallotVotes tallyFor(long instance, long ballot, String value) {
+        InstanceVotes instanceVotes = votes.computeIfAbsent(instance, i -> {
+            InstanceVotes created = new InstanceVotes();
+            created.firstVoteMicros = Tracer.isEnabled() ? Tracer.nowMicros() : 0;
+            return created;
+        });
+
+        List<BallotVotes> tallies = instanceVotes.tallies;
+        Set<Long> ballots = new HashSet<>();
+        long lowest = Long.MAX_VALUE;
+        for (BallotVotes tally : tallies) {
+            if (tally.ballot == ballot && tally.matches(value)) {
+                return tally;
+            }
+            ballots.add(tally.ballot);
+            lowest = Math.min(lowest, tally.ballot);
+        }
+
+        if (!ballots.contains(ballot) && ballots.size() >= MAX_BALLOTS_PER_INSTANCE) {
+            if (ballot < lowest) return null;
+            long dropped = lowest;
+            tallies.removeIf(tally -> tally.ballot == dropped);
+        }
+        BallotVotes tally = new BallotVotes(ballot, value);
+        tallies.add(tally);
+        return tally;
+    }
+
+    /**
+     * Handles a Chosen announcement from the distinguished learner
+     * @param chosen The Chosen message received
+     */
+    public void handleChosen(Chosen chosen) {
+        lock.lock();
+
+        try {
+            if (isLearned(chosen.instance)) return;
+            if (chosen.instance > appliedIndex + voteWindow) {
+                System.out.println("[Learner " + memberId + "] Dropped announcement for instance " + chosen.instance + ", beyond " + voteWindow + " past applied index " + appliedIndex);
+                return;
             }
+            learn(chosen.instance, chosen.proposalNum, chosen.proposalValue);
+            Tracer.span(chosen.traceId, "learn", Tracer.nowMicros(), "instance " + chosen.instance + ", announced by " + chosen.fromMemberId);
         } finally {
             lock.unlock();
         }
     }
 
     /*
-     * Computes the majority count based on total acceptors
-     * @return The majority count
+     * Records a chosen value and applies it if it extends the applied log
+     * @param instance The instance the value was chosen in
+     * @param proposalNum The proposal number that got the value chosen
+     * @param value The chosen value
+     */
+    private void learn(long instance, ProposalNumber proposalNum, String value) {
+        System.out.println("Learner " + memberId + " has learned the value: " + value + " for proposal number: " + proposalNum + " in instance " + instance);
+        System.out.flush();
+        learnedValues.put(instance, value);
+        votes.remove(instance);
+        for (BiConsumer<Long, String> listener : learnListeners) {
+            listener.accept(instance, value);
+        }
+        applyLearned();
+    }
+
+    /*
+     * Checks whether an instance was learned, including applied values no longer retained
+     */
+    private boolean isLearned(long instance) {
+        return instance <= appliedIndex || learnedValues.containsKey(instance);
+    }
+
+    /*
+     * Advances the applied index over every contiguous learned instance. An instance whose
+     * value the resolver cannot provide yet stops it until resumeApply() is called.
+     */
+    private void applyLearned() {
+        long before = appliedIndex;
+        while (learnedValues.containsKey(appliedIndex + 1)) {
+            if (valueResolver != null) {
+                String learned = learnedValues.get(appliedIndex + 1);
+                String resolved = valueResolver.apply(learned);
+                if (resolved == null) break;
+                if (!resolved.equals(learned)) {
+                    learnedValues.put(appliedIndex + 1, resolved);
+                }
+            }
+            appliedIndex++;
+            for (BiConsumer<Long, String> listener : applyListeners) {
+                listener.accept(appliedIndex, learnedValues.get(appliedIndex));
+            }
+            learnedValues.remove(appliedIndex - retention);
+        }
+        if (appliedIndex != before) {
+            completePendingReads();
+        }
+    }
+
+    /**
+     * Sets how learned values are turned into applied values, for example replacing a digest
+     * with the value body it stands for
+     * @param valueResolver Returns the value to apply, or null if it is not available yet
+     */
+    public void setValueResolver(UnaryOperator<String> valueResolver) {
+        lock.lock();
+        try {
+            this.valueResolver = valueResolver;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Continues applying learned values after the resolver held them back
+     */
+    public void resumeApply() {
+        lock.lock();
+        try {
+            applyLearned();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the quorum system deciding when enough Acceptors have accepted a value
+     * @param quorumSystem The quorum system to use
+     */
+    public void setQuorumSystem(QuorumSystem quorumSystem) {
+        this.quorumSystem = quorumSystem;
+    }
+
+    /**
+     * Bounds the memory of the learner
+     * @param retention How many of the latest applied values to keep, at least 1
+     * @param voteWindow How many instances past the applied index to track votes for, at least 1
+     */
+    public void setLimits(int retention, int voteWindow) {
+        if (retention < 1 || voteWindow < 1) {
+            throw new IllegalArgumentException("Retention and vote window must be positive");
+        }
+        lock.lock();
+        try {
+            this.retention = retention;
+            this.voteWindow = voteWindow;
+            learnedValues.keySet().removeIf(instance -> instance <= appliedIndex - retention);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets how many of the latest applied values are kept
+     * @return The retention
      */
-    private Integer computeMajority() {
-        return (int) ((Math.floor(totalAcceptors / 2) + 1));
+    public int getRetention() {
+        return retention;
+    }
+
+    /**
+     * Gets the number of undecided instances votes are tracked for
+     * @return The number of instances
+     */
+    public int getVotingInstanceCount() {
+        lock.lock();
+        try {
+            return votes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of learned values held, applied or not
+     * @return The number of values
+     */
+    public int getRetainedValueCount() {
+        return learnedValues.size();
+    }
+
+    /**
+     * Uses a per-instance membership to decide which Acceptors count and what forms a quorum
+     * @param membership The membership to consult
+     */
+    public void setMembership(Membership membership) {
+        this.membership = membership;
+    }
+
+    /**
+     * Registers a listener called with every value as it is applied, in instance order
+     * @param listener Called with the instance and the value
+     */
+    public void addApplyListener(BiConsumer<Long, String> listener) {
+        lock.lock();
+        try {
+            applyListeners.add(listener);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a listener called with every value as it is learned, before it is applied
+     * @param listener Called with the instance and the learned value
+     */
+    public void addLearnListener(BiConsumer<Long, String> listener) {
+        lock.lock();
+        try {
+            learnListeners.add(listener);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters a listener added with addApplyListener
+     * @param listener The listener to remove
+     */
+    public void removeApplyListener(BiConsumer<Long, String> listener) {
+        lock.lock();
+        try {
+            applyListeners.remove(listener);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the latest applied value without any coordination
+     * @return The latest applied value with its log index; index -1 if nothing is applied yet
+     */
+    public VersionedValue readLocal() {
+        lock.lock();
+        try {
+            return currentVersion();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a future completed once the applied index reaches at least the given index
+     * @param minIndex The lowest log index the read must observe
+     * @return Future completed with the latest applied value and its log index
+     */
+    public CompletableFuture<VersionedValue> whenApplied(long minIndex) {
+        lock.lock();
+        try {
+            CompletableFuture<VersionedValue> future = new CompletableFuture<>();
+            if (appliedIndex >= minIndex) {
+                future.complete(currentVersion());
+            } else {
+                pendingReads.put(future, minIndex);
+                future.whenComplete((v, e) -> {
+                    lock.lock();
+                    try {
+                        pendingReads.remove(future);
+                    } finally {
+                        lock.unlock();
+                    }
+                });
+            }
+            return future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Completes every pending read whose index has now been applied
+     */
+    private void completePendingReads() {
+        VersionedValue current = currentVersion();
+        List<CompletableFuture<VersionedValue>> ready = new ArrayList<>();
+        for (Map.Entry<CompletableFuture<VersionedValue>, Long> entry : pendingReads.entrySet()) {
+            if (appliedIndex >= entry.getValue()) {
+                ready.add(entry.getKey());
+            }
+        }
+        for (CompletableFuture<VersionedValue> future : ready) {
+            pendingReads.remove(future);
+            future.complete(current);
+        }
+    }
+
+    /*
+     * Builds the versioned view of the latest applied value
+     * @return The latest applied value and its index
+     */
+    private VersionedValue currentVersion() {
+        return new VersionedValue(appliedIndex >= 0 ? learnedValues.get(appliedIndex) : null, appliedIndex);
+    }
+
+    /**
+     * Gets the next instance that has not been learned yet
+     * @return The lowest instance above every learned instance
+     */
+    public long getNextInstance() {
+        lock.lock();
+        try {
+            long next = appliedIndex + 1;
+            while (learnedValues.containsKey(next)) {
+                next++;
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the value learned in an instance
+     * @param instance The Paxos instance
+     * @return The learned value, or null if it is not learned or no longer retained
+     */
+    public String getLearnedValue(long instance) {
+        return learnedValues.get(instance);
+    }
+
+    /**
+     * Gets the applied index
+     * @return The highest contiguously applied instance, or -1 if none
+     */
+    public long getAppliedIndex() {
+        lock.lock();
+        try {
+            return appliedIndex;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /*
@@ -71,8 +527,8 @@ public class Learner {
     public String getLastLearnedValue() {
         lock.lock();
         try {
-            if (lastLearnedValue != null) {
-                return learnedValues.get(lastLearnedValue);
+            if (appliedIndex >= 0) {
+                return learnedValues.get(appliedIndex);
             } else {
                 return null;
             }
@@ -0,0 +1,51 @@
+package paxos_logic;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Classic majority quorums: any floor(n/2)+1 Acceptors, for both phases
+ */
+public class MajorityQuorum implements QuorumSystem {
+    private final int majority;
+
+    public MajorityQuorum(int totalAcceptors) {
+        this.majority = (totalAcceptors / 2) + 1;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(Collection<String> acceptorIds) {
+        return acceptorIds.size() >= majority;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(Collection<String> acceptorIds) {
+        return acceptorIds.size() >= majority;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(BitSet voters, MemberIndex index) {
+        return voters.cardinality() >= majority;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(BitSet voters, MemberIndex index) {
+        return voters.cardinality() >= majority;
+    }
+
+    /**
+     * Computes the Fast Paxos quorum size for majority classic quorums: the smallest size
+     * such that any two fast quorums and any classic quorum share an Acceptor
+     * @param totalAcceptors The number of Acceptors
+     * @return The number of Acceptors that must accept a value in a fast round
+     */
+    public static int fastQuorumSize(int totalAcceptors) {
+        int classic = (totalAcceptors / 2) + 1;
+        return (2 * totalAcceptors - classic) / 2 + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "majority(" + majority + ")";
+    }
+}
@@ -0,0 +1,96 @@
+package paxos_logic;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps member IDs to dense small integers.
+ *
+ * Quorum tracking keeps the members that replied as bits at these positions, so counting a
+ * vote is a bit set and a quorum check needs no collection of strings. Each configuration
+ * has a fixed index over its own members, built with of(), so a set bit always stands for a
+ * member of that configuration and counting bits counts members. A growable index assigns
+ * the next free index to every new ID instead. Indices never change once assigned.
+ */
+public class MemberIndex {
+    private final Map<String, Integer> indices = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[0];
+    private boolean fixed = false;
+
+    /**
+     * Builds a fixed index over the members of one configuration, in sorted order
+     * @param memberIds The member IDs
+     * @return An index that knows no other IDs
+     */
+    public static MemberIndex of(Collection<String> memberIds) {
+        MemberIndex index = new MemberIndex();
+        index.internAll(memberIds);
+        index.fixed = true;
+        return index;
+    }
+
+    /**
+     * Gets the index of a member, assigning the next free one to a new member unless the
+     * index is fixed
+     * @param memberId The member ID
+     * @return The member's index, or -1 if a fixed index does not know the member
+     */
+    public int indexOf(String memberId) {
+        Integer index = indices.get(memberId);
+        if (index != null) return index;
+        return fixed ? -1 : intern(memberId);
+    }
+
+    /**
+     * Interns several members in sorted order, so every member gets the same indices for the
+     * same configuration
+     * @param memberIds The member IDs
+     */
+    public void internAll(Collection<String> memberIds) {
+        for (String memberId : new TreeSet<>(memberIds)) {
+            indexOf(memberId);
+        }
+    }
+
+    /*
+     * Assigns the next index to a member unless another thread already did
+     */
+    private synchronized int intern(String memberId) {
+        Integer existing = indices.get(memberId);
+        if (existing != null) return existing;
+
+        int index = ids.length;
+        String[] grown = Arrays.copyOf(ids, index + 1);
+        grown[index] = memberId;
+        ids = grown;
+        indices.put(memberId, index);
+        return index;
+    }
+
+    /**
+     * Gets the member at an index
+     * @param index The index
+     * @return The member ID
+     */
+    public String idOf(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Lists the members whose bits are set
+     * @param members Bits at member indices
+     * @return The member IDs, in index order
+     */
+    public List<String> idsOf(BitSet members) {
+        String[] snapshot = ids;
+        List<String> result = new ArrayList<>(members.cardinality());
+        for (int i = members.nextSetBit(0); i >= 0; i = members.nextSetBit(i + 1)) {
+            result.add(snapshot[i]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,168 @@
+package paxos_logic;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Consensus-driven council membership with an alpha window.
+ *
+ * A value "RECONFIG add <id> <host:port>" or "RECONFIG remove <id>" chosen in instance i
+ * changes the members, and the quorum system over them, for every instance from i + alpha.
+ * Instances up to i + alpha - 1 keep the old configuration, so a Proposer never needs a
+ * configuration that has not been applied yet as long as it proposes at most alpha
+ * instances past the applied index; isSettled() tells it when it may.
+ */
+public class Membership {
+    public static final String RECONFIG_PREFIX = "RECONFIG ";
+
+    private final String memberId;
+    private final int alpha;
+    private final Function<Set<String>, QuorumSystem> quorumFactory;
+
+    private final List<Configuration> history = new ArrayList<>();
+    // Highest instance applied, so later changes can only affect instances past it plus alpha
+    private long appliedIndex = -1;
+    private final List<Consumer<Configuration>> listeners = new ArrayList<>();
+
+    /**
+     * @param memberId The ID of this member, for logging
+     * @param initialMembers The members at instance 0, mapped to their addresses
+     * @param alpha How many instances after its own a change takes effect, at least 1
+     * @param quorumFactory Builds the quorum system of each configuration from its member IDs
+     */
+    public Membership(String memberId, Map<String, String> initialMembers, int alpha, Function<Set<String>, QuorumSystem> quorumFactory) {
+        if (alpha < 1) {
+            throw new IllegalArgumentException("alpha must be at least 1");
+        }
+        this.memberId = memberId;
+        this.alpha = alpha;
+        this.quorumFactory = quorumFactory;
+        history.add(new Configuration(0, initialMembers, quorumFactory.apply(initialMembers.keySet())));
+    }
+
+    /**
+     * Gets the configuration deciding an instance
+     * @param instance The Paxos instance
+     * @return The latest configuration starting at or before the instance
+     */
+    public synchronized Configuration configFor(long instance) {
+        for (int i = history.size() - 1; i > 0; i--) {
+            if (history.get(i).startInstance <= instance) {
+                return history.get(i);
+            }
+        }
+        return history.get(0);
+    }
+
+    /**
+     * Checks whether the configuration of an instance is final, because every instance that
+     * could still change it has been applied
+     * @param instance The Paxos instance
+     * @return true if the instance is at most alpha past the highest applied instance
+     */
+    public synchronized boolean isSettled(long instance) {
+        return instance <= appliedIndex + alpha;
+    }
+
+    /**
+     * Gets the newest known configuration, which may not be in effect yet
+     * @return The latest configuration
+     */
+    public synchronized Configuration latest() {
+        return history.get(history.size() - 1);
+    }
+
+    /**
+     * Applies a chosen value; reconfiguration values create a new configuration
+     * @param instance The instance the value was chosen in
+     * @param value The chosen value
+     */
+    public void apply(long instance, String value) {
+        synchronized (this) {
+            appliedIndex = Math.max(appliedIndex, instance);
+        }
+        if (value == null || !value.startsWith(RECONFIG_PREFIX)) return;
+
+        Configuration next;
+        synchronized (this) {
+            Map<String, String> members = new LinkedHashMap<>(latest().members);
+            try {
+                applyChange(members, value);
+            } catch (IllegalArgumentException e) {
+                System.out.println("[Membership " + memberId + "] Ignored '" + value + "' in instance " + instance + ": " + e.getMessage());
+                return;
+            }
+
+            QuorumSystem quorumSystem;
+            try {
+                quorumSystem = quorumFactory.apply(members.keySet());
+            } catch (IllegalArgumentException e) {
+                quorumSystem = new MajorityQuorum(members.size());
+                System.out.println("[Membership " + memberId + "] Quorum settings do not fit " + members.keySet() + " (" + e.getMessage() + "), using " + quorumSystem);
+            }
+
+            next = new Configuration(instance + alpha, members, quorumSystem);
+            history.add(next);
+            System.out.println("[Membership " + memberId + "] '" + value + "' chosen in instance " + instance + ", new configuration " + next);
+        }
+
+        for (Consumer<Configuration> listener : listeners) {
+            listener.accept(next);
+        }
+    }
+
+    /**
+     * Validates a reconfiguration command
+     * @param value The command, with or without the RECONFIG prefix
+     * @return The command with the RECONFIG prefix
+     * @throws IllegalArgumentException if the command is malformed
+     */
+    public static String parse(String value) {
+        String command = value.startsWith(RECONFIG_PREFIX) ? value : RECONFIG_PREFIX + value.trim();
+        applyChange(new HashMap<>(), command);
+        return command;
+    }
+
+    /*
+     * Applies one add/remove command to a member map
+     * @param members The members to change
+     * @param value The RECONFIG command
+     * @throws IllegalArgumentException if the command is malformed or would empty the council
+     */
+    private static void applyChange(Map<String, String> members, String value) {
+        String[] parts = value.substring(RECONFIG_PREFIX.length()).trim().split("\\s+");
+        switch (parts[0].toLowerCase()) {
+            case "add":
+                if (parts.length != 3 || !parts[2].contains(":")) {
+                    throw new IllegalArgumentException("expected: add <id> <host:port>");
+                }
+                Integer.parseInt(parts[2].substring(parts[2].lastIndexOf(':') + 1));
+                members.put(parts[1], parts[2]);
+                break;
+            case "remove":
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("expected: remove <id>");
+                }
+                if (members.containsKey(parts[1]) && members.size() == 1) {
+                    throw new IllegalArgumentException("cannot remove the last member");
+                }
+                members.remove(parts[1]);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown change " + parts[0]);
+        }
+    }
+
+    /**
+     * Registers a listener called with every new configuration as soon as it is chosen
+     * @param listener The listener to call
+     */
+    public void addListener(Consumer<Configuration> listener) {
+        listeners.add(listener);
+    }
+
+    public int getAlpha() {
+        return alpha;
+    }
+}
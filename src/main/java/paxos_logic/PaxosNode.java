@@ -3,29 +3,72 @@ package paxos_logic;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import network.MemberTransport;
+import network.MessageHandler;
 import paxos_util.*;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
-public class PaxosNode {
+public class PaxosNode implements MessageHandler {
+    private static final long FETCH_RETRY_MS = 1000;
+    // How often a learner-only member checks that its applied index advances, and how many
+    // retained values one catch-up request is answered with at most
+    private static final long CATCH_UP_INTERVAL_MS = 1000;
+    private static final int CATCH_UP_BATCH = 64;
+
     private final String memberId;
     private final Proposer proposer;
     private final Acceptor acceptor;
     private final Learner learner;
-    private final MemberTransport memberTransport;
+    private final ReadCoordinator readCoordinator;
+    private MemberTransport memberTransport;
+    private MemberTransport baseTransport;
+
+    // Acceptors that keep references instead of value bodies; empty without witnesses
+    private Set<String> witnessIds = Set.of();
 
     private final Gson gson = new Gson();
 
+    // Values longer than this many characters are sent once as chunks and ordered by digest; -1 disables it
+    private int digestAbove = -1;
+    private final ValueStore valueStore = new ValueStore(ValueStore.DEFAULT_CAPACITY);
+    private final Map<String, Long> lastFetchNanos = new ConcurrentHashMap<>();
+
+    // Relay tree: learners that asked this member to relay to them in place of their parent,
+    // and for a learner-only member, the voter relaying to it while its parent is suspected
+    private final Set<String> adoptedChildren = ConcurrentHashMap.newKeySet();
+    private String stepParent;
+    private long lastCheckedIndex = -1;
+    private ScheduledFuture<?> catchUpTask;
+
     public PaxosNode(String memberId, Set<String> acceptorIds, Set<String> learnerIds, MemberTransport memberTransport) {
         this.memberId = memberId;
         this.memberTransport = memberTransport;
+        this.baseTransport = memberTransport;
 
         this.proposer = new Proposer(memberId, acceptorIds, memberTransport);
         this.acceptor = new Acceptor(memberId, memberTransport, learnerIds);
-        this.learner = new Learner(memberId, acceptorIds.size());
+        this.learner = new Learner(memberId, acceptorIds);
+        this.proposer.setInstanceSource(learner::getNextInstance);
+        this.proposer.setDecisionSource(learner::getLearnedValue);
+        // Digests of disseminated values are applied as their bodies, whatever this member's own threshold
+        this.learner.setValueResolver(this::resolveValue);
+        // Bodies of chosen digests are kept until the instance is applied and out of the retention
+        this.learner.addLearnListener((instance, value) -> {
+            if (ValueStore.isReference(value)) valueStore.pin(ValueStore.digestOf(value), instance);
+        });
+        // Acceptor state outlives applied values by the Learner's retention, then is dropped
+        this.learner.addApplyListener((instance, value) -> {
+            long retained = instance - learner.getRetention() + 1;
+            acceptor.forgetBelow(retained);
+            valueStore.releaseBelow(retained);
+        });
+        this.readCoordinator = new ReadCoordinator(memberId, proposer, learner, memberTransport);
 
         if (memberTransport != null) {
             memberTransport.startListening();
@@ -37,6 +80,7 @@ public class PaxosNode {
      * @param senderId The ID of the sender
      * @param message The JSON message received
      */
+    @Override
     public void handleMessage(String senderId, String message) {
         try {
             // Detect message type by reading "type" field
@@ -58,14 +102,58 @@ public class PaxosNode {
                     proposer.handlePromise(promise);
                     break;
 
+                case "NACK":
+                    Nack nack = gson.fromJson(message, Nack.class);
+                    proposer.handleNack(nack);
+                    break;
+
                 case "ACCEPT_REQUEST":
                     AcceptRequest acceptRequest = gson.fromJson(message, AcceptRequest.class);
+                    keepBody(acceptRequest.proposalValue);
                     acceptor.handleAcceptRequest(acceptRequest, senderId);
                     break;
 
                 case "ACCEPTED":
                     Accepted accepted = gson.fromJson(message, Accepted.class);
                     learner.handleAccepted(accepted);
+                    if (proposer.tracksAccepted()) {
+                        proposer.handleAccepted(accepted);
+                    }
+                    break;
+
+                case "FAST_PROPOSE":
+                    FastPropose fastPropose = gson.fromJson(message, FastPropose.class);
+                    acceptor.handleFastPropose(fastPropose, senderId);
+                    break;
+
+                case "CHOSEN":
+                    Chosen chosen = gson.fromJson(message, Chosen.class);
+                    learner.handleChosen(chosen);
+                    break;
+
+                case "READ_INDEX":
+                    ReadIndex readIndex = gson.fromJson(message, ReadIndex.class);
+                    acceptor.handleReadIndex(readIndex, senderId);
+                    break;
+
+                case "READ_INDEX_ACK":
+                    ReadIndexAck readIndexAck = gson.fromJson(message, ReadIndexAck.class);
+                    readCoordinator.handleReadIndexAck(readIndexAck);
+                    break;
+
+                case "VALUE_CHUNK":
+                    ValueChunk chunk = gson.fromJson(message, ValueChunk.class);
+                    handleValueChunk(chunk);
+                    break;
+
+                case "FETCH_VALUE":
+                    FetchValue fetchValue = gson.fromJson(message, FetchValue.class);
+                    handleFetchValue(fetchValue, senderId);
+                    break;
+
+                case "CATCH_UP":
+                    CatchUp catchUp = gson.fromJson(message, CatchUp.class);
+                    handleCatchUp(catchUp, senderId);
                     break;
 
                 default:
@@ -77,47 +165,362 @@ public class PaxosNode {
     }
 
     /**
-     * Starts automatic retrying of proposals with exponential backoff
+     * Proposes a value in the next undecided instance. With value digests enabled, a large
+     * value's body is sent to every member first and only its digest is proposed.
+     * @param value The value to propose
+     * @return Future completed with the instance the value was chosen in, or with -1 once the
+     *         Proposer stopped trying to get it chosen
+     */
+    public CompletableFuture<Long> propose(String value) {
+        return proposer.propose(disseminate(value));
+    }
+
+    /**
+     * Sends the bodies of values longer than a threshold once to every member, chunked, and
+     * orders only their digests. Learners apply a digest once they hold its body, fetching it
+     * from the other members if it did not arrive. Only the proposing member's setting matters.
+     * @param thresholdChars Values longer than this many characters are sent by digest
+     */
+    public void enableValueDigests(int thresholdChars) {
+        if (thresholdChars < 0) {
+            throw new IllegalArgumentException("Digest threshold must not be negative: " + thresholdChars);
+        }
+        this.digestAbove = thresholdChars;
+    }
+
+    /*
+     * Stores and sends out the body of a large value
+     * @param value The value to propose
+     * @return The value to order: its reference if it was disseminated, otherwise the value itself
+     */
+    private String disseminate(String value) {
+        if (digestAbove < 0 || value == null || value.length() <= digestAbove) return value;
+
+        String digest = valueStore.put(value);
+        List<String> chunks = ValueStore.chunks(value);
+        for (String peerId : proposer.getAcceptorIds()) {
+            if (!peerId.equals(memberId) && !witnessIds.contains(peerId)) {
+                sendChunks(peerId, digest, chunks);
+            }
+        }
+        System.out.println("[PaxosNode " + memberId + "] Sent value body " + digest + " (" + value.length() + " chars, " + chunks.size() + " chunks), proposing its digest");
+        return ValueStore.reference(digest);
+    }
+
+    private void sendChunks(String peerId, String digest, List<String> chunks) {
+        for (int i = 0; i < chunks.size(); i++) {
+            memberTransport.sendMessage(peerId, new ValueChunk(memberId, digest, i, chunks.size(), chunks.get(i)));
+        }
+    }
+
+    /*
+     * Resolves a learned value for the Learner. A reference whose body is missing is fetched
+     * from the other members, at most once per FETCH_RETRY_MS, and the Learner is asked to try
+     * again after that in case the fetch was lost. A witness applies references as they are.
+     * @param value The learned value
+     * @return The value to apply, or null if its body has not arrived yet
+     */
+    private String resolveValue(String value) {
+        if (!ValueStore.isReference(value) || isWitness()) return value;
+
+        String digest = ValueStore.digestOf(value);
+        String body = valueStore.get(digest);
+        if (body != null) {
+            lastFetchNanos.remove(digest);
+            return body;
+        }
+
+        long now = System.nanoTime();
+        Long last = lastFetchNanos.get(digest);
+        if (last == null || now - last >= TimeUnit.MILLISECONDS.toNanos(FETCH_RETRY_MS)) {
+            lastFetchNanos.put(digest, now);
+            System.out.println("[PaxosNode " + memberId + "] Missing value body " + digest + ", fetching it");
+            for (String peerId : proposer.getAcceptorIds()) {
+                if (!peerId.equals(memberId) && !witnessIds.contains(peerId)) {
+                    memberTransport.sendMessage(peerId, new FetchValue(memberId, digest));
+                }
+            }
+            Timers.shared().schedule(learner::resumeApply, FETCH_RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    /*
+     * Keeps the body of a large value a full Acceptor is asked to accept. If the value is only
+     * accepted in full here and by witnesses, a later round may be forced to choose the
+     * witnesses' reference, and learners then fetch the body from the full Acceptors.
+     */
+    private void keepBody(String value) {
+        if (witnessIds.isEmpty() || isWitness() || value == null) return;
+        if (!ValueStore.isReference(value) && value.length() > ValueStore.REFERENCE_LENGTH) {
+            valueStore.put(value);
+        }
+    }
+
+    /*
+     * Stores a received chunk and lets the Learner apply the value once its body is complete
+     */
+    private void handleValueChunk(ValueChunk chunk) {
+        if (valueStore.addChunk(chunk.digest, chunk.index, chunk.count, chunk.data) != null) {
+            learner.resumeApply();
+        }
+    }
+
+    /*
+     * Sends a value body to a member that is missing it, if this member holds it
+     */
+    private void handleFetchValue(FetchValue fetchValue, String senderId) {
+        String body = valueStore.get(fetchValue.digest);
+        if (body != null) {
+            sendChunks(senderId, fetchValue.digest, ValueStore.chunks(body));
+        }
+    }
+
+    /**
+     * Declares the witness Acceptors. Messages to them carry the references of large values
+     * instead of the values, they get no value bodies, and if this member is one of them its
+     * Acceptor keeps only references. Every quorum must include a full Acceptor.
+     * @param witnessIds The IDs of the witnesses
+     */
+    public void setWitnesses(Set<String> witnessIds) {
+        this.witnessIds = Set.copyOf(witnessIds);
+        acceptor.setWitness(isWitness());
+        setTransport(baseTransport);
+    }
+
+    /**
+     * Checks whether this member is a witness
+     * @return true if this member keeps only the references of large values
+     */
+    public boolean isWitness() {
+        return witnessIds.contains(memberId);
+    }
+
+    /**
+     * Proposes a value after a delay unless a value was learned in the meantime. The proposal
+     * is retried whenever a phase times out, with timeouts and backoff derived from the
+     * measured round-trip times of the Acceptors.
      * @param value The value to propose
-     * @param initialDelaySeconds Initial delay before first retry in seconds
+     * @param initialDelaySeconds Delay before the first attempt in seconds
      * @param maxRetries Maximum number of retries
      */
     public void startAutoRetryProposal(String value, int initialDelaySeconds, int maxRetries) {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-
-        Runnable retryTask = new Runnable() {
-            int attempt = 0;
-            int delay = initialDelaySeconds;
-
-            @Override
-            public void run() {
-                // Check if a value has already been learned
-                String learnedValue = learner.getLastLearnedValue();
-                if (learnedValue == null) {
-                    System.out.println("[PaxosNode " + memberId + "] No value learned yet; retrying proposal attempt " + (attempt + 1));
-                    try {
-                        proposer.propose(value);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+        Timers.shared().schedule(() -> {
+            String learnedValue = learner.getLastLearnedValue();
+            if (learnedValue != null) {
+                System.out.println("[PaxosNode " + memberId + "] Value already learned: " + learnedValue + ". Not proposing.");
+                return;
+            }
+            System.out.println("[PaxosNode " + memberId + "] No value learned yet; proposing with up to " + maxRetries + " retries");
+            try {
+                proposer.proposeWithRetries(disseminate(value), maxRetries);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, initialDelaySeconds, TimeUnit.SECONDS);
+    }
 
-                    // Exponential backoff for next retry
-                    attempt++;
-                    if (attempt < maxRetries) {
-                        delay = Math.min(delay * 2, 16);
-                        scheduler.schedule(this, delay, TimeUnit.SECONDS);
-                    } else {
-                        System.out.println("[PaxosNode " + memberId + "] Max retry attempts reached. Stopping auto-retry.");
-                        scheduler.shutdown();
+    /**
+     * Retries every proposal of this group when a phase times out
+     * @param maxRetries How many times to retry a proposal before giving up
+     */
+    public void enablePhaseTimeouts(int maxRetries) {
+        proposer.enablePhaseTimeouts(maxRetries);
+    }
+
+    /**
+     * Enables leader leases so the lease holder can serve reads locally
+     * @param leaseDurationMs How long a lease lasts after a successful Prepare phase
+     * @param maxClockDriftMs Maximum expected clock drift between members
+     */
+    public void enableLeases(long leaseDurationMs, long maxClockDriftMs) {
+        proposer.setLease(new LeaderLease(leaseDurationMs, maxClockDriftMs));
+        acceptor.setLeaseDuration(leaseDurationMs);
+    }
+
+    /**
+     * Sets the quorum system used by the Proposer and Learner
+     * @param quorumSystem The quorum system to use
+     */
+    public void setQuorumSystem(QuorumSystem quorumSystem) {
+        proposer.setQuorumSystem(quorumSystem);
+        learner.setQuorumSystem(quorumSystem);
+    }
+
+    /**
+     * Enables consensus-driven reconfiguration: chosen RECONFIG values change the
+     * Acceptors, learners and quorum system for later instances
+     * @param membership The membership of this group
+     */
+    public void enableReconfiguration(Membership membership) {
+        proposer.setMembership(membership);
+        acceptor.setMembership(membership);
+        learner.setMembership(membership);
+        learner.addApplyListener(membership::apply);
+    }
+
+    /**
+     * Relays every applied value to this member's children in the relay tree, so
+     * learner-only members receive the chosen values without Acceptors sending to them.
+     * A learner-only member whose applied index stops advancing asks its parent for the
+     * values it missed, and asks a voter to relay to it while its parent is suspected.
+     * @param tree The relay tree of the council
+     */
+    public void enableRelay(RelayTree tree) {
+        List<String> children = tree.childrenOf(memberId);
+
+        learner.addApplyListener((instance, value) -> {
+            if (children.isEmpty() && adoptedChildren.isEmpty()) return;
+            Chosen chosen = new Chosen(memberId, null, value);
+            chosen.instance = instance;
+            for (String childId : children) {
+                memberTransport.sendMessage(childId, chosen);
+            }
+            for (String childId : adoptedChildren) {
+                memberTransport.sendMessage(childId, chosen);
+            }
+        });
+
+        String parent = tree.parentOf(memberId);
+        if (parent != null) {
+            List<String> fallbacks = tree.fallbacksOf(memberId);
+            catchUpTask = Timers.shared().scheduleAtFixedRate(() -> checkRelay(parent, fallbacks),
+                CATCH_UP_INTERVAL_MS, CATCH_UP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+     * Runs on a timer in a learner-only member. While the parent is suspected, a voter that
+     * is not is asked to relay instead, and released once the parent is back. If nothing
+     * was applied since the last check, the member relaying to it is asked for the values
+     * after the applied index, so a lost announcement does not stall this member and its
+     * subtree for good.
+     * @param parent The member's parent in the relay tree
+     * @param fallbacks The voters to relay instead, in order of preference
+     */
+    private synchronized void checkRelay(String parent, List<String> fallbacks) {
+        long applied = learner.getAppliedIndex();
+        boolean stalled = applied == lastCheckedIndex;
+        lastCheckedIndex = applied;
+
+        if (memberTransport.isSuspected(parent)) {
+            if (stepParent == null || memberTransport.isSuspected(stepParent)) {
+                String fallback = fallbacks.stream().filter(id -> !memberTransport.isSuspected(id)).findFirst().orElse(null);
+                if (fallback != null && !fallback.equals(stepParent)) {
+                    System.out.println("[PaxosNode " + memberId + "] Relay parent " + parent + " suspected, relaying from " + fallback);
+                    if (stepParent != null) {
+                        memberTransport.sendMessage(stepParent, new CatchUp(memberId, applied + 1, false));
                     }
-                } else {
-                    System.out.println("[PaxosNode " + memberId + "] Value already learned: " + learnedValue + ". Stopping auto-retry.");
-                    scheduler.shutdown();
+                    stepParent = fallback;
+                    memberTransport.sendMessage(stepParent, new CatchUp(memberId, applied + 1, true));
+                    return;
                 }
             }
-        };
+        } else if (stepParent != null) {
+            System.out.println("[PaxosNode " + memberId + "] Relay parent " + parent + " is back, no longer relaying from " + stepParent);
+            memberTransport.sendMessage(stepParent, new CatchUp(memberId, applied + 1, false));
+            stepParent = null;
+        }
 
-        scheduler.schedule(retryTask, initialDelaySeconds, TimeUnit.SECONDS);
+        if (stalled) {
+            String source = stepParent != null ? stepParent : parent;
+            memberTransport.sendMessage(source, new CatchUp(memberId, applied + 1, stepParent != null));
+        }
+    }
+
+    /*
+     * Answers a learner that missed values with the ones still retained, and starts or
+     * stops relaying to it in place of its suspected parent
+     */
+    private void handleCatchUp(CatchUp catchUp, String senderId) {
+        if (catchUp.relay) {
+            if (adoptedChildren.add(senderId)) {
+                System.out.println("[PaxosNode " + memberId + "] Relaying to " + senderId + " in place of its parent");
+            }
+        } else if (adoptedChildren.remove(senderId)) {
+            System.out.println("[PaxosNode " + memberId + "] No longer relaying to " + senderId);
+        }
+
+        long last = Math.min(learner.getAppliedIndex(), catchUp.fromInstance + CATCH_UP_BATCH - 1);
+        if (catchUp.fromInstance > last) return;
+        if (learner.getLearnedValue(catchUp.fromInstance) == null) {
+            System.out.println("[PaxosNode " + memberId + "] Cannot catch " + senderId + " up from instance " + catchUp.fromInstance + ", no longer retained");
+            return;
+        }
+        for (long instance = catchUp.fromInstance; instance <= last; instance++) {
+            Chosen chosen = new Chosen(memberId, null, learner.getLearnedValue(instance));
+            chosen.instance = instance;
+            memberTransport.sendMessage(senderId, chosen);
+        }
+        System.out.println("[PaxosNode " + memberId + "] Caught " + senderId + " up with instances " + catchUp.fromInstance + " to " + last);
+    }
+
+    /**
+     * Stops the relay tree's catch-up timer
+     */
+    public void shutdown() {
+        if (catchUpTask != null) {
+            catchUpTask.cancel(false);
+        }
+    }
+
+    /**
+     * Enables thrifty messaging, sending each phase to a quorum of the fastest Acceptors first
+     * @param timeoutMs How long to wait for that quorum before contacting the remaining Acceptors
+     */
+    public void enableThrifty(long timeoutMs) {
+        proposer.enableThrifty(timeoutMs);
+    }
+
+    /**
+     * Enables distinguished learner mode: Acceptors report only to the Proposer,
+     * which announces chosen values to every learner
+     */
+    public void enableDistinguishedLearner() {
+        proposer.setDistinguishedLearner(true);
+        acceptor.setDistinguishedLearner(true);
+    }
+
+    /**
+     * Makes this member the Fast Paxos coordinator, which keeps an "any" round open in the
+     * next undecided instance so clients can send values straight to the Acceptors.
+     * Fast quorums are sized for majority classic quorums.
+     */
+    public void enableFastCoordinator() {
+        proposer.setFastCoordinator(true);
+    }
+
+    /**
+     * Opens the first Fast Paxos "any" round
+     */
+    public void openFastRound() {
+        proposer.openFastRound();
+    }
+
+    /**
+     * Sends a value directly to every Acceptor for acceptance in the open "any" round
+     * @param value The value to propose
+     */
+    public void fastPropose(String value) {
+        proposer.sendFastProposal(value);
+    }
+
+    /**
+     * Performs a linearizable read of the latest chosen value without a consensus round
+     * @return Future completed with the latest applied value and its log index
+     */
+    public CompletableFuture<VersionedValue> read() {
+        return readCoordinator.read();
+    }
+
+    /**
+     * Reads the latest value applied by this member's Learner, which may be stale
+     * @param minIndex The lowest log index the read must observe, or -1 for none
+     * @param timeoutMs How long to wait for the Learner to reach minIndex
+     * @return Future completed with the latest applied value and its log index
+     */
+    public CompletableFuture<VersionedValue> readLocal(long minIndex, long timeoutMs) {
+        return learner.whenApplied(minIndex).orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
     }
 
     // Getters for components
@@ -132,6 +535,14 @@ public class PaxosNode {
     public Learner getLearner() { 
         return learner; 
     }
+
+    public ValueStore getValueStore() {
+        return valueStore;
+    }
+
+    public ReadCoordinator getReadCoordinator() {
+        return readCoordinator;
+    }
     
     public String getMemberId() { 
         return memberId; 
@@ -147,7 +558,13 @@ public class PaxosNode {
      */
     public void setTransport(MemberTransport transport) {
         if (transport == null) return;
+        this.baseTransport = transport;
+        if (!witnessIds.isEmpty()) {
+            transport = new WitnessTransport(transport, witnessIds);
+        }
+        this.memberTransport = transport;
         this.acceptor.setTransport(transport);
         this.proposer.setTransport(transport);
+        this.readCoordinator.setTransport(transport);
     }
 }
@@ -1,10 +1,16 @@
 package paxos_logic;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
 
 import network.MemberTransport;
+import network.RttEstimator;
 import paxos_util.*;
 
 /**
@@ -13,68 +19,573 @@ import paxos_util.*;
  * Responsible for initiating proposals and handling promises/acceptances from Acceptors
  */
 public class Proposer {
+    // Phase timeouts before any round trip was measured, and bounds on timeouts and backoff
+    private static final long INITIAL_TIMEOUT_MS = 1000;
+    private static final long MIN_TIMEOUT_MS = 100;
+    private static final long MAX_BACKOFF_MS = 16_000;
+
     private final String id;
-    private final Set<String> acceptorIds;
+    private Set<String> acceptorIds;
     
     private MemberTransport networkTransport;
     private final ReentrantLock lock = new ReentrantLock();
 
     private ProposalNumber proposalNumber;
     private String proposalValue;
+    private String requestedValue;
+    private long instance = 0;
+
+    // Supplies the next undecided instance for each new proposal, and the value decided in an instance
+    private LongSupplier instanceSource;
+    private LongFunction<String> decisionSource;
+
+    private QuorumSystem quorumSystem;
+
+    // Replies to the current phase, as bits at the positions of the configuration's MemberIndex
+    private MemberIndex memberIndex;
+    private final BitSet promisedBy = new BitSet();
+    private final BitSet acceptedBy = new BitSet();
+
+    // Highest accepted proposal reported by the promises so far, and how often each value was reported with it
+    private long highestAcceptedBallot = -1;
+    private final Map<String, Integer> highestAcceptedValues = new HashMap<>();
+    private boolean acceptRequested = false;
+    private boolean chosenAnnounced = false;
+    private boolean preempted = false;
+    // Set when the promises forced a value other than the requested one, which must then be proposed again
+    private volatile boolean adopted = false;
+    private long phaseStartNanos;
+
+    // Set while completing an instance for a read; told whether Phase 1 found a value to propose
+    private CompletableFuture<Boolean> completion;
+
+    // Outcome of the current client value: the instance it was chosen in, or -1 once given up
+    private CompletableFuture<Long> outcome;
+
+    // Trace of the current decision, set only while Tracer is enabled
+    private String traceId;
+    private long traceStartMicros;
+    private long phaseStartMicros;
+
+    // Thrifty mode: contact only a quorum of the fastest Acceptors, widening on timeout
+    private boolean thrifty = false;
+    private long thriftyTimeoutMs = 500;
+    private final RttEstimator rttEstimator = new RttEstimator();
+    private ScheduledExecutorService scheduler;
+
+    // Distinguished learner mode: announce chosen values instead of every Acceptor notifying learners
+    private boolean distinguishedLearner = false;
 
-    private final Map<String, Promise> promisesReceived = new ConcurrentHashMap<>();
-    private final Set<String> acceptedReceivedFrom = ConcurrentHashMap.newKeySet();
+    // Fast Paxos: this Proposer coordinates "any" rounds that clients send values into directly
+    private boolean fastCoordinator = false;
+    private boolean fastRound = false;
+    private final Map<String, BitSet> fastVotes = new HashMap<>();
+    private final BitSet fastVoters = new BitSet();
+    private int fastQuorumSize;
+
+    // Optional per-instance membership; each proposal uses the configuration of its instance
+    private Membership membership;
+
+    // Phase timeouts: retries left for the current value (-1 disables timeouts)
+    private int defaultMaxRetries = -1;
+    private int maxRetries = -1;
+    private int attempt = 0;
 
     // Local sequence number for generating unique proposal numbers
     private int localSequence = 0;
 
+    // Optional leader lease, acquired together with a majority of promises
+    private LeaderLease lease;
+
     public Proposer(String id, Set<String> acceptorIds, MemberTransport networkTransport) {
         this.id = id;
         this.acceptorIds = acceptorIds;
         this.networkTransport = networkTransport;
         this.proposalNumber = new ProposalNumber(id + ":0");
+        this.quorumSystem = new MajorityQuorum(acceptorIds.size());
+        this.fastQuorumSize = MajorityQuorum.fastQuorumSize(acceptorIds.size());
+        this.memberIndex = MemberIndex.of(acceptorIds);
+    }
+
+    /**
+     * Starts a new proposal with a given value. A value still being proposed is given up.
+     * @param value The value to propose
+     * @return Future completed with the instance the value was chosen in, or with -1 once this
+     *         Proposer stopped trying to get it chosen
+     */
+    public CompletableFuture<Long> propose(String value) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        startClientProposal(value, null, result);
+        return result;
     }
 
     /**
-     * Starts a new proposal with a given value
+     * Starts a new proposal that is retried with a higher proposal number whenever a phase
+     * times out, backing off by the measured round-trip times of the Acceptors
      * @param value The value to propose
+     * @param retries How many times to retry before giving up
+     * @return Future completed with the instance the value was chosen in, or with -1 once this
+     *         Proposer stopped trying to get it chosen
      */
-    public void propose(String value) {
+    public CompletableFuture<Long> proposeWithRetries(String value, int retries) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        startClientProposal(value, retries, result);
+        return result;
+    }
+
+    /*
+     * Starts proposing a client value, once the outbound queues allow it
+     * @param value The value to propose
+     * @param retries How many times to retry, or null for the retries set by enablePhaseTimeouts
+     * @param result The outcome of the value
+     */
+    private void startClientProposal(String value, Integer retries, CompletableFuture<Long> result) {
+        if (deferIfBackpressured(value, () -> startClientProposal(value, retries, result))) return;
         lock.lock();
 
         try {
-            this.proposalValue = value;
+            // Cancelled while it waited for the queues to drain
+            if (result.isDone()) return;
+            settle(-1, "replaced by '" + value + "'");
+            outcome = result;
+            maxRetries = retries != null ? retries : defaultMaxRetries;
+            attempt = 0;
+            completion = null;
+            beginTrace();
+            startProposal(value, nextInstance(), false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops proposing a client value. Its outcome is completed with -1, although a value
+     * whose Accept Request already reached a quorum may still be chosen.
+     * @param proposal The future returned when the value was proposed
+     * @return true if the value was still being proposed
+     */
+    public boolean cancel(CompletableFuture<Long> proposal) {
+        lock.lock();
+
+        try {
+            if (proposal != outcome) return proposal.complete(-1L);
+            if (chosenAnnounced) return false;
+            // Replies and retries of the cancelled proposal no longer match the proposal number
             localSequence++;
-            this.proposalNumber = new ProposalNumber(id + ":" + localSequence);
+            proposalNumber = new ProposalNumber(id + ":" + localSequence);
+            settle(-1, "cancelled");
+            requestedValue = null;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether client values are retried on phase timeouts until they are chosen or
+     * the retries run out, so every proposal is eventually settled without cancel()
+     * @return true if phase timeouts are enabled
+     */
+    public boolean retriesProposals() {
+        lock.lock();
+        try {
+            return defaultMaxRetries >= 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Reports how the current client value ended, once
+     * @param chosenInstance The instance the value was chosen in, or -1 if it was given up
+     * @param reason Why it was given up, for the log
+     */
+    private void settle(long chosenInstance, String reason) {
+        if (outcome == null) return;
+        if (chosenInstance < 0 && !outcome.isDone()) {
+            System.out.println("[Proposer " + id + "] Stopped proposing '" + requestedValue + "', " + reason);
+        }
+        outcome.complete(chosenInstance);
+        outcome = null;
+    }
+
+    /*
+     * Settles the current client value once its instance was decided by someone else
+     * @param decided The value decided there, or null if it is not known
+     */
+    private void settleDecided(String decided) {
+        if (requestedValue != null && ValueStore.sameValue(decided, requestedValue)) {
+            settle(instance, null);
+        } else {
+            settle(-1, "instance " + instance + " decided without it");
+        }
+    }
+
+    /**
+     * Checks whether the transport is holding back traffic to so many Acceptors that the
+     * rest could not form a Phase 2 quorum
+     * @return true if new proposals should wait for the outbound queues to drain
+     */
+    public boolean isBackpressured() {
+        List<String> uncongested = new ArrayList<>();
+        for (String acceptorId : acceptorIds) {
+            if (!networkTransport.isCongested(acceptorId)) {
+                uncongested.add(acceptorId);
+            }
+        }
+        return !quorumSystem.isPhase2Quorum(uncongested);
+    }
+
+    /*
+     * Postpones a new proposal while the outbound queues are backed up, rather than adding
+     * to them and having its messages dropped
+     * @param value The value about to be proposed
+     * @param retry Starts the proposal again
+     * @return true if the proposal was postponed
+     */
+    private boolean deferIfBackpressured(String value, Runnable retry) {
+        if (!isBackpressured()) return false;
+        System.out.println("[Proposer " + id + "] Outbound queues to Acceptors are backed up, deferring '" + value + "' by " + MIN_TIMEOUT_MS + " ms");
+        getScheduler().schedule(retry, MIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Opens a Fast Paxos "any" round in the next undecided instance. Once a Phase 1 quorum
+     * promises without reporting an accepted value, Acceptors are told to accept the first
+     * value a client sends them directly.
+     */
+    public void openFastRound() {
+        lock.lock();
+
+        try {
+            settle(-1, "replaced by a fast round");
+            maxRetries = defaultMaxRetries;
+            attempt = 0;
+            completion = null;
+            beginTrace();
+            startProposal(null, nextInstance(), true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs Phase 1 in an instance that some Acceptor accepted a value in but that this member
+     * has not learned, so a value that may have been chosen there is chosen again and learned.
+     * Nothing is started while a proposal of this Proposer is still undecided.
+     * @param instance The instance to complete
+     * @return Future completed with false if a quorum had accepted nothing, so no value was
+     *         chosen in the instance yet, or with true once a value found there was sent for
+     *         acceptance, a higher proposal took over or Phase 1 timed out; null if the
+     *         Proposer is busy
+     */
+    public CompletableFuture<Boolean> completeInstance(long instance) {
+        lock.lock();
 
-            System.out.println("[Proposer " + id + "] Starting proposal " + proposalNumber + " with value '" + proposalValue + "'");
-            sendPrepareMessage();
+        try {
+            if (!isIdle()) return null;
+            settleDecided(decisionSource != null ? decisionSource.apply(instance) : null);
+            maxRetries = -1;
+            attempt = 0;
+            CompletableFuture<Boolean> found = new CompletableFuture<>();
+            completion = found;
+            beginTrace();
+            startProposal(null, instance, false);
+
+            long timeoutMs = phaseTimeoutMs(false);
+            getScheduler().schedule(() -> found.complete(true), timeoutMs, TimeUnit.MILLISECONDS);
+            return found;
         } finally {
             lock.unlock();
         }
     }
 
+    /*
+     * Checks whether the Proposer has no proposal of its own left to decide
+     * @return true if nothing was proposed yet, the current proposal was chosen or its instance
+     *         was decided, or the current proposal only completes an instance
+     */
+    private boolean isIdle() {
+        if (chosenAnnounced || completion != null) return true;
+        if (requestedValue == null && !fastRound) return true;
+        return instanceSource != null && nextInstance() > instance;
+    }
+
+    /*
+     * Starts a new trace for the decision about to be proposed. Retries of the proposal
+     * keep the trace, so its timeline shows every attempt.
+     */
+    private void beginTrace() {
+        if (!Tracer.isEnabled()) {
+            traceId = null;
+            return;
+        }
+        traceId = id + "-" + Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+        traceStartMicros = Tracer.nowMicros();
+    }
+
+    /*
+     * Starts Phase 1 of a new proposal
+     * @param value The value to propose, or null for a Fast Paxos "any" round
+     * @param targetInstance The instance to propose in
+     * @param fast Whether to open an "any" round instead of proposing the value
+     */
+    private void startProposal(String value, long targetInstance, boolean fast) {
+        this.requestedValue = value;
+        this.proposalValue = value;
+        this.instance = targetInstance;
+        this.fastRound = fast;
+        if (membership != null) {
+            Configuration config = membership.configFor(targetInstance);
+            this.acceptorIds = config.memberIds();
+            this.quorumSystem = config.quorumSystem;
+            this.fastQuorumSize = MajorityQuorum.fastQuorumSize(acceptorIds.size());
+            this.memberIndex = config.index;
+        }
+        promisedBy.clear();
+        acceptedBy.clear();
+        highestAcceptedBallot = -1;
+        highestAcceptedValues.clear();
+        fastVotes.clear();
+        fastVoters.clear();
+        acceptRequested = false;
+        chosenAnnounced = false;
+        preempted = false;
+        adopted = false;
+        if (membership != null && !membership.isSettled(targetInstance)) {
+            deferUntilSettled();
+            return;
+        }
+        localSequence++;
+        this.proposalNumber = new ProposalNumber(id + ":" + localSequence);
+
+        if (lease != null) {
+            lease.begin();
+        }
+
+        if (fast) {
+            System.out.println("[Proposer " + id + "] Starting fast round " + proposalNumber + " in instance " + instance);
+        } else {
+            System.out.println("[Proposer " + id + "] Starting proposal " + proposalNumber + " with value '" + proposalValue + "' in instance " + instance);
+        }
+        sendPrepareMessage();
+    }
+
+    /*
+     * Holds back a proposal whose instance is more than alpha past the applied index, since a
+     * change chosen in between could still alter its configuration. The proposal number moves
+     * on so replies to the previous proposal are ignored, and the proposal starts once the
+     * applied index caught up, unless another one replaced it.
+     */
+    private void deferUntilSettled() {
+        localSequence++;
+        proposalNumber = new ProposalNumber(id + ":" + localSequence);
+        ProposalNumber number = proposalNumber;
+        System.out.println("[Proposer " + id + "] Configuration of instance " + instance + " not settled yet, deferring by " + MIN_TIMEOUT_MS + " ms");
+        getScheduler().schedule(() -> {
+            lock.lock();
+            try {
+                if (!number.equals(proposalNumber)) return;
+                startProposal(requestedValue, instance, fastRound);
+            } finally {
+                lock.unlock();
+            }
+        }, MIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Gets the instance for a new proposal
+     * @return The next undecided instance, or the current one if no source is set
+     */
+    private long nextInstance() {
+        return instanceSource != null ? instanceSource.getAsLong() : instance;
+    }
+
     /**
      * Sends a Prepare message to all Acceptors
      */
     private void sendPrepareMessage() {
         Prepare prepareMessage = new Prepare(id, proposalNumber);
-        broadcastToAcceptors(prepareMessage);
-        System.out.println("[Proposer " + id + "] Sent Prepare for " + proposalNumber + " to " + acceptorIds);
+        Collection<String> contacted = broadcastToAcceptors(prepareMessage, false);
+        System.out.println("[Proposer " + id + "] Sent Prepare for " + proposalNumber + " to " + contacted);
+        armPhaseTimeout(false);
+    }
+
+    /*
+     * Schedules a retry of the current proposal in case the phase just started does not
+     * reach a quorum within the timeout derived from the Acceptors' round-trip times
+     * @param acceptPhase Whether the Accept phase was just started
+     */
+    private void armPhaseTimeout(boolean acceptPhase) {
+        if (maxRetries < 0) return;
+
+        ProposalNumber number = proposalNumber;
+        long timeoutMs = phaseTimeoutMs(acceptPhase);
+        getScheduler().schedule(() -> onPhaseTimeout(number, acceptPhase, timeoutMs), timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Retries the proposal after a backoff if the phase is still waiting for a quorum
+     * @param number The proposal number the timeout was armed for
+     * @param acceptPhase Whether the timed-out phase is the Accept phase
+     * @param timeoutMs The timeout that expired
+     */
+    private void onPhaseTimeout(ProposalNumber number, boolean acceptPhase, long timeoutMs) {
+        lock.lock();
+        try {
+            // A Nack already scheduled the retry, possibly for after another Proposer's lease
+            if (!number.equals(proposalNumber) || chosenAnnounced || preempted || (!acceptPhase && acceptRequested)) return;
+            if (acceptPhase && isPhaseComplete(true)) return;
+
+            if (instanceSource != null && nextInstance() > instance) {
+                String decided = decisionSource != null ? decisionSource.apply(instance) : null;
+                if (!reproposeIfDisplaced(decided)) {
+                    System.out.println("[Proposer " + id + "] Instance " + instance + " already decided, not retrying " + number);
+                    settleDecided(decided);
+                }
+                return;
+            }
+
+            attempt++;
+            if (attempt > maxRetries) {
+                System.out.println("[Proposer " + id + "] Giving up on " + number + " after " + maxRetries + " retries");
+                settle(-1, "out of retries");
+                return;
+            }
+
+            long delayMs = backoffMs(attempt, timeoutMs);
+            System.out.println("[Proposer " + id + "] Phase " + (acceptPhase ? 2 : 1) + " of " + number + " timed out after " + timeoutMs + " ms, retry " + attempt + " in " + delayMs + " ms");
+            getScheduler().schedule(() -> {
+                lock.lock();
+                try {
+                    if (!number.equals(proposalNumber)) return;
+                    startProposal(requestedValue, instance, requestedValue == null);
+                } finally {
+                    lock.unlock();
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Computes how long a phase may take: the slowest retransmission timeout among the
+     * quorum of Acceptors expected to answer first, which never includes a suspected one
+     * while enough others are left
+     * @param acceptPhase Whether the phase is the Accept phase
+     * @return The phase timeout in milliseconds
+     */
+    private long phaseTimeoutMs(boolean acceptPhase) {
+        List<String> byTimeout = new ArrayList<>(acceptorIds);
+        byTimeout.sort(Comparator.comparing((String a) -> networkTransport.isSuspected(a))
+            .thenComparingLong(this::peerTimeoutMs)
+            .thenComparing(Comparator.naturalOrder()));
+
+        long timeoutMs = quorumSystem.selectQuorum(byTimeout, acceptPhase).stream()
+            .mapToLong(this::peerTimeoutMs)
+            .max()
+            .orElse(INITIAL_TIMEOUT_MS);
+        return Math.max(MIN_TIMEOUT_MS, Math.min(MAX_BACKOFF_MS, timeoutMs));
+    }
+
+    /*
+     * Gets the retransmission timeout of one Acceptor
+     * @param acceptorId The Acceptor to look up
+     * @return Its smoothed RTT plus four deviations in milliseconds, or the initial timeout if never measured
+     */
+    private long peerTimeoutMs(String acceptorId) {
+        long timeoutNanos = rttEstimator.getTimeoutNanos(acceptorId);
+        return timeoutNanos < 0 ? INITIAL_TIMEOUT_MS : TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    /*
+     * Computes the delay before a retry: exponential in the attempt, starting from the phase
+     * timeout and capped, with half of it randomized so competing Proposers spread out
+     * @param attempt The retry number, from 1
+     * @param timeoutMs The phase timeout
+     * @return The delay in milliseconds
+     */
+    private long backoffMs(int attempt, long timeoutMs) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, timeoutMs << Math.min(attempt - 1, 16));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
     }
 
     /**
-     * Broadcasts a message to all Acceptors
+     * Broadcasts a message to all Acceptors, or only to a quorum of them in thrifty mode
      * @param message The message to broadcast
+     * @param acceptPhase Whether the message belongs to the Accept phase
+     * @return The Acceptors the message was sent to
      */
-    private void broadcastToAcceptors(Object message) {
+    private Collection<String> broadcastToAcceptors(Object message, boolean acceptPhase) {
         if (message instanceof PaxosMessage pm) {
             pm.fromMemberId = id;
+            pm.instance = instance;
+            pm.traceId = traceId;
         }
 
-        for (String acceptorId : acceptorIds) {
+        phaseStartNanos = System.nanoTime();
+        phaseStartMicros = traceId != null ? Tracer.nowMicros() : 0;
+        Collection<String> targets = acceptorIds;
+        // Clients of an "any" round send to every Acceptor, so the round must be opened everywhere
+        if (thrifty && !fastRound) {
+            // Fastest first, but Acceptors whose outbound queue is backing up go after the
+            // others, and suspected ones last, so the quorum contacted is a live one
+            List<String> ranked = rttEstimator.rank(acceptorIds);
+            ranked.sort(Comparator.comparing((String a) -> networkTransport.isSuspected(a))
+                .thenComparing(networkTransport::isCongested));
+            targets = quorumSystem.selectQuorum(ranked, acceptPhase);
+            scheduleWiden(proposalNumber, acceptPhase, new HashSet<>(targets), message);
+        }
+
+        for (String acceptorId : targets) {
             networkTransport.sendMessage(acceptorId, message);
         }
+        return targets;
+    }
+
+    /*
+     * Schedules sending a message to the Acceptors left out in thrifty mode,
+     * in case the contacted quorum does not answer in time
+     */
+    private void scheduleWiden(ProposalNumber number, boolean acceptPhase, Set<String> contacted, Object message) {
+        getScheduler().schedule(() -> {
+            lock.lock();
+            try {
+                if (!number.equals(proposalNumber) || isPhaseComplete(acceptPhase)) return;
+
+                List<String> remaining = new ArrayList<>(acceptorIds);
+                remaining.removeAll(contacted);
+                if (remaining.isEmpty()) return;
+
+                System.out.println("[Proposer " + id + "] No quorum for " + number + " after " + thriftyTimeoutMs + " ms, widening to " + remaining);
+                for (String acceptorId : remaining) {
+                    networkTransport.sendMessage(acceptorId, message);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }, thriftyTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Checks whether the current phase already has a quorum of replies
+     * @param acceptPhase true for the Accept phase, false for the Prepare phase
+     * @return true if a quorum has replied
+     */
+    private boolean isPhaseComplete(boolean acceptPhase) {
+        return acceptPhase
+            ? quorumSystem.isPhase2Quorum(acceptedBy, memberIndex)
+            : quorumSystem.isPhase1Quorum(promisedBy, memberIndex);
+    }
+
+    /*
+     * Records the round-trip time of a reply to the current phase
+     * @param acceptorId The Acceptor that replied
+     */
+    private void recordReply(String acceptorId) {
+        rttEstimator.record(acceptorId, System.nanoTime() - phaseStartNanos);
     }
 
     /**
@@ -93,22 +604,52 @@ public class Proposer {
                 return;
             }
 
-            promisesReceived.put(promise.fromMemberId, promise);
+            int acceptorIndex = memberIndex.indexOf(promise.fromMemberId);
+            if (acceptorIndex < 0) {
+                System.out.println("[Proposer " + id + "] Ignored Promise from " + promise.fromMemberId + ", not an Acceptor of instance " + instance);
+                return;
+            }
+            if (!promisedBy.get(acceptorIndex)) {
+                promisedBy.set(acceptorIndex);
+                recordReply(promise.fromMemberId);
+                recordAcceptedValue(promise);
+            }
             System.out.println("[Proposer " + id + "] Received Promise for " + incomingNum + " from Acceptor " + promise.fromMemberId);
 
-            // If any acceptor already accepted proposal, choose value of the highest
-            Optional<Promise> highestAccepted = promisesReceived.values().stream()
-                .filter(p -> p.acceptedProposalNumber != null)
-                .max(Comparator.comparing(p -> new ProposalNumber(p.acceptedProposalNumber)));
+            // Once the Accept Request is out its value must not change
+            if (acceptRequested) return;
 
-            if (highestAccepted.isPresent() && highestAccepted.get().acceptedProposalValue != null) {
-                proposalValue = highestAccepted.get().acceptedProposalValue;
-                System.out.println("[Proposer " + id + "] Updated proposal value to '" + proposalValue + "' based on prior accepted proposal");
+            // If any acceptor already accepted proposal, choose value of the highest
+            String constrained = constrainedValue();
+            String chosenValue = constrained != null ? constrained : requestedValue;
+            if (constrained != null && !constrained.equals(proposalValue)) {
+                System.out.println("[Proposer " + id + "] Updated proposal value to '" + constrained + "' based on prior accepted proposal");
             }
+            adopted = constrained != null && requestedValue != null && !ValueStore.sameValue(constrained, requestedValue);
+            proposalValue = chosenValue;
 
-            // If majority of promises received, send Accept Request
-            if (promisesReceived.size() >= calculateMajority()) {
+            // If a Phase 1 quorum of promises received, send Accept Request
+            if (isPhaseComplete(false)) {
+                if (completion != null && proposalValue == null) {
+                    System.out.println("[Proposer " + id + "] Nothing accepted in instance " + instance + " by a quorum, nothing to complete");
+                    acceptRequested = true;
+                    completion.complete(false);
+                    return;
+                }
+                if (lease != null) {
+                    lease.grant();
+                }
+                acceptRequested = true;
+                Tracer.span(traceId, "phase1 " + proposalNumber, phaseStartMicros, "promised by " + memberIndex.idsOf(promisedBy));
+                // A value that may already be chosen turns an "any" round into a classic one
+                if (fastRound && proposalValue != null) {
+                    fastRound = false;
+                    System.out.println("[Proposer " + id + "] Fast round " + proposalNumber + " must propose '" + proposalValue + "', running it as a classic round");
+                }
                 sendAcceptRequest();
+                if (completion != null) {
+                    completion.complete(true);
+                }
             }
         } finally {
             lock.unlock();
@@ -117,6 +658,124 @@ public class Proposer {
 
     }
 
+    /*
+     * Determines the value the promises force this proposal to use. Values accepted at the
+     * highest reported proposal number are candidates; several distinct candidates mean that
+     * proposal was a fast round, and only a value that may have reached a fast quorum among
+     * the Acceptors not heard from is forced.
+     * @return The value to propose, or null if the proposal is free to choose
+     */
+    private String constrainedValue() {
+        if (highestAcceptedValues.isEmpty()) return null;
+        if (highestAcceptedValues.size() == 1) {
+            return highestAcceptedValues.keySet().iterator().next();
+        }
+
+        int unheard = acceptorIds.size() - promisedBy.cardinality();
+        return highestAcceptedValues.entrySet().stream()
+            .filter(e -> e.getValue() + unheard >= fastQuorumSize)
+            .max(Map.Entry.comparingByValue())
+            .map(Map.Entry::getKey)
+            .orElse(null);
+    }
+
+    /*
+     * Folds the accepted proposal reported by a new promise into the highest one seen
+     * @param promise The first Promise received from an Acceptor for this proposal
+     */
+    private void recordAcceptedValue(Promise promise) {
+        if (promise.acceptedProposalNumber == null || promise.acceptedProposalValue == null) return;
+
+        long ballot = new ProposalNumber(promise.acceptedProposalNumber).pack();
+        if (ballot > highestAcceptedBallot) {
+            highestAcceptedBallot = ballot;
+            highestAcceptedValues.clear();
+        }
+        if (ballot == highestAcceptedBallot) {
+            countCandidate(promise.acceptedProposalValue);
+        }
+    }
+
+    /*
+     * Counts a value accepted at the highest ballot. A witness reports the reference of a value
+     * another Acceptor reports in full, so the two count as one candidate, kept as the body.
+     * @param value The accepted value or its reference
+     */
+    private void countCandidate(String value) {
+        for (String candidate : new ArrayList<>(highestAcceptedValues.keySet())) {
+            if (ValueStore.sameValue(candidate, value)) {
+                int count = highestAcceptedValues.remove(candidate) + 1;
+                highestAcceptedValues.put(ValueStore.isReference(candidate) ? value : candidate, count);
+                return;
+            }
+        }
+        highestAcceptedValues.put(value, 1);
+    }
+
+    /**
+     * Handles a Nack from an Acceptor that promised a higher proposal number. The next
+     * proposal number is moved past the promised one and the proposal is retried after a
+     * short randomized delay, without waiting for a phase timeout. If the Acceptor refused
+     * because another Proposer holds its lease, the retry waits until the lease has expired.
+     * @param nack The Nack message received
+     */
+    public void handleNack(Nack nack) {
+        lock.lock();
+
+        try {
+            ProposalNumber rejectedNum = new ProposalNumber(nack.proposalNum.toString());
+            ProposalNumber promisedNum = new ProposalNumber(nack.promisedProposalNumber);
+            localSequence = Math.max(localSequence, promisedNum.sequence);
+
+            if (!rejectedNum.equals(proposalNumber) || chosenAnnounced || preempted) return;
+            preempted = true;
+            if (nack.leaseHolder != null) {
+                System.out.println("[Proposer " + id + "] Proposal " + rejectedNum + " refused at Acceptor " + nack.fromMemberId + ", lease held by " + nack.leaseHolder + " for " + nack.leaseRemainingMs + " ms");
+            } else {
+                System.out.println("[Proposer " + id + "] Proposal " + rejectedNum + " preempted by " + promisedNum + " at Acceptor " + nack.fromMemberId);
+            }
+
+            // Another Proposer is already deciding the instance a read asked to complete
+            if (completion != null) {
+                completion.complete(true);
+                return;
+            }
+
+            if (instanceSource != null && nextInstance() > instance) {
+                String decided = decisionSource != null ? decisionSource.apply(instance) : null;
+                if (!reproposeIfDisplaced(decided)) {
+                    settleDecided(decided);
+                }
+                return;
+            }
+
+            // Without configured retries a preempted proposal still gets one more try
+            int budget = maxRetries >= 0 ? maxRetries : 1;
+            attempt++;
+            if (attempt > budget) {
+                System.out.println("[Proposer " + id + "] Giving up on " + rejectedNum + " after " + budget + " retries");
+                settle(-1, "out of retries");
+                return;
+            }
+
+            // Retrying while another Proposer's lease holds would only be refused again
+            long delayMs = nack.leaseHolder != null
+                ? nack.leaseRemainingMs + backoffMs(1, MIN_TIMEOUT_MS)
+                : backoffMs(attempt, MIN_TIMEOUT_MS);
+            getScheduler().schedule(() -> {
+                lock.lock();
+                try {
+                    if (!rejectedNum.equals(proposalNumber)) return;
+                    startProposal(requestedValue, instance, requestedValue == null);
+                } finally {
+                    lock.unlock();
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Sends Accept Request to all Acceptors
      */
@@ -125,8 +784,15 @@ public class Proposer {
 
         try {
             AcceptRequest acceptRequest = new AcceptRequest(id, proposalNumber, proposalValue);
-            broadcastToAcceptors(acceptRequest);
+            if (fastRound) {
+                acceptRequest.anyValue = true;
+                broadcastToAcceptors(acceptRequest, true);
+                System.out.println("[Proposer " + id + "] Sent Accept Request for " + proposalNumber + " with any value");
+                return;
+            }
+            broadcastToAcceptors(acceptRequest, true);
             System.out.println("[Proposer " + id + "] Sent Accept Request for " + proposalNumber + " with value '" + proposalValue + "'");
+            armPhaseTimeout(true);
         } finally {
             lock.unlock();
         }
@@ -147,45 +813,314 @@ public class Proposer {
                 return;
             }
 
-            acceptedReceivedFrom.add(accepted.fromMemberId);
+            if (fastRound) {
+                handleFastAccepted(accepted);
+                return;
+            }
+
+            int acceptorIndex = memberIndex.indexOf(accepted.fromMemberId);
+            if (acceptorIndex < 0) {
+                System.out.println("[Proposer " + id + "] Ignored Accepted from " + accepted.fromMemberId + ", not an Acceptor of instance " + instance);
+                return;
+            }
+            if (!acceptedBy.get(acceptorIndex)) {
+                acceptedBy.set(acceptorIndex);
+                recordReply(accepted.fromMemberId);
+            }
             System.out.println("[Proposer " + id + "] Received Accepted for " + incomingNum + " from Acceptor " + accepted.fromMemberId);
 
-            // If majority of accepteds received, proposal is chosen
-            if (acceptedReceivedFrom.size() >= calculateMajority()) {
+            // If a Phase 2 quorum of accepteds received, proposal is chosen
+            if (isPhaseComplete(true) && !chosenAnnounced) {
+                chosenAnnounced = true;
                 System.out.println("[Proposer " + id + "] Proposal " + proposalNumber + " with value '" + proposalValue + "' chosen by majority");
+                Tracer.span(traceId, "phase2 " + proposalNumber, phaseStartMicros, "accepted by " + memberIndex.idsOf(acceptedBy));
+                traceDecision();
                 notifyLearners();
+                if (reproposeIfDisplaced(proposalValue)) return;
+                settle(instance, null);
+                if (fastCoordinator) {
+                    beginTrace();
+                    startProposal(null, Math.max(nextInstance(), instance + 1), true);
+                }
             }
         } finally {
             lock.unlock();
         }
     }
 
+    /*
+     * Tallies a client value accepted in the current "any" round. A value reaching a fast
+     * quorum is chosen; if no value can reach it any more the round collided and a classic
+     * round recovers the instance.
+     * @param accepted The Accepted message received
+     */
+    private void handleFastAccepted(Accepted accepted) {
+        int acceptorIndex = memberIndex.indexOf(accepted.fromMemberId);
+        if (acceptorIndex < 0 || fastVoters.get(acceptorIndex)) return;
+        fastVoters.set(acceptorIndex);
+        fastVotes.computeIfAbsent(accepted.proposalValue, v -> new BitSet()).set(acceptorIndex);
+        recordReply(accepted.fromMemberId);
+        System.out.println("[Proposer " + id + "] Received fast Accepted for " + proposalNumber + " with value '" + accepted.proposalValue + "' from Acceptor " + accepted.fromMemberId);
+
+        if (chosenAnnounced) return;
+
+        String leading = null;
+        int leadingVotes = 0;
+        for (Map.Entry<String, BitSet> entry : fastVotes.entrySet()) {
+            int count = entry.getValue().cardinality();
+            if (leading == null || count > leadingVotes) {
+                leading = entry.getKey();
+                leadingVotes = count;
+            }
+        }
+
+        if (leadingVotes >= fastQuorumSize) {
+            chosenAnnounced = true;
+            proposalValue = leading;
+            System.out.println("[Proposer " + id + "] Fast round " + proposalNumber + " chose value '" + proposalValue + "' in instance " + instance);
+            Tracer.span(traceId, "phase2 " + proposalNumber, phaseStartMicros, "fast, accepted by " + memberIndex.idsOf(fastVotes.get(leading)));
+            traceDecision();
+            notifyLearners();
+            beginTrace();
+            startProposal(null, Math.max(nextInstance(), instance + 1), true);
+        } else if (leadingVotes + (acceptorIds.size() - fastVoters.cardinality()) < fastQuorumSize) {
+            System.out.println("[Proposer " + id + "] Collision in fast round " + proposalNumber + " of instance " + instance + ", recovering with a classic round");
+            startProposal(leading, instance, false);
+        }
+    }
+
+    /*
+     * Proposes the requested value again in the next undecided instance if the current
+     * instance decided a different value, such as one this proposal had to adopt from an
+     * earlier round. Without this a client value would be dropped whenever the Proposer's
+     * learner lagged behind and it proposed into an instance that was already taken.
+     * @param decided The value the current instance decided, or null if it is not known
+     * @return true if the requested value was proposed again
+     */
+    private boolean reproposeIfDisplaced(String decided) {
+        if (requestedValue == null || decided == null || ValueStore.sameValue(decided, requestedValue)) return false;
+
+        long next = Math.max(nextInstance(), instance + 1);
+        System.out.println("[Proposer " + id + "] Instance " + instance + " decided '" + decided + "', proposing '" + requestedValue + "' again in instance " + next);
+        attempt = 0;
+        startProposal(requestedValue, next, false);
+        return true;
+    }
+
+    /*
+     * Records the span of the whole decision, from the first proposal to the value being chosen
+     */
+    private void traceDecision() {
+        Tracer.span(traceId, "decision", traceStartMicros, "'" + proposalValue + "' in instance " + instance + " after " + (attempt + 1) + " attempt(s)");
+    }
+
     /**
      * Notifies learners about the chosen proposal
-     * @param acceptedMsg The Accepted message to send
      */
     private void notifyLearners() {
-        Accepted acceptedMsg = new Accepted(id, proposalNumber, proposalValue);
+        PaxosMessage notification;
+        if (distinguishedLearner) {
+            notification = new Chosen(id, proposalNumber, proposalValue);
+        } else {
+            Accepted accepted = new Accepted(id, proposalNumber, proposalValue);
+            accepted.fast = fastRound;
+            notification = accepted;
+        }
+        notification.instance = instance;
+        notification.traceId = traceId;
 
         System.out.println("[Proposer " + id + "] Notifying learners about chosen proposal " + proposalNumber + " with value '" + proposalValue + "'");
 
         // Send to all learners
         for (String learnerId : acceptorIds) {
-            networkTransport.sendMessage(learnerId, acceptedMsg);
+            networkTransport.sendMessage(learnerId, notification);
         }
     }
 
 
     /**
-     * Calculates the majority size based on total acceptors
-     * @return The majority count
+     * Sets the quorum system deciding when each phase has enough replies
+     * @param quorumSystem The quorum system to use
+     */
+    public void setQuorumSystem(QuorumSystem quorumSystem) {
+        this.quorumSystem = quorumSystem;
+    }
+
+    /**
+     * Uses a per-instance membership for the Acceptors and quorum system of each proposal
+     * @param membership The membership to consult
      */
-    private int calculateMajority() {
-        return (acceptorIds.size() / 2) + 1;
+    public void setMembership(Membership membership) {
+        this.membership = membership;
+    }
+
+    public QuorumSystem getQuorumSystem() {
+        return quorumSystem;
     }
 
     public void setTransport(MemberTransport transport) {
         this.networkTransport = transport;
     }
 
+    /**
+     * Enables leader leases for this Proposer
+     * @param lease The lease to acquire with each successful Prepare phase
+     */
+    public void setLease(LeaderLease lease) {
+        this.lease = lease;
+    }
+
+    /**
+     * Checks whether this Proposer holds a valid leader lease
+     * @return true if a lease is configured and currently valid
+     */
+    public boolean holdsLease() {
+        return lease != null && lease.isValid();
+    }
+
+    /**
+     * Renews the lease after a quorum confirmed the given proposal number
+     * @param confirmedNumber The proposal number confirmed by the quorum
+     * @param sentAtNanos System.nanoTime() at which the confirmation was requested
+     */
+    public void renewLease(ProposalNumber confirmedNumber, long sentAtNanos) {
+        lock.lock();
+        try {
+            if (lease != null && confirmedNumber.equals(proposalNumber) && lease.isValid()) {
+                lease.extend(sentAtNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current proposal number
+     * @return The proposal number of the latest proposal
+     */
+    public ProposalNumber getProposalNumber() {
+        lock.lock();
+        try {
+            return proposalNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enables thrifty mode, sending each phase to a quorum of the fastest Acceptors only
+     * @param timeoutMs How long to wait for the quorum before contacting the rest
+     */
+    public void enableThrifty(long timeoutMs) {
+        this.thrifty = true;
+        this.thriftyTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Enables distinguished learner mode, where this Proposer announces chosen values
+     * @param enabled Whether to announce chosen values with a Chosen message
+     */
+    public void setDistinguishedLearner(boolean enabled) {
+        this.distinguishedLearner = enabled;
+    }
+
+    /**
+     * Makes this Proposer the Fast Paxos coordinator, reopening an "any" round after each decision
+     * @param enabled Whether to coordinate fast rounds
+     */
+    public void setFastCoordinator(boolean enabled) {
+        this.fastCoordinator = enabled;
+    }
+
+    /**
+     * Sends a value straight to every Acceptor, acting as a Fast Paxos client
+     * @param value The value to propose
+     */
+    public void sendFastProposal(String value) {
+        FastPropose fastPropose = new FastPropose(id, value);
+        for (String acceptorId : acceptorIds) {
+            networkTransport.sendMessage(acceptorId, fastPropose);
+        }
+        System.out.println("[Proposer " + id + "] Sent FastPropose('" + value + "') to " + acceptorIds);
+    }
+
+    /**
+     * Checks whether Accepted messages need to reach this Proposer
+     * @return true if thrifty, distinguished learner, fast coordinator mode or phase timeouts are
+     *         enabled, or if the current proposal adopted another value and must see it chosen
+     */
+    public boolean tracksAccepted() {
+        return thrifty || distinguishedLearner || fastCoordinator || defaultMaxRetries >= 0 || maxRetries >= 0 || adopted;
+    }
+
+    /**
+     * Enables phase timeouts for every proposal, retrying each up to the given number of times
+     * @param retries How many times to retry a proposal before giving up
+     */
+    public void enablePhaseTimeouts(int retries) {
+        this.defaultMaxRetries = retries;
+    }
+
+    /**
+     * Sets the scheduler used for timeouts
+     * @param scheduler The scheduler to use
+     */
+    public void setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /*
+     * Gets the scheduler for timeouts
+     * @return The scheduler set for this Proposer, or the shared one
+     */
+    private ScheduledExecutorService getScheduler() {
+        return scheduler != null ? scheduler : Timers.shared();
+    }
+
+    /**
+     * Gets the round-trip time estimates used to rank Acceptors
+     * @return The RTT estimator
+     */
+    public RttEstimator getRttEstimator() {
+        return rttEstimator;
+    }
+
+    /**
+     * Sets where each new proposal gets its instance from
+     * @param instanceSource Supplier of the next undecided instance
+     */
+    public void setInstanceSource(LongSupplier instanceSource) {
+        this.instanceSource = instanceSource;
+    }
+
+    /**
+     * Sets where the Proposer looks up the value an instance decided, so it can tell whether
+     * another proposal displaced its value
+     * @param decisionSource Returns the learned value of an instance, or null if it is not known
+     */
+    public void setDecisionSource(LongFunction<String> decisionSource) {
+        this.decisionSource = decisionSource;
+    }
+
+    /**
+     * Gets the instance of the current proposal
+     * @return The Paxos instance the latest proposal was made in
+     */
+    public long getInstance() {
+        lock.lock();
+        try {
+            return instance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the IDs of the Acceptors this Proposer talks to
+     * @return The Acceptor IDs
+     */
+    public Set<String> getAcceptorIds() {
+        return acceptorIds;
+    }
+
 }
@@ -0,0 +1,119 @@
+package paxos_logic;
+
+import java.util.*;
+
+/**
+ * Quorum System
+ *
+ * Decides which sets of Acceptors form a quorum for each Paxos phase. Any Phase 1
+ * quorum must intersect every Phase 2 quorum; implementations validate this on creation.
+ */
+public interface QuorumSystem {
+    /**
+     * Checks whether the given Acceptors form a Phase 1 (Prepare/Promise) quorum
+     * @param acceptorIds The Acceptors that replied
+     * @return true if they form a quorum
+     */
+    public boolean isPhase1Quorum(Collection<String> acceptorIds);
+
+    /**
+     * Checks whether the given Acceptors form a Phase 2 (Accept/Accepted) quorum
+     * @param acceptorIds The Acceptors that replied
+     * @return true if they form a quorum
+     */
+    public boolean isPhase2Quorum(Collection<String> acceptorIds);
+
+    /**
+     * Checks whether the Acceptors whose bits are set form a Phase 1 quorum
+     * @param voters Bits at the MemberIndex positions of the Acceptors that replied
+     * @param index The index the bits refer to
+     * @return true if they form a quorum
+     */
+    public default boolean isPhase1Quorum(BitSet voters, MemberIndex index) {
+        return isPhase1Quorum(index.idsOf(voters));
+    }
+
+    /**
+     * Checks whether the Acceptors whose bits are set form a Phase 2 quorum
+     * @param voters Bits at the MemberIndex positions of the Acceptors that replied
+     * @param index The index the bits refer to
+     * @return true if they form a quorum
+     */
+    public default boolean isPhase2Quorum(BitSet voters, MemberIndex index) {
+        return isPhase2Quorum(index.idsOf(voters));
+    }
+
+    /**
+     * Picks the shortest prefix of the ranked Acceptors that forms a quorum
+     * @param rankedIds Acceptors in order of preference
+     * @param phase2 true to pick a Phase 2 quorum, false for Phase 1
+     * @return The chosen Acceptors, or all of them if no prefix forms a quorum
+     */
+    public default List<String> selectQuorum(List<String> rankedIds, boolean phase2) {
+        List<String> chosen = new ArrayList<>();
+        for (String acceptorId : rankedIds) {
+            chosen.add(acceptorId);
+            if (phase2 ? isPhase2Quorum(chosen) : isPhase1Quorum(chosen)) {
+                return chosen;
+            }
+        }
+        return new ArrayList<>(rankedIds);
+    }
+
+    /**
+     * Builds the quorum system described by the "quorum" settings of network.config
+     * @param settings Settings read from network.config
+     * @param acceptorIds The Acceptors of the council
+     * @return The configured quorum system, majority by default
+     * @throws IllegalArgumentException if the settings are invalid or unsafe
+     */
+    public static QuorumSystem fromSettings(Map<String, String> settings, Collection<String> acceptorIds) {
+        String type = settings.getOrDefault("quorum", "majority").trim().toLowerCase();
+        int n = acceptorIds.size();
+
+        switch (type) {
+            case "majority":
+                return new MajorityQuorum(n);
+
+            case "flexible":
+                return new FlexibleQuorum(
+                    n,
+                    Integer.parseInt(required(settings, "quorum.phase1")),
+                    Integer.parseInt(required(settings, "quorum.phase2"))
+                );
+
+            case "weighted": {
+                Map<String, Integer> weights = new HashMap<>();
+                for (String acceptorId : acceptorIds) {
+                    weights.put(acceptorId, Integer.parseInt(settings.getOrDefault("quorum.weight." + acceptorId, "1").trim()));
+                }
+                int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+                int majority = total / 2 + 1;
+                return new WeightedQuorum(
+                    weights,
+                    Integer.parseInt(settings.getOrDefault("quorum.phase1", String.valueOf(majority)).trim()),
+                    Integer.parseInt(settings.getOrDefault("quorum.phase2", String.valueOf(majority)).trim())
+                );
+            }
+
+            case "grid": {
+                List<List<String>> rows = new ArrayList<>();
+                for (String row : required(settings, "quorum.grid").split("\\|")) {
+                    rows.add(Arrays.asList(row.trim().split("\\s+")));
+                }
+                return new GridQuorum(rows);
+            }
+
+            default:
+                throw new IllegalArgumentException("Unknown quorum type: " + type);
+        }
+    }
+
+    private static String required(Map<String, String> settings, String key) {
+        String value = settings.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing setting " + key);
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,201 @@
+package paxos_logic;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import network.MemberTransport;
+import paxos_util.*;
+
+/**
+ * Read Coordinator
+ *
+ * Serves linearizable reads without running a consensus round. A Proposer holding a valid
+ * leader lease answers from its Learner once its own latest instance has been applied. Otherwise
+ * a Read Index round asks a majority of Acceptors for the highest instance they accepted in and
+ * the read completes once the local Learner has applied up to it. An instance below that index
+ * the Learner does not learn in time, for example one whose Proposer gave up after a single
+ * Acceptor accepted, is completed by running Phase 1 in it with the local Proposer.
+ */
+public class ReadCoordinator {
+    private final String memberId;
+    private final Proposer proposer;
+    private final Learner learner;
+
+    private MemberTransport networkTransport;
+    private long readTimeoutMs = 5000;
+    private long completionDelayMs = 500;
+
+    private final AtomicLong nextReadId = new AtomicLong();
+    private final Map<Long, PendingRead> pendingReads = new ConcurrentHashMap<>();
+
+    /**
+     * A Read Index round waiting for a Phase 1 quorum of acknowledgements
+     */
+    private static class PendingRead {
+        final ProposalNumber sentWith;
+        final long sentAtNanos;
+        final Map<String, ReadIndexAck> acks = new HashMap<>();
+        final CompletableFuture<Long> barrier = new CompletableFuture<>();
+
+        PendingRead(ProposalNumber sentWith, long sentAtNanos) {
+            this.sentWith = sentWith;
+            this.sentAtNanos = sentAtNanos;
+        }
+    }
+
+    public ReadCoordinator(String memberId, Proposer proposer, Learner learner, MemberTransport networkTransport) {
+        this.memberId = memberId;
+        this.proposer = proposer;
+        this.learner = learner;
+        this.networkTransport = networkTransport;
+    }
+
+    /**
+     * Performs a linearizable read of the latest chosen value
+     * @return Future completed with the latest applied value and its log index
+     */
+    public CompletableFuture<VersionedValue> read() {
+        CompletableFuture<VersionedValue> result;
+        if (proposer.holdsLease()) {
+            System.out.println("[Reader " + memberId + "] Serving read under leader lease");
+            result = learner.whenApplied(proposer.getInstance());
+        } else {
+            result = readIndex().thenCompose(this::awaitReadIndex);
+        }
+        return result.orTimeout(readTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Runs a Read Index round against all Acceptors
+     * @return Future completed with the highest accepted instance reported by a majority
+     */
+    private CompletableFuture<Long> readIndex() {
+        long readId = nextReadId.incrementAndGet();
+        ProposalNumber current = proposer.getProposalNumber();
+        PendingRead pending = new PendingRead(current, System.nanoTime());
+        pendingReads.put(readId, pending);
+        pending.barrier.whenComplete((b, e) -> pendingReads.remove(readId));
+
+        ReadIndex request = new ReadIndex(memberId, current, readId);
+        for (String acceptorId : proposer.getAcceptorIds()) {
+            networkTransport.sendMessage(acceptorId, request);
+        }
+        System.out.println("[Reader " + memberId + "] Sent ReadIndex " + readId + " to " + proposer.getAcceptorIds());
+        return pending.barrier;
+    }
+
+    /*
+     * Waits for the local Learner to apply up to the read index, completing stalled instances
+     * @param readIndex The highest accepted instance reported by a quorum
+     * @return Future completed with the latest applied value once the read index is covered
+     */
+    private CompletableFuture<VersionedValue> awaitReadIndex(long readIndex) {
+        CompletableFuture<VersionedValue> result = new CompletableFuture<>();
+        awaitApplied(readIndex, result, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeoutMs));
+        return result;
+    }
+
+    /*
+     * Completes the read once the Learner applied the given index, and schedules completing
+     * the lowest unlearned instance in case it does not
+     * @param index The index the Learner must apply
+     * @param result The read to complete
+     * @param deadlineNanos When the read times out
+     */
+    private void awaitApplied(long index, CompletableFuture<VersionedValue> result, long deadlineNanos) {
+        CompletableFuture<VersionedValue> applied = learner.whenApplied(index);
+        applied.thenAccept(result::complete);
+        if (!applied.isDone()) {
+            scheduleCompletion(index, applied, result, null, deadlineNanos);
+        }
+    }
+
+    /*
+     * After a delay, asks the Proposer to complete the lowest instance the Learner has not
+     * learned, unless an earlier attempt is still running. If the read index itself turns out
+     * to have no accepted value in a quorum, no value was chosen there before the read, so the
+     * read waits for the index below instead.
+     * @param index The index the Learner must apply
+     * @param applied Completed by the Learner once the index is applied
+     * @param result The read to complete
+     * @param attempt The last completion started, or null
+     * @param deadlineNanos When the read times out
+     */
+    private void scheduleCompletion(long index, CompletableFuture<VersionedValue> applied, CompletableFuture<VersionedValue> result,
+                                    CompletableFuture<Boolean> attempt, long deadlineNanos) {
+        Timers.shared().schedule(() -> {
+            if (applied.isDone() || result.isDone() || System.nanoTime() > deadlineNanos) return;
+
+            CompletableFuture<Boolean> next = attempt;
+            long lowest = learner.getAppliedIndex() + 1;
+            if ((attempt == null || attempt.isDone()) && lowest <= index && learner.getLearnedValue(lowest) == null) {
+                System.out.println("[Reader " + memberId + "] Instance " + lowest + " not learned yet, completing it for read index " + index);
+                next = proposer.completeInstance(lowest);
+                if (next != null && lowest == index) {
+                    next.thenAccept(valueFound -> {
+                        if (valueFound || !applied.cancel(false)) return;
+                        awaitApplied(index - 1, result, deadlineNanos);
+                    });
+                }
+            }
+            scheduleCompletion(index, applied, result, next, deadlineNanos);
+        }, completionDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Handles a Read Index acknowledgement from an Acceptor
+     * @param ack The acknowledgement received
+     */
+    public void handleReadIndexAck(ReadIndexAck ack) {
+        PendingRead pending = pendingReads.get(ack.readId);
+        if (pending == null) return;
+
+        synchronized (pending) {
+            if (pending.barrier.isDone()) return;
+            pending.acks.put(ack.fromMemberId, ack);
+            if (!proposer.getQuorumSystem().isPhase1Quorum(pending.acks.keySet())) return;
+
+            long highestAccepted = -1;
+            boolean leaderConfirmed = true;
+            for (ReadIndexAck a : pending.acks.values()) {
+                highestAccepted = Math.max(highestAccepted, a.acceptedInstance);
+                if (a.promisedProposalNumber == null || !new ProposalNumber(a.promisedProposalNumber).equals(pending.sentWith)) {
+                    leaderConfirmed = false;
+                }
+            }
+
+            if (leaderConfirmed) {
+                proposer.renewLease(pending.sentWith, pending.sentAtNanos);
+            }
+            System.out.println("[Reader " + memberId + "] ReadIndex " + ack.readId + " confirmed by quorum, read index " + highestAccepted);
+            pending.barrier.complete(highestAccepted);
+        }
+    }
+
+    /**
+     * Sets how long a read may wait before failing
+     * @param readTimeoutMs Timeout in milliseconds
+     */
+    public void setReadTimeout(long readTimeoutMs) {
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * Sets how long a read waits for the Learner before completing an unlearned instance itself
+     * @param completionDelayMs Delay in milliseconds
+     */
+    public void setCompletionDelay(long completionDelayMs) {
+        this.completionDelayMs = completionDelayMs;
+    }
+
+    /**
+     * Sets the network transport for communication
+     * @param transport The MemberTransport instance to use
+     */
+    public void setTransport(MemberTransport transport) {
+        this.networkTransport = transport;
+    }
+}
@@ -0,0 +1,87 @@
+package paxos_logic;
+
+import java.util.*;
+
+/**
+ * Fan-out tree carrying chosen values from the voting members to learner-only members.
+ *
+ * Learners are placed in a k-ary tree in ID order. The first k learners hang off the
+ * voters, spread round-robin, and every other learner hangs off an earlier learner, so
+ * no member sends each value to more than about k learners. A learner whose parent is
+ * down falls back to the voters, starting at a different one for each learner.
+ */
+public class RelayTree {
+    private final List<String> voters;
+    private final List<String> learners;
+    private final int fanout;
+
+    /**
+     * @param voterIds The voting members
+     * @param learnerIds The learner-only members
+     * @param fanout How many learners each node of the tree feeds, at least 1
+     */
+    public RelayTree(Collection<String> voterIds, Collection<String> learnerIds, int fanout) {
+        if (fanout < 1) {
+            throw new IllegalArgumentException("fanout must be at least 1");
+        }
+        this.voters = new ArrayList<>(new TreeSet<>(voterIds));
+        this.learners = new ArrayList<>(new TreeSet<>(learnerIds));
+        this.fanout = fanout;
+    }
+
+    /**
+     * Gets the learners a member relays chosen values to
+     * @param memberId The member to look up
+     * @return The member's children in the tree, empty if it has none
+     */
+    public List<String> childrenOf(String memberId) {
+        List<String> children = new ArrayList<>();
+
+        int voterIndex = voters.indexOf(memberId);
+        if (voterIndex >= 0) {
+            for (int i = voterIndex; i < Math.min(fanout, learners.size()); i += voters.size()) {
+                children.add(learners.get(i));
+            }
+            return children;
+        }
+
+        int learnerIndex = learners.indexOf(memberId);
+        if (learnerIndex >= 0) {
+            int first = (learnerIndex + 1) * fanout;
+            for (int i = first; i < Math.min(first + fanout, learners.size()); i++) {
+                children.add(learners.get(i));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Gets the member a learner receives chosen values from
+     * @param learnerId The learner to look up
+     * @return The learner's parent, or null if it is not a learner in the tree
+     */
+    public String parentOf(String learnerId) {
+        int index = learners.indexOf(learnerId);
+        if (index < 0 || voters.isEmpty()) return null;
+        return index < fanout ? voters.get(index % voters.size()) : learners.get(index / fanout - 1);
+    }
+
+    /**
+     * Gets the members a learner can receive chosen values from while its parent is down
+     * @param learnerId The learner to look up
+     * @return The voters other than its parent, in the order to try them; empty if it is not a learner in the tree
+     */
+    public List<String> fallbacksOf(String learnerId) {
+        int index = learners.indexOf(learnerId);
+        if (index < 0) return List.of();
+        String parent = parentOf(learnerId);
+        List<String> fallbacks = new ArrayList<>();
+        for (int i = 0; i < voters.size(); i++) {
+            String voter = voters.get((index + 1 + i) % voters.size());
+            if (!voter.equals(parent)) {
+                fallbacks.add(voter);
+            }
+        }
+        return fallbacks;
+    }
+}
@@ -0,0 +1,40 @@
+package paxos_logic;
+
+/**
+ * Shard Router
+ *
+ * Maps keys to shard IDs so every member routes the same key to the same Paxos group
+ */
+public class ShardRouter {
+    private final int shardCount;
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Gets the shard responsible for a key
+     * @param key The key to route
+     * @return The shard ID in [0, shardCount)
+     */
+    public int shardFor(String key) {
+        return Math.floorMod(key.hashCode(), shardCount);
+    }
+
+    /**
+     * Extracts the routing key from a proposal of the form "key=value"
+     * @param proposal The proposal value
+     * @return The part before the first '=', or the whole proposal if there is none
+     */
+    public static String keyOf(String proposal) {
+        int separator = proposal.indexOf('=');
+        return separator > 0 ? proposal.substring(0, separator) : proposal;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
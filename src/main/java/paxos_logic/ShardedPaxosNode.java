@@ -0,0 +1,214 @@
+package paxos_logic;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import network.MemberTransport;
+import network.MessageHandler;
+import network.ShardTransport;
+import paxos_util.PaxosMessage;
+import paxos_util.Tracer;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Hosts several independent Paxos groups, one per shard, on a single member.
+ *
+ * All groups share one transport (and therefore one listening port and its connections)
+ * and one dispatch thread pool sized to the available cores. Incoming messages are routed
+ * to their group by the shardId they carry; keys are routed to groups by the ShardRouter.
+ */
+public class ShardedPaxosNode implements MessageHandler {
+    private final String memberId;
+    private final PaxosNode[] shards;
+    private final ShardRouter router;
+    private final ExecutorService dispatcher;
+    private final Membership[] memberships;
+    private MemberTransport sharedTransport;
+
+    // Members outside every group's membership that must stay reachable, such as learner-only replicas
+    private Map<String, String> nonVotingPeers = Map.of();
+
+    private final Gson gson = new Gson();
+
+    public ShardedPaxosNode(String memberId, Set<String> acceptorIds, Set<String> learnerIds, int shardCount) {
+        this.memberId = memberId;
+        this.router = new ShardRouter(shardCount);
+        this.shards = new PaxosNode[shardCount];
+        this.memberships = new Membership[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new PaxosNode(memberId, acceptorIds, learnerIds, null);
+        }
+
+        int threads = Math.max(1, Math.min(shardCount, Runtime.getRuntime().availableProcessors()));
+        this.dispatcher = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "paxos-dispatch-" + memberId);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Routes a message to the Paxos group of the shard it was sent for
+     * @param senderId The ID of the sender
+     * @param message The JSON message received
+     */
+    @Override
+    public void handleMessage(String senderId, String message) {
+        PaxosMessage base;
+        try {
+            base = gson.fromJson(message, PaxosMessage.class);
+        } catch (JsonSyntaxException e) {
+            System.out.println("[ShardedPaxosNode " + memberId + "] Failed to parse JSON message: " + e.getMessage());
+            return;
+        }
+
+        int shardId = base != null ? base.shardId : 0;
+        if (shardId < 0 || shardId >= shards.length) {
+            System.out.println("[ShardedPaxosNode " + memberId + "] Message for unknown shard " + shardId + " from " + senderId);
+            return;
+        }
+
+        PaxosNode target = shards[shardId];
+        String traceId = base != null ? base.traceId : null;
+        if (traceId == null) {
+            dispatcher.execute(() -> target.handleMessage(senderId, message));
+            return;
+        }
+
+        // Traced messages record how long they waited for a dispatch thread and how long
+        // their handler ran
+        String label = base.type + " from " + senderId;
+        long queuedMicros = Tracer.nowMicros();
+        dispatcher.execute(() -> {
+            long startMicros = Tracer.nowMicros();
+            Tracer.span(traceId, "queue " + base.type, queuedMicros, "shard " + shardId);
+            target.handleMessage(senderId, message);
+            Tracer.span(traceId, "handle " + base.type, startMicros, label);
+        });
+    }
+
+    /**
+     * Proposes a value in the group responsible for its key
+     * @param key The key used to pick the shard
+     * @param value The value to propose
+     */
+    public void propose(String key, String value) {
+        getShardFor(key).propose(value);
+    }
+
+    /**
+     * Enables reconfiguration in every group. Each group changes membership through its own
+     * log; the shared transport keeps every member known to any group reachable.
+     * @param members The initial members mapped to their "host:port" addresses
+     * @param alpha How many instances after its own a change takes effect
+     * @param quorumFactory Builds the quorum system for a set of members
+     */
+    public void enableReconfiguration(Map<String, String> members, int alpha, Function<Set<String>, QuorumSystem> quorumFactory) {
+        for (int i = 0; i < shards.length; i++) {
+            memberships[i] = new Membership(memberId, members, alpha, quorumFactory);
+            memberships[i].addListener(config -> updatePeers());
+            shards[i].enableReconfiguration(memberships[i]);
+        }
+    }
+
+    /*
+     * Points the shared transport at the union of every group's newest members
+     */
+    private synchronized void updatePeers() {
+        if (sharedTransport == null) return;
+        Map<String, String> addresses = new HashMap<>(nonVotingPeers);
+        for (Membership membership : memberships) {
+            if (membership != null) {
+                addresses.putAll(membership.latest().members);
+            }
+        }
+
+        Map<String, InetSocketAddress> peers = new HashMap<>();
+        for (Map.Entry<String, String> member : addresses.entrySet()) {
+            String address = member.getValue();
+            if (address == null) continue;
+            int separator = address.lastIndexOf(':');
+            peers.put(member.getKey(), new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1))));
+        }
+        sharedTransport.updatePeers(peers);
+    }
+
+    /**
+     * Sets the members that never vote but must stay reachable across reconfigurations
+     * @param peers Member IDs mapped to their "host:port" addresses
+     */
+    public synchronized void setNonVotingPeers(Map<String, String> peers) {
+        this.nonVotingPeers = new HashMap<>(peers);
+    }
+
+    /**
+     * Gets the membership of a group
+     * @param shardId The shard of the group
+     * @return The group's membership, or null if reconfiguration is not enabled
+     */
+    public Membership getMembership(int shardId) {
+        return memberships[shardId];
+    }
+
+    /**
+     * Gets the Paxos group responsible for a key
+     * @param key The key to route
+     * @return The Paxos node of the key's shard
+     */
+    public PaxosNode getShardFor(String key) {
+        return shards[router.shardFor(key)];
+    }
+
+    /**
+     * Applies a setting to every hosted Paxos group
+     * @param action The action to run on each group's node
+     */
+    public void forEachShard(Consumer<PaxosNode> action) {
+        for (PaxosNode shard : shards) {
+            action.accept(shard);
+        }
+    }
+
+    public PaxosNode getShard(int shardId) {
+        return shards[shardId];
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public ShardRouter getRouter() {
+        return router;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    /**
+     * Sets the shared network transport, wrapping it once per shard
+     * @param transport The MemberTransport instance shared by every shard
+     */
+    public void setTransport(MemberTransport transport) {
+        if (transport == null) return;
+        this.sharedTransport = transport;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].setTransport(new ShardTransport(i, transport));
+        }
+    }
+
+    /**
+     * Stops the dispatch thread pool and the groups' timers
+     */
+    public void shutdown() {
+        forEachShard(PaxosNode::shutdown);
+        dispatcher.shutdown();
+    }
+}
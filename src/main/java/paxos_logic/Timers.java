@@ -0,0 +1,31 @@
+package paxos_logic;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Process-wide scheduler for protocol timeouts and retries.
+ *
+ * A single daemon thread serves every proposal of every Paxos group hosted by the member,
+ * so timeouts cost no threads of their own. Scheduled tasks must be short and must not block.
+ */
+public class Timers {
+    private static ScheduledExecutorService shared;
+
+    private Timers() {}
+
+    /**
+     * Gets the shared scheduler, creating it on first use
+     * @return The scheduler for timeouts
+     */
+    public static synchronized ScheduledExecutorService shared() {
+        if (shared == null) {
+            shared = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "paxos-timers");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return shared;
+    }
+}
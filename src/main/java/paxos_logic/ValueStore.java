@@ -0,0 +1,236 @@
+package paxos_logic;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Bodies of large values, keyed by their SHA-256 digest.
+ *
+ * When values are disseminated separately from ordering, consensus messages carry a fixed-size
+ * reference ("#sha256:<hex>") instead of the value, and the body travels once to each member
+ * in chunks. The store reassembles chunks, checks the body against its digest and serves it
+ * to the Learner and to members fetching it. A body referenced by a chosen instance is pinned
+ * until that instance is released, so the Learner can still apply it and members behind can
+ * still fetch it. Beyond the capacity, the oldest unpinned bodies are dropped.
+ */
+public class ValueStore {
+    public static final String REFERENCE_PREFIX = "#sha256:";
+    public static final int REFERENCE_LENGTH = REFERENCE_PREFIX.length() + 64;
+    public static final int CHUNK_CHARS = 64 * 1024;
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Map<String, String> bodies = new LinkedHashMap<>();
+    private final Map<String, String[]> partial;
+
+    // Digest referenced by each pinned instance, and how many pinned instances reference each digest
+    private final TreeMap<Long, String> pins = new TreeMap<>();
+    private final Map<String, Integer> pinCounts = new HashMap<>();
+
+    public ValueStore(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.partial = evictingMap(capacity);
+    }
+
+    /*
+     * Builds a map that drops its oldest entry once it holds more than capacity entries
+     */
+    private static <V> Map<String, V> evictingMap(int capacity) {
+        return new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Stores a body
+     * @param body The value
+     * @return Its digest
+     */
+    public synchronized String put(String body) {
+        String digest = digest(body);
+        bodies.put(digest, body);
+        partial.remove(digest);
+        evict();
+        return digest;
+    }
+
+    /**
+     * Keeps a body, present or still to arrive, while an instance references it
+     * @param digest The digest of the body
+     * @param instance The instance whose chosen value is the body's reference
+     */
+    public synchronized void pin(String digest, long instance) {
+        String previous = pins.put(instance, digest);
+        if (digest.equals(previous)) return;
+        if (previous != null) unpin(previous);
+        pinCounts.merge(digest, 1, Integer::sum);
+    }
+
+    /**
+     * Releases the bodies referenced by instances below a bound, making them evictable
+     * @param instance The lowest instance whose body is still needed
+     */
+    public synchronized void releaseBelow(long instance) {
+        Map<Long, String> released = pins.headMap(instance);
+        if (released.isEmpty()) return;
+        for (String digest : released.values()) {
+            unpin(digest);
+        }
+        released.clear();
+        evict();
+    }
+
+    /**
+     * Checks whether a body is kept for an instance
+     * @param digest The digest of the body
+     * @return true if a pinned instance references it
+     */
+    public synchronized boolean isPinned(String digest) {
+        return pinCounts.containsKey(digest);
+    }
+
+    /**
+     * Gets the number of bodies stored
+     * @return The number of complete bodies
+     */
+    public synchronized int size() {
+        return bodies.size();
+    }
+
+    /*
+     * Drops one instance's reference to a body
+     */
+    private void unpin(String digest) {
+        pinCounts.computeIfPresent(digest, (d, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /*
+     * Drops the oldest unpinned bodies while more than capacity are stored. Pinned bodies
+     * stay even beyond the capacity; they are bounded by the instances the Learner keeps.
+     */
+    private void evict() {
+        Iterator<String> digests = bodies.keySet().iterator();
+        while (bodies.size() > capacity && digests.hasNext()) {
+            if (!pinCounts.containsKey(digests.next())) {
+                digests.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets a body
+     * @param digest The digest of the body
+     * @return The body, or null if it is not (or no longer) stored
+     */
+    public synchronized String get(String digest) {
+        return bodies.get(digest);
+    }
+
+    /**
+     * Adds one chunk of a body being received
+     * @param digest The digest of the whole body
+     * @param index The position of the chunk
+     * @param count How many chunks the body has
+     * @param data The chunk
+     * @return The body once its last missing chunk arrived and it matches the digest, otherwise null
+     */
+    public synchronized String addChunk(String digest, int index, int count, String data) {
+        if (digest == null || data == null || count < 1 || index < 0 || index >= count) return null;
+        if (bodies.containsKey(digest)) return null;
+
+        String[] chunks = partial.computeIfAbsent(digest, d -> new String[count]);
+        if (chunks.length != count) return null;
+        chunks[index] = data;
+        for (String chunk : chunks) {
+            if (chunk == null) return null;
+        }
+
+        partial.remove(digest);
+        String body = String.join("", chunks);
+        if (!digest.equals(digest(body))) {
+            System.out.println("[ValueStore] Discarded value body not matching digest " + digest);
+            return null;
+        }
+        bodies.put(digest, body);
+        evict();
+        return body;
+    }
+
+    /**
+     * Splits a body into the chunks it is sent in
+     * @param body The value
+     * @return Chunks of at most CHUNK_CHARS characters, at least one
+     */
+    public static List<String> chunks(String body) {
+        List<String> chunks = new ArrayList<>();
+        for (int start = 0; start < body.length(); start += CHUNK_CHARS) {
+            chunks.add(body.substring(start, Math.min(body.length(), start + CHUNK_CHARS)));
+        }
+        if (chunks.isEmpty()) chunks.add("");
+        return chunks;
+    }
+
+    /**
+     * Computes the digest of a body
+     * @param body The value
+     * @return The hex SHA-256 of its UTF-8 bytes
+     */
+    public static String digest(String body) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String reference(String digest) {
+        return REFERENCE_PREFIX + digest;
+    }
+
+    public static boolean isReference(String value) {
+        return value != null && value.startsWith(REFERENCE_PREFIX);
+    }
+
+    public static String digestOf(String reference) {
+        return reference.substring(REFERENCE_PREFIX.length());
+    }
+
+    /**
+     * Gets the form of a value a witness keeps: its reference if that is shorter
+     * @param value The value, or a reference
+     * @return The reference of the value, or the value itself if it is short or already a reference
+     */
+    public static String compact(String value) {
+        if (value == null || isReference(value) || value.length() <= REFERENCE_LENGTH) return value;
+        return reference(digest(value));
+    }
+
+    /**
+     * Checks whether two values are the same, where either may be the reference of the other
+     * @param a A value or reference
+     * @param b A value or reference
+     * @return true if they are equal or one is the reference of the other
+     */
+    public static boolean sameValue(String a, String b) {
+        if (Objects.equals(a, b)) return true;
+        if (a == null || b == null || isReference(a) == isReference(b)) return false;
+        return isReference(a) ? a.equals(compact(b)) : b.equals(compact(a));
+    }
+}
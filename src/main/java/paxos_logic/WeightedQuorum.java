@@ -0,0 +1,74 @@
+package paxos_logic;
+
+import java.util.*;
+
+/**
+ * Weighted quorums: each Acceptor carries a number of votes and a quorum is any set
+ * whose votes reach the phase threshold. Safe as long as the two thresholds together
+ * exceed the total weight.
+ */
+public class WeightedQuorum implements QuorumSystem {
+    private final Map<String, Integer> weights;
+    private final int phase1Threshold;
+    private final int phase2Threshold;
+
+    public WeightedQuorum(Map<String, Integer> weights, int phase1Threshold, int phase2Threshold) {
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Negative weight for " + entry.getKey());
+            }
+            total += entry.getValue();
+        }
+        if (phase1Threshold < 1 || phase2Threshold < 1 || phase1Threshold > total || phase2Threshold > total) {
+            throw new IllegalArgumentException("Thresholds must be between 1 and the total weight " + total);
+        }
+        if (phase1Threshold + phase2Threshold <= total) {
+            throw new IllegalArgumentException("Unsafe quorums: phase1 + phase2 thresholds must exceed " + total);
+        }
+        this.weights = new HashMap<>(weights);
+        this.phase1Threshold = phase1Threshold;
+        this.phase2Threshold = phase2Threshold;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(Collection<String> acceptorIds) {
+        return weightOf(acceptorIds) >= phase1Threshold;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(Collection<String> acceptorIds) {
+        return weightOf(acceptorIds) >= phase2Threshold;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(BitSet voters, MemberIndex index) {
+        return weightOf(voters, index) >= phase1Threshold;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(BitSet voters, MemberIndex index) {
+        return weightOf(voters, index) >= phase2Threshold;
+    }
+
+    private int weightOf(BitSet voters, MemberIndex index) {
+        int weight = 0;
+        for (int i = voters.nextSetBit(0); i >= 0; i = voters.nextSetBit(i + 1)) {
+            weight += weights.getOrDefault(index.idOf(i), 0);
+        }
+        return weight;
+    }
+
+    private int weightOf(Collection<String> acceptorIds) {
+        int weight = 0;
+        for (String acceptorId : acceptorIds) {
+            weight += weights.getOrDefault(acceptorId, 0);
+        }
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "weighted(" + phase1Threshold + "," + phase2Threshold + ")";
+    }
+}
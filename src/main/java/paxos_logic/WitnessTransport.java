@@ -0,0 +1,78 @@
+package paxos_logic;
+
+import com.google.gson.Gson;
+import network.MemberTransport;
+import paxos_util.PaxosMessage;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Transport decorator that keeps value bodies away from witness acceptors.
+ *
+ * An Accept Request, Accepted or Chosen sent to a witness carries the reference of its value
+ * instead of the value whenever the reference is shorter, so adding a witness costs a digest
+ * per decision rather than a copy of every value. Messages to other members pass through.
+ */
+public class WitnessTransport implements MemberTransport {
+    private final MemberTransport transport;
+    private final Set<String> witnessIds;
+    private final Gson gson = new Gson();
+
+    // The last value compacted and its compact form; one message usually goes to every witness
+    private String lastValue;
+    private String lastCompact;
+
+    public WitnessTransport(MemberTransport transport, Set<String> witnessIds) {
+        this.transport = transport;
+        this.witnessIds = witnessIds;
+    }
+
+    @Override
+    public void sendMessage(String targetId, Object message) {
+        if (witnessIds.contains(targetId) && message instanceof PaxosMessage pm && carriesValue(pm)) {
+            String compact = compact(pm.proposalValue);
+            if (!compact.equals(pm.proposalValue)) {
+                // The message object is shared with the other recipients, so a copy is sent
+                PaxosMessage copy = gson.fromJson(gson.toJson(pm), pm.getClass());
+                copy.proposalValue = compact;
+                message = copy;
+            }
+        }
+        transport.sendMessage(targetId, message);
+    }
+
+    private static boolean carriesValue(PaxosMessage message) {
+        return message.proposalValue != null && ("ACCEPT_REQUEST".equals(message.type)
+            || "ACCEPTED".equals(message.type) || "CHOSEN".equals(message.type));
+    }
+
+    private synchronized String compact(String value) {
+        if (!value.equals(lastValue)) {
+            lastValue = value;
+            lastCompact = ValueStore.compact(value);
+        }
+        return lastCompact;
+    }
+
+    @Override
+    public void startListening() {
+        transport.startListening();
+    }
+
+    @Override
+    public void updatePeers(Map<String, InetSocketAddress> peers) {
+        transport.updatePeers(peers);
+    }
+
+    @Override
+    public boolean isCongested(String targetId) {
+        return transport.isCongested(targetId);
+    }
+
+    @Override
+    public boolean isSuspected(String targetId) {
+        return transport.isSuspected(targetId);
+    }
+}
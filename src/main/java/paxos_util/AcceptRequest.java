@@ -3,9 +3,13 @@ package paxos_util;
 /**
  * Accept Request Message
  *
- * Sent by Proposers to Acceptors to request acceptance of a proposal
+ * Sent by Proposers to Acceptors to request acceptance of a proposal.
+ * In Fast Paxos the coordinator sends it with anyValue set and no value, opening an
+ * "any" round in which Acceptors accept the first value a client sends them directly.
  */
 public class AcceptRequest extends PaxosMessage {
+    public boolean anyValue;
+
     public AcceptRequest(String fromMemberId, ProposalNumber proposalNumber, String proposalValue) {
         super("ACCEPT_REQUEST", fromMemberId, proposalNumber, proposalValue);
     }
@@ -3,9 +3,12 @@ package paxos_util;
 /**
  * Accepted Message
  *
- * Sent by Proposers to notify learners of the chosen proposal
+ * Sent by Proposers to notify learners of the chosen proposal.
+ * Marked fast when the value was accepted in a Fast Paxos "any" round, which needs a fast quorum.
  */
 public class Accepted extends PaxosMessage {
+    public boolean fast;
+
     public Accepted(String fromMemberId, ProposalNumber proposalNumber, String proposalValue) {
         super("ACCEPTED", fromMemberId, proposalNumber, proposalValue);
     }
@@ -0,0 +1,18 @@
+package paxos_util;
+
+import java.util.List;
+
+/**
+ * Batch Frame
+ *
+ * Carries several serialized messages written to the same peer at once, such as a burst of
+ * Accepted acknowledgements, so they travel and are parsed as one frame
+ */
+public class Batch extends PaxosMessage {
+    public List<String> messages;
+
+    public Batch(String fromMemberId, List<String> messages) {
+        super("BATCH", fromMemberId, null, null);
+        this.messages = messages;
+    }
+}
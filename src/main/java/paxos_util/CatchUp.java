@@ -0,0 +1,20 @@
+package paxos_util;
+
+/**
+ * Catch Up Message
+ *
+ * Sent by a learner-only member whose applied index stopped advancing, to its parent in the
+ * relay tree or to the voter standing in for a suspected parent. The receiver answers with a
+ * Chosen message for each value it still retains from fromInstance on, and keeps relaying
+ * applied values to the sender while relay is set.
+ */
+public class CatchUp extends PaxosMessage {
+    public long fromInstance;
+    public boolean relay;
+
+    public CatchUp(String fromMemberId, long fromInstance, boolean relay) {
+        super("CATCH_UP", fromMemberId, null, null);
+        this.fromInstance = fromInstance;
+        this.relay = relay;
+    }
+}
@@ -0,0 +1,12 @@
+package paxos_util;
+
+/**
+ * Chosen Message
+ *
+ * Sent by the distinguished learner (the Proposer) to learners once a majority has accepted
+ */
+public class Chosen extends PaxosMessage {
+    public Chosen(String fromMemberId, ProposalNumber proposalNumber, String proposalValue) {
+        super("CHOSEN", fromMemberId, proposalNumber, proposalValue);
+    }
+}
@@ -0,0 +1,14 @@
+package paxos_util;
+
+import java.util.List;
+
+/**
+ * Commit Message
+ *
+ * Sent by a command leader to every replica once the command and its attributes are committed
+ */
+public class Commit extends EPaxosMessage {
+    public Commit(String fromMemberId, String leaderId, long slot, String command, int seq, List<String> deps) {
+        super("COMMIT", fromMemberId, leaderId, slot, command, seq, deps);
+    }
+}
@@ -0,0 +1,13 @@
+package paxos_util;
+
+/**
+ * Commit Request Message
+ *
+ * Sent by a replica to a command leader when a committed command depends on an instance of
+ * that leader whose Commit has not arrived
+ */
+public class CommitRequest extends EPaxosMessage {
+    public CommitRequest(String fromMemberId, String leaderId, long slot) {
+        super("COMMIT_REQUEST", fromMemberId, leaderId, slot, null, 0, null);
+    }
+}
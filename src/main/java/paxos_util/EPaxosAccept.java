@@ -0,0 +1,14 @@
+package paxos_util;
+
+import java.util.List;
+
+/**
+ * EPaxos Accept Message
+ *
+ * Sent by a command leader on the slow path to fix the union of the reported attributes
+ */
+public class EPaxosAccept extends EPaxosMessage {
+    public EPaxosAccept(String fromMemberId, String leaderId, long slot, String command, int seq, List<String> deps) {
+        super("EPAXOS_ACCEPT", fromMemberId, leaderId, slot, command, seq, deps);
+    }
+}
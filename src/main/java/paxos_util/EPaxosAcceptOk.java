@@ -0,0 +1,14 @@
+package paxos_util;
+
+import java.util.List;
+
+/**
+ * EPaxos Accept OK Message
+ *
+ * Sent by replicas to the command leader once they accepted the attributes
+ */
+public class EPaxosAcceptOk extends EPaxosMessage {
+    public EPaxosAcceptOk(String fromMemberId, String leaderId, long slot, String command, int seq, List<String> deps) {
+        super("EPAXOS_ACCEPT_OK", fromMemberId, leaderId, slot, command, seq, deps);
+    }
+}
@@ -0,0 +1,24 @@
+package paxos_util;
+
+import java.util.List;
+
+/**
+ * Base class for EPaxos messages
+ *
+ * An EPaxos instance is owned by its command leader and identified by the leader's ID and
+ * a slot number, carried in the instance field. proposalValue holds the command.
+ */
+public class EPaxosMessage extends PaxosMessage {
+    public String leaderId;
+    public int seq;
+    public List<String> deps;
+
+    public EPaxosMessage() {}
+    public EPaxosMessage(String type, String fromMemberId, String leaderId, long slot, String command, int seq, List<String> deps) {
+        super(type, fromMemberId, null, command);
+        this.leaderId = leaderId;
+        this.instance = slot;
+        this.seq = seq;
+        this.deps = deps;
+    }
+}
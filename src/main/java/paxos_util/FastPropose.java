@@ -0,0 +1,13 @@
+package paxos_util;
+
+/**
+ * Fast Propose Message
+ *
+ * Sent by clients straight to every Acceptor in Fast Paxos mode. Acceptors with an open
+ * "any" round accept the value without going through the coordinator.
+ */
+public class FastPropose extends PaxosMessage {
+    public FastPropose(String fromMemberId, String proposalValue) {
+        super("FAST_PROPOSE", fromMemberId, null, proposalValue);
+    }
+}
@@ -0,0 +1,16 @@
+package paxos_util;
+
+/**
+ * Fetch Value Message
+ *
+ * Sent by a member that learned a value digest without having received its body; any member
+ * holding the body answers with its chunks
+ */
+public class FetchValue extends PaxosMessage {
+    public String digest;
+
+    public FetchValue(String fromMemberId, String digest) {
+        super("FETCH_VALUE", fromMemberId, null, null);
+        this.digest = digest;
+    }
+}
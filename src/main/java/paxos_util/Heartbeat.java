@@ -0,0 +1,13 @@
+package paxos_util;
+
+/**
+ * Heartbeat Message
+ *
+ * Sent by each member to every peer at a fixed interval so their failure detectors can tell
+ * a quiet peer from a crashed one. Like Hello and Ready it stays inside the transport.
+ */
+public class Heartbeat extends PaxosMessage {
+    public Heartbeat(String fromMemberId) {
+        super("HEARTBEAT", fromMemberId, null, null);
+    }
+}
@@ -0,0 +1,16 @@
+package paxos_util;
+
+/**
+ * Hello Message
+ *
+ * Sent by a member to each peer while starting up. A peer that receives it is listening and
+ * answers with Ready, so both sides know the other is up.
+ */
+public class Hello extends PaxosMessage {
+    // Frame compression the sender can decode, or null if none
+    public String compression;
+
+    public Hello(String fromMemberId) {
+        super("HELLO", fromMemberId, null, null);
+    }
+}
@@ -0,0 +1,20 @@
+package paxos_util;
+
+/**
+ * Nack Message
+ *
+ * Sent by Acceptors to a Proposer whose Prepare or Accept Request was rejected, carrying
+ * the proposal number the Acceptor has promised so the Proposer can move past it. A request
+ * refused because another Proposer holds the Acceptor's lease also carries the holder and
+ * how long the lease has left.
+ */
+public class Nack extends PaxosMessage {
+    public String promisedProposalNumber;
+    public String leaseHolder;
+    public long leaseRemainingMs;
+
+    public Nack(String fromMemberId, ProposalNumber rejectedNumber, String promisedProposalNumber) {
+        super("NACK", fromMemberId, rejectedNumber, null);
+        this.promisedProposalNumber = promisedProposalNumber;
+    }
+}
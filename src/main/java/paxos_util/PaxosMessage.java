@@ -8,6 +8,11 @@ public class PaxosMessage {
     public String fromMemberId;
     public ProposalNumber proposalNum;
     public String proposalValue;
+    public long instance;
+    public int shardId;
+
+    // Set when tracing is enabled; identifies the decision the message belongs to
+    public String traceId;
 
     public PaxosMessage() {}
     public PaxosMessage(String type, String fromMemberId, ProposalNumber proposalNum, String proposalValue) {
@@ -0,0 +1,14 @@
+package paxos_util;
+
+import java.util.List;
+
+/**
+ * Pre-Accept Message
+ *
+ * Sent by a command leader to every replica with the command and its initial sequence number and dependencies
+ */
+public class PreAccept extends EPaxosMessage {
+    public PreAccept(String fromMemberId, String leaderId, long slot, String command, int seq, List<String> deps) {
+        super("PRE_ACCEPT", fromMemberId, leaderId, slot, command, seq, deps);
+    }
+}
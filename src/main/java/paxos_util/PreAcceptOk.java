@@ -0,0 +1,14 @@
+package paxos_util;
+
+import java.util.List;
+
+/**
+ * Pre-Accept OK Message
+ *
+ * Sent by replicas to the command leader with the attributes updated by their own conflicting commands
+ */
+public class PreAcceptOk extends EPaxosMessage {
+    public PreAcceptOk(String fromMemberId, String leaderId, long slot, String command, int seq, List<String> deps) {
+        super("PRE_ACCEPT_OK", fromMemberId, leaderId, slot, command, seq, deps);
+    }
+}
@@ -16,6 +16,24 @@ public class ProposalNumber implements Comparable<ProposalNumber> {
         this.sequence = Integer.parseInt(parts[1]);
     }
 
+    /**
+     * Packs the proposal number into a long that orders the same way: the sequence in the
+     * high 32 bits, the proposer ID in the low 32 bits
+     * @return The packed proposal number, never negative
+     */
+    public long pack() {
+        return ((long) sequence << 32) | (proposerId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Rebuilds a proposal number from its packed form
+     * @param packed A value returned by pack()
+     * @return The proposal number
+     */
+    public static ProposalNumber unpack(long packed) {
+        return new ProposalNumber("M" + (int) packed + ":" + (int) (packed >>> 32));
+    }
+
     /**
      * Compares this ProposalNumber with another
      * @param other The other ProposalNumber to compare against
@@ -0,0 +1,15 @@
+package paxos_util;
+
+/**
+ * Read Index Message
+ *
+ * Sent by a member to Acceptors to confirm the latest accepted proposal before serving a read
+ */
+public class ReadIndex extends PaxosMessage {
+    public long readId;
+
+    public ReadIndex(String fromMemberId, ProposalNumber proposalNumber, long readId) {
+        super("READ_INDEX", fromMemberId, proposalNumber, null);
+        this.readId = readId;
+    }
+}
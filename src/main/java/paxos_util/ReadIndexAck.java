@@ -0,0 +1,19 @@
+package paxos_util;
+
+/**
+ * Read Index Acknowledgement Message
+ *
+ * Sent by Acceptors in response to a Read Index, reporting their highest promise and the highest instance they accepted in
+ */
+public class ReadIndexAck extends PaxosMessage {
+    public long readId;
+    public String promisedProposalNumber;
+    public long acceptedInstance;
+
+    public ReadIndexAck(String fromMemberId, long readId, String promisedProposalNumber, long acceptedInstance) {
+        super("READ_INDEX_ACK", fromMemberId, null, null);
+        this.readId = readId;
+        this.promisedProposalNumber = promisedProposalNumber;
+        this.acceptedInstance = acceptedInstance;
+    }
+}
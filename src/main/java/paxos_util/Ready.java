@@ -0,0 +1,15 @@
+package paxos_util;
+
+/**
+ * Ready Message
+ *
+ * Sent in reply to a Hello, telling the starting member that this peer is listening
+ */
+public class Ready extends PaxosMessage {
+    // Frame compression the sender can decode, or null if none
+    public String compression;
+
+    public Ready(String fromMemberId) {
+        super("READY", fromMemberId, null, null);
+    }
+}
@@ -0,0 +1,192 @@
+package paxos_util;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-member span recorder for tracing decisions across members.
+ *
+ * Proposals carry a trace ID in their messages; every member that handles one records spans
+ * (sending, receiving, queueing, handling, Paxos phases) against it, one JSON object per line
+ * in its own trace file. Timestamps are microseconds since the epoch so files of different
+ * members can be merged with tools.TraceMerge; they are read from the monotonic clock, anchored
+ * to the wall clock once, so durations do not jump with clock adjustments. Recording only queues
+ * the span: a background writer serializes queued spans and flushes the file every
+ * FLUSH_INTERVAL_MS, and spans are dropped rather than block when the queue is full.
+ * Recording is a no-op until enable() is called.
+ */
+public class Tracer {
+    public static final int QUEUE_CAPACITY = 64 * 1024;
+    public static final long FLUSH_INTERVAL_MS = 100;
+
+    // Wall-clock microseconds at ANCHOR_NANOS on the monotonic clock
+    private static final long ANCHOR_MICROS;
+    private static final long ANCHOR_NANOS;
+    static {
+        Instant now = Instant.now();
+        ANCHOR_NANOS = System.nanoTime();
+        ANCHOR_MICROS = now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    }
+
+    private static volatile Tracer instance;
+
+    private final String memberId;
+    private final BufferedWriter out;
+    private final Gson gson = new Gson();
+    private final BlockingQueue<Span> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * One recorded span, as written to the trace file
+     */
+    public static class Span {
+        public String traceId;
+        public String member;
+        public String name;
+        public long startMicros;
+        public long durationMicros;
+        public String detail;
+    }
+
+    private Tracer(String memberId, BufferedWriter out) {
+        this.memberId = memberId;
+        this.out = out;
+        this.writer = new Thread(this::drain, "tracer-" + memberId);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Starts recording spans of this member, appending to the given file
+     * @param memberId The ID of this member
+     * @param file The trace file
+     * @throws IOException If the file cannot be opened
+     */
+    public static synchronized void enable(String memberId, Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        disable();
+        instance = new Tracer(memberId, Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Stops recording, writes the spans still queued and closes the trace file
+     */
+    public static synchronized void disable() {
+        Tracer current = instance;
+        instance = null;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return instance != null;
+    }
+
+    /**
+     * Gets the current time from the monotonic clock, anchored to the wall clock
+     * @return Microseconds since the epoch
+     */
+    public static long nowMicros() {
+        return ANCHOR_MICROS + (System.nanoTime() - ANCHOR_NANOS) / 1_000;
+    }
+
+    /**
+     * Records a span ending now
+     * @param traceId The trace the span belongs to; nothing is recorded if null
+     * @param name What happened, such as "send PREPARE"
+     * @param startMicros When it started, from nowMicros()
+     * @param detail Free-form context such as the peer or value, may be null
+     */
+    public static void span(String traceId, String name, long startMicros, String detail) {
+        Tracer current = instance;
+        if (current == null || traceId == null) return;
+        current.record(traceId, name, startMicros, nowMicros(), detail);
+    }
+
+    /*
+     * Queues one span for the writer, dropping it if the queue is full
+     */
+    private void record(String traceId, String name, long startMicros, long endMicros, String detail) {
+        Span span = new Span();
+        span.traceId = traceId;
+        span.member = memberId;
+        span.name = name;
+        span.startMicros = startMicros;
+        span.durationMicros = Math.max(0, endMicros - startMicros);
+        span.detail = detail;
+        if (!queue.offer(span)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /*
+     * Writer thread: appends queued spans to the trace file and flushes at most every
+     * FLUSH_INTERVAL_MS, and once more when stopped after writing what is left
+     */
+    private void drain() {
+        long nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+        boolean unflushed = false;
+        try {
+            while (running || !queue.isEmpty()) {
+                Span span = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (span != null) {
+                    out.write(gson.toJson(span));
+                    out.newLine();
+                    unflushed = true;
+                }
+                if (unflushed && System.nanoTime() - nextFlush >= 0) {
+                    flush();
+                    unflushed = false;
+                    nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+                }
+            }
+            flush();
+        } catch (IOException e) {
+            System.out.println("[Tracer " + memberId + "] Failed to write span: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try { out.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /*
+     * Flushes the file, noting spans dropped since the last flush
+     */
+    private void flush() throws IOException {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            System.out.println("[Tracer " + memberId + "] Dropped " + lost + " spans, queue full");
+        }
+        out.flush();
+    }
+
+    /*
+     * Stops the writer once it has written every queued span
+     */
+    private void stop() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
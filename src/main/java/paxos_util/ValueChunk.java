@@ -0,0 +1,22 @@
+package paxos_util;
+
+/**
+ * Value Chunk Message
+ *
+ * Carries one piece of a large value body, sent by the Proposer to every member before the
+ * value's digest is proposed, or in reply to a FetchValue
+ */
+public class ValueChunk extends PaxosMessage {
+    public String digest;
+    public int index;
+    public int count;
+    public String data;
+
+    public ValueChunk(String fromMemberId, String digest, int index, int count, String data) {
+        super("VALUE_CHUNK", fromMemberId, null, null);
+        this.digest = digest;
+        this.index = index;
+        this.count = count;
+        this.data = data;
+    }
+}
@@ -0,0 +1,25 @@
+package paxos_util;
+
+/**
+ * Versioned Value
+ *
+ * A chosen value together with the log index it was applied at
+ */
+public class VersionedValue {
+    public final String value;
+    public final long index;
+
+    public VersionedValue(String value, long index) {
+        this.value = value;
+        this.index = index;
+    }
+
+    /**
+     * String representation of VersionedValue
+     * @return String format "<index> <value>"
+     */
+    @Override
+    public String toString() {
+        return index + " " + value;
+    }
+}
@@ -0,0 +1,481 @@
+package tools;
+
+import member.MemberConfig;
+import member.NetworkConfig;
+import member.Role;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for a running council.
+ *
+ * Usage: java tools.LoadGenerator [--mode open|closed] [--rate <per second>] [--clients <count>]
+ *        [--duration <seconds>] [--keys <count>] [--members M1,M2,...] [--watch <member>]
+ *        [--timeoutMs <ms>] [--config <network.config>]
+ *
+ * Values are proposed through the members' command ports. A value counts as committed when
+ * the watched member applies it, seen through the /watch command, so the latency covers
+ * admission, consensus and learning. In open-loop mode values are sent at a fixed rate no
+ * matter how the council keeps up, and latency is taken from the time each value was due,
+ * so a stalled sender does not hide queueing. In closed-loop mode each client sends its next
+ * value once the previous one committed, retrying BUSY replies after the suggested delay.
+ *
+ * An instance runs one load test.
+ */
+public class LoadGenerator {
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final long DEFAULT_COMMIT_TIMEOUT_MS = 10_000;
+    private static final long MIN_RETRY_AFTER_MS = 10;
+
+    private final List<InetSocketAddress> targets;
+    private final InetSocketAddress watchTarget;
+    private final int keys;
+    private final long commitTimeoutMs;
+    private final String runId = Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xFFFFFFL);
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final List<Long> latenciesNanos = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private volatile long lastCommitNanos;
+
+    /**
+     * A value waiting to be applied
+     */
+    private static class Pending {
+        final long startNanos;
+        final CompletableFuture<Long> committed = new CompletableFuture<>();
+
+        Pending(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * A line-based connection to a command port
+     */
+    private static class Connection implements AutoCloseable {
+        final Socket socket;
+        final BufferedReader reader;
+        final PrintWriter writer;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            writer = new PrintWriter(socket.getOutputStream(), true);
+        }
+
+        String request(String line) throws IOException {
+            writer.println(line);
+            String reply = reader.readLine();
+            if (reply == null) throw new IOException("Connection closed by " + socket.getRemoteSocketAddress());
+            return reply;
+        }
+
+        @Override
+        public void close() {
+            try { socket.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Outcome of a load test
+     */
+    public static class Report {
+        public final long sent;
+        public final long committed;
+        public final long rejected;
+        public final long timedOut;
+        public final double elapsedSeconds;
+        private final long[] latenciesMicros;
+
+        public Report(long sent, long rejected, long timedOut, double elapsedSeconds, long[] latenciesMicros) {
+            this.sent = sent;
+            this.committed = latenciesMicros.length;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.elapsedSeconds = elapsedSeconds;
+            this.latenciesMicros = latenciesMicros.clone();
+            Arrays.sort(this.latenciesMicros);
+        }
+
+        /**
+         * Gets the commit throughput
+         * @return Committed values per second
+         */
+        public double throughput() {
+            return elapsedSeconds > 0 ? committed / elapsedSeconds : 0;
+        }
+
+        /**
+         * Gets a commit latency percentile, by nearest rank
+         * @param percent The percentile, between 0 and 100
+         * @return The latency in microseconds, or 0 if nothing committed
+         */
+        public long percentileMicros(double percent) {
+            if (latenciesMicros.length == 0) return 0;
+            int rank = (int) Math.ceil(percent / 100 * latenciesMicros.length);
+            return latenciesMicros[Math.max(0, Math.min(latenciesMicros.length - 1, rank - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("sent %d, committed %d, busy %d, timed out %d in %.1f s%n", sent, committed, rejected, timedOut, elapsedSeconds)
+                + String.format("throughput %.1f commits/s%n", throughput())
+                + String.format("latency ms: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+                    percentileMicros(50) / 1000.0, percentileMicros(90) / 1000.0, percentileMicros(99) / 1000.0,
+                    percentileMicros(99.9) / 1000.0, percentileMicros(100) / 1000.0);
+        }
+    }
+
+    /**
+     * Creates a load generator
+     * @param targets The command ports values are proposed through, used round-robin
+     * @param watchTarget The command port of the member whose applied values are watched
+     * @param keys How many distinct keys the values use, spreading them over the shards
+     * @param commitTimeoutMs How long a value may take to commit before it counts as timed out
+     */
+    public LoadGenerator(List<InetSocketAddress> targets, InetSocketAddress watchTarget, int keys, long commitTimeoutMs) {
+        if (targets.isEmpty() || keys < 1 || commitTimeoutMs < 1) {
+            throw new IllegalArgumentException("Need at least one target, one key and a positive timeout");
+        }
+        this.targets = List.copyOf(targets);
+        this.watchTarget = watchTarget;
+        this.keys = keys;
+        this.commitTimeoutMs = commitTimeoutMs;
+    }
+
+    /**
+     * Sends values at a fixed rate, independent of how fast they commit
+     * @param ratePerSecond How many values to send per second
+     * @param durationMs How long to send for
+     * @return The results, once every value sent has committed or timed out
+     * @throws IOException If a command port cannot be reached
+     */
+    public Report runOpenLoop(double ratePerSecond, long durationMs) throws IOException, InterruptedException {
+        if (ratePerSecond <= 0) throw new IllegalArgumentException("Rate must be positive");
+
+        // Open for its subscription only; values it reports are matched by the watch thread
+        Connection watch = startWatching();
+        List<Connection> connections = new ArrayList<>();
+        try {
+            List<Queue<String>> awaitingReply = new ArrayList<>();
+            for (InetSocketAddress target : targets) {
+                Connection connection = new Connection(target);
+                Queue<String> sentValues = new ConcurrentLinkedQueue<>();
+                connections.add(connection);
+                awaitingReply.add(sentValues);
+                startDaemon("load-replies-" + target.getPort(), () -> readReplies(connection, sentValues));
+            }
+
+            long intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+            long start = System.nanoTime();
+            long end = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+            long due = start;
+            for (int i = 0; due < end; i++) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+
+                String value = nextValue();
+                int target = i % connections.size();
+                pending.put(value, new Pending(due));
+                awaitingReply.get(target).add(value);
+                connections.get(target).writer.println(value);
+                sent.incrementAndGet();
+                due += intervalNanos;
+            }
+
+            awaitOutstanding();
+            return report(start, end);
+        } finally {
+            connections.forEach(Connection::close);
+            watch.close();
+        }
+    }
+
+    /**
+     * Runs clients that each send a value and wait for it to commit before sending the next
+     * @param clients How many clients run concurrently
+     * @param durationMs How long the clients keep sending
+     * @return The results
+     * @throws IOException If a command port cannot be reached
+     */
+    public Report runClosedLoop(int clients, long durationMs) throws IOException, InterruptedException {
+        if (clients < 1) throw new IllegalArgumentException("Need at least one client");
+
+        // Open for its subscription only; values it reports are matched by the watch thread
+        Connection watch = startWatching();
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int c = 0; c < clients; c++) {
+                connections.add(new Connection(targets.get(c % targets.size())));
+            }
+
+            long start = System.nanoTime();
+            long end = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+            List<Thread> threads = new ArrayList<>();
+            for (Connection connection : connections) {
+                threads.add(startDaemon("load-client-" + threads.size(), () -> runClient(connection, end)));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return report(start, end);
+        } finally {
+            connections.forEach(Connection::close);
+            watch.close();
+        }
+    }
+
+    /*
+     * One closed-loop client: propose, wait for the commit, repeat until the end time
+     * @param connection The client's command port connection
+     * @param endNanos When to stop sending
+     */
+    private void runClient(Connection connection, long endNanos) {
+        try {
+            while (System.nanoTime() < endNanos) {
+                String value = nextValue();
+                Pending entry = new Pending(System.nanoTime());
+                pending.put(value, entry);
+                sent.incrementAndGet();
+
+                String reply = connection.request(value);
+                while (reply.startsWith("BUSY") && System.nanoTime() < endNanos) {
+                    rejected.incrementAndGet();
+                    Thread.sleep(retryAfterMs(reply));
+                    reply = connection.request(value);
+                }
+                if (!reply.equals("QUEUED")) {
+                    pending.remove(value);
+                    if (!reply.startsWith("BUSY")) {
+                        System.out.println("[LoadGenerator] Unexpected reply '" + reply + "', stopping client");
+                        return;
+                    }
+                    continue;
+                }
+
+                try {
+                    entry.committed.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    pending.remove(value);
+                    timedOut.incrementAndGet();
+                }
+            }
+        } catch (IOException | ExecutionException e) {
+            System.out.println("[LoadGenerator] Client failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Matches the replies of an open-loop connection to the values sent on it, in order
+     * @param connection The connection
+     * @param sentValues The values sent on it that have no reply yet
+     */
+    private void readReplies(Connection connection, Queue<String> sentValues) {
+        try {
+            String reply;
+            while ((reply = connection.reader.readLine()) != null) {
+                String value = sentValues.poll();
+                if (value == null || reply.equals("QUEUED")) continue;
+                pending.remove(value);
+                if (reply.startsWith("BUSY")) {
+                    rejected.incrementAndGet();
+                } else {
+                    System.out.println("[LoadGenerator] Unexpected reply '" + reply + "' for '" + value + "'");
+                }
+            }
+        } catch (IOException ignored) {
+            // Closed at the end of the run
+        }
+    }
+
+    /*
+     * Subscribes to the applied values of the watched member
+     * @return The watch connection; closing it ends the subscription
+     */
+    private Connection startWatching() throws IOException {
+        Connection watch = new Connection(watchTarget);
+        String ack = watch.request("/watch");
+        if (!ack.equals("WATCHING")) {
+            watch.close();
+            throw new IOException("Member at " + watchTarget + " refused /watch: " + ack);
+        }
+        startDaemon("load-watch", () -> {
+            try {
+                String line;
+                while ((line = watch.reader.readLine()) != null) {
+                    if (line.startsWith("APPLIED ")) {
+                        String[] parts = line.split(" ", 4);
+                        if (parts.length == 4) onApplied(parts[3]);
+                    } else if (line.startsWith("DROPPED ")) {
+                        System.out.println("[LoadGenerator] Watched member skipped " + line.substring(8) + " applied values, some commits will time out");
+                    }
+                }
+            } catch (IOException ignored) {
+                // Closed at the end of the run
+            }
+        });
+        return watch;
+    }
+
+    /*
+     * Records the commit of a value sent by this run
+     * @param value A value applied by the watched member
+     */
+    private void onApplied(String value) {
+        Pending entry = pending.remove(value);
+        if (entry == null) return;
+        long now = System.nanoTime();
+        long latency = now - entry.startNanos;
+        latenciesNanos.add(latency);
+        lastCommitNanos = now;
+        entry.committed.complete(latency);
+    }
+
+    /*
+     * Waits for values still in flight after an open-loop run, counting the rest as timed out
+     */
+    private void awaitOutstanding() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commitTimeoutMs);
+        while (!pending.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        timedOut.addAndGet(pending.size());
+        pending.clear();
+    }
+
+    /*
+     * Builds the report. Throughput is measured over the sending period, or up to the last
+     * commit if values were still committing after it.
+     */
+    private Report report(long startNanos, long endNanos) {
+        long[] micros;
+        synchronized (latenciesNanos) {
+            micros = latenciesNanos.stream().mapToLong(TimeUnit.NANOSECONDS::toMicros).toArray();
+        }
+        double elapsedSeconds = (Math.max(endNanos, lastCommitNanos) - startNanos) / 1e9;
+        return new Report(sent.get(), rejected.get(), timedOut.get(), elapsedSeconds, micros);
+    }
+
+    /*
+     * Creates a unique value, keyed so that values spread over the shards
+     */
+    private String nextValue() {
+        long n = sequence.getAndIncrement();
+        return "k" + (n % keys) + "=load-" + runId + "-" + n;
+    }
+
+    /*
+     * Parses the delay suggested by a "BUSY retry-after=<ms>" reply
+     */
+    private static long retryAfterMs(String reply) {
+        int at = reply.indexOf("retry-after=");
+        if (at < 0) return MIN_RETRY_AFTER_MS;
+        try {
+            return Math.max(MIN_RETRY_AFTER_MS, Long.parseLong(reply.substring(at + "retry-after=".length()).trim()));
+        } catch (NumberFormatException e) {
+            return MIN_RETRY_AFTER_MS;
+        }
+    }
+
+    private static Thread startDaemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = "closed";
+        double rate = 10;
+        int clients = 1;
+        long durationMs = 30_000;
+        int keys = 16;
+        long timeoutMs = DEFAULT_COMMIT_TIMEOUT_MS;
+        String configPath = "conf/network.config";
+        List<String> memberIds = new ArrayList<>();
+        String watchId = null;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            String value = args[i + 1];
+            switch (args[i].toLowerCase()) {
+                case "--mode": mode = value.toLowerCase(); break;
+                case "--rate": rate = Double.parseDouble(value); break;
+                case "--clients": clients = Integer.parseInt(value); break;
+                case "--duration": durationMs = (long) (Double.parseDouble(value) * 1000); break;
+                case "--keys": keys = Integer.parseInt(value); break;
+                case "--members": memberIds.addAll(Arrays.asList(value.split(","))); break;
+                case "--watch": watchId = value; break;
+                case "--timeoutms": timeoutMs = Long.parseLong(value); break;
+                case "--config": configPath = value; break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        Map<String, MemberConfig> configs = NetworkConfig.load(configPath).members;
+        if (memberIds.isEmpty()) {
+            // Learner-only members answer proposals with READ_ONLY
+            configs.forEach((id, config) -> { if (config.role == Role.VOTER) memberIds.add(id); });
+            Collections.sort(memberIds);
+        }
+        List<InetSocketAddress> targets = new ArrayList<>();
+        for (String id : memberIds) {
+            MemberConfig config = configs.get(id);
+            if (config == null) {
+                System.out.println("Error: Member ID " + id + " not found in " + configPath);
+                return;
+            }
+            targets.add(commandPort(config));
+        }
+        if (watchId == null) watchId = memberIds.get(0);
+        if (!configs.containsKey(watchId)) {
+            System.out.println("Error: Member ID " + watchId + " not found in " + configPath);
+            return;
+        }
+
+        LoadGenerator generator = new LoadGenerator(targets, commandPort(configs.get(watchId)), keys, timeoutMs);
+        Report report;
+        if (mode.equals("open")) {
+            System.out.println("[LoadGenerator] Open loop, " + rate + "/s for " + durationMs + " ms through " + memberIds + ", watching " + watchId);
+            report = generator.runOpenLoop(rate, durationMs);
+        } else if (mode.equals("closed")) {
+            System.out.println("[LoadGenerator] Closed loop, " + clients + " client(s) for " + durationMs + " ms through " + memberIds + ", watching " + watchId);
+            report = generator.runClosedLoop(clients, durationMs);
+        } else {
+            System.out.println("Error: Unknown mode " + mode);
+            return;
+        }
+        System.out.println(report);
+    }
+
+    /*
+     * Gets the command port address of a member, its port + 100
+     */
+    private static InetSocketAddress commandPort(MemberConfig config) {
+        return new InetSocketAddress(config.address.getHostString(), config.port + 100);
+    }
+}
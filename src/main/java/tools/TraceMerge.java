@@ -0,0 +1,133 @@
+package tools;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import paxos_util.Tracer.Span;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Merges the trace files of several members into one timeline per decision.
+ *
+ * Usage: java tools.TraceMerge <file or directory>... [--trace <traceId>]
+ *
+ * Directories are searched for trace-*.jsonl files. Each decision is printed with its spans
+ * in start order, offsets relative to the earliest span of the trace. Member clocks are
+ * assumed to be roughly in sync; offsets across members are only as good as that.
+ */
+public class TraceMerge {
+    private static final Gson gson = new Gson();
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        String only = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--trace") && i + 1 < args.length) {
+                only = args[++i];
+            } else {
+                files.addAll(traceFiles(Paths.get(args[i])));
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: java tools.TraceMerge <file or directory>... [--trace <traceId>]");
+            return;
+        }
+
+        Map<String, List<Span>> traces = merge(files);
+        for (Map.Entry<String, List<Span>> trace : traces.entrySet()) {
+            if (only != null && !only.equals(trace.getKey())) continue;
+            System.out.println(format(trace.getKey(), trace.getValue()));
+        }
+    }
+
+    /*
+     * Finds the trace files at a path
+     * @param path A trace file, or a directory holding trace-*.jsonl files
+     * @return The trace files
+     */
+    private static List<Path> traceFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) return List.of(path);
+        try (Stream<Path> entries = Files.list(path)) {
+            return entries
+                .filter(p -> p.getFileName().toString().startsWith("trace-") && p.getFileName().toString().endsWith(".jsonl"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Reads trace files and groups their spans by trace
+     * @param files The trace files of the members
+     * @return Spans of each trace in start order, traces ordered by their first span
+     * @throws IOException If a file cannot be read
+     */
+    public static Map<String, List<Span>> merge(List<Path> files) throws IOException {
+        Map<String, List<Span>> byTrace = new HashMap<>();
+        for (Path file : files) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    Span span;
+                    try {
+                        span = gson.fromJson(line, Span.class);
+                    } catch (JsonSyntaxException e) {
+                        // A member killed mid-write leaves a partial last line
+                        continue;
+                    }
+                    if (span == null || span.traceId == null) continue;
+                    byTrace.computeIfAbsent(span.traceId, id -> new ArrayList<>()).add(span);
+                }
+            }
+        }
+
+        Comparator<Span> byStart = Comparator.comparingLong((Span s) -> s.startMicros)
+            .thenComparingLong(s -> s.startMicros + s.durationMicros);
+        byTrace.values().forEach(spans -> spans.sort(byStart));
+
+        Map<String, List<Span>> ordered = new LinkedHashMap<>();
+        byTrace.entrySet().stream()
+            .sorted(Comparator.comparingLong(e -> e.getValue().get(0).startMicros))
+            .forEach(e -> ordered.put(e.getKey(), e.getValue()));
+        return ordered;
+    }
+
+    /**
+     * Formats the timeline of one decision
+     * @param traceId The trace
+     * @param spans Its spans in start order
+     * @return A header with the overall duration, then one line per span
+     */
+    public static String format(String traceId, List<Span> spans) {
+        long start = spans.get(0).startMicros;
+        long end = start;
+        for (Span span : spans) {
+            end = Math.max(end, span.startMicros + span.durationMicros);
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append("Trace ").append(traceId).append(" (").append(millis(end - start)).append(" ms, ")
+            .append(spans.size()).append(" spans)\n");
+        for (Span span : spans) {
+            out.append(String.format("  +%9s ms %9s ms  %-6s %-24s %s%n",
+                millis(span.startMicros - start), millis(span.durationMicros),
+                span.member, span.name, span.detail != null ? span.detail : ""));
+        }
+        return out.toString();
+    }
+
+    /*
+     * Formats microseconds as milliseconds with three decimals
+     */
+    private static String millis(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+}
@@ -0,0 +1,159 @@
+package epaxos_logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.gson.Gson;
+import network.MemberTransport;
+import paxos_util.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+public class EPaxosReplicaTest {
+
+    @Mock
+    private MemberTransport mockTransport;
+
+    private EPaxosReplica replica;
+    private Set<String> replicaIds;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        replicaIds = new HashSet<>(Set.of("M1", "M2", "M3"));
+        replica = new EPaxosReplica("M1", replicaIds, mockTransport);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        replica.shutdown();
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void testNonConflictingCommandCommitsOnFastPath() throws Exception {
+        // Deliver messages synchronously between three replicas
+        Map<String, EPaxosReplica> replicas = new HashMap<>();
+        Gson gson = new Gson();
+        for (String id : replicaIds) {
+            String self = id;
+            replicas.put(id, new EPaxosReplica(id, replicaIds, new MemberTransport() {
+                public void sendMessage(String targetId, Object message) {
+                    replicas.get(targetId).handleMessage(self, gson.toJson(message));
+                }
+                public void startListening() {}
+            }));
+        }
+
+        CompletableFuture<String> executed = replicas.get("M2").propose("x=1");
+
+        assertEquals("x=1", executed.getNow(null));
+        for (EPaxosReplica r : replicas.values()) {
+            assertEquals("1", r.get("x"));
+        }
+        assertTrue(outputStream.toString().contains("Fast path commit of M2.0"));
+    }
+
+    @Test
+    public void testPreAcceptAddsLocalConflicts() {
+        replica.handleCommit(new Commit("M2", "M2", 0, "x=1", 1, List.of()));
+
+        replica.handlePreAccept(new PreAccept("M3", "M3", 0, "x=2", 1, List.of()), "M3");
+
+        verify(mockTransport).sendMessage(eq("M3"), argThat(msg ->
+            msg instanceof PreAcceptOk ok && ok.deps.contains("M2.0") && ok.seq == 2
+        ));
+    }
+
+    @Test
+    public void testConflictingReplyTakesSlowPath() {
+        replica.propose("x=1");
+
+        replica.handlePreAcceptOk(new PreAcceptOk("M2", "M1", 0, "x=1", 2, List.of("M3.0")), "M2");
+
+        verify(mockTransport).sendMessage(eq("M2"), argThat(msg ->
+            msg instanceof EPaxosAccept accept && accept.deps.contains("M3.0") && accept.seq == 2
+        ));
+        verify(mockTransport, never()).sendMessage(any(), any(Commit.class));
+
+        replica.handleAcceptOk(new EPaxosAcceptOk("M2", "M1", 0, "x=1", 2, List.of("M3.0")), "M2");
+
+        verify(mockTransport).sendMessage(eq("M3"), any(Commit.class));
+    }
+
+    @Test
+    public void testExecutionWaitsForDependencies() {
+        replica.handleCommit(new Commit("M2", "M2", 0, "x=b", 2, List.of("M3.0")));
+        assertNull(replica.get("x"));
+
+        replica.handleCommit(new Commit("M3", "M3", 0, "x=a", 1, List.of()));
+        assertEquals("b", replica.get("x"));
+    }
+
+    @Test
+    public void testDependencyCycleExecutedBySeq() {
+        replica.handleCommit(new Commit("M2", "M2", 0, "x=b", 2, List.of("M3.0")));
+        replica.handleCommit(new Commit("M3", "M3", 0, "x=a", 1, List.of("M2.0")));
+
+        assertEquals("b", replica.get("x"));
+        String output = outputStream.toString();
+        assertTrue(output.indexOf("Executed M3.0") < output.indexOf("Executed M2.0"));
+    }
+
+    @Test
+    public void testUnansweredPhasesSentAgain() {
+        replica.setSlowPathTimeout(50);
+        replica.propose("x=1");
+        verify(mockTransport, timeout(1000).atLeast(2)).sendMessage(eq("M3"), any(PreAccept.class));
+
+        // M2 answers the resent Pre-Accept with other attributes; nobody answers the Accept
+        replica.handlePreAcceptOk(new PreAcceptOk("M2", "M1", 0, "x=1", 2, List.of("M3.0")), "M2");
+        verify(mockTransport, timeout(1000).atLeast(2)).sendMessage(eq("M2"), any(EPaxosAccept.class));
+        assertTrue(outputStream.toString().contains("Sent EPAXOS_ACCEPT of M1.0 again"));
+
+        replica.handleAcceptOk(new EPaxosAcceptOk("M3", "M1", 0, "x=1", 2, List.of("M3.0")), "M3");
+        verify(mockTransport).sendMessage(eq("M2"), any(Commit.class));
+    }
+
+    @Test
+    public void testMissingCommitRequestedFromLeader() {
+        replica.setSlowPathTimeout(50);
+        replica.handleCommit(new Commit("M2", "M2", 0, "x=b", 2, List.of("M3.0")));
+
+        verify(mockTransport, timeout(1000)).sendMessage(eq("M3"), argThat(msg ->
+            msg instanceof CommitRequest request && request.leaderId.equals("M3") && request.instance == 0
+        ));
+
+        replica.handleCommitRequest(new CommitRequest("M3", "M2", 0), "M3");
+        verify(mockTransport).sendMessage(eq("M3"), argThat(msg ->
+            msg instanceof Commit commit && commit.leaderId.equals("M2") && "x=b".equals(commit.proposalValue)
+        ));
+    }
+
+    @Test
+    public void testExecutedInstancesDropped() {
+        for (int slot = 0; slot < 100; slot++) {
+            List<String> deps = slot > 0 ? List.of("M2." + (slot - 1)) : List.of();
+            replica.handleCommit(new Commit("M2", "M2", slot, "x=" + slot, slot + 1, deps));
+        }
+        assertEquals("99", replica.get("x"));
+        assertEquals(1, replica.getInstanceCount());
+
+        // A dropped dependency counts as executed, and its late Commit is ignored
+        replica.handleCommit(new Commit("M3", "M3", 0, "x=z", 101, List.of("M2.5", "M2.99")));
+        replica.handleCommit(new Commit("M2", "M2", 5, "x=5", 6, List.of("M2.4")));
+        assertEquals("z", replica.get("x"));
+        assertEquals(2, replica.getInstanceCount());
+    }
+}
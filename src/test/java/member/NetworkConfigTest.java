@@ -0,0 +1,55 @@
+package member;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class NetworkConfigTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testMembersAndSettings() throws IOException {
+        Path config = tempDir.resolve("network.config");
+        Files.write(config, """
+            # council
+            M1,localhost,9001,RELIABLE
+            M2,localhost,9002,LATENT
+
+            quorum=grid
+            quorum.grid = M1 | M2
+            """.getBytes());
+
+        NetworkConfig loaded = NetworkConfig.load(config.toString());
+
+        assertEquals(List.of("M1", "M2"), List.copyOf(loaded.members.keySet()));
+        assertEquals(Profile.LATENT, loaded.members.get("M2").profile);
+        assertEquals("grid", loaded.settings.get("quorum"));
+        assertEquals("M1 | M2", loaded.settings.get("quorum.grid"));
+    }
+
+    @Test
+    public void testRoleColumn() throws IOException {
+        Path config = tempDir.resolve("network.config");
+        Files.write(config, """
+            M1,localhost,9001,RELIABLE
+            L1,localhost,9011,STANDARD,LEARNER
+            """.getBytes());
+
+        NetworkConfig loaded = NetworkConfig.load(config.toString());
+
+        assertEquals(Role.VOTER, loaded.members.get("M1").role);
+        assertEquals(Role.LEARNER, loaded.members.get("L1").role);
+    }
+
+    @Test
+    public void testMissingFile() {
+        assertThrows(IOException.class, () -> NetworkConfig.load(tempDir.resolve("missing.config").toString()));
+    }
+}
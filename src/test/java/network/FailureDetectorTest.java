@@ -0,0 +1,100 @@
+package network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Set;
+
+public class FailureDetectorTest {
+    private static final long MS = 1_000_000L;
+
+    private FailureDetector detector;
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        detector = new FailureDetector("M1", 100, FailureDetector.DEFAULT_THRESHOLD);
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    /*
+     * Records a heartbeat from a peer every intervalMs, starting at 0
+     * @return The time of the last heartbeat in nanoseconds
+     */
+    private long beat(String peerId, int count, long intervalMs) {
+        long now = 0;
+        for (int i = 0; i < count; i++) {
+            now = i * intervalMs * MS;
+            detector.heartbeat(peerId, now);
+        }
+        return now;
+    }
+
+    @Test
+    public void testUnknownPeerNotSuspected() {
+        assertEquals(0.0, detector.phi("M2", 10_000 * MS));
+        assertFalse(detector.isSuspected("M2", 10_000 * MS));
+    }
+
+    @Test
+    public void testPhiGrowsWithSilence() {
+        long last = beat("M2", 20, 100);
+
+        double onTime = detector.phi("M2", last + 100 * MS);
+        double late = detector.phi("M2", last + 500 * MS);
+        double later = detector.phi("M2", last + 1000 * MS);
+
+        assertTrue(onTime < 1);
+        assertTrue(late > onTime);
+        assertTrue(later > late);
+        assertFalse(detector.isSuspected("M2", last + 200 * MS));
+        assertTrue(detector.isSuspected("M2", last + 2000 * MS));
+    }
+
+    @Test
+    public void testJitteryPeerToleratesLongerSilence() {
+        long steady = beat("M2", 50, 100);
+        long now = 0;
+        for (int i = 0; i < 50; i++) {
+            now += (i % 2 == 0 ? 20 : 500) * MS;
+            detector.heartbeat("M3", now);
+        }
+
+        assertTrue(detector.isSuspected("M2", steady + 1000 * MS));
+        assertFalse(detector.isSuspected("M3", now + 1000 * MS));
+    }
+
+    @Test
+    public void testHeartbeatClearsSuspicion() {
+        long last = beat("M2", 10, 100);
+        assertTrue(detector.isSuspected("M2", last + 5000 * MS));
+
+        detector.heartbeat("M2", last + 5000 * MS);
+
+        assertFalse(detector.isSuspected("M2", last + 5050 * MS));
+    }
+
+    @Test
+    public void testSelfIgnoredAndRemovedPeersForgotten() {
+        long longAgo = System.nanoTime() - 10_000 * MS;
+        detector.heartbeat("M1", longAgo);
+        detector.heartbeat("M2", longAgo);
+        detector.heartbeat("M3", longAgo);
+
+        assertFalse(detector.isSuspected("M1"));
+        assertEquals(Set.of("M2", "M3"), detector.getSuspected());
+
+        detector.retain(List.of("M1", "M2"));
+        assertEquals(Set.of("M2"), detector.getSuspected());
+    }
+}
@@ -0,0 +1,129 @@
+package network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+public class FaultInjectingTransportTest {
+
+    @Mock
+    private MemberTransport mockTransport;
+
+    @Mock
+    private MessageHandler mockHandler;
+
+    private FaultInjectingTransport faults;
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        faults = new FaultInjectingTransport("M1", mockHandler, new Random(42));
+        faults.setTransport(mockTransport);
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        faults.shutdown();
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void testNoFaultsPassThrough() {
+        faults.sendMessage("M2", "out");
+        faults.handleMessage("M2", "in");
+
+        verify(mockTransport).sendMessage("M2", "out");
+        verify(mockHandler).handleMessage("M2", "in");
+    }
+
+    @Test
+    public void testPartitionBlocksBothDirections() {
+        assertTrue(faults.control("partition M2,M3").startsWith("OK"));
+
+        faults.sendMessage("M2", "out");
+        faults.handleMessage("M3", "in");
+        faults.sendMessage("M4", "out");
+
+        verify(mockTransport, never()).sendMessage(eq("M2"), any());
+        verify(mockHandler, never()).handleMessage(eq("M3"), any());
+        verify(mockTransport).sendMessage("M4", "out");
+    }
+
+    @Test
+    public void testAsymmetricBlock() {
+        faults.control("block M2 out");
+
+        faults.sendMessage("M2", "out");
+        faults.handleMessage("M2", "in");
+
+        verify(mockTransport, never()).sendMessage(any(), any());
+        verify(mockHandler).handleMessage("M2", "in");
+    }
+
+    @Test
+    public void testLossAndDuplication() {
+        faults.control("loss M2 1.0 out");
+        faults.control("duplicate M3 1.0");
+
+        faults.sendMessage("M2", "lost");
+        faults.sendMessage("M3", "twice");
+
+        verify(mockTransport, never()).sendMessage(eq("M2"), any());
+        verify(mockTransport, times(2)).sendMessage("M3", "twice");
+    }
+
+    @Test
+    public void testDelayedDelivery() {
+        faults.control("delay M2 fixed 200 in");
+
+        faults.handleMessage("M2", "late");
+
+        verify(mockHandler, never()).handleMessage(any(), any());
+        verify(mockHandler, timeout(2000)).handleMessage("M2", "late");
+    }
+
+    @Test
+    public void testWildcardAppliesExceptToSelfAndHealRemoves() {
+        faults.control("block * out");
+
+        faults.sendMessage("M2", "blocked");
+        faults.sendMessage("M1", "self");
+        verify(mockTransport, never()).sendMessage(eq("M2"), any());
+        verify(mockTransport).sendMessage("M1", "self");
+
+        assertEquals("OK no faults", faults.control("heal"));
+        faults.sendMessage("M2", "healed");
+        verify(mockTransport).sendMessage("M2", "healed");
+    }
+
+    @Test
+    public void testRulesCombineAndStatusDescribesThem() {
+        faults.control("loss M2 0.25 in");
+        faults.control("delay M2 uniform 10 50 in");
+
+        FaultInjectingTransport.LinkFault fault = faults.getFault("M2", false);
+        assertEquals(0.25, fault.loss);
+        assertEquals(FaultInjectingTransport.DelayKind.UNIFORM, fault.delayKind);
+        assertEquals("OK in M2: loss 0.25, delay uniform 10-50 ms", faults.control("status"));
+        assertSame(FaultInjectingTransport.LinkFault.NONE, faults.getFault("M2", true));
+    }
+
+    @Test
+    public void testBadArguments() {
+        assertTrue(faults.control("loss M2 1.5").startsWith("BAD_ARGUMENT"));
+        assertTrue(faults.control("delay M2 normal 10").startsWith("BAD_ARGUMENT"));
+        assertTrue(faults.control("block M2 sideways").startsWith("BAD_ARGUMENT"));
+        assertTrue(faults.control("jam").startsWith("BAD_ARGUMENT"));
+        assertEquals("OK no faults", faults.control("status"));
+    }
+}
@@ -0,0 +1,168 @@
+package network;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import com.google.gson.Gson;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class MessageCodecTest {
+
+    @Test
+    public void testRoundTripSeveralFrames() throws IOException {
+        MessageCodec codec = new MessageCodec(new BufferPool(1024, 4));
+        ByteBuffer stream = ByteBuffer.allocate(4096);
+        String[] messages = { "{\"type\":\"PREPARE\"}", "{\"proposalValue\":\"Zoë – 東京\"}", "" };
+        for (String message : messages) {
+            PooledBuffer frame = codec.encode(message);
+            stream.put(frame.buffer());
+            frame.release();
+        }
+        stream.flip();
+
+        for (String message : messages) {
+            assertEquals(message, codec.decode(stream));
+        }
+        assertNull(codec.decode(stream));
+    }
+
+    @Test
+    public void testLargeFramesCompressed() throws IOException {
+        MessageCodec codec = new MessageCodec(new BufferPool(1024, 4));
+        String large = "{\"proposalValue\":\"" + "abc".repeat(2000) + "\"}";
+        String small = "{\"type\":\"PREPARE\"}";
+
+        PooledBuffer compressed = codec.encode(large, 512);
+        PooledBuffer uncompressed = codec.encode(small, 512);
+        assertTrue(compressed.buffer().remaining() < large.length() / 10);
+        assertEquals(MessageCodec.HEADER_BYTES + small.length(), uncompressed.buffer().remaining());
+        assertEquals(compressed.buffer().remaining(), MessageCodec.frameSize(compressed.buffer()));
+
+        ByteBuffer stream = ByteBuffer.allocate(8192);
+        stream.put(compressed.buffer()).put(uncompressed.buffer()).flip();
+        compressed.release();
+        uncompressed.release();
+
+        assertEquals(large, codec.decode(stream));
+        assertEquals(small, codec.decode(stream));
+    }
+
+    @Test
+    public void testIncompressibleFrameSentAsIs() throws IOException {
+        MessageCodec codec = new MessageCodec(new BufferPool(1024, 4));
+        // Too short and varied for Deflate to save the bytes of its length prefix
+        String message = "{\"v\":\"q8Zr!kX2\"}";
+
+        PooledBuffer frame = codec.encode(message, 0);
+        assertEquals(MessageCodec.HEADER_BYTES + message.length(), frame.buffer().remaining());
+        assertEquals(message, codec.decode(frame.buffer()));
+        frame.release();
+    }
+
+    @Test
+    public void testCorruptCompressedFrameRejected() throws IOException {
+        MessageCodec codec = new MessageCodec(new BufferPool(1024, 4));
+        PooledBuffer frame = codec.encode("x".repeat(4000), 0);
+        ByteBuffer corrupt = ByteBuffer.allocate(frame.buffer().remaining()).put(frame.buffer());
+        frame.release();
+        corrupt.putInt(MessageCodec.HEADER_BYTES, 5000).flip();
+
+        assertThrows(IOException.class, () -> codec.decode(corrupt));
+    }
+
+    @Test
+    public void testPartialFrameWaitsForMoreBytes() throws IOException {
+        MessageCodec codec = new MessageCodec(new BufferPool(1024, 4));
+        PooledBuffer frame = codec.encode("{\"type\":\"ACCEPTED\"}");
+        ByteBuffer bytes = frame.buffer();
+
+        ByteBuffer partial = ByteBuffer.allocate(64);
+        partial.put(bytes.duplicate().limit(6)).flip();
+        assertNull(codec.decode(partial));
+        assertEquals(0, partial.position());
+
+        assertEquals(4 + 19, MessageCodec.frameSize(bytes));
+        assertEquals("{\"type\":\"ACCEPTED\"}", codec.decode(bytes));
+        frame.release();
+    }
+
+    @Test
+    public void testInvalidLengthRejected() {
+        MessageCodec codec = new MessageCodec(new BufferPool(1024, 4));
+        ByteBuffer bad = ByteBuffer.allocate(8).putInt(-5).putInt(0).flip();
+
+        assertThrows(IOException.class, () -> codec.decode(bad));
+    }
+
+    @Test
+    public void testReleasedBuffersAreReused() throws IOException {
+        BufferPool pool = new BufferPool(1024, 4);
+        MessageCodec codec = new MessageCodec(pool);
+        for (int i = 0; i < 100; i++) {
+            codec.encode("{\"instance\":" + i + "}").release();
+        }
+
+        assertEquals(1, pool.getAllocatedCount());
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test
+    public void testReferenceCounting() {
+        BufferPool pool = new BufferPool(1024, 4);
+        PooledBuffer buffer = pool.acquire(100);
+        assertTrue(buffer.buffer().isDirect());
+
+        buffer.retain();
+        buffer.release();
+        assertEquals(0, pool.getFreeCount());
+        buffer.release();
+        assertEquals(1, pool.getFreeCount());
+
+        assertThrows(IllegalStateException.class, buffer::release);
+        assertThrows(IllegalStateException.class, buffer::retain);
+    }
+
+    @Test
+    public void testOversizedRequestNotPooled() {
+        BufferPool pool = new BufferPool(1024, 4);
+        PooledBuffer large = pool.acquire(4096);
+        assertTrue(large.buffer().capacity() >= 4096);
+
+        large.release();
+        assertEquals(0, pool.getAllocatedCount());
+        assertEquals(0, pool.getFreeCount());
+    }
+
+    @Test
+    public void testFrameStaysPooledUntilItsBytesOutgrowIt() throws IOException {
+        BufferPool pool = new BufferPool(1024, 4);
+        MessageCodec codec = new MessageCodec(pool);
+
+        // 900 chars would reserve 2700 bytes at three bytes per char, but encode to 900
+        PooledBuffer fits = codec.encode("a".repeat(900));
+        assertTrue(fits.buffer().isDirect());
+        fits.release();
+
+        String large = "é".repeat(1000);
+        PooledBuffer grown = codec.encode(large);
+        assertFalse(grown.buffer().isDirect());
+        assertEquals(large, codec.decode(grown.buffer()));
+        grown.release();
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test
+    public void testMessageSerializedIntoFrame() throws IOException {
+        MessageCodec codec = new MessageCodec(new BufferPool(64, 4));
+        Gson gson = new Gson();
+        // Long enough to grow the buffer in the middle of a surrogate pair
+        List<String> message = List.of("{\"v\":\"" + "\uD83D\uDE00".repeat(100) + "\"}", "<b>");
+
+        PooledBuffer frame = codec.encode(message, gson, -1);
+        assertEquals(gson.toJson(message), codec.decode(frame.buffer()));
+        frame.release();
+    }
+}
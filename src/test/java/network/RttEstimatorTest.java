@@ -0,0 +1,42 @@
+package network;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+public class RttEstimatorTest {
+
+    @Test
+    public void testFirstSampleSetsVariationToHalf() {
+        RttEstimator estimator = new RttEstimator();
+        estimator.record("M1", 1_000);
+
+        assertEquals(1_000, estimator.getSmoothedRttNanos("M1"));
+        assertEquals(500, estimator.getRttVariationNanos("M1"));
+        assertEquals(3_000, estimator.getTimeoutNanos("M1"));
+        assertEquals(-1, estimator.getTimeoutNanos("M2"));
+    }
+
+    @Test
+    public void testJitterWidensTimeout() {
+        RttEstimator steady = new RttEstimator();
+        RttEstimator jittery = new RttEstimator();
+        for (int i = 0; i < 20; i++) {
+            steady.record("M1", 1_000);
+            jittery.record("M1", i % 2 == 0 ? 200 : 1_800);
+        }
+
+        assertTrue(jittery.getTimeoutNanos("M1") > steady.getTimeoutNanos("M1"));
+        assertTrue(steady.getTimeoutNanos("M1") < 1_100);
+    }
+
+    @Test
+    public void testRankUnknownPeersLast() {
+        RttEstimator estimator = new RttEstimator();
+        estimator.record("M3", 10);
+        estimator.record("M2", 20);
+
+        assertEquals(List.of("M3", "M2", "M1"), estimator.rank(List.of("M1", "M2", "M3")));
+    }
+}
@@ -0,0 +1,281 @@
+package network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import member.Profile;
+import paxos_util.Accepted;
+import paxos_util.ProposalNumber;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class SocketTransportTest {
+    private final List<SocketTransport> transports = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        transports.forEach(SocketTransport::shutdown);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private SocketTransport transport(String id, int port, Map<String, InetSocketAddress> members, MessageHandler handler) {
+        SocketTransport transport = new SocketTransport(id, port, members, handler, Profile.RELIABLE);
+        transports.add(transport);
+        return transport;
+    }
+
+    private static void awaitCount(List<?> received, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private void sendBurst(boolean batchFrames, List<String> received) throws Exception {
+        int port1 = freePort(), port2 = freePort();
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", port1));
+        members.put("M2", new InetSocketAddress("localhost", port2));
+
+        SocketTransport sender = transport("M1", port1, members, (from, msg) -> {});
+        SocketTransport receiver = transport("M2", port2, members, (from, msg) -> received.add(from + " " + msg));
+        sender.setBatchFrames(batchFrames);
+        receiver.startListening();
+
+        for (int i = 0; i < 50; i++) {
+            Accepted accepted = new Accepted("M1", new ProposalNumber("M3:1"), "v" + i);
+            accepted.instance = i;
+            sender.sendMessage("M2", accepted);
+        }
+        awaitCount(received, 50);
+    }
+
+    @Test
+    public void testMessagesArriveOverPersistentConnection() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        sendBurst(false, received);
+
+        assertEquals(50, received.size());
+        assertTrue(received.stream().allMatch(m -> m.startsWith("M1 ") && m.contains("\"type\":\"ACCEPTED\"")));
+    }
+
+    @Test
+    public void testBatchFramesAreUnpacked() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        sendBurst(true, received);
+
+        assertEquals(50, received.size());
+        assertTrue(received.stream().noneMatch(m -> m.contains("BATCH")));
+        for (int i = 0; i < 50; i++) {
+            String value = "\"proposalValue\":\"v" + i + "\"";
+            assertTrue(received.stream().anyMatch(m -> m.contains(value)));
+        }
+    }
+
+    @Test
+    public void testFrameLargerThanPooledBuffer() throws Exception {
+        int port1 = freePort(), port2 = freePort();
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", port1));
+        members.put("M2", new InetSocketAddress("localhost", port2));
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        SocketTransport sender = transport("M1", port1, members, (from, msg) -> {});
+        SocketTransport receiver = transport("M2", port2, members, (from, msg) -> received.add(msg));
+        receiver.startListening();
+
+        String large = "x".repeat(3 * BufferPool.DEFAULT_BUFFER_SIZE);
+        sender.sendMessage("M2", new Accepted("M1", new ProposalNumber("M1:1"), large));
+        sender.sendMessage("M2", new Accepted("M1", new ProposalNumber("M1:1"), "small"));
+        awaitCount(received, 2);
+
+        assertEquals(2, received.size());
+        assertTrue(received.stream().anyMatch(m -> m.contains(large)));
+        assertTrue(received.stream().anyMatch(m -> m.contains("\"small\"")));
+    }
+
+    @Test
+    public void testShutdownWhileReceiving() throws Exception {
+        int port1 = freePort(), port2 = freePort();
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", port1));
+        members.put("M2", new InetSocketAddress("localhost", port2));
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        SocketTransport sender = transport("M1", port1, members, (from, msg) -> {});
+        SocketTransport receiver = transport("M2", port2, members, (from, msg) -> received.add(msg));
+        receiver.startListening();
+
+        // Reader threads must stop on shutdown, not fail scheduling on the stopped delay thread
+        List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+        Thread.UncaughtExceptionHandler original = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> uncaught.add(e));
+        try {
+            for (int i = 0; i < 20; i++) {
+                sender.sendMessage("M2", new Accepted("M1", new ProposalNumber("M1:1"), "v" + i));
+            }
+            awaitCount(received, 1);
+            for (int i = 20; i < 200; i++) {
+                sender.sendMessage("M2", new Accepted("M1", new ProposalNumber("M1:1"), "v" + i));
+            }
+            receiver.shutdown();
+            Thread.sleep(300);
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(original);
+        }
+
+        assertFalse(received.isEmpty());
+        assertEquals(List.of(), uncaught);
+    }
+
+    @Test
+    public void testHandshakeCompletesWhenPeerStartsLate() throws Exception {
+        int port1 = freePort(), port2 = freePort();
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", port1));
+        members.put("M2", new InetSocketAddress("localhost", port2));
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        SocketTransport early = transport("M1", port1, members, (from, msg) -> received.add(msg));
+        SocketTransport late = transport("M2", port2, members, (from, msg) -> received.add(msg));
+
+        early.startListening();
+        CompletableFuture<Set<String>> ready = early.readiness(up -> up.size() == 2);
+        assertEquals(Set.of("M1"), early.getReachablePeers());
+        assertFalse(ready.isDone());
+
+        Thread.sleep(700);
+        late.startListening();
+
+        assertEquals(Set.of("M1", "M2"), ready.get(5, TimeUnit.SECONDS));
+        assertEquals(Set.of("M1", "M2"), late.readiness(up -> up.size() == 2).get(5, TimeUnit.SECONDS));
+        // Handshake frames stay inside the transport
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testCompressionNegotiatedInHandshake() throws Exception {
+        int port1 = freePort(), port2 = freePort();
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", port1));
+        members.put("M2", new InetSocketAddress("localhost", port2));
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        SocketTransport sender = transport("M1", port1, members, (from, msg) -> {});
+        SocketTransport receiver = transport("M2", port2, members, (from, msg) -> received.add(msg));
+        sender.setCompressAbove(256);
+        assertFalse(sender.compressesTo("M2"));
+
+        receiver.startListening();
+        sender.startListening();
+        sender.readiness(up -> up.size() == 2).get(5, TimeUnit.SECONDS);
+        assertTrue(sender.compressesTo("M2"));
+        assertFalse(receiver.compressesTo("M1"));
+
+        String large = "value ".repeat(2 * BufferPool.DEFAULT_BUFFER_SIZE);
+        sender.sendMessage("M2", new Accepted("M1", new ProposalNumber("M1:1"), large));
+        awaitCount(received, 1);
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).contains(large));
+    }
+
+    @Test
+    public void testQueueBoundDropsMessages() throws Exception {
+        // Nobody listens on the peer's port, so its queue only drains by failed writes
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", freePort()));
+        members.put("M2", new InetSocketAddress("localhost", freePort()));
+
+        PeerConnection connection = new PeerConnection("M1", "M2", members.get("M2"), 4, false);
+        try {
+            assertFalse(connection.isCongested());
+            int accepted = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (connection.offer("{}")) accepted++;
+            }
+            assertTrue(accepted < 1000);
+        } finally {
+            connection.close();
+        }
+        assertFalse(connection.offer("{}"));
+    }
+
+    @Test
+    public void testCrashedPeerSuspectedAndSkipped() throws Exception {
+        int port1 = freePort(), port2 = freePort();
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", port1));
+        members.put("M2", new InetSocketAddress("localhost", port2));
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        SocketTransport sender = transport("M1", port1, members, (from, msg) -> {});
+        SocketTransport peer = transport("M2", port2, members, (from, msg) -> received.add(msg));
+        sender.enableFailureDetection(50, 3.0);
+        peer.enableFailureDetection(50, 3.0);
+        sender.startListening();
+        peer.startListening();
+
+        // Heartbeats stay inside the transport
+        sender.readiness(up -> up.size() == 2).get(5, TimeUnit.SECONDS);
+        Thread.sleep(300);
+        assertFalse(sender.isSuspected("M2"));
+        assertTrue(received.isEmpty());
+
+        peer.shutdown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!sender.isSuspected("M2") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(sender.isSuspected("M2"));
+        assertFalse(sender.isSuspected("M1"));
+        assertEquals(Set.of("M2"), sender.getFailureDetector().getSuspected());
+    }
+
+    @Test
+    public void testPartitionedPeerSuspectedUntilHealed() throws Exception {
+        int port1 = freePort(), port2 = freePort();
+        Map<String, InetSocketAddress> members = new HashMap<>();
+        members.put("M1", new InetSocketAddress("localhost", port1));
+        members.put("M2", new InetSocketAddress("localhost", port2));
+
+        FaultInjectingTransport faults = new FaultInjectingTransport("M1", (from, msg) -> {});
+        SocketTransport sender = transport("M1", port1, members, faults);
+        SocketTransport peer = transport("M2", port2, members, (from, msg) -> {});
+        faults.setTransport(sender);
+        sender.enableFailureDetection(50, 3.0);
+        peer.enableFailureDetection(50, 3.0);
+        sender.startListening();
+        peer.startListening();
+        sender.readiness(up -> up.size() == 2).get(5, TimeUnit.SECONDS);
+
+        // Both peers keep running, but the partition stops heartbeats in both directions
+        faults.control("partition M2");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(sender.isSuspected("M2") && peer.isSuspected("M1")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(sender.isSuspected("M2"));
+        assertTrue(peer.isSuspected("M1"));
+
+        faults.control("heal");
+        deadline = System.currentTimeMillis() + 5000;
+        while (sender.isSuspected("M2") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(sender.isSuspected("M2"));
+        faults.shutdown();
+    }
+}
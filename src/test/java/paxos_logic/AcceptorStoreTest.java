@@ -0,0 +1,81 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import paxos_util.ProposalNumber;
+
+public class AcceptorStoreTest {
+
+    @Test
+    public void testNewInstanceHasNoState() {
+        AcceptorStore store = new AcceptorStore();
+        assertEquals(-1, store.find(7));
+
+        int slot = store.slotFor(7);
+        assertEquals(slot, store.find(7));
+        assertEquals(AcceptorStore.NONE, store.getPromised(slot));
+        assertEquals(AcceptorStore.NONE, store.getAccepted(slot));
+        assertEquals(AcceptorStore.NONE, store.getAnyBallot(slot));
+        assertNull(store.getAcceptedValue(slot));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testStateSurvivesResize() {
+        AcceptorStore store = new AcceptorStore();
+        for (long instance = 0; instance < 10_000; instance++) {
+            int slot = store.slotFor(instance);
+            store.setPromised(slot, new ProposalNumber("M2:" + (instance + 1)).pack());
+            store.setAccepted(slot, new ProposalNumber("M1:" + (instance + 1)).pack(), "v" + instance);
+        }
+
+        assertEquals(10_000, store.size());
+        for (long instance = 0; instance < 10_000; instance++) {
+            int slot = store.find(instance);
+            assertTrue(slot >= 0);
+            assertEquals(new ProposalNumber("M2:" + (instance + 1)), ProposalNumber.unpack(store.getPromised(slot)));
+            assertEquals(new ProposalNumber("M1:" + (instance + 1)), ProposalNumber.unpack(store.getAccepted(slot)));
+            assertEquals("v" + instance, store.getAcceptedValue(slot));
+        }
+    }
+
+    @Test
+    public void testAnyRound() {
+        AcceptorStore store = new AcceptorStore();
+        int slot = store.slotFor(3);
+        long ballot = new ProposalNumber("M1:4").pack();
+        store.setAnyRound(slot, ballot, "M1");
+
+        assertEquals(ballot, store.getAnyBallot(store.find(3)));
+        assertEquals("M1", store.getAnyCoordinator(store.find(3)));
+    }
+
+    @Test
+    public void testSparseAndNegativeInstances() {
+        AcceptorStore store = new AcceptorStore();
+        long[] instances = { -5, 0, 1L << 40, Long.MAX_VALUE, 64, 128 };
+        for (long instance : instances) {
+            store.setPromised(store.slotFor(instance), instance & 0xFFFF);
+        }
+        for (long instance : instances) {
+            assertEquals(instance & 0xFFFF, store.getPromised(store.find(instance)));
+        }
+        assertEquals(instances.length, store.size());
+    }
+
+    @Test
+    public void testRemoveBelow() {
+        AcceptorStore store = new AcceptorStore();
+        for (long instance = 0; instance < 1000; instance++) {
+            store.setAccepted(store.slotFor(instance), new ProposalNumber("M1:1").pack(), "v" + instance);
+        }
+
+        assertEquals(990, store.removeBelow(990));
+        assertEquals(10, store.size());
+        assertEquals(-1, store.find(989));
+        assertEquals("v990", store.getAcceptedValue(store.find(990)));
+        assertEquals("v999", store.getAcceptedValue(store.find(999)));
+        assertEquals(0, store.removeBelow(990));
+    }
+}
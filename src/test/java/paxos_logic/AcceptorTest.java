@@ -81,6 +81,9 @@ public class AcceptorTest {
         acceptor.handlePrepare(new Prepare("M2", pn2), "M2");
 
         verify(mockTransport, never()).sendMessage(eq("M2"), any(Promise.class));
+        verify(mockTransport).sendMessage(eq("M2"), argThat(msg ->
+            msg instanceof Nack nack && nack.promisedProposalNumber.equals("M1:2") && nack.proposalNum.toString().equals("M1:1")
+        ));
         
         String output = outputStream.toString();
         assertTrue(output.contains("Ignored Prepare(M1:1), promised number is M1:2"));
@@ -117,7 +120,10 @@ public class AcceptorTest {
         AcceptRequest acceptRequest = new AcceptRequest("M2", pn2, "value");
         acceptor.handleAcceptRequest(acceptRequest, "M2");
 
-        verifyNoInteractions(mockTransport);
+        verify(mockTransport).sendMessage(eq("M2"), argThat(msg ->
+            msg instanceof Nack nack && nack.promisedProposalNumber.equals("M1:2")
+        ));
+        verifyNoMoreInteractions(mockTransport);
         
         String output = outputStream.toString();
         assertTrue(output.contains("Ignored AcceptRequest(M1:1), promised number is M1:2"));
@@ -195,4 +201,121 @@ public class AcceptorTest {
             verify(mockTransport).sendMessage(eq("P" + i), any(Promise.class));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDistinguishedLearnerRepliesOnlyToProposer() {
+        acceptor.setDistinguishedLearner(true);
+        ProposalNumber pn = new ProposalNumber("M2:1");
+
+        acceptor.handlePrepare(new Prepare("M2", pn), "M2");
+        acceptor.handleAcceptRequest(new AcceptRequest("M2", pn, "value"), "M2");
+
+        verify(mockTransport).sendMessage(eq("M2"), any(Accepted.class));
+        verify(mockTransport, never()).sendMessage(eq("M1"), any(Accepted.class));
+        verify(mockTransport, never()).sendMessage(eq("M3"), any(Accepted.class));
+    }
+
+    @Test
+    public void testInstancesAreIndependent() {
+        ProposalNumber high = new ProposalNumber("M1:5");
+        ProposalNumber low = new ProposalNumber("M2:1");
+
+        acceptor.handlePrepare(new Prepare("M1", high), "M1");
+
+        Prepare otherInstance = new Prepare("M2", low);
+        otherInstance.instance = 1;
+        acceptor.handlePrepare(otherInstance, "M2");
+
+        verify(mockTransport).sendMessage(eq("M2"), argThat(msg ->
+            msg instanceof Promise promise && promise.instance == 1
+        ));
+    }
+
+    @Test
+    public void testFastProposeAcceptedInAnyRound() {
+        ProposalNumber pn = new ProposalNumber("M2:1");
+        acceptor.handlePrepare(new Prepare("M2", pn), "M2");
+        AcceptRequest any = new AcceptRequest("M2", pn, null);
+        any.anyValue = true;
+        acceptor.handleAcceptRequest(any, "M2");
+        verify(mockTransport, never()).sendMessage(any(), any(Accepted.class));
+
+        acceptor.handleFastPropose(new FastPropose("M3", "clientValue"), "M3");
+        acceptor.handleFastPropose(new FastPropose("M4", "otherValue"), "M4");
+
+        verify(mockTransport).sendMessage(eq("M2"), argThat(msg ->
+            msg instanceof Accepted accepted && accepted.fast && accepted.proposalValue.equals("clientValue")
+        ));
+        verify(mockTransport, never()).sendMessage(any(), argThat(msg ->
+            msg instanceof Accepted accepted && "otherValue".equals(accepted.proposalValue)
+        ));
+        assertTrue(outputStream.toString().contains("Ignored FastPropose('otherValue'), no fast round open"));
+    }
+
+    @Test
+    public void testHigherPrepareClosesAnyRound() {
+        ProposalNumber pn = new ProposalNumber("M2:1");
+        AcceptRequest any = new AcceptRequest("M2", pn, null);
+        any.anyValue = true;
+        acceptor.handleAcceptRequest(any, "M2");
+        acceptor.handlePrepare(new Prepare("M3", new ProposalNumber("M3:1")), "M3");
+
+        acceptor.handleFastPropose(new FastPropose("M4", "late"), "M4");
+
+        verify(mockTransport, never()).sendMessage(any(), any(Accepted.class));
+    }
+
+    @Test
+    public void testRepliesCarryTraceId() {
+        ProposalNumber pn = new ProposalNumber("M2:1");
+        Prepare prepare = new Prepare("M2", pn);
+        prepare.traceId = "M2-abc";
+        AcceptRequest acceptRequest = new AcceptRequest("M2", pn, "value1");
+        acceptRequest.traceId = "M2-abc";
+
+        acceptor.handlePrepare(prepare, "M2");
+        acceptor.handleAcceptRequest(acceptRequest, "M2");
+
+        verify(mockTransport).sendMessage(eq("M2"), argThat(m -> m instanceof Promise && "M2-abc".equals(((Promise) m).traceId)));
+        verify(mockTransport).sendMessage(eq("M2"), argThat(m -> m instanceof Accepted && "M2-abc".equals(((Accepted) m).traceId)));
+    }
+
+    @Test
+    public void testWitnessKeepsReferenceOfLargeValue() {
+        String body = "large-".repeat(50);
+        String reference = ValueStore.reference(ValueStore.digest(body));
+        acceptor.setWitness(true);
+
+        AcceptRequest request = new AcceptRequest("M2", new ProposalNumber("M2:1"), body);
+        acceptor.handleAcceptRequest(request, "M2");
+        AcceptRequest small = new AcceptRequest("M2", new ProposalNumber("M2:1"), "small");
+        small.instance = 1;
+        acceptor.handleAcceptRequest(small, "M2");
+        acceptor.handlePrepare(new Prepare("M3", new ProposalNumber("M3:2")), "M3");
+
+        verify(mockTransport).sendMessage(eq("M2"), argThat(m -> m instanceof Accepted a && reference.equals(a.proposalValue)));
+        verify(mockTransport).sendMessage(eq("M2"), argThat(m -> m instanceof Accepted a && "small".equals(a.proposalValue)));
+        verify(mockTransport).sendMessage(eq("M3"), argThat(m -> m instanceof Promise p && reference.equals(p.acceptedProposalValue)));
+        assertTrue(outputStream.toString().contains("Accepted proposal M2:1 with value '" + reference + "'"));
+    }
+
+    @Test
+    public void testForgottenInstancesIgnored() {
+        for (long instance = 0; instance < 100; instance++) {
+            AcceptRequest request = new AcceptRequest("M2", new ProposalNumber("M2:1"), "v" + instance);
+            request.instance = instance;
+            acceptor.handleAcceptRequest(request, "M2");
+        }
+        assertEquals(100, acceptor.getInstanceCount());
+
+        acceptor.forgetBelow(90);
+        Prepare old = new Prepare("M3", new ProposalNumber("M3:5"));
+        old.instance = 10;
+        reset(mockTransport);
+        acceptor.handlePrepare(old, "M3");
+
+        verify(mockTransport, never()).sendMessage(any(), any());
+        assertTrue(outputStream.toString().contains("Ignored Prepare(M3:5) for instance 10, applied and forgotten"));
+        assertEquals(10, acceptor.getInstanceCount());
+    }
+}
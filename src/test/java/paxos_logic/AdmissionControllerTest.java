@@ -0,0 +1,173 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import network.MemberTransport;
+import paxos_util.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.HashSet;
+
+public class AdmissionControllerTest {
+
+    @Mock
+    private MemberTransport mockTransport;
+
+    private ShardedPaxosNode node;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Set<String> ids = new HashSet<>(Set.of("M1", "M2", "M3"));
+
+        node = new ShardedPaxosNode("M1", ids, ids, 1);
+        node.setTransport(mockTransport);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        node.shutdown();
+        System.setOut(originalOut);
+    }
+
+    private void choose(long instance, String value) {
+        Chosen chosen = new Chosen("M2", new ProposalNumber("M2:1"), value);
+        chosen.instance = instance;
+        node.getShard(0).getLearner().handleChosen(chosen);
+    }
+
+    @Test
+    public void testRejectsWhenQueueFull() {
+        AdmissionController admission = new AdmissionController(node, 1, 2, 10_000);
+
+        assertTrue(admission.submit("a", "a"));
+        assertTrue(admission.submit("b", "b"));
+        assertTrue(admission.submit("c", "c"));
+        assertFalse(admission.submit("d", "d"));
+
+        assertEquals(1, admission.getInFlightCount());
+        assertEquals(2, admission.getPendingCount());
+        assertTrue(admission.getRetryAfterMs() >= 100);
+        assertTrue(outputStream.toString().contains("Busy, rejecting 'd'"));
+        // Only the in-flight value reaches the Acceptors
+        verify(mockTransport, timeout(1000).times(3)).sendMessage(any(), any(Prepare.class));
+        verify(mockTransport, after(200).times(3)).sendMessage(any(), any(Prepare.class));
+    }
+
+    /*
+     * Gets the shard's current proposal accepted by M2 and M3, so its Proposer reports the
+     * value chosen; the Learner only applies it on choose()
+     */
+    private long acceptProposal() {
+        Proposer proposer = node.getShard(0).getProposer();
+        ProposalNumber pn = proposer.getProposalNumber();
+        proposer.handlePromise(new Promise("M2", pn, null, null));
+        proposer.handlePromise(new Promise("M3", pn, null, null));
+        proposer.handleAccepted(new Accepted("M2", pn, null));
+        proposer.handleAccepted(new Accepted("M3", pn, null));
+        return proposer.getInstance();
+    }
+
+    @Test
+    public void testAppliedValueStartsNextPending() {
+        AdmissionController admission = new AdmissionController(node, 1, 2, 10_000);
+        admission.submit("a", "a");
+        admission.submit("b", "b");
+        verify(mockTransport, timeout(1000).times(3)).sendMessage(any(), any(Prepare.class));
+
+        // A value chosen for someone else does not free the slot, nor does an identical
+        // value chosen for another member's client
+        choose(0, "other");
+        choose(1, "a");
+        assertEquals(1, admission.getInFlightCount());
+        assertEquals(1, admission.getPendingCount());
+
+        // Preempted in a decided instance, the Proposer proposes 'a' again after both
+        node.getShard(0).getProposer().handleNack(new Nack("M2", node.getShard(0).getProposer().getProposalNumber(), "M2:1"));
+        verify(mockTransport, timeout(1000).times(6)).sendMessage(any(), any(Prepare.class));
+        long instance = acceptProposal();
+        assertEquals(2, instance);
+        assertEquals(1, admission.getPendingCount());
+
+        choose(instance, "a");
+        assertEquals(1, admission.getInFlightCount());
+        assertEquals(0, admission.getPendingCount());
+        verify(mockTransport, timeout(1000).times(9)).sendMessage(any(), any(Prepare.class));
+    }
+
+    @Test
+    public void testReconfigWaitsForInFlightValue() {
+        AdmissionController admission = new AdmissionController(node, 1, 2, 10_000);
+        admission.submit("a", "a");
+        admission.submit("b", "b");
+
+        String command = admission.reconfigure("add M4 localhost:9000");
+        assertEquals(2, admission.getPendingCount());
+        verify(mockTransport, timeout(1000).times(3)).sendMessage(any(), any(Prepare.class));
+        verify(mockTransport, after(200).times(3)).sendMessage(any(), any(Prepare.class));
+
+        // The change goes ahead of the pending client value
+        choose(acceptProposal(), "a");
+        assertEquals(1, admission.getPendingCount());
+        verify(mockTransport, timeout(1000).times(6)).sendMessage(any(), any(Prepare.class));
+        assertTrue(outputStream.toString().contains("with value '" + command + "'"));
+    }
+
+    @Test
+    public void testTimeoutKeepsRetryingValue() throws InterruptedException {
+        node.getShard(0).enablePhaseTimeouts(5);
+        AdmissionController admission = new AdmissionController(node, 1, 1, 100);
+        admission.submit("a", "a");
+        admission.submit("b", "b");
+        verify(mockTransport, timeout(1000).times(3)).sendMessage(any(), any(Prepare.class));
+
+        // Slower than the timeout, 'a' is still being proposed and 'b' waits for it
+        Thread.sleep(400);
+        assertEquals(1, admission.getInFlightCount());
+        assertEquals(1, admission.getPendingCount());
+        String output = outputStream.toString();
+        assertTrue(output.contains("not decided within 100 ms, its Proposer is still retrying"));
+        assertFalse(output.contains("with value 'b'"));
+
+        choose(acceptProposal(), "a");
+        assertEquals(0, admission.getPendingCount());
+        verify(mockTransport, timeout(1000).times(6)).sendMessage(any(), any(Prepare.class));
+        assertFalse(outputStream.toString().contains("FAILED"));
+    }
+
+    @Test
+    public void testTimeoutCancelsValueNotRetried() throws InterruptedException {
+        AdmissionController admission = new AdmissionController(node, 1, 0, 100);
+
+        assertTrue(admission.submit("a", "a"));
+        assertFalse(admission.submit("b", "b"));
+
+        // Without phase timeouts 'a' could wait forever; it is cancelled and reported
+        Thread.sleep(400);
+        String output = outputStream.toString();
+        assertTrue(output.contains("Stopped proposing 'a', cancelled"));
+        assertTrue(output.contains("FAILED 'a'"));
+        assertTrue(admission.submit("b", "b"));
+        verify(mockTransport, timeout(1000).times(6)).sendMessage(any(), any(Prepare.class));
+
+        Thread.sleep(400);
+        assertTrue(outputStream.toString().contains("FAILED 'b'"));
+    }
+
+    @Test
+    public void testInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(node, 0, 10, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionController(node, 1, -1, 1000));
+    }
+}
@@ -6,10 +6,14 @@ import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.*;
 
 import paxos_util.Accepted;
+import paxos_util.Chosen;
 import paxos_util.ProposalNumber;
+import paxos_util.VersionedValue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class LearnerTest {
 
@@ -73,7 +77,6 @@ public class LearnerTest {
         assertFalse(output.contains("has learned the value"));
 
         learner.handleAccepted(new Accepted("M5", pn1, value1));
-
         output = outputStream.toString();
         assertTrue(output.contains("has learned the value: value1"));
         assertTrue(output.contains("for proposal number: M1:1"));
@@ -146,4 +149,179 @@ public class LearnerTest {
         assertEquals(1, learnCount);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testReadLocalReturnsIndex() {
+        assertNull(learner.readLocal().value);
+        assertEquals(-1, learner.readLocal().index);
+
+        learnInInstance(0, "first");
+        VersionedValue read = learner.readLocal();
+        assertEquals("first", read.value);
+        assertEquals(0, read.index);
+    }
+
+    @Test
+    public void testAppliesInstancesInOrder() {
+        learnInInstance(1, "second");
+        assertEquals(-1, learner.getAppliedIndex());
+        assertEquals(0, learner.getNextInstance());
+
+        learnInInstance(0, "first");
+        assertEquals(1, learner.getAppliedIndex());
+        assertEquals("second", learner.getLastLearnedValue());
+        assertEquals(2, learner.getNextInstance());
+    }
+
+    @Test
+    public void testWhenAppliedWaitsForIndex() throws Exception {
+        CompletableFuture<VersionedValue> read = learner.whenApplied(1);
+
+        learnInInstance(0, "first");
+        assertFalse(read.isDone());
+
+        learnInInstance(1, "second");
+        assertTrue(read.isDone());
+        assertEquals("second", read.get().value);
+        assertEquals(1, read.get().index);
+    }
+
+    private void learnInInstance(long instance, String value) {
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        for (int i = 1; i <= 3; i++) {
+            Accepted accepted = new Accepted("M" + i, pn, value);
+            accepted.instance = instance;
+            learner.handleAccepted(accepted);
+        }
+    }
+
+    @Test
+    public void testLearnFromChosen() {
+        learner.handleChosen(new Chosen("M2", new ProposalNumber("M2:1"), "chosenValue"));
+        learner.handleChosen(new Chosen("M2", new ProposalNumber("M2:1"), "chosenValue"));
+
+        assertEquals("chosenValue", learner.getLastLearnedValue());
+        int learnCount = outputStream.toString().split("has learned the value").length - 1;
+        assertEquals(1, learnCount);
+    }
+
+    @Test
+    public void testFastRoundNeedsFastQuorum() {
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        for (String acceptorId : new String[] {"M1", "M2", "M3"}) {
+            Accepted accepted = new Accepted(acceptorId, pn, "fastValue");
+            accepted.fast = true;
+            learner.handleAccepted(accepted);
+        }
+        assertNull(learner.getLastLearnedValue());
+
+        Accepted fourth = new Accepted("M4", pn, "fastValue");
+        fourth.fast = true;
+        learner.handleAccepted(fourth);
+        assertEquals("fastValue", learner.getLastLearnedValue());
+    }
+
+    @Test
+    public void testAppliedValuesBeyondRetentionEvicted() {
+        learner.setLimits(3, 100);
+        for (long instance = 0; instance < 50; instance++) {
+            Chosen chosen = new Chosen("M1", new ProposalNumber("M1:1"), "v" + instance);
+            chosen.instance = instance;
+            learner.handleChosen(chosen);
+        }
+
+        assertEquals(49, learner.getAppliedIndex());
+        assertEquals("v49", learner.getLastLearnedValue());
+        assertEquals(3, learner.getRetainedValueCount());
+        assertEquals(50, learner.getNextInstance());
+
+        // Evicted instances still count as learned
+        Chosen late = new Chosen("M2", new ProposalNumber("M2:9"), "late");
+        late.instance = 0;
+        learner.handleChosen(late);
+        assertFalse(outputStream.toString().contains("value: late"));
+    }
+
+    @Test
+    public void testVoteStateStaysBounded() {
+        learner.setLimits(10, 5);
+        // Dueling proposers: every instance sees rising ballots that never reach a quorum
+        for (int round = 1; round <= 100; round++) {
+            for (long instance = 0; instance < 20; instance++) {
+                Accepted accepted = new Accepted("M" + (round % 2 + 1), new ProposalNumber("M" + (round % 2 + 1) + ":" + round), "v" + round);
+                accepted.instance = instance;
+                learner.handleAccepted(accepted);
+            }
+        }
+
+        // Instances 0 to 4, each holding only its latest few ballots
+        assertEquals(5, learner.getVotingInstanceCount());
+        assertTrue(outputStream.toString().contains("Dropped vote for instance 19"));
+
+        for (String acceptor : new String[] { "M3", "M4", "M5" }) {
+            Accepted accepted = new Accepted(acceptor, new ProposalNumber("M1:100"), "v100");
+            accepted.instance = 0;
+            learner.handleAccepted(accepted);
+        }
+        assertEquals(0, learner.getAppliedIndex());
+        assertEquals(4, learner.getVotingInstanceCount());
+    }
+
+    @Test
+    public void testChosenBeyondWindowDropped() {
+        learner.setLimits(10, 5);
+        Chosen chosen = new Chosen("M1", new ProposalNumber("M1:1"), "far");
+        chosen.instance = 5;
+        learner.handleChosen(chosen);
+
+        assertTrue(outputStream.toString().contains("Dropped announcement for instance 5"));
+        assertEquals(0, learner.getRetainedValueCount());
+
+        chosen.instance = 4;
+        learner.handleChosen(chosen);
+        assertEquals(1, learner.getRetainedValueCount());
+    }
+
+    @Test
+    public void testOnlyHighestBallotsTallied() {
+        // Five ballots in one instance, one vote each; the lowest falls out of the tally
+        for (int round = 1; round <= 5; round++) {
+            learner.handleAccepted(new Accepted("M1", new ProposalNumber("M2:" + round), "v" + round));
+        }
+        learner.handleAccepted(new Accepted("M2", new ProposalNumber("M2:1"), "v1"));
+        learner.handleAccepted(new Accepted("M3", new ProposalNumber("M2:1"), "v1"));
+        assertFalse(outputStream.toString().contains("has learned the value"));
+
+        learner.handleAccepted(new Accepted("M2", new ProposalNumber("M2:2"), "v2"));
+        learner.handleAccepted(new Accepted("M3", new ProposalNumber("M2:2"), "v2"));
+        assertTrue(outputStream.toString().contains("has learned the value: v2 for proposal number: M2:2"));
+    }
+
+    @Test
+    public void testWitnessVotesCountTowardBody() {
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        String body = "body-".repeat(40);
+        String reference = ValueStore.reference(ValueStore.digest(body));
+
+        learner.handleAccepted(new Accepted("M4", pn, reference));
+        learner.handleAccepted(new Accepted("M1", pn, body));
+        assertEquals(-1, learner.getAppliedIndex());
+        learner.handleAccepted(new Accepted("M5", pn, reference));
+
+        assertEquals(0, learner.getAppliedIndex());
+        assertEquals(body, learner.getLastLearnedValue());
+    }
+
+    @Test
+    public void testNonAcceptorVotesNotCounted() {
+        Learner closed = new Learner("M1", Set.of("M1", "M2", "M3"));
+        ProposalNumber pn = new ProposalNumber("M1:1");
+
+        closed.handleAccepted(new Accepted("M1", pn, "v"));
+        closed.handleAccepted(new Accepted("M8", pn, "v"));
+        closed.handleAccepted(new Accepted("M9", pn, "v"));
+        assertFalse(outputStream.toString().contains("has learned the value"));
+
+        closed.handleAccepted(new Accepted("M2", pn, "v"));
+        assertTrue(outputStream.toString().contains("Learner M1 has learned the value: v"));
+    }
+}
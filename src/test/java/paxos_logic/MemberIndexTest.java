@@ -0,0 +1,53 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.List;
+
+public class MemberIndexTest {
+
+    @Test
+    public void testInternAllAssignsSortedDenseIndices() {
+        MemberIndex index = new MemberIndex();
+        index.internAll(List.of("M3", "M1", "M2"));
+
+        assertEquals(0, index.indexOf("M1"));
+        assertEquals(1, index.indexOf("M2"));
+        assertEquals(2, index.indexOf("M3"));
+        assertEquals("M3", index.idOf(2));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testNewMembersGetNextIndex() {
+        MemberIndex index = new MemberIndex();
+        index.internAll(List.of("M1", "M2"));
+
+        assertEquals(2, index.indexOf("M9"));
+        assertEquals(2, index.indexOf("M9"));
+        index.internAll(List.of("M0", "M1"));
+        assertEquals(3, index.indexOf("M0"));
+    }
+
+    @Test
+    public void testIdsOfBitset() {
+        MemberIndex index = new MemberIndex();
+        index.internAll(List.of("M1", "M2", "M3", "M4"));
+        BitSet bits = new BitSet();
+        bits.set(index.indexOf("M4"));
+        bits.set(index.indexOf("M2"));
+
+        assertEquals(List.of("M2", "M4"), index.idsOf(bits));
+    }
+
+    @Test
+    public void testFixedIndexRejectsNonMembers() {
+        MemberIndex index = MemberIndex.of(List.of("M2", "M1"));
+
+        assertEquals(0, index.indexOf("M1"));
+        assertEquals(-1, index.indexOf("M9"));
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,132 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import network.MemberTransport;
+import paxos_util.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.*;
+
+public class MembershipTest {
+
+    @Mock
+    private MemberTransport mockTransport;
+
+    private Map<String, String> members;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        members = new LinkedHashMap<>();
+        members.put("M1", "localhost:9001");
+        members.put("M2", "localhost:9002");
+        members.put("M3", "localhost:9003");
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void testChangeTakesEffectAfterAlpha() {
+        Membership membership = new Membership("M1", members, 3, ids -> new MajorityQuorum(ids.size()));
+
+        membership.apply(4, "RECONFIG add M4 localhost:9004");
+
+        assertEquals(Set.of("M1", "M2", "M3"), membership.configFor(6).memberIds());
+        assertEquals(Set.of("M1", "M2", "M3", "M4"), membership.configFor(7).memberIds());
+        assertEquals("localhost:9004", membership.latest().members.get("M4"));
+    }
+
+    @Test
+    public void testOrdinaryValuesIgnored() {
+        Membership membership = new Membership("M1", members, 1, ids -> new MajorityQuorum(ids.size()));
+
+        membership.apply(0, "user=alice");
+
+        assertSame(membership.configFor(0), membership.latest());
+    }
+
+    @Test
+    public void testInvalidChangesRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Membership.parse("add M4"));
+        assertThrows(IllegalArgumentException.class, () -> Membership.parse("add M4 localhost:abc"));
+        assertThrows(IllegalArgumentException.class, () -> Membership.parse("rename M1 M9"));
+        assertEquals("RECONFIG remove M3", Membership.parse("remove M3"));
+
+        Membership single = new Membership("M1", Map.of("M1", "localhost:9001"), 1, ids -> new MajorityQuorum(ids.size()));
+        single.apply(0, "RECONFIG remove M1");
+        assertEquals(Set.of("M1"), single.latest().memberIds());
+    }
+
+    @Test
+    public void testProposerUsesConfigurationOfItsInstance() {
+        PaxosNode node = new PaxosNode("M1", members.keySet(), members.keySet(), mockTransport);
+        node.enableReconfiguration(new Membership("M1", members, 1, ids -> new MajorityQuorum(ids.size())));
+
+        ProposalNumber pn = new ProposalNumber("M2:1");
+        for (String acceptorId : new String[] {"M1", "M2"}) {
+            Accepted accepted = new Accepted(acceptorId, pn, "RECONFIG add M4 localhost:9004");
+            node.getLearner().handleAccepted(accepted);
+        }
+
+        node.getProposer().propose("value");
+
+        verify(mockTransport).sendMessage(eq("M4"), argThat(msg -> msg instanceof Prepare prepare && prepare.instance == 1));
+    }
+
+    @Test
+    public void testProposalDeferredWhileChangeUnapplied() {
+        Membership membership = new Membership("M1", members, 1, ids -> new MajorityQuorum(ids.size()));
+        Proposer proposer = new Proposer("M1", members.keySet(), mockTransport);
+        proposer.setMembership(membership);
+        // The RECONFIG in instance 0 is still in flight when the Proposer moves to instance 1
+        proposer.setInstanceSource(() -> 1);
+
+        proposer.propose("value");
+        verify(mockTransport, never()).sendMessage(any(), any(Prepare.class));
+        assertTrue(outputStream.toString().contains("Configuration of instance 1 not settled yet"));
+
+        membership.apply(0, "RECONFIG add M4 localhost:9004");
+        verify(mockTransport, timeout(1000)).sendMessage(eq("M4"), argThat(msg -> msg instanceof Prepare prepare && prepare.instance == 1));
+        assertTrue(membership.isSettled(1));
+        assertFalse(membership.isSettled(2));
+    }
+
+    @Test
+    public void testRemovedMemberVotesIgnored() {
+        Membership membership = new Membership("M1", members, 1, ids -> new MajorityQuorum(ids.size()));
+        Learner learner = new Learner("M1", 3);
+        learner.setMembership(membership);
+        learner.addApplyListener(membership::apply);
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        learner.handleAccepted(new Accepted("M1", pn, "RECONFIG remove M3"));
+        learner.handleAccepted(new Accepted("M2", pn, "RECONFIG remove M3"));
+
+        Accepted fromRemoved = new Accepted("M3", pn, "later");
+        fromRemoved.instance = 1;
+        learner.handleAccepted(fromRemoved);
+        Accepted fromMember = new Accepted("M1", pn, "later");
+        fromMember.instance = 1;
+        learner.handleAccepted(fromMember);
+        assertEquals(0, learner.getAppliedIndex());
+
+        Accepted second = new Accepted("M2", pn, "later");
+        second.instance = 1;
+        learner.handleAccepted(second);
+        assertEquals("later", learner.getLastLearnedValue());
+    }
+}
@@ -8,6 +8,7 @@ import org.mockito.MockitoAnnotations;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.google.gson.Gson;
 import network.MemberTransport;
 import paxos_util.*;
 
@@ -207,4 +208,79 @@ public class PaxosNodeTest {
         assertEquals("M2", node2.getMemberId());
         assertEquals("M3", node3.getMemberId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLargeValueProposedByDigest() {
+        String body = "v".repeat(3 * ValueStore.CHUNK_CHARS / 2);
+        paxosNode.enableValueDigests(1024);
+
+        paxosNode.propose(body);
+
+        String reference = ValueStore.reference(ValueStore.digest(body));
+        verify(mockTransport, times(2)).sendMessage(eq("M2"), any(ValueChunk.class));
+        verify(mockTransport, times(2)).sendMessage(eq("M3"), any(ValueChunk.class));
+        verify(mockTransport, never()).sendMessage(eq("M1"), any(ValueChunk.class));
+        assertEquals(body, paxosNode.getValueStore().get(ValueStore.digest(body)));
+        assertTrue(outputStream.toString().contains("proposing its digest"));
+        assertFalse(outputStream.toString().contains("'" + body + "'"));
+        assertTrue(outputStream.toString().contains("with value '" + reference + "'"));
+    }
+
+    @Test
+    public void testSmallValueProposedAsIs() {
+        paxosNode.enableValueDigests(1024);
+
+        paxosNode.propose("small");
+
+        verify(mockTransport, never()).sendMessage(any(), any(ValueChunk.class));
+        assertTrue(outputStream.toString().contains("with value 'small'"));
+    }
+
+    @Test
+    public void testDigestAppliedOnceBodyArrives() {
+        Gson gson = new Gson();
+        String body = "payload-".repeat(100);
+        String digest = ValueStore.digest(body);
+        Chosen chosen = new Chosen("M2", new ProposalNumber("M2:1"), ValueStore.reference(digest));
+        chosen.instance = 0;
+
+        paxosNode.handleMessage("M2", gson.toJson(chosen));
+
+        assertEquals(-1, paxosNode.getLearner().getAppliedIndex());
+        verify(mockTransport).sendMessage(eq("M2"), any(FetchValue.class));
+        verify(mockTransport).sendMessage(eq("M3"), any(FetchValue.class));
+
+        paxosNode.handleMessage("M3", gson.toJson(new ValueChunk("M3", digest, 0, 1, body)));
+
+        assertEquals(0, paxosNode.getLearner().getAppliedIndex());
+        assertEquals(body, paxosNode.getLearner().getLastLearnedValue());
+    }
+
+    @Test
+    public void testFetchAnsweredWithChunks() {
+        Gson gson = new Gson();
+        String digest = paxosNode.getValueStore().put("stored body");
+
+        paxosNode.handleMessage("M2", gson.toJson(new FetchValue("M2", digest)));
+        paxosNode.handleMessage("M2", gson.toJson(new FetchValue("M2", ValueStore.digest("unknown"))));
+
+        verify(mockTransport, times(1)).sendMessage(eq("M2"), argThat(m -> m instanceof ValueChunk && "stored body".equals(((ValueChunk) m).data)));
+    }
+
+    @Test
+    public void testWitnessSentReferencesOnly() {
+        Gson gson = new Gson();
+        String body = "witnessed-".repeat(20);
+        String reference = ValueStore.reference(ValueStore.digest(body));
+        paxosNode.setWitnesses(Set.of("M3"));
+
+        paxosNode.propose(body);
+        ProposalNumber pn = paxosNode.getProposer().getProposalNumber();
+        paxosNode.handleMessage("M1", gson.toJson(new Promise("M1", pn, null, null)));
+        paxosNode.handleMessage("M2", gson.toJson(new Promise("M2", pn, null, null)));
+
+        verify(mockTransport).sendMessage(eq("M2"), argThat(m -> m instanceof AcceptRequest a && body.equals(a.proposalValue)));
+        verify(mockTransport).sendMessage(eq("M3"), argThat(m -> m instanceof AcceptRequest a && reference.equals(a.proposalValue)));
+        assertFalse(paxosNode.isWitness());
+    }
+}
@@ -13,6 +13,7 @@ import paxos_util.*;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -210,4 +211,271 @@ public class ProposerTest {
         
         verify(mockTransport, atLeastOnce()).sendMessage(any(), any(AcceptRequest.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testThriftyPrepareContactsOnlyQuorum() {
+        proposer.enableThrifty(10_000);
+        proposer.propose("testValue");
+
+        verify(mockTransport, times(3)).sendMessage(any(), any(Prepare.class));
+    }
+
+    @Test
+    public void testThriftyWidensOnTimeout() {
+        proposer.enableThrifty(50);
+        proposer.propose("testValue");
+
+        verify(mockTransport, timeout(2000).times(5)).sendMessage(any(), any(Prepare.class));
+        assertTrue(outputStream.toString().contains("widening to"));
+    }
+
+    @Test
+    public void testThriftyPrefersFastestAcceptors() {
+        proposer.getRttEstimator().record("M5", 1_000);
+        proposer.getRttEstimator().record("M4", 2_000);
+        proposer.getRttEstimator().record("M3", 3_000);
+        proposer.getRttEstimator().record("M1", 9_000_000);
+        proposer.enableThrifty(10_000);
+
+        proposer.propose("testValue");
+
+        verify(mockTransport).sendMessage(eq("M5"), any(Prepare.class));
+        verify(mockTransport).sendMessage(eq("M4"), any(Prepare.class));
+        verify(mockTransport).sendMessage(eq("M3"), any(Prepare.class));
+        verify(mockTransport, never()).sendMessage(eq("M1"), any(Prepare.class));
+    }
+
+    @Test
+    public void testDistinguishedLearnerAnnouncesChosenOnce() {
+        proposer.setDistinguishedLearner(true);
+        proposer.propose("testValue");
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        for (String acceptorId : new String[] {"M1", "M2", "M3"}) {
+            proposer.handlePromise(new Promise(acceptorId, pn, null, null));
+        }
+        for (String acceptorId : new String[] {"M1", "M2", "M3", "M4"}) {
+            proposer.handleAccepted(new Accepted(acceptorId, pn, "testValue"));
+        }
+
+        for (String acceptorId : acceptorIds) {
+            verify(mockTransport, times(1)).sendMessage(eq(acceptorId), any(Chosen.class));
+        }
+    }
+
+    @Test
+    public void testFastRoundSendsAnyAcceptRequest() {
+        proposer.setFastCoordinator(true);
+        proposer.openFastRound();
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        for (String acceptorId : new String[] {"M1", "M2", "M3"}) {
+            proposer.handlePromise(new Promise(acceptorId, pn, null, null));
+        }
+
+        for (String acceptorId : acceptorIds) {
+            verify(mockTransport).sendMessage(eq(acceptorId), argThat(msg ->
+                msg instanceof AcceptRequest request && request.anyValue && request.proposalValue == null
+            ));
+        }
+    }
+
+    @Test
+    public void testFastCollisionStartsClassicRecovery() {
+        proposer.setFastCoordinator(true);
+        proposer.openFastRound();
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        for (String acceptorId : new String[] {"M1", "M2", "M3"}) {
+            proposer.handlePromise(new Promise(acceptorId, pn, null, null));
+        }
+
+        // 2 votes for each value: neither can reach the fast quorum of 4 out of 5
+        String[][] votes = {{"M1", "a"}, {"M2", "a"}, {"M3", "b"}, {"M4", "b"}};
+        for (String[] vote : votes) {
+            Accepted accepted = new Accepted(vote[0], pn, vote[1]);
+            accepted.fast = true;
+            proposer.handleAccepted(accepted);
+        }
+
+        assertTrue(outputStream.toString().contains("Collision in fast round M1:1 of instance 0"));
+        verify(mockTransport, atLeastOnce()).sendMessage(any(), argThat(msg ->
+            msg instanceof Prepare prepare && prepare.proposalNum.toString().equals("M1:2") && prepare.instance == 0
+        ));
+    }
+
+    @Test
+    public void testRecoveryPicksValuePossiblyChosenInFastRound() {
+        proposer.propose("ownValue");
+
+        // 2 of 3 promises report 'a' from a fast round; with 2 acceptors unheard 'a' may have reached 4 of 5
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        proposer.handlePromise(new Promise("M1", pn, "M2:1", "a"));
+        proposer.handlePromise(new Promise("M2", pn, "M2:1", "b"));
+        reset(mockTransport);
+        proposer.handlePromise(new Promise("M3", pn, "M2:1", "a"));
+
+        verify(mockTransport, atLeastOnce()).sendMessage(any(), argThat(msg ->
+            msg instanceof AcceptRequest request && "a".equals(request.proposalValue)
+        ));
+    }
+
+    @Test
+    public void testPhaseTimeoutRetriesWithHigherNumber() {
+        for (String acceptorId : acceptorIds) {
+            proposer.getRttEstimator().record(acceptorId, 1_000_000);
+        }
+
+        proposer.proposeWithRetries("testValue", 1);
+
+        verify(mockTransport, timeout(2000).atLeastOnce()).sendMessage(any(), argThat(msg ->
+            msg instanceof Prepare prepare && prepare.proposalNum.toString().equals("M1:2")
+        ));
+        verify(mockTransport, after(600).never()).sendMessage(any(), argThat(msg ->
+            msg instanceof Prepare prepare && prepare.proposalNum.toString().equals("M1:3")
+        ));
+        assertTrue(outputStream.toString().contains("Giving up on M1:2 after 1 retries"));
+    }
+
+    @Test
+    public void testNoTimeoutsByDefault() {
+        proposer.propose("testValue");
+
+        verify(mockTransport, after(300).times(5)).sendMessage(any(), any(Prepare.class));
+        assertFalse(proposer.tracksAccepted());
+    }
+
+    @Test
+    public void testNackMovesPastPromisedNumber() {
+        proposer.propose("testValue");
+
+        proposer.handleNack(new Nack("M2", new ProposalNumber("M1:1"), "M3:7"));
+        proposer.handleNack(new Nack("M4", new ProposalNumber("M1:1"), "M3:7"));
+
+        verify(mockTransport, timeout(1000).times(5)).sendMessage(any(), argThat(msg ->
+            msg instanceof Prepare prepare && prepare.proposalNum.toString().equals("M1:8")
+        ));
+        String output = outputStream.toString();
+        assertTrue(output.contains("Proposal M1:1 preempted by M3:7 at Acceptor M2"));
+        assertFalse(output.contains("at Acceptor M4"));
+    }
+
+    @Test
+    public void testLeaseNackWaitsForLease() {
+        proposer.propose("testValue");
+        reset(mockTransport);
+
+        Nack nack = new Nack("M2", new ProposalNumber("M1:1"), "M1:1");
+        nack.leaseHolder = "M3";
+        nack.leaseRemainingMs = 500;
+        proposer.handleNack(nack);
+
+        verify(mockTransport, after(400).never()).sendMessage(any(), any(Prepare.class));
+        verify(mockTransport, timeout(1000).times(5)).sendMessage(any(), argThat(msg ->
+            msg instanceof Prepare prepare && prepare.proposalNum.toString().equals("M1:2")
+        ));
+        assertTrue(outputStream.toString().contains("Proposal M1:1 refused at Acceptor M2, lease held by M3 for 500 ms"));
+    }
+
+    @Test
+    public void testStaleNackIgnored() {
+        proposer.propose("value1");
+        proposer.propose("value2");
+        reset(mockTransport);
+
+        proposer.handleNack(new Nack("M2", new ProposalNumber("M1:1"), "M1:1"));
+
+        verify(mockTransport, after(300).never()).sendMessage(any(), any(Prepare.class));
+    }
+
+    @Test
+    public void testBackpressureDefersProposal() {
+        when(mockTransport.isCongested("M2")).thenReturn(true);
+        when(mockTransport.isCongested("M3")).thenReturn(true);
+        when(mockTransport.isCongested("M4")).thenReturn(true);
+
+        proposer.propose("testValue");
+
+        assertTrue(proposer.isBackpressured());
+        verify(mockTransport, never()).sendMessage(any(), any(Prepare.class));
+        assertTrue(outputStream.toString().contains("deferring 'testValue'"));
+
+        // Once one queue drains, M1, M4 and M5 form a quorum again
+        when(mockTransport.isCongested("M4")).thenReturn(false);
+        verify(mockTransport, timeout(1000).times(5)).sendMessage(any(), argThat(msg ->
+            msg instanceof Prepare prepare && prepare.proposalNum.toString().equals("M1:1")
+        ));
+    }
+
+    @Test
+    public void testThriftySkipsCongestedAcceptors() {
+        when(mockTransport.isCongested("M2")).thenReturn(true);
+        proposer.enableThrifty(10_000);
+
+        proposer.propose("testValue");
+
+        verify(mockTransport, times(3)).sendMessage(any(), any(Prepare.class));
+        verify(mockTransport, never()).sendMessage(eq("M2"), any(Prepare.class));
+    }
+
+    @Test
+    public void testThriftyContactsSuspectedAcceptorsLast() {
+        when(mockTransport.isSuspected("M2")).thenReturn(true);
+        when(mockTransport.isCongested("M3")).thenReturn(true);
+        proposer.enableThrifty(10_000);
+
+        proposer.propose("testValue");
+
+        verify(mockTransport, times(3)).sendMessage(any(), any(Prepare.class));
+        verify(mockTransport, never()).sendMessage(eq("M2"), any(Prepare.class));
+        verify(mockTransport, never()).sendMessage(eq("M3"), any(Prepare.class));
+    }
+
+    @Test
+    public void testWitnessReferenceCountsAsAcceptedBody() {
+        String body = "accepted-".repeat(20);
+        String reference = ValueStore.reference(ValueStore.digest(body));
+        proposer.propose("originalValue");
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        String accepted = new ProposalNumber("M2:1").toString();
+        proposer.handlePromise(new Promise("M4", pn, accepted, reference));
+        proposer.handlePromise(new Promise("M2", pn, accepted, body));
+        reset(mockTransport);
+        proposer.handlePromise(new Promise("M3", pn, null, null));
+
+        verify(mockTransport, atLeastOnce()).sendMessage(any(), argThat(msg ->
+            msg instanceof AcceptRequest acceptRequest && body.equals(acceptRequest.proposalValue)));
+    }
+
+    @Test
+    public void testAdoptedValueDoesNotDisplaceRequestedValue() {
+        // The learner lags, so the proposal lands in an instance that already accepted a value
+        proposer.setInstanceSource(() -> 0);
+        proposer.propose("clientValue");
+
+        ProposalNumber first = new ProposalNumber("M1:1");
+        proposer.handlePromise(new Promise("M2", first, "M2:1", "earlierValue"));
+        proposer.handlePromise(new Promise("M3", first, null, null));
+        proposer.handlePromise(new Promise("M4", first, null, null));
+        assertTrue(proposer.tracksAccepted());
+        for (String acceptorId : List.of("M2", "M3", "M4")) {
+            proposer.handleAccepted(new Accepted(acceptorId, first, "earlierValue"));
+        }
+
+        assertEquals(1, proposer.getInstance());
+        ProposalNumber second = new ProposalNumber("M1:2");
+        assertEquals(second, proposer.getProposalNumber());
+        for (String acceptorId : List.of("M2", "M3", "M4")) {
+            proposer.handlePromise(new Promise(acceptorId, second, null, null));
+        }
+        for (String acceptorId : List.of("M2", "M3", "M4")) {
+            proposer.handleAccepted(new Accepted(acceptorId, second, "clientValue"));
+        }
+
+        verify(mockTransport, atLeastOnce()).sendMessage(any(), argThat(msg ->
+            msg instanceof AcceptRequest acceptRequest && acceptRequest.instance == 1 && "clientValue".equals(acceptRequest.proposalValue)));
+        assertTrue(outputStream.toString().contains("proposing 'clientValue' again in instance 1"));
+        assertTrue(outputStream.toString().contains("Proposal M1:2 with value 'clientValue' chosen"));
+    }
+}
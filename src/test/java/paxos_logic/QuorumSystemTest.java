@@ -0,0 +1,131 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import paxos_util.Accepted;
+import paxos_util.ProposalNumber;
+
+import java.util.*;
+
+public class QuorumSystemTest {
+
+    private static final List<String> NINE = List.of("M1", "M2", "M3", "M4", "M5", "M6", "M7", "M8", "M9");
+
+    @Test
+    public void testMajorityQuorum() {
+        QuorumSystem quorum = new MajorityQuorum(5);
+
+        assertFalse(quorum.isPhase1Quorum(List.of("M1", "M2")));
+        assertTrue(quorum.isPhase1Quorum(List.of("M1", "M2", "M3")));
+        assertTrue(quorum.isPhase2Quorum(List.of("M1", "M2", "M3")));
+    }
+
+    @Test
+    public void testFlexibleQuorum() {
+        QuorumSystem quorum = new FlexibleQuorum(9, 7, 3);
+
+        assertTrue(quorum.isPhase2Quorum(List.of("M1", "M2", "M3")));
+        assertFalse(quorum.isPhase1Quorum(List.of("M1", "M2", "M3", "M4", "M5", "M6")));
+        assertTrue(quorum.isPhase1Quorum(List.of("M1", "M2", "M3", "M4", "M5", "M6", "M7")));
+    }
+
+    @Test
+    public void testFlexibleQuorumRejectsUnsafeSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new FlexibleQuorum(9, 5, 4));
+        assertThrows(IllegalArgumentException.class, () -> new FlexibleQuorum(9, 10, 3));
+    }
+
+    @Test
+    public void testWeightedQuorum() {
+        Map<String, Integer> weights = Map.of("M1", 3, "M2", 1, "M3", 1, "M4", 1);
+        QuorumSystem quorum = new WeightedQuorum(weights, 4, 4);
+
+        assertTrue(quorum.isPhase2Quorum(List.of("M1", "M2")));
+        assertFalse(quorum.isPhase2Quorum(List.of("M2", "M3", "M4")));
+        assertThrows(IllegalArgumentException.class, () -> new WeightedQuorum(weights, 3, 3));
+    }
+
+    @Test
+    public void testGridQuorum() {
+        QuorumSystem quorum = new GridQuorum(List.of(
+            List.of("M1", "M2", "M3"),
+            List.of("M4", "M5", "M6"),
+            List.of("M7", "M8", "M9")
+        ));
+
+        assertTrue(quorum.isPhase1Quorum(List.of("M4", "M5", "M6")));
+        assertFalse(quorum.isPhase1Quorum(List.of("M1", "M4", "M7")));
+        assertTrue(quorum.isPhase2Quorum(List.of("M1", "M4", "M7")));
+        assertFalse(quorum.isPhase2Quorum(List.of("M1", "M2", "M4")));
+        assertThrows(IllegalArgumentException.class, () -> new GridQuorum(List.of(List.of("M1"), List.of("M1"))));
+    }
+
+    @Test
+    public void testSelectQuorumTakesShortestPrefix() {
+        QuorumSystem quorum = new FlexibleQuorum(9, 7, 3);
+
+        assertEquals(List.of("M9", "M8", "M7"), quorum.selectQuorum(List.of("M9", "M8", "M7", "M6", "M5", "M4", "M3", "M2", "M1"), true));
+        assertEquals(7, quorum.selectQuorum(NINE, false).size());
+    }
+
+    @Test
+    public void testFromSettings() {
+        assertTrue(QuorumSystem.fromSettings(Map.of(), NINE) instanceof MajorityQuorum);
+
+        QuorumSystem flexible = QuorumSystem.fromSettings(Map.of("quorum", "flexible", "quorum.phase1", "7", "quorum.phase2", "3"), NINE);
+        assertTrue(flexible.isPhase2Quorum(List.of("M1", "M2", "M3")));
+
+        QuorumSystem weighted = QuorumSystem.fromSettings(Map.of("quorum", "weighted", "quorum.weight.M1", "5"), NINE);
+        assertTrue(weighted.isPhase2Quorum(List.of("M1", "M2", "M3", "M4")));
+
+        QuorumSystem grid = QuorumSystem.fromSettings(Map.of("quorum", "grid", "quorum.grid", "M1 M2 M3 | M4 M5 M6 | M7 M8 M9"), NINE);
+        assertTrue(grid.isPhase2Quorum(List.of("M3", "M6", "M9")));
+
+        assertThrows(IllegalArgumentException.class, () -> QuorumSystem.fromSettings(Map.of("quorum", "flexible"), NINE));
+        assertThrows(IllegalArgumentException.class, () -> QuorumSystem.fromSettings(Map.of("quorum", "random"), NINE));
+    }
+
+    @Test
+    public void testLearnerUsesPhase2Quorum() {
+        Learner learner = new Learner("M1", 9);
+        learner.setQuorumSystem(new FlexibleQuorum(9, 7, 3));
+        ProposalNumber pn = new ProposalNumber("M1:1");
+
+        learner.handleAccepted(new Accepted("M1", pn, "fast"));
+        learner.handleAccepted(new Accepted("M2", pn, "fast"));
+        assertNull(learner.getLastLearnedValue());
+
+        learner.handleAccepted(new Accepted("M3", pn, "fast"));
+        assertEquals("fast", learner.getLastLearnedValue());
+    }
+
+    @Test
+    public void testBitsetChecksMatchCollectionChecks() {
+        MemberIndex index = new MemberIndex();
+        index.internAll(NINE);
+        Map<String, Integer> weights = new HashMap<>();
+        NINE.forEach(id -> weights.put(id, 1));
+        weights.put("M1", 5);
+
+        List<QuorumSystem> quorums = List.of(
+            new MajorityQuorum(9),
+            new FlexibleQuorum(9, 7, 3),
+            new WeightedQuorum(weights, 7, 7),
+            new GridQuorum(List.of(NINE.subList(0, 3), NINE.subList(3, 6), NINE.subList(6, 9)))
+        );
+        List<List<String>> voterSets = List.of(
+            List.of("M1", "M2"), List.of("M1", "M4", "M7"), List.of("M4", "M5", "M6"),
+            List.of("M2", "M3", "M4", "M5", "M6"), NINE
+        );
+
+        for (QuorumSystem quorum : quorums) {
+            for (List<String> voters : voterSets) {
+                BitSet bits = new BitSet();
+                voters.forEach(id -> bits.set(index.indexOf(id)));
+                assertEquals(quorum.isPhase1Quorum(voters), quorum.isPhase1Quorum(bits, index), quorum + " " + voters);
+                assertEquals(quorum.isPhase2Quorum(voters), quorum.isPhase2Quorum(bits, index), quorum + " " + voters);
+            }
+        }
+    }
+}
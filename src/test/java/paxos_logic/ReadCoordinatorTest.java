@@ -0,0 +1,179 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import network.MemberTransport;
+import paxos_util.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+
+public class ReadCoordinatorTest {
+
+    @Mock
+    private MemberTransport mockTransport;
+
+    private Proposer proposer;
+    private Learner learner;
+    private ReadCoordinator reader;
+    private Set<String> acceptorIds;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        acceptorIds = new HashSet<>();
+        acceptorIds.add("M1");
+        acceptorIds.add("M2");
+        acceptorIds.add("M3");
+
+        proposer = new Proposer("M1", acceptorIds, mockTransport);
+        learner = new Learner("M1", acceptorIds.size());
+        reader = new ReadCoordinator("M1", proposer, learner, mockTransport);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void testLeaseGrantedOnMajorityPromises() {
+        proposer.setLease(new LeaderLease(10_000, 100));
+        proposer.propose("value");
+        assertFalse(proposer.holdsLease());
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        proposer.handlePromise(new Promise("M1", pn, null, null));
+        proposer.handlePromise(new Promise("M2", pn, null, null));
+
+        assertTrue(proposer.holdsLease());
+    }
+
+    @Test
+    public void testLeaseReadServedLocally() throws Exception {
+        proposer.setLease(new LeaderLease(10_000, 100));
+        proposer.propose("value");
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        proposer.handlePromise(new Promise("M1", pn, null, null));
+        proposer.handlePromise(new Promise("M2", pn, null, null));
+        learner.handleAccepted(new Accepted("M1", pn, "value"));
+        learner.handleAccepted(new Accepted("M2", pn, "value"));
+
+        reset(mockTransport);
+        VersionedValue read = reader.read().get();
+        assertEquals("value", read.value);
+        assertEquals(0, read.index);
+        verify(mockTransport, never()).sendMessage(any(), any(ReadIndex.class));
+        assertTrue(outputStream.toString().contains("Serving read under leader lease"));
+    }
+
+    @Test
+    public void testReadIndexWaitsForLearner() throws Exception {
+        CompletableFuture<VersionedValue> read = reader.read();
+
+        for (String acceptorId : acceptorIds) {
+            verify(mockTransport).sendMessage(eq(acceptorId), any(ReadIndex.class));
+        }
+
+        reader.handleReadIndexAck(new ReadIndexAck("M2", 1, "M2:1", 0));
+        reader.handleReadIndexAck(new ReadIndexAck("M3", 1, "M2:1", 0));
+        assertFalse(read.isDone());
+
+        ProposalNumber pn = new ProposalNumber("M2:1");
+        learner.handleAccepted(new Accepted("M2", pn, "value"));
+        learner.handleAccepted(new Accepted("M3", pn, "value"));
+
+        assertEquals("value", read.get().value);
+    }
+
+    @Test
+    public void testReadIndexWithNothingAccepted() throws Exception {
+        CompletableFuture<VersionedValue> read = reader.read();
+
+        reader.handleReadIndexAck(new ReadIndexAck("M1", 1, null, -1));
+        reader.handleReadIndexAck(new ReadIndexAck("M2", 1, null, -1));
+
+        assertNull(read.get().value);
+        assertEquals(-1, read.get().index);
+    }
+
+    @Test
+    public void testReadIndexCompletesUnchosenInstance() throws Exception {
+        reader.setCompletionDelay(10);
+        CompletableFuture<VersionedValue> read = reader.read();
+
+        // Only M2 accepted in instance 0; its Proposer never got the value chosen
+        reader.handleReadIndexAck(new ReadIndexAck("M2", 1, "M2:1", 0));
+        reader.handleReadIndexAck(new ReadIndexAck("M3", 1, "M2:1", -1));
+
+        verify(mockTransport, timeout(1000)).sendMessage(eq("M2"), any(Prepare.class));
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        proposer.handlePromise(new Promise("M2", pn, "M2:1", "value"));
+        proposer.handlePromise(new Promise("M3", pn, null, null));
+        verify(mockTransport).sendMessage(eq("M3"), argThat(m -> m instanceof AcceptRequest a && "value".equals(a.proposalValue)));
+
+        learner.handleAccepted(new Accepted("M2", pn, "value"));
+        learner.handleAccepted(new Accepted("M3", pn, "value"));
+
+        assertEquals("value", read.get().value);
+        assertEquals(0, read.get().index);
+    }
+
+    @Test
+    public void testReadIndexLoweredWhenNothingChosen() throws Exception {
+        reader.setCompletionDelay(10);
+        CompletableFuture<VersionedValue> read = reader.read();
+
+        reader.handleReadIndexAck(new ReadIndexAck("M2", 1, "M2:1", 0));
+        reader.handleReadIndexAck(new ReadIndexAck("M3", 1, "M2:1", -1));
+
+        // The Acceptor that accepted in instance 0 is not in the Phase 1 quorum
+        verify(mockTransport, timeout(1000)).sendMessage(eq("M3"), any(Prepare.class));
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        proposer.handlePromise(new Promise("M1", pn, null, null));
+        proposer.handlePromise(new Promise("M3", pn, null, null));
+
+        assertEquals(-1, read.get().index);
+        verify(mockTransport, never()).sendMessage(any(), any(AcceptRequest.class));
+    }
+
+    @Test
+    public void testAcceptorRejectsPrepareWhileLeaseHeld() {
+        Acceptor acceptor = new Acceptor("M2", mockTransport, acceptorIds);
+        acceptor.setLeaseDuration(10_000);
+
+        acceptor.handlePrepare(new Prepare("M1", new ProposalNumber("M1:1")), "M1");
+        reset(mockTransport);
+        acceptor.handlePrepare(new Prepare("M3", new ProposalNumber("M3:5")), "M3");
+        acceptor.handleAcceptRequest(new AcceptRequest("M3", new ProposalNumber("M3:5"), "value"), "M3");
+
+        verify(mockTransport, never()).sendMessage(eq("M3"), any(Promise.class));
+        verify(mockTransport, never()).sendMessage(eq("M3"), any(Accepted.class));
+        verify(mockTransport, times(2)).sendMessage(eq("M3"), argThat(msg ->
+            msg instanceof Nack nack && "M1".equals(nack.leaseHolder)
+                && nack.leaseRemainingMs > 0 && nack.leaseRemainingMs <= 10_000
+        ));
+        String output = outputStream.toString();
+        assertTrue(output.contains("Rejected Prepare(M3:5), lease held by M1"));
+        assertTrue(output.contains("Rejected AcceptRequest(M3:5), lease held by M1"));
+    }
+
+    @Test
+    public void testInvalidLeaseSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new LeaderLease(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new LeaderLease(100, 100));
+    }
+}
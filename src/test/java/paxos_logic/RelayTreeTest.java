@@ -0,0 +1,155 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.gson.Gson;
+import network.MemberTransport;
+import paxos_util.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.*;
+
+public class RelayTreeTest {
+
+    @Mock
+    private MemberTransport mockTransport;
+
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void testEveryLearnerHasExactlyOneParent() {
+        List<String> voters = List.of("M1", "M2", "M3");
+        List<String> learners = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            learners.add("L" + (char) ('a' + i));
+        }
+        RelayTree tree = new RelayTree(voters, learners, 3);
+
+        Map<String, Integer> feeds = new HashMap<>();
+        for (String member : union(voters, learners)) {
+            List<String> children = tree.childrenOf(member);
+            assertTrue(children.size() <= 3);
+            for (String child : children) {
+                feeds.merge(child, 1, Integer::sum);
+                assertEquals(member, tree.parentOf(child));
+            }
+        }
+
+        for (String learner : learners) {
+            assertEquals(1, feeds.get(learner), learner);
+        }
+        assertEquals(learners.size(), feeds.size());
+    }
+
+    @Test
+    public void testVotersFeedFirstLevel() {
+        RelayTree tree = new RelayTree(List.of("M1", "M2"), List.of("L1", "L2", "L3"), 2);
+
+        assertEquals(List.of("L1"), tree.childrenOf("M1"));
+        assertEquals(List.of("L2"), tree.childrenOf("M2"));
+        assertEquals(List.of("L3"), tree.childrenOf("L1"));
+        assertEquals(List.of(), tree.childrenOf("L3"));
+        assertThrows(IllegalArgumentException.class, () -> new RelayTree(List.of("M1"), List.of("L1"), 0));
+    }
+
+    @Test
+    public void testAppliedValuesRelayedToChildren() {
+        Set<String> voters = Set.of("M1", "M2", "M3");
+        PaxosNode node = new PaxosNode("M1", voters, voters, mockTransport);
+        node.enableRelay(new RelayTree(voters, List.of("L1", "L2", "L3", "L4"), 2));
+
+        ProposalNumber pn = new ProposalNumber("M1:1");
+        node.getLearner().handleAccepted(new Accepted("M1", pn, "value"));
+        node.getLearner().handleAccepted(new Accepted("M2", pn, "value"));
+
+        verify(mockTransport).sendMessage(eq("L1"), argThat(msg ->
+            msg instanceof Chosen chosen && chosen.instance == 0 && chosen.proposalValue.equals("value")
+        ));
+        verify(mockTransport, never()).sendMessage(eq("L2"), any());
+        verify(mockTransport, never()).sendMessage(eq("L3"), any());
+    }
+
+    @Test
+    public void testFallbacksAreOtherVoters() {
+        RelayTree tree = new RelayTree(List.of("M1", "M2", "M3"), List.of("L1", "L2", "L3"), 2);
+
+        assertEquals("M1", tree.parentOf("L1"));
+        assertEquals(List.of("M2", "M3"), tree.fallbacksOf("L1"));
+        assertEquals(List.of("M1", "M2", "M3"), tree.fallbacksOf("L3"));
+        assertEquals(List.of(), tree.fallbacksOf("M1"));
+    }
+
+    @Test
+    public void testCatchUpAnsweredWithRetainedValues() {
+        Set<String> voters = Set.of("M1", "M2", "M3");
+        PaxosNode node = new PaxosNode("M1", voters, voters, mockTransport);
+        node.enableRelay(new RelayTree(voters, List.of("M4", "M5", "M6", "M7"), 2));
+        for (int i = 0; i < 3; i++) {
+            Chosen chosen = new Chosen("M2", new ProposalNumber("M2:1"), "v" + i);
+            chosen.instance = i;
+            node.getLearner().handleChosen(chosen);
+        }
+
+        // M6 is not a child of M1, but asks it to relay while its parent is down
+        node.handleMessage("M6", new Gson().toJson(new CatchUp("M6", 1, true)));
+        verify(mockTransport).sendMessage(eq("M6"), argThat(msg -> msg instanceof Chosen chosen && chosen.instance == 1 && chosen.proposalValue.equals("v1")));
+        verify(mockTransport).sendMessage(eq("M6"), argThat(msg -> msg instanceof Chosen chosen && chosen.instance == 2));
+        verify(mockTransport, never()).sendMessage(eq("M6"), argThat(msg -> msg instanceof Chosen chosen && chosen.instance == 0));
+
+        Chosen next = new Chosen("M2", new ProposalNumber("M2:1"), "v3");
+        next.instance = 3;
+        node.getLearner().handleChosen(next);
+        verify(mockTransport).sendMessage(eq("M6"), argThat(msg -> msg instanceof Chosen chosen && chosen.instance == 3));
+
+        node.handleMessage("M6", new Gson().toJson(new CatchUp("M6", 4, false)));
+        next = new Chosen("M2", new ProposalNumber("M2:1"), "v4");
+        next.instance = 4;
+        node.getLearner().handleChosen(next);
+        verify(mockTransport, never()).sendMessage(eq("M6"), argThat(msg -> msg instanceof Chosen chosen && chosen.instance == 4));
+    }
+
+    @Test
+    public void testStalledLearnerAsksParentThenFallback() {
+        Set<String> voters = Set.of("M1", "M2", "M3");
+        PaxosNode node = new PaxosNode("M6", voters, voters, mockTransport);
+        node.enableRelay(new RelayTree(voters, List.of("M4", "M5", "M6", "M7"), 2));
+        try {
+            // Nothing applied: the parent is asked for everything from instance 0
+            verify(mockTransport, timeout(3000)).sendMessage(eq("M4"), argThat(msg -> msg instanceof CatchUp catchUp && catchUp.fromInstance == 0 && !catchUp.relay));
+
+            when(mockTransport.isSuspected("M4")).thenReturn(true);
+            verify(mockTransport, timeout(3000)).sendMessage(eq("M1"), argThat(msg -> msg instanceof CatchUp catchUp && catchUp.relay));
+            assertTrue(outputStream.toString().contains("Relay parent M4 suspected, relaying from M1"));
+
+            when(mockTransport.isSuspected("M4")).thenReturn(false);
+            verify(mockTransport, timeout(3000)).sendMessage(eq("M1"), argThat(msg -> msg instanceof CatchUp catchUp && !catchUp.relay));
+        } finally {
+            node.shutdown();
+        }
+    }
+
+    private static List<String> union(List<String> a, List<String> b) {
+        List<String> all = new ArrayList<>(a);
+        all.addAll(b);
+        return all;
+    }
+}
@@ -0,0 +1,91 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import network.MemberTransport;
+import paxos_util.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.HashSet;
+
+public class ShardedPaxosNodeTest {
+
+    @Mock
+    private MemberTransport mockTransport;
+
+    private ShardedPaxosNode node;
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Set<String> ids = new HashSet<>(Set.of("M1", "M2", "M3"));
+
+        node = new ShardedPaxosNode("M1", ids, ids, 4);
+        node.setTransport(mockTransport);
+        System.setOut(new PrintStream(outputStream));
+    }
+
+    @AfterEach
+    void tearDown() {
+        node.shutdown();
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void testRouterIsDeterministic() {
+        ShardRouter router = new ShardRouter(4);
+        assertEquals(router.shardFor("alpha"), new ShardRouter(4).shardFor("alpha"));
+        for (String key : new String[] {"a", "b", "c", "key-with-negative-hash-zzzz"}) {
+            int shard = router.shardFor(key);
+            assertTrue(shard >= 0 && shard < 4);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(0));
+    }
+
+    @Test
+    public void testKeyOfProposal() {
+        assertEquals("user", ShardRouter.keyOf("user=alice"));
+        assertEquals("plain", ShardRouter.keyOf("plain"));
+    }
+
+    @Test
+    public void testOutgoingMessagesTaggedWithShard() {
+        node.propose("k", "k=v");
+        int shard = node.getRouter().shardFor("k");
+
+        verify(mockTransport, atLeastOnce()).sendMessage(any(), argThat(msg ->
+            msg instanceof Prepare prepare && prepare.shardId == shard
+        ));
+    }
+
+    @Test
+    public void testIncomingMessageRoutedToShard() throws Exception {
+        String prepareJson = "{\"type\":\"PREPARE\",\"fromMemberId\":\"M2\",\"proposalNum\":{\"proposerId\":2,\"sequence\":1},\"shardId\":3}";
+
+        node.handleMessage("M2", prepareJson);
+
+        verify(mockTransport, timeout(1000)).sendMessage(eq("M2"), argThat(msg ->
+            msg instanceof Promise promise && promise.shardId == 3
+        ));
+    }
+
+    @Test
+    public void testUnknownShardIgnored() {
+        String prepareJson = "{\"type\":\"PREPARE\",\"fromMemberId\":\"M2\",\"proposalNum\":{\"proposerId\":2,\"sequence\":1},\"shardId\":9}";
+
+        node.handleMessage("M2", prepareJson);
+
+        assertTrue(outputStream.toString().contains("Message for unknown shard 9 from M2"));
+        verifyNoInteractions(mockTransport);
+    }
+}
@@ -0,0 +1,94 @@
+package paxos_logic;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+public class ValueStoreTest {
+
+    @Test
+    public void testChunksReassembleInAnyOrder() {
+        String body = "abc".repeat(ValueStore.CHUNK_CHARS);
+        String digest = ValueStore.digest(body);
+        List<String> chunks = ValueStore.chunks(body);
+        assertEquals(3, chunks.size());
+
+        ValueStore store = new ValueStore(4);
+        assertNull(store.addChunk(digest, 2, 3, chunks.get(2)));
+        assertNull(store.addChunk(digest, 0, 3, chunks.get(0)));
+        assertNull(store.get(digest));
+        assertEquals(body, store.addChunk(digest, 1, 3, chunks.get(1)));
+        assertEquals(body, store.get(digest));
+
+        // A duplicate chunk after completion changes nothing
+        assertNull(store.addChunk(digest, 1, 3, chunks.get(1)));
+    }
+
+    @Test
+    public void testBodyNotMatchingDigestDiscarded() {
+        ValueStore store = new ValueStore(4);
+        String digest = ValueStore.digest("expected");
+
+        assertNull(store.addChunk(digest, 0, 1, "forged"));
+        assertNull(store.get(digest));
+        assertNull(store.addChunk(digest, 1, 1, "out of range"));
+    }
+
+    @Test
+    public void testOldestBodiesEvicted() {
+        ValueStore store = new ValueStore(2);
+        String first = store.put("one");
+        String second = store.put("two");
+        String third = store.put("three");
+
+        assertNull(store.get(first));
+        assertEquals("two", store.get(second));
+        assertEquals("three", store.get(third));
+    }
+
+    @Test
+    public void testPinnedBodiesKeptUntilReleased() {
+        ValueStore store = new ValueStore(2);
+        String first = ValueStore.digest("one");
+        store.pin(first, 1);
+        store.put("one");
+        String second = store.put("two");
+        String third = store.put("three");
+
+        // The unpinned oldest body goes instead of the pinned one
+        assertEquals("one", store.get(first));
+        assertNull(store.get(second));
+        assertEquals(2, store.size());
+
+        // A body pinned before it arrives is kept even beyond the capacity
+        String late = ValueStore.digest("late");
+        store.pin(late, 2);
+        store.put("four");
+        assertEquals("late", store.addChunk(late, 0, 1, "late"));
+        assertEquals("one", store.get(first));
+        assertEquals("late", store.get(late));
+
+        store.releaseBelow(2);
+        assertFalse(store.isPinned(first));
+        assertTrue(store.isPinned(late));
+        assertNull(store.get(third));
+        String fifth = store.put("five");
+        assertNull(store.get(first));
+        assertEquals("late", store.get(late));
+        assertEquals("five", store.get(fifth));
+    }
+
+    @Test
+    public void testReferences() {
+        String digest = ValueStore.digest("value");
+        String reference = ValueStore.reference(digest);
+
+        assertEquals(64, digest.length());
+        assertTrue(ValueStore.isReference(reference));
+        assertFalse(ValueStore.isReference("value"));
+        assertFalse(ValueStore.isReference(null));
+        assertEquals(digest, ValueStore.digestOf(reference));
+        assertEquals(List.of(""), ValueStore.chunks(""));
+    }
+}
@@ -71,4 +71,16 @@ public class ProposalNumberTest {
         assertEquals(999999, pn2.sequence);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testPackPreservesOrder() {
+        String[] ordered = { "M0:0", "M9:0", "M1:1", "M2:1", "M10:1", "M1:2", "M999:999999" };
+        for (int i = 0; i < ordered.length; i++) {
+            ProposalNumber pn = new ProposalNumber(ordered[i]);
+            assertEquals(pn, ProposalNumber.unpack(pn.pack()));
+            assertTrue(pn.pack() >= 0);
+            if (i > 0) {
+                assertTrue(new ProposalNumber(ordered[i - 1]).pack() < pn.pack());
+            }
+        }
+    }
+}
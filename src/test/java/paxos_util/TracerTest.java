@@ -0,0 +1,71 @@
+package paxos_util;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TracerTest {
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        Tracer.disable();
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() throws Exception {
+        Path file = dir.resolve("trace-M1.jsonl");
+        Tracer.span("M1-1", "send PREPARE", Tracer.nowMicros(), null);
+
+        assertFalse(Tracer.isEnabled());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testSpansWrittenAsJsonLines() throws Exception {
+        Path file = dir.resolve("trace-M1.jsonl");
+        Tracer.enable("M1", file);
+
+        long start = Tracer.nowMicros() - 2_000;
+        Tracer.span("M1-1", "handle PROMISE", start, "from M2");
+        Tracer.span(null, "untraced", start, null);
+        Tracer.disable();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        Tracer.Span span = new Gson().fromJson(lines.get(0), Tracer.Span.class);
+        assertEquals("M1-1", span.traceId);
+        assertEquals("M1", span.member);
+        assertEquals("handle PROMISE", span.name);
+        assertEquals(start, span.startMicros);
+        assertTrue(span.durationMicros >= 2_000);
+        assertEquals("from M2", span.detail);
+    }
+
+    @Test
+    public void testQueuedSpansFlushedInBackground() throws Exception {
+        Path file = dir.resolve("trace-M1.jsonl");
+        Tracer.enable("M1", file);
+
+        long start = Tracer.nowMicros();
+        Tracer.span("M1-2", "send ACCEPT", start, null);
+        Tracer.span("M1-2", "handle ACCEPTED", start, null);
+
+        // Written without disabling, within a few flush intervals
+        long deadline = System.nanoTime() + 20 * Tracer.FLUSH_INTERVAL_MS * 1_000_000L;
+        while (Files.readAllLines(file).size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertEquals("handle ACCEPTED", new Gson().fromJson(lines.get(1), Tracer.Span.class).name);
+    }
+}
@@ -0,0 +1,122 @@
+package tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoadGeneratorTest {
+
+    private ServerSocket server;
+    private final List<PrintWriter> watchers = new CopyOnWriteArrayList<>();
+    private final AtomicLong instance = new AtomicLong();
+    private final AtomicInteger busyReplies = new AtomicInteger();
+
+    /*
+     * A stand-in for a member's command port: queues every value, applies it right away and
+     * answers the first few proposals BUSY
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket client = server.accept();
+                    Thread connection = new Thread(() -> serve(client));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void serve(Socket client) {
+        try (client;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+             PrintWriter writer = new PrintWriter(client.getOutputStream(), true)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals("/watch")) {
+                    synchronized (writer) {
+                        watchers.add(writer);
+                        writer.println("WATCHING");
+                    }
+                } else if (busyReplies.getAndDecrement() > 0) {
+                    writer.println("BUSY retry-after=20");
+                } else {
+                    writer.println("QUEUED");
+                    for (PrintWriter watcher : watchers) {
+                        synchronized (watcher) {
+                            watcher.println("APPLIED 0 " + instance.getAndIncrement() + " " + line);
+                        }
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private LoadGenerator generator() {
+        InetSocketAddress address = new InetSocketAddress("localhost", server.getLocalPort());
+        return new LoadGenerator(List.of(address), address, 4, 2000);
+    }
+
+    @Test
+    public void testClosedLoopRetriesBusyAndMeasuresCommits() throws Exception {
+        busyReplies.set(2);
+
+        LoadGenerator.Report report = generator().runClosedLoop(2, 300);
+
+        assertTrue(report.committed > 0);
+        assertEquals(report.sent, report.committed);
+        assertEquals(2, report.rejected);
+        assertEquals(0, report.timedOut);
+        assertTrue(report.throughput() > 0);
+    }
+
+    @Test
+    public void testOpenLoopSendsAtFixedRate() throws Exception {
+        LoadGenerator.Report report = generator().runOpenLoop(100, 500);
+
+        assertEquals(50, report.sent);
+        assertEquals(50, report.committed);
+        assertEquals(0, report.timedOut);
+    }
+
+    @Test
+    public void testPercentilesByNearestRank() {
+        long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (100 - i) * 1000L;
+        }
+
+        LoadGenerator.Report report = new LoadGenerator.Report(100, 0, 0, 2.0, latencies);
+
+        assertEquals(50_000, report.percentileMicros(50));
+        assertEquals(99_000, report.percentileMicros(99));
+        assertEquals(100_000, report.percentileMicros(100));
+        assertEquals(50.0, report.throughput());
+    }
+}
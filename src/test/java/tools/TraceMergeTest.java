@@ -0,0 +1,58 @@
+package tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import paxos_util.Tracer.Span;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class TraceMergeTest {
+
+    @TempDir
+    Path dir;
+
+    private static String line(String traceId, String member, String name, long start, long duration) {
+        return "{\"traceId\":\"" + traceId + "\",\"member\":\"" + member + "\",\"name\":\"" + name
+            + "\",\"startMicros\":" + start + ",\"durationMicros\":" + duration + "}";
+    }
+
+    @Test
+    public void testSpansOfMembersGroupedByTraceInStartOrder() throws Exception {
+        Path m1 = dir.resolve("trace-M1.jsonl");
+        Path m2 = dir.resolve("trace-M2.jsonl");
+        Files.write(m1, List.of(
+            line("M1-a", "M1", "send PREPARE", 1_000, 50),
+            line("M1-b", "M1", "send PREPARE", 5_000, 40),
+            line("M1-a", "M1", "decision", 1_000, 900)));
+        Files.write(m2, List.of(
+            line("M1-a", "M2", "handle PREPARE", 1_200, 30),
+            "{\"traceId\":\"M1-b\",\"mem"));
+
+        Map<String, List<Span>> traces = TraceMerge.merge(List.of(m1, m2));
+
+        assertEquals(List.of("M1-a", "M1-b"), List.copyOf(traces.keySet()));
+        List<Span> a = traces.get("M1-a");
+        assertEquals(3, a.size());
+        assertEquals("send PREPARE", a.get(0).name);
+        assertEquals("decision", a.get(1).name);
+        assertEquals("M2", a.get(2).member);
+        assertEquals(1, traces.get("M1-b").size());
+    }
+
+    @Test
+    public void testTimelineRelativeToFirstSpan() throws Exception {
+        Path m1 = dir.resolve("trace-M1.jsonl");
+        Files.write(m1, List.of(
+            line("M1-a", "M1", "decision", 10_000, 2_500),
+            line("M1-a", "M2", "handle ACCEPT_REQUEST", 11_000, 500)));
+
+        String timeline = TraceMerge.format("M1-a", TraceMerge.merge(List.of(m1)).get("M1-a"));
+
+        assertTrue(timeline.startsWith("Trace M1-a (2.500 ms, 2 spans)"));
+        assertTrue(timeline.contains("+    1.000 ms     0.500 ms  M2     handle ACCEPT_REQUEST"));
+    }
+}